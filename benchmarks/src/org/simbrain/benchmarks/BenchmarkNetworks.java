@@ -0,0 +1,221 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.simbrain.network.connections.ConnectNeurons;
+import org.simbrain.network.connections.Radial;
+import org.simbrain.network.connections.Sparse;
+import org.simbrain.network.core.Network;
+import org.simbrain.network.core.Neuron;
+import org.simbrain.network.groups.NeuronGroup;
+import org.simbrain.network.groups.SynapseGroup;
+import org.simbrain.network.layouts.GridLayout;
+import org.simbrain.network.neuron_update_rules.IzhikevichRule;
+import org.simbrain.network.neuron_update_rules.LinearRule;
+import org.simbrain.network.synapse_update_rules.spikeresponders.ConvolvedJumpAndDecay;
+import org.simbrain.util.SimbrainConstants.Polarity;
+
+/**
+ * Builders for the networks used by the benchmarks. All networks are built
+ * with events turned off (see {@link Network#setFireUpdates(boolean)}) so that
+ * the benchmarks measure the update itself and not listener overhead.
+ *
+ * Connectivity is specified as a mean fan-in rather than a density, so that the
+ * number of synapses grows linearly with the number of neurons.
+ */
+public final class BenchmarkNetworks {
+
+    /** Kinds of network the benchmarks can build. */
+    public enum Topology {
+
+        /** Three layers of linear neurons, each sparsely feeding the next. */
+        FEED_FORWARD,
+
+        /** One group of linear neurons sparsely connected to itself. */
+        RECURRENT,
+
+        /**
+         * One group of Izhikevich neurons, 20% inhibitory, sparsely connected
+         * to itself with jump and decay spike responders.
+         */
+        SPIKING
+    }
+
+    /** Kinds of connector the benchmarks can use. */
+    public enum Connector {
+
+        /** {@link Sparse}. */
+        SPARSE,
+
+        /** {@link Radial}. */
+        RADIAL
+    }
+
+    /** Spacing between neurons in the grid layout. */
+    private static final double GRID_SPACING = 50;
+
+    /**
+     * Don't instantiate.
+     */
+    private BenchmarkNetworks() {
+    }
+
+    /**
+     * Build a network.
+     *
+     * @param topology the kind of network
+     * @param numNeurons the total number of neurons
+     * @param fanIn the mean number of synapses onto each neuron
+     * @return the network
+     */
+    public static Network createNetwork(final Topology topology,
+            final int numNeurons, final int fanIn) {
+        Network net = new Network();
+        net.setFireUpdates(false);
+        switch (topology) {
+        case FEED_FORWARD:
+            int layerSize = Math.max(1, numNeurons / 3);
+            NeuronGroup previous = null;
+            for (int i = 0; i < 3; i++) {
+                NeuronGroup layer = createLinearGroup(net, layerSize);
+                net.addGroup(layer);
+                if (previous != null) {
+                    net.addGroup(connect(previous, layer, Connector.SPARSE,
+                            fanIn));
+                }
+                previous = layer;
+            }
+            break;
+        case RECURRENT:
+            NeuronGroup group = createLinearGroup(net, numNeurons);
+            net.addGroup(group);
+            net.addGroup(connect(group, group, Connector.SPARSE, fanIn));
+            break;
+        case SPIKING:
+            NeuronGroup spiking = createSpikingGroup(net, numNeurons);
+            net.addGroup(spiking);
+            SynapseGroup sg = connect(spiking, spiking, Connector.SPARSE,
+                    fanIn);
+            sg.setSpikeResponder(new ConvolvedJumpAndDecay(),
+                    Polarity.EXCITATORY);
+            ConvolvedJumpAndDecay inhibJD = new ConvolvedJumpAndDecay();
+            inhibJD.setTimeConstant(6);
+            sg.setSpikeResponder(inhibJD, Polarity.INHIBITORY);
+            net.addGroup(sg);
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown topology "
+                    + topology);
+        }
+        return net;
+    }
+
+    /**
+     * Create a group of linear neurons with random activations, laid out in a
+     * grid.
+     *
+     * @param net the parent network
+     * @param numNeurons number of neurons
+     * @return the group, not yet added to the network
+     */
+    public static NeuronGroup createLinearGroup(final Network net,
+            final int numNeurons) {
+        List<Neuron> neurons = new ArrayList<Neuron>(numNeurons);
+        for (int i = 0; i < numNeurons; i++) {
+            Neuron n = new Neuron(net, new LinearRule());
+            n.forceSetActivation(Math.random());
+            neurons.add(n);
+        }
+        NeuronGroup group = new NeuronGroup(net, neurons);
+        new GridLayout(GRID_SPACING, GRID_SPACING).layoutNeurons(neurons);
+        return group;
+    }
+
+    /**
+     * Create a group of noisy Izhikevich neurons, 20% of which are inhibitory,
+     * laid out in a grid.
+     *
+     * @param net the parent network
+     * @param numNeurons number of neurons
+     * @return the group, not yet added to the network
+     */
+    public static NeuronGroup createSpikingGroup(final Network net,
+            final int numNeurons) {
+        net.setTimeStep(0.5);
+        List<Neuron> neurons = new ArrayList<Neuron>(numNeurons);
+        for (int i = 0; i < numNeurons; i++) {
+            IzhikevichRule rule = new IzhikevichRule();
+            rule.setiBg(0);
+            rule.setAddNoise(true);
+            Neuron n = new Neuron(net, rule);
+            n.setPolarity(i % 5 == 0 ? Polarity.INHIBITORY
+                    : Polarity.EXCITATORY);
+            neurons.add(n);
+        }
+        NeuronGroup group = new NeuronGroup(net, neurons);
+        group.setRecordAsSpikes(true);
+        new GridLayout(GRID_SPACING, GRID_SPACING).layoutNeurons(neurons);
+        return group;
+    }
+
+    /**
+     * Connect two neuron groups.
+     *
+     * @param source source group
+     * @param target target group
+     * @param connector the connector to use
+     * @param fanIn the mean number of synapses onto each target neuron
+     * @return the new synapse group, not yet added to the network
+     */
+    public static SynapseGroup connect(final NeuronGroup source,
+            final NeuronGroup target, final Connector connector,
+            final int fanIn) {
+        return SynapseGroup.createSynapseGroup(source, target,
+                createConnector(connector, source.size(), fanIn), 0.8);
+    }
+
+    /**
+     * Create a connector which gives roughly the requested fan-in.
+     *
+     * @param connector the kind of connector
+     * @param numSource the number of source neurons
+     * @param fanIn the mean number of synapses onto each target neuron
+     * @return the connector
+     */
+    public static ConnectNeurons createConnector(final Connector connector,
+            final int numSource, final int fanIn) {
+        switch (connector) {
+        case SPARSE:
+            return new Sparse(Math.min(1.0, fanIn / (double) numSource),
+                    false, false);
+        case RADIAL:
+            // The connection probability decays as exp(-(d/lambda)^2); on a
+            // grid with the given spacing this gives about pi * (lambda /
+            // spacing)^2 connections per neuron.
+            double lambda = GRID_SPACING * Math.sqrt(fanIn / Math.PI);
+            return new Radial(1.0, lambda);
+        default:
+            throw new IllegalArgumentException("Unknown connector "
+                    + connector);
+        }
+    }
+}
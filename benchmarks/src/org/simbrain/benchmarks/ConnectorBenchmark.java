@@ -0,0 +1,88 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.simbrain.benchmarks.BenchmarkNetworks.Connector;
+import org.simbrain.network.core.Network;
+import org.simbrain.network.groups.NeuronGroup;
+import org.simbrain.network.groups.SynapseGroup;
+
+/**
+ * Time building a recurrent synapse group with the {@link Connector sparse and
+ * radial} connectors. A fresh neuron group is made for every invocation, since
+ * connecting adds synapses to the neurons' fan-in and fan-out.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+public class ConnectorBenchmark {
+
+    /** The connector. */
+    @Param({ "SPARSE", "RADIAL" })
+    private Connector connector;
+
+    /** Number of neurons in the group. */
+    @Param({ "1000", "10000" })
+    private int numNeurons;
+
+    /** Mean number of synapses onto each neuron. */
+    @Param({ "20" })
+    private int fanIn;
+
+    /** The group to connect. */
+    private NeuronGroup group;
+
+    /**
+     * Make a new, unconnected neuron group.
+     */
+    @Setup(Level.Invocation)
+    public void setUp() {
+        Network network = new Network();
+        network.setFireUpdates(false);
+        group = BenchmarkNetworks.createLinearGroup(network, numNeurons);
+        network.addGroup(group);
+    }
+
+    /**
+     * Connect the group to itself.
+     *
+     * @return the new synapse group
+     */
+    @Benchmark
+    public SynapseGroup connect() {
+        return BenchmarkNetworks.connect(group, group, connector, fanIn);
+    }
+}
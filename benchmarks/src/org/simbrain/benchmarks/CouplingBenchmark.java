@@ -0,0 +1,128 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.simbrain.network.NetworkComponent;
+import org.simbrain.network.core.Network;
+import org.simbrain.network.core.Neuron;
+import org.simbrain.network.neuron_update_rules.LinearRule;
+import org.simbrain.workspace.Coupling;
+import org.simbrain.workspace.CouplingManager;
+import org.simbrain.workspace.UmatchedAttributesException;
+import org.simbrain.workspace.Workspace;
+
+/**
+ * Time one call to {@link CouplingManager#updateAllCouplings()}. Network
+ * components are arranged in a ring, with each neuron's activation coupled to
+ * the input of a neuron in the next component.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class CouplingBenchmark {
+
+    /** Number of network components. */
+    @Param({ "4" })
+    private int numComponents;
+
+    /** Total number of couplings. */
+    @Param({ "100", "1000", "10000" })
+    private int numCouplings;
+
+    /** Whether couplings are updated in per-component batches. */
+    @Param({ "true", "false" })
+    private boolean batched;
+
+    /** The coupling manager being benchmarked. */
+    private CouplingManager couplingManager;
+
+    /**
+     * Build the workspace and couplings.
+     *
+     * @throws UmatchedAttributesException never; the attribute types match
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws UmatchedAttributesException {
+        Workspace workspace = new Workspace();
+        int perComponent = Math.max(1, numCouplings / numComponents);
+        List<NetworkComponent> components = new ArrayList<NetworkComponent>();
+        List<List<Neuron>> neurons = new ArrayList<List<Neuron>>();
+        for (int c = 0; c < numComponents; c++) {
+            NetworkComponent component = new NetworkComponent("Network " + c);
+            workspace.addWorkspaceComponent(component);
+            Network network = component.getNetwork();
+            network.setFireUpdates(false);
+            List<Neuron> list = new ArrayList<Neuron>(perComponent);
+            for (int i = 0; i < perComponent; i++) {
+                Neuron neuron = new Neuron(network, new LinearRule());
+                neuron.forceSetActivation(Math.random());
+                network.addNeuron(neuron);
+                list.add(neuron);
+            }
+            components.add(component);
+            neurons.add(list);
+        }
+        couplingManager = workspace.getCouplingManager();
+        couplingManager.setBatchedUpdate(batched);
+        for (int c = 0; c < numComponents; c++) {
+            int d = (c + 1) % numComponents;
+            for (int i = 0; i < perComponent; i++) {
+                Coupling<?> coupling = new Coupling<Double>(components.get(c)
+                        .getAttributeManager()
+                        .createPotentialProducer(neurons.get(c).get(i),
+                                "getActivation", double.class),
+                        components.get(d).getAttributeManager()
+                                .createPotentialConsumer(
+                                        neurons.get(d).get(i),
+                                        "setInputValue", double.class));
+                couplingManager.addCoupling(coupling);
+            }
+        }
+    }
+
+    /**
+     * Update all couplings once.
+     *
+     * @return the coupling manager
+     */
+    @Benchmark
+    public CouplingManager updateAllCouplings() {
+        couplingManager.updateAllCouplings();
+        return couplingManager;
+    }
+}
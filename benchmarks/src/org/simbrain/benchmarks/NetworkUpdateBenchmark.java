@@ -0,0 +1,162 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.simbrain.benchmarks.BenchmarkNetworks.Topology;
+import org.simbrain.network.core.Network;
+import org.simbrain.network.core.NetworkUpdateAction;
+import org.simbrain.network.groups.SynapseGroup;
+import org.simbrain.network.update_actions.CompiledBufferedUpdate;
+import org.simbrain.network.update_actions.ConcurrentBufferedUpdate;
+import org.simbrain.network.update_actions.ForkJoinBufferedUpdate;
+
+/**
+ * Time one update of feed-forward, recurrent and spiking networks of various
+ * sizes, under each of the buffered update actions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+public class NetworkUpdateBenchmark {
+
+    /** The update actions which can be benchmarked. */
+    public enum UpdateMethod {
+
+        /** The network's default update actions. */
+        DEFAULT,
+
+        /** {@link ConcurrentBufferedUpdate}. */
+        CONCURRENT,
+
+        /** {@link CompiledBufferedUpdate}. */
+        COMPILED,
+
+        /** {@link ForkJoinBufferedUpdate}. */
+        FORK_JOIN
+    }
+
+    /** The kind of network. */
+    @Param({ "FEED_FORWARD", "RECURRENT", "SPIKING" })
+    private Topology topology;
+
+    /** Total number of neurons. */
+    @Param({ "1000", "10000", "100000" })
+    private int numNeurons;
+
+    /** Mean number of synapses onto each neuron. */
+    @Param({ "20" })
+    private int fanIn;
+
+    /** How the network is updated. */
+    @Param({ "DEFAULT", "CONCURRENT", "COMPILED", "FORK_JOIN" })
+    private UpdateMethod updateMethod;
+
+    /** The network being updated. */
+    private Network network;
+
+    /** The synapse groups of the network. */
+    private List<SynapseGroup> synapseGroups;
+
+    /** The update action installed by this benchmark, if any. */
+    private NetworkUpdateAction action;
+
+    /**
+     * Build the network and install the update action.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        network = BenchmarkNetworks.createNetwork(topology, numNeurons, fanIn);
+        synapseGroups = new ArrayList<SynapseGroup>(network.getSynapseGroups());
+        switch (updateMethod) {
+        case CONCURRENT:
+            action = ConcurrentBufferedUpdate
+                    .createConcurrentBufferedUpdate(network);
+            break;
+        case COMPILED:
+            action = CompiledBufferedUpdate
+                    .createCompiledBufferedUpdate(network);
+            break;
+        case FORK_JOIN:
+            action = ForkJoinBufferedUpdate
+                    .createForkJoinBufferedUpdate(network);
+            break;
+        default:
+            action = null;
+        }
+        if (action != null) {
+            network.getUpdateManager().clear();
+            network.getUpdateManager().addAction(action);
+        }
+    }
+
+    /**
+     * Stop any threads started by the update action.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (action instanceof ConcurrentBufferedUpdate) {
+            ((ConcurrentBufferedUpdate) action).shutdown();
+        }
+    }
+
+    /**
+     * One full network update.
+     *
+     * @return the network, so the update cannot be optimized away
+     */
+    @Benchmark
+    public Network update() {
+        network.update();
+        return network;
+    }
+
+    /**
+     * One call to {@link SynapseGroup#update()} on every synapse group, i.e.
+     * the learning part of the update on its own.
+     *
+     * @return the synapse groups
+     */
+    @Benchmark
+    public List<SynapseGroup> updateSynapseGroups() {
+        for (int i = 0, n = synapseGroups.size(); i < n; i++) {
+            synapseGroups.get(i).update();
+        }
+        return synapseGroups;
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.benchmarks;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.simbrain.benchmarks.BenchmarkNetworks.Connector;
+import org.simbrain.network.NetworkComponent;
+import org.simbrain.network.core.Network;
+import org.simbrain.network.groups.NeuronGroup;
+import org.simbrain.network.util.io_utilities.NetworkBinarySerializer;
+
+/**
+ * Time saving and opening a network holding one large synapse group, in the xml
+ * and binary formats. Files are written to and read from the temporary
+ * directory, so that the file channel paths of the binary format are used.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+public class SerializationBenchmark {
+
+    /** Number of neurons in each of the two neuron groups. */
+    private static final int GROUP_SIZE = 2000;
+
+    /** Approximate number of synapses in the synapse group. */
+    @Param({ "100000", "1000000" })
+    private int numSynapses;
+
+    /** Save format. */
+    @Param({ "xml", NetworkBinarySerializer.FORMAT })
+    private String format;
+
+    /** Component holding the network to save. */
+    private NetworkComponent component;
+
+    /** File written by {@link #save()}. */
+    private File saveFile;
+
+    /** File read by {@link #open()}, written once during setup. */
+    private File openFile;
+
+    /**
+     * Build the network and write the file to be opened.
+     *
+     * @throws IOException if the temporary files cannot be written
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Network network = new Network();
+        network.setFireUpdates(false);
+        NeuronGroup source = BenchmarkNetworks.createLinearGroup(network,
+                GROUP_SIZE);
+        NeuronGroup target = BenchmarkNetworks.createLinearGroup(network,
+                GROUP_SIZE);
+        network.addGroup(source);
+        network.addGroup(target);
+        network.addGroup(BenchmarkNetworks.connect(source, target,
+                Connector.SPARSE, numSynapses / GROUP_SIZE));
+        component = new NetworkComponent("Benchmark", network);
+        saveFile = File.createTempFile("simbrain-bench-save", "." + format);
+        openFile = File.createTempFile("simbrain-bench-open", "." + format);
+        write(openFile);
+    }
+
+    /**
+     * Delete the temporary files.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        saveFile.delete();
+        openFile.delete();
+    }
+
+    /**
+     * Save the network.
+     *
+     * @return the saved file
+     * @throws IOException if the file cannot be written
+     */
+    @Benchmark
+    public File save() throws IOException {
+        write(saveFile);
+        return saveFile;
+    }
+
+    /**
+     * Open the network saved during setup.
+     *
+     * @return the opened component
+     * @throws IOException if the file cannot be read
+     */
+    @Benchmark
+    public NetworkComponent open() throws IOException {
+        InputStream in = new FileInputStream(openFile);
+        try {
+            return NetworkComponent.open(in, "Benchmark", format);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Save the component to a file in the benchmark's format.
+     *
+     * @param file the file to write
+     * @throws IOException if the file cannot be written
+     */
+    private void write(final File file) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            if (NetworkBinarySerializer.FORMAT.equals(format)) {
+                component.save(out, format);
+            } else {
+                // The xml writer makes many small writes
+                OutputStream buffered = new BufferedOutputStream(out);
+                component.save(buffered, format);
+                buffered.flush();
+            }
+        } finally {
+            out.close();
+        }
+    }
+}
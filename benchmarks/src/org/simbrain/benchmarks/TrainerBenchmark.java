@@ -0,0 +1,135 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.benchmarks;
+
+import java.awt.geom.Point2D;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.simbrain.network.core.Network;
+import org.simbrain.network.subnetworks.BackpropNetwork;
+import org.simbrain.network.trainers.BackpropTrainer;
+import org.simbrain.network.trainers.IterableTrainer;
+import org.simbrain.network.trainers.MatrixBackpropTrainer;
+import org.simbrain.network.trainers.Trainer.DataNotInitializedException;
+
+/**
+ * Time one epoch of backprop training on random data, with the object based
+ * {@link BackpropTrainer} and the {@link MatrixBackpropTrainer}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class TrainerBenchmark {
+
+    /** The trainers which can be benchmarked. */
+    public enum TrainerType {
+
+        /** {@link BackpropTrainer}. */
+        BACKPROP,
+
+        /** {@link MatrixBackpropTrainer}. */
+        MATRIX_BACKPROP
+    }
+
+    /** The trainer. */
+    @Param({ "BACKPROP", "MATRIX_BACKPROP" })
+    private TrainerType trainerType;
+
+    /** Neurons per layer, comma separated, input layer first. */
+    @Param({ "10,10,5", "100,50,10" })
+    private String layers;
+
+    /** Number of rows of training data. */
+    @Param({ "1000" })
+    private int numRows;
+
+    /** The trainer being benchmarked. */
+    private IterableTrainer trainer;
+
+    /**
+     * Build the network, the training data and the trainer.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        String[] tokens = layers.split(",");
+        int[] nodesPerLayer = new int[tokens.length];
+        for (int i = 0; i < tokens.length; i++) {
+            nodesPerLayer[i] = Integer.parseInt(tokens[i].trim());
+        }
+        Network network = new Network();
+        network.setFireUpdates(false);
+        BackpropNetwork backprop = new BackpropNetwork(network,
+                nodesPerLayer, new Point2D.Double(0, 0));
+        network.addGroup(backprop);
+        backprop.getTrainingSet().setInputData(
+                randomData(numRows, nodesPerLayer[0]));
+        backprop.getTrainingSet().setTargetData(
+                randomData(numRows, nodesPerLayer[nodesPerLayer.length - 1]));
+        if (trainerType == TrainerType.MATRIX_BACKPROP) {
+            trainer = new MatrixBackpropTrainer(backprop,
+                    backprop.getNeuronGroupsAsList());
+        } else {
+            trainer = new BackpropTrainer(backprop,
+                    backprop.getNeuronGroupsAsList());
+        }
+        trainer.randomize();
+    }
+
+    /**
+     * One pass through the training data.
+     *
+     * @return the error after the pass
+     * @throws DataNotInitializedException if there is no training data
+     */
+    @Benchmark
+    public double apply() throws DataNotInitializedException {
+        trainer.apply();
+        return trainer.getError();
+    }
+
+    /**
+     * @param rows number of rows
+     * @param cols number of columns
+     * @return a matrix of values uniform in [0, 1)
+     */
+    private static double[][] randomData(final int rows, final int cols) {
+        double[][] data = new double[rows][cols];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                data[i][j] = Math.random();
+            }
+        }
+        return data;
+    }
+}
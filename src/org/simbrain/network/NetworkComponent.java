@@ -17,9 +17,13 @@
  */
 package org.simbrain.network;
 
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.simbrain.network.core.Network;
@@ -33,6 +37,7 @@ import org.simbrain.network.groups.SynapseGroup;
 import org.simbrain.network.listeners.NetworkEvent;
 import org.simbrain.network.listeners.NeuronListener;
 import org.simbrain.network.listeners.SynapseListener;
+import org.simbrain.network.util.io_utilities.NetworkBinarySerializer;
 import org.simbrain.workspace.AttributeType;
 import org.simbrain.workspace.PotentialConsumer;
 import org.simbrain.workspace.PotentialProducer;
@@ -46,6 +51,12 @@ public final class NetworkComponent extends WorkspaceComponent {
     /** Reference to root network, the main model network. */
     private Network network = new Network();
 
+    /**
+     * Number of synapses in synapse groups with group level settings above
+     * which a network is saved in the binary format by default.
+     */
+    public static final int BINARY_FORMAT_THRESHOLD = 100000;
+
     /**
      * Create a new network component.
      * @param name name
@@ -356,21 +367,79 @@ public final class NetworkComponent extends WorkspaceComponent {
     }
 
     /**
-     * {@inheritDoc}
+     * Opens a network saved either as xml or in the binary format of
+     * {@link NetworkBinarySerializer}. The format is recognized from the data
+     * itself, so binary networks inside workspace archives and files with a
+     * misleading extension open correctly.
+     *
+     * @param input the stream to read
+     * @param name the name of the new component
+     * @param format the format recorded for the data (not relied upon)
+     * @return the new network component
      */
     public static NetworkComponent open(final InputStream input,
             final String name, final String format) {
-        Network newNetwork = (Network) Network.getXStream().fromXML(input);
+        InputStream in = input;
+        if (!(in instanceof FileInputStream) && !in.markSupported()) {
+            in = new BufferedInputStream(in);
+        }
+        Network newNetwork;
+        try {
+            if (NetworkBinarySerializer.isBinary(in)) {
+                newNetwork = NetworkBinarySerializer.read(in);
+            } else {
+                newNetwork = (Network) Network.getXStream().fromXML(in);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
         return new NetworkComponent(name, newNetwork);
     }
 
     @Override
     public void save(final OutputStream output, final String format) {
+        String saveFormat = format == null ? getDefaultFormat() : format;
+        if (NetworkBinarySerializer.FORMAT.equals(saveFormat)) {
+            try {
+                NetworkBinarySerializer.write(network, output);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return;
+        }
         network.preSaveInit();
         Network.getXStream().toXML(network, output);
         network.postSaveReInit();
     }
 
+    @Override
+    public List<? extends String> getFormats() {
+        return Arrays.asList("xml", NetworkBinarySerializer.FORMAT);
+    }
+
+    /**
+     * Networks whose synapse groups with group level settings together hold
+     * more than {@link #BINARY_FORMAT_THRESHOLD} synapses are saved in the
+     * binary format by default; other networks are saved as xml. Only those
+     * groups are streamed by the binary format (see
+     * {@link NetworkBinarySerializer}).
+     *
+     * @return the format used when no format is requested
+     */
+    @Override
+    public String getDefaultFormat() {
+        long numGroupSynapses = 0;
+        for (SynapseGroup group : network.getSynapseGroups()) {
+            if (group.isUseGroupLevelSettings()) {
+                numGroupSynapses += group.size();
+            }
+        }
+        if (numGroupSynapses > BINARY_FORMAT_THRESHOLD) {
+            return NetworkBinarySerializer.FORMAT;
+        }
+        return "xml";
+    }
+
     /**
      * Returns the root network.
      *
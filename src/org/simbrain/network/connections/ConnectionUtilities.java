@@ -26,6 +26,7 @@ import org.simbrain.network.core.Neuron;
 import org.simbrain.network.core.Synapse;
 import org.simbrain.network.core.SynapseUpdateRule;
 import org.simbrain.util.SimbrainConstants.Polarity;
+import org.simbrain.util.math.RandomStreams;
 import org.simbrain.util.randomizer.PolarizedRandomizer;
 
 /**
@@ -412,7 +413,7 @@ public class ConnectionUtilities {
                     excitatory = true;
                 }
             } else {
-                double exciteOrInhib = Math.random();
+                double exciteOrInhib = RandomStreams.nextDouble();
                 if (exciteOrInhib < excitatoryRatio) {
                     excitatory = true;
                 } else {
@@ -33,6 +33,9 @@ import org.simbrain.network.core.Synapse;
 import org.simbrain.network.groups.SynapseGroup;
 import org.simbrain.util.SimbrainConstants.Polarity;
 import org.simbrain.util.math.ProbDistribution;
+import org.simbrain.util.math.RandomStreams;
+
+import umontreal.iro.lecuyer.rng.RandomStream;
 
 /**
  *
@@ -58,6 +61,13 @@ import org.simbrain.util.math.ProbDistribution;
  * have it make the most connections possible given the exponential
  * distribution.
  *
+ * Candidate targets are found with a {@link SpatialGrid} over the target
+ * neurons, so only pairs closer than {@link #getCutoffRadius(double)} are
+ * considered. Pairs further apart than that would be connected with
+ * probability less than {@link #CUTOFF_PROBABILITY} times the relevant
+ * constant, so building time scales with the number of synapses made rather
+ * than with the number of pairs.
+ *
  * @author Zach Tosi
  *
  */
@@ -76,6 +86,14 @@ public class Radial extends Sparse {
 
     public static final double DEFAULT_LAMBDA = 2.5;
 
+    /**
+     * Pairs of neurons whose connection probability (before scaling by the
+     * connection constant) falls below this are never connected. Since the
+     * probability is a Gaussian in distance, this is also about the fraction
+     * of connections lost relative to testing every pair.
+     */
+    public static final double CUTOFF_PROBABILITY = 1E-6;
+
     /** The connection constant for connections between 2 excitatory neurons. */
     private double eeDistConst = DEFAULT_EE_CONST;
 
@@ -126,49 +144,11 @@ public class Radial extends Sparse {
         final List<Neuron> source, final List<Neuron> target,
         double eeDistConst, double eiDistConst, double ieDistConst,
         double iiDistConst, double distConst, double lambda, boolean loose) {
-        // Pre-allocating assuming that if one is using this as a connector
-        // then they are probably not going to have greater than 25%
-        // connectivity
-        List<Synapse> synapses = new ArrayList<Synapse>(source.size()
-            * target.size() / 4);
-        for (Neuron src : source) {
-            for (Neuron tar : target) {
-                double randVal = Math.random();
-                double probability;
-                if (src.getPolarity() == Polarity.EXCITATORY) {
-                    if (tar.getPolarity() == Polarity.EXCITATORY) {
-                        probability = calcConnectProb(src, tar, eeDistConst,
-                            lambda);
-                    } else if (tar.getPolarity() == Polarity.INHIBITORY) {
-                        probability = calcConnectProb(src, tar, eiDistConst,
-                            lambda);
-                    } else {
-                        probability = calcConnectProb(src, tar, distConst,
-                            lambda);
-                    }
-                } else if (src.getPolarity() == Polarity.INHIBITORY) {
-                    if (tar.getPolarity() == Polarity.EXCITATORY) {
-                        probability = calcConnectProb(src, tar, ieDistConst,
-                            lambda);
-                    } else if (tar.getPolarity() == Polarity.INHIBITORY) {
-                        probability = calcConnectProb(src, tar, iiDistConst,
-                            lambda);
-                    } else {
-                        probability = calcConnectProb(src, tar, distConst,
-                            lambda);
-                    }
-                } else {
-                    probability = calcConnectProb(src, tar, distConst,
-                        lambda);
-                }
-                if (randVal < probability) {
-                    Synapse s = new Synapse(src, tar);
-                    synapses.add(s);
-                    if (loose) {
-                        src.getNetwork().addSynapse(s);
-                    }
-                }
-            }
+        List<Synapse> synapses = new ArrayList<Synapse>();
+        SpatialGrid grid = createGrid(target, lambda);
+        if (grid != null) {
+            connectRadial(source, grid, eeDistConst, eiDistConst,
+                ieDistConst, iiDistConst, distConst, lambda, loose, synapses);
         }
         return synapses;
     }
@@ -185,16 +165,72 @@ public class Radial extends Sparse {
     public static List<Synapse> connectRadialNoPolarity(
         final List<Neuron> source, final List<Neuron> target, double distConst,
         double lambda, boolean loose) {
-        // Pre-allocating assuming that if one is using this as a connector
-        // then they are probably not going to have greater than 25%
-        // connectivity
-        List<Synapse> synapses = new ArrayList<Synapse>(source.size()
-            * target.size() / 4);
+        return connectRadialPolarized(source, target, distConst, distConst,
+            distConst, distConst, distConst, lambda, loose);
+    }
+
+    /**
+     * Returns the distance beyond which neurons are not connected, i.e. the
+     * distance at which e^-(D / (λ^2)) falls to {@link #CUTOFF_PROBABILITY}.
+     *
+     * @param lambda the lambda value
+     * @return the cutoff radius
+     */
+    public static double getCutoffRadius(double lambda) {
+        return Math.abs(lambda) * Math.sqrt(-Math.log(CUTOFF_PROBABILITY));
+    }
+
+    /**
+     * Build a spatial grid over target neurons, with cells the size of the
+     * cutoff radius.
+     *
+     * @param target the target neurons
+     * @param lambda the lambda value
+     * @return the grid, or null if lambda is such that no connections can be
+     *         made
+     */
+    private static SpatialGrid createGrid(final List<Neuron> target,
+        double lambda) {
+        double radius = getCutoffRadius(lambda);
+        if (!(radius > 0) || Double.isInfinite(radius)) {
+            return null;
+        }
+        return new SpatialGrid(target, radius);
+    }
+
+    /**
+     * Connect each source neuron to nearby target neurons, with probability
+     * decaying with distance. Only targets within the cutoff radius of a
+     * source are tested.
+     *
+     * @param source the source neurons
+     * @param grid a grid over the target neurons
+     * @param eeDistConst excitatory to excitatory constant
+     * @param eiDistConst excitatory to inhibitory constant
+     * @param ieDistConst inhibitory to excitatory constant
+     * @param iiDistConst inhibitory to inhibitory constant
+     * @param distConst constant used when either neuron has no polarity
+     * @param lambda the lambda value
+     * @param loose whether to add the synapses to the network as loose
+     *            synapses
+     * @param synapses the list to add new synapses to
+     */
+    private static void connectRadial(final Collection<Neuron> source,
+        final SpatialGrid grid, double eeDistConst, double eiDistConst,
+        double ieDistConst, double iiDistConst, double distConst,
+        double lambda, boolean loose, final List<Synapse> synapses) {
+        double radius = getCutoffRadius(lambda);
+        List<Neuron> candidates = new ArrayList<Neuron>();
         for (Neuron src : source) {
-            for (Neuron tar : target) {
-                double randVal = Math.random();
-                double probability = calcConnectProb(src, tar, distConst,
-                    lambda);
+            candidates.clear();
+            grid.getNeighbors(src.getX(), src.getY(), src.getZ(), radius,
+                candidates);
+            for (int i = 0, n = candidates.size(); i < n; i++) {
+                Neuron tar = candidates.get(i);
+                double randVal = ProbDistribution.UNIFORM.nextRand(0, 1);
+                double probability = calcConnectProb(src, tar,
+                    getConnectConst(src, tar, eeDistConst, eiDistConst,
+                        ieDistConst, iiDistConst, distConst), lambda);
                 if (randVal < probability) {
                     Synapse s = new Synapse(src, tar);
                     synapses.add(s);
@@ -204,7 +240,38 @@ public class Radial extends Sparse {
                 }
             }
         }
-        return synapses;
+    }
+
+    /**
+     * Returns the connection constant for a pair of neurons given their
+     * polarities.
+     *
+     * @param src the source neuron
+     * @param tar the target neuron
+     * @param eeDistConst excitatory to excitatory constant
+     * @param eiDistConst excitatory to inhibitory constant
+     * @param ieDistConst inhibitory to excitatory constant
+     * @param iiDistConst inhibitory to inhibitory constant
+     * @param distConst constant used when either neuron has no polarity
+     * @return the constant for this pair
+     */
+    private static double getConnectConst(Neuron src, Neuron tar,
+        double eeDistConst, double eiDistConst, double ieDistConst,
+        double iiDistConst, double distConst) {
+        if (src.getPolarity() == Polarity.EXCITATORY) {
+            if (tar.getPolarity() == Polarity.EXCITATORY) {
+                return eeDistConst;
+            } else if (tar.getPolarity() == Polarity.INHIBITORY) {
+                return eiDistConst;
+            }
+        } else if (src.getPolarity() == Polarity.INHIBITORY) {
+            if (tar.getPolarity() == Polarity.EXCITATORY) {
+                return ieDistConst;
+            } else if (tar.getPolarity() == Polarity.INHIBITORY) {
+                return iiDistConst;
+            }
+        }
+        return distConst;
     }
 
     /**
@@ -269,6 +336,11 @@ public class Radial extends Sparse {
                 synGroup.addNewSynapse(s);
             }
         } else {
+        	// One grid over the targets, shared by all workers
+        	SpatialGrid grid = createGrid(target, lambda);
+        	if (grid == null) {
+        		return;
+        	}
         	List<Callable<Collection<Synapse>>> workers =
         			new ArrayList<Callable<Collection<Synapse>>>();
         	int threads = Runtime.getRuntime().availableProcessors();
@@ -298,7 +370,7 @@ public class Radial extends Sparse {
         			j++;
         		}
         		remaining -= j;
-        		workers.add(new ConnectorService(srcChunk, target, false));
+        		workers.add(new ConnectorService(srcChunk, grid, false));
         	}
         	runningPercentEx /= source.size();
         	synGroup.setExcitatoryRatio(runningPercentEx);
@@ -439,64 +511,32 @@ public class Radial extends Sparse {
     	
     	private final Collection<Neuron> srcColl;
     	
-    	private final Collection<Neuron> targColl;
+    	private final SpatialGrid targGrid;
     	
     	private final boolean loose;
     	
+    	/** Split from the creating thread's stream, see RandomStreams. */
+    	private final RandomStream stream = RandomStreams.split();
+    	
     	public ConnectorService(final Collection<Neuron> srcColl,
-    			final Collection<Neuron> targColl, final boolean loose) {
+    			final SpatialGrid targGrid, final boolean loose) {
     		this.srcColl = srcColl;
-    		this.targColl = targColl;
+    		this.targGrid = targGrid;
     		this.loose = loose;
     	}
 
 		@Override
 		public Collection<Synapse> call() throws Exception {
-			// Attempting to pre-allocate... assumes that connection density
-			// will be less than #src * #tar * 0.2 or 20% connectivity
-			List<Synapse> synapses = new ArrayList<Synapse>(
-					(int) Math.ceil(srcColl.size() * targColl.size() * 0.2
-							* 0.75));
-			for (Neuron src : srcColl) {
-	            for (Neuron tar : targColl) {
-	                double randVal = ProbDistribution.UNIFORM.nextRand(0, 1);
-	                double probability;
-	                if (src.getPolarity() == Polarity.EXCITATORY) {
-	                    if (tar.getPolarity() == Polarity.EXCITATORY) {
-	                        probability = calcConnectProb(src, tar, eeDistConst,
-	                            lambda);
-	                    } else if (tar.getPolarity() == Polarity.INHIBITORY) {
-	                        probability = calcConnectProb(src, tar, eiDistConst,
-	                            lambda);
-	                    } else {
-	                        probability = calcConnectProb(src, tar, distConst,
-	                            lambda);
-	                    }
-	                } else if (src.getPolarity() == Polarity.INHIBITORY) {
-	                    if (tar.getPolarity() == Polarity.EXCITATORY) {
-	                        probability = calcConnectProb(src, tar, ieDistConst,
-	                            lambda);
-	                    } else if (tar.getPolarity() == Polarity.INHIBITORY) {
-	                        probability = calcConnectProb(src, tar, iiDistConst,
-	                            lambda);
-	                    } else {
-	                        probability = calcConnectProb(src, tar, distConst,
-	                            lambda);
-	                    }
-	                } else {
-	                    probability = calcConnectProb(src, tar, distConst,
-	                        lambda);
-	                }
-	                if (randVal < probability) {
-	                    Synapse s = new Synapse(src, tar);
-	                    synapses.add(s);
-	                    if (loose) {
-	                        src.getNetwork().addSynapse(s);
-	                    }
-	                }
-	            }
-	        }
-	        return synapses;
+			RandomStream previous = RandomStreams.bind(stream);
+			try {
+				List<Synapse> synapses = new ArrayList<Synapse>();
+				connectRadial(srcColl, targGrid, eeDistConst, eiDistConst,
+						ieDistConst, iiDistConst, distConst, lambda, loose,
+						synapses);
+				return synapses;
+			} finally {
+				RandomStreams.bind(previous);
+			}
 		}
     	
     }
@@ -508,42 +548,24 @@ public class Radial extends Sparse {
         @Override
         public void run() {
             int count = 0;
-            for (Neuron src : synapseGroup.getSourceNeurons()) {
-                for (Neuron tar : synapseGroup.getTargetNeurons()) {
-                    double randVal = Math.random();
-                    double probability;
-                    if (src.getPolarity() == Polarity.EXCITATORY) {
-                        if (tar.getPolarity() == Polarity.EXCITATORY) {
-                            probability =
-                                calcConnectProb(src, tar, eeDistConst,
-                                    lambda);
-                        } else if (tar.getPolarity() == Polarity.INHIBITORY) {
-                            probability =
-                                calcConnectProb(src, tar, eiDistConst,
-                                    lambda);
-                        } else {
-                            probability = calcConnectProb(src, tar, distConst,
-                                lambda);
-                        }
-                    } else if (src.getPolarity() == Polarity.INHIBITORY) {
-                        if (tar.getPolarity() == Polarity.EXCITATORY) {
-                            probability =
-                                calcConnectProb(src, tar, ieDistConst,
-                                    lambda);
-                        } else if (tar.getPolarity() == Polarity.INHIBITORY) {
-                            probability =
-                                calcConnectProb(src, tar, iiDistConst,
-                                    lambda);
-                        } else {
-                            probability = calcConnectProb(src, tar, distConst,
-                                lambda);
+            SpatialGrid grid = createGrid(synapseGroup.getTargetNeurons(),
+                lambda);
+            if (grid != null) {
+                double radius = getCutoffRadius(lambda);
+                List<Neuron> candidates = new ArrayList<Neuron>();
+                for (Neuron src : synapseGroup.getSourceNeurons()) {
+                    candidates.clear();
+                    grid.getNeighbors(src.getX(), src.getY(), src.getZ(),
+                        radius, candidates);
+                    for (Neuron tar : candidates) {
+                        double randVal = RandomStreams.nextDouble();
+                        double probability = calcConnectProb(src, tar,
+                            getConnectConst(src, tar, eeDistConst,
+                                eiDistConst, ieDistConst, iiDistConst,
+                                distConst), lambda);
+                        if (randVal < probability) {
+                            count++;
                         }
-                    } else {
-                        probability = calcConnectProb(src, tar, distConst,
-                            lambda);
-                    }
-                    if (randVal < probability) {
-                        count++;
                     }
                 }
             }
@@ -26,6 +26,7 @@ import org.simbrain.network.core.Network;
 import org.simbrain.network.core.Neuron;
 import org.simbrain.network.core.Synapse;
 import org.simbrain.network.groups.SynapseGroup;
+import org.simbrain.util.math.RandomStreams;
 import org.simbrain.util.math.SimbrainMath;
 
 import umontreal.iro.lecuyer.randvar.BinomialGen;
@@ -172,7 +173,7 @@ public class Sparse implements ConnectNeurons {
         Neuron target;
         Synapse synapse;
         ArrayList<Synapse> syns = new ArrayList<Synapse>();
-        Random rand = new Random(System.nanoTime());
+        Random rand = RandomStreams.newRandom();
         if (equalizeEfferents) {
             ArrayList<Integer> targetList = new ArrayList<Integer>();
             ArrayList<Integer> tListCopy;
@@ -229,7 +230,7 @@ public class Sparse implements ConnectNeurons {
                     if (!selfConnectionAllowed && recurrent && i == j) {
                         continue;
                     } else {
-                        if (Math.random() < sparsity) {
+                        if (RandomStreams.nextDouble() < sparsity) {
                             source = sourceNeurons.get(i);
                             target = targetNeurons.get(j);
                             synapse = new Synapse(source, target);
@@ -334,7 +335,7 @@ public class Sparse implements ConnectNeurons {
             .preAllocateSynapses((int) (sourceNeurons.length * numTars * connectionDensity));
         for (int i = 0, n = sourceNeurons.length; i < n; i++) {
             currentOrderingIndices[i] = BinomialGen.nextInt(
-                SimbrainMath.DEFAULT_RANDOM_STREAM, numTars,
+                RandomStreams.current(), numTars,
                 connectionDensity);
             Neuron src = sourceNeurons[i];
             Neuron tar;
@@ -419,7 +420,7 @@ public class Sparse implements ConnectNeurons {
         } else {
             for (int i = 0, n = sourceNeurons.length; i < n; i++) {
                 int numToRemove = BinomialGen.nextInt(
-                    SimbrainMath.DEFAULT_RANDOM_STREAM, synapseGroup
+                    RandomStreams.current(), synapseGroup
                         .getTargetNeuronGroup().size(), newSparsity);
                 if (numToRemove < currentOrderingIndices[i]) {
                     List<Synapse> remove = decreaseDensity(i, numToRemove);
@@ -471,7 +472,7 @@ public class Sparse implements ConnectNeurons {
         } else {
             for (int i = 0, n = sourceNeurons.length; i < n; i++) {
                 int numToAdd = BinomialGen.nextInt(
-                    SimbrainMath.DEFAULT_RANDOM_STREAM, synapseGroup
+                    RandomStreams.current(), synapseGroup
                         .getTargetNeuronGroup().size(), newSparsity);
                 int finalNumConPerSource =
                     numToAdd >= currentOrderingIndices[i]
@@ -0,0 +1,189 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.network.connections;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.simbrain.network.core.Neuron;
+
+/**
+ * A uniform grid over the positions of a set of neurons, used to find the
+ * neurons within some distance of a point without testing every neuron.
+ * Neurons are bucketed into cubic cells; a query only visits the cells which
+ * overlap the query sphere. Positions are copied when the grid is built, so
+ * the grid must be rebuilt if the neurons move.
+ */
+final class SpatialGrid {
+
+    /** The neurons, in cell order. */
+    private final Neuron[] neurons;
+
+    /** X positions, in cell order. */
+    private final double[] xs;
+
+    /** Y positions, in cell order. */
+    private final double[] ys;
+
+    /** Z positions, in cell order. */
+    private final double[] zs;
+
+    /** Maps a packed cell coordinate to the index of that cell. */
+    private final Map<Long, Integer> cellIndex;
+
+    /**
+     * Start of each cell's neurons in the position arrays; cell i holds
+     * entries cellStart[i] to cellStart[i + 1] - 1.
+     */
+    private final int[] cellStart;
+
+    /** Width of a cell. */
+    private final double cellSize;
+
+    /** Lowest cell z coordinate. */
+    private final int minCellZ;
+
+    /** Highest cell z coordinate. */
+    private final int maxCellZ;
+
+    /**
+     * Build a grid over the current positions of the given neurons.
+     *
+     * @param toIndex the neurons to index
+     * @param cellSize the width of a cell; best set to the radius of the
+     *            queries that will be made
+     */
+    SpatialGrid(final List<Neuron> toIndex, final double cellSize) {
+        if (!(cellSize > 0)) {
+            throw new IllegalArgumentException("Cell size must be positive");
+        }
+        this.cellSize = cellSize;
+        int n = toIndex.size();
+        long[] keys = new long[n];
+        int[] cellOf = new int[n];
+        cellIndex = new HashMap<Long, Integer>();
+        int[] counts = new int[Math.max(1, n)];
+        int minZ = Integer.MAX_VALUE;
+        int maxZ = Integer.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
+            Neuron neuron = toIndex.get(i);
+            int cz = cell(neuron.getZ());
+            minZ = Math.min(minZ, cz);
+            maxZ = Math.max(maxZ, cz);
+            keys[i] = key(cell(neuron.getX()), cell(neuron.getY()), cz);
+            Integer c = cellIndex.get(keys[i]);
+            if (c == null) {
+                c = cellIndex.size();
+                cellIndex.put(keys[i], c);
+            }
+            cellOf[i] = c;
+            counts[c]++;
+        }
+        minCellZ = minZ;
+        maxCellZ = maxZ;
+
+        // Counting sort of the neurons by cell
+        int numCells = cellIndex.size();
+        cellStart = new int[numCells + 1];
+        for (int c = 0; c < numCells; c++) {
+            cellStart[c + 1] = cellStart[c] + counts[c];
+        }
+        int[] fill = new int[numCells];
+        System.arraycopy(cellStart, 0, fill, 0, numCells);
+        neurons = new Neuron[n];
+        xs = new double[n];
+        ys = new double[n];
+        zs = new double[n];
+        for (int i = 0; i < n; i++) {
+            Neuron neuron = toIndex.get(i);
+            int slot = fill[cellOf[i]]++;
+            neurons[slot] = neuron;
+            xs[slot] = neuron.getX();
+            ys[slot] = neuron.getY();
+            zs[slot] = neuron.getZ();
+        }
+    }
+
+    /**
+     * Add to a list every indexed neuron whose (squared) distance from a point
+     * is at most the given radius (squared).
+     *
+     * @param x x coordinate of the point
+     * @param y y coordinate of the point
+     * @param z z coordinate of the point
+     * @param radius the query radius
+     * @param out the list to add neurons to
+     */
+    void getNeighbors(final double x, final double y, final double z,
+            final double radius, final List<Neuron> out) {
+        if (neurons.length == 0) {
+            return;
+        }
+        double r2 = radius * radius;
+        int x0 = cell(x - radius);
+        int x1 = cell(x + radius);
+        int y0 = cell(y - radius);
+        int y1 = cell(y + radius);
+        int z0 = Math.max(minCellZ, cell(z - radius));
+        int z1 = Math.min(maxCellZ, cell(z + radius));
+        for (int cx = x0; cx <= x1; cx++) {
+            for (int cy = y0; cy <= y1; cy++) {
+                for (int cz = z0; cz <= z1; cz++) {
+                    Integer c = cellIndex.get(key(cx, cy, cz));
+                    if (c == null) {
+                        continue;
+                    }
+                    for (int i = cellStart[c], end = cellStart[c + 1];
+                            i < end; i++) {
+                        double dx = xs[i] - x;
+                        double dy = ys[i] - y;
+                        double dz = zs[i] - z;
+                        if (dx * dx + dy * dy + dz * dz <= r2) {
+                            out.add(neurons[i]);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @param coordinate a position along one axis
+     * @return the cell coordinate containing it
+     */
+    private int cell(final double coordinate) {
+        return (int) Math.floor(coordinate / cellSize);
+    }
+
+    /**
+     * Pack three cell coordinates into a single key. Each coordinate keeps its
+     * low 21 bits. Cells which collide share a bucket, which costs extra
+     * distance tests but does not change query results.
+     *
+     * @param cx cell x
+     * @param cy cell y
+     * @param cz cell z
+     * @return the key
+     */
+    private static long key(final int cx, final int cy, final int cz) {
+        return ((cx & 0x1FFFFFL) << 42) | ((cy & 0x1FFFFFL) << 21)
+                | (cz & 0x1FFFFFL);
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.network.core;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.simbrain.network.groups.Group;
+
+/**
+ * A snapshot of the "flat" contents of a network: every neuron, synapse and
+ * group, including those inside groups and subnetworks, along with maps from
+ * (lower case) id to object. Built by {@link Network} on demand and discarded
+ * when the network's structure version changes, so that the flat lists and id
+ * lookups do not walk the group hierarchy on every call.
+ *
+ * The synapse array and map are only built the first time they are needed,
+ * since networks with large synapse groups may never ask for them.
+ */
+final class FlatIndex {
+
+    /** The network structure version this index was built from. */
+    final int version;
+
+    /** All neurons. */
+    final Neuron[] neurons;
+
+    /** All groups. */
+    final Group[] groups;
+
+    /** Neurons by lower case id. */
+    private final Map<String, Neuron> neuronsById;
+
+    /** Groups by lower case id. */
+    private final Map<String, Group> groupsById;
+
+    /** All synapses; null until first requested. */
+    private volatile Synapse[] synapses;
+
+    /** Synapses by lower case id; null until first requested. */
+    private volatile Map<String, Synapse> synapsesById;
+
+    /**
+     * @param version the structure version
+     * @param neurons all neurons in the network
+     * @param groups all groups in the network
+     */
+    FlatIndex(final int version, final Neuron[] neurons, final Group[] groups) {
+        this.version = version;
+        this.neurons = neurons;
+        this.groups = groups;
+        neuronsById = new HashMap<String, Neuron>(neurons.length * 2);
+        for (Neuron n : neurons) {
+            putFirst(neuronsById, n.getId(), n);
+        }
+        groupsById = new HashMap<String, Group>(groups.length * 2);
+        for (Group g : groups) {
+            putFirst(groupsById, g.getId(), g);
+        }
+    }
+
+    /**
+     * @return all synapses, or null if they have not been collected yet
+     */
+    Synapse[] getSynapses() {
+        return synapses;
+    }
+
+    /**
+     * Set the synapse array and build its id map.
+     *
+     * @param synapses all synapses in the network
+     */
+    void setSynapses(final Synapse[] synapses) {
+        Map<String, Synapse> map = new HashMap<String, Synapse>(
+                synapses.length * 2);
+        for (Synapse s : synapses) {
+            putFirst(map, s.getId(), s);
+        }
+        synapsesById = map;
+        this.synapses = synapses;
+    }
+
+    /**
+     * @param id the neuron id
+     * @return the neuron indexed under that id, or null
+     */
+    Neuron getNeuron(final String id) {
+        return id == null ? null : neuronsById.get(key(id));
+    }
+
+    /**
+     * @param id the group id
+     * @return the group indexed under that id, or null
+     */
+    Group getGroup(final String id) {
+        return id == null ? null : groupsById.get(key(id));
+    }
+
+    /**
+     * @param id the synapse id
+     * @return the synapse indexed under that id, or null if there is none or
+     *         the synapses have not been collected yet
+     */
+    Synapse getSynapse(final String id) {
+        Map<String, Synapse> map = synapsesById;
+        return id == null || map == null ? null : map.get(key(id));
+    }
+
+    /**
+     * Map an object under its id unless the id is null or already taken, so
+     * that lookups return the first match, as a linear search would.
+     *
+     * @param map the map to add to
+     * @param id the object's id
+     * @param obj the object
+     * @param <T> the type of object
+     */
+    private static <T> void putFirst(final Map<String, T> map,
+            final String id, final T obj) {
+        if (id == null) {
+            return;
+        }
+        String key = key(id);
+        if (!map.containsKey(key)) {
+            map.put(key, obj);
+        }
+    }
+
+    /**
+     * @param id an id
+     * @return the key used for the id
+     */
+    private static String key(final String id) {
+        return id.toLowerCase(Locale.ENGLISH);
+    }
+}
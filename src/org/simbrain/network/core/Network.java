@@ -27,6 +27,7 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.simbrain.network.connections.ConnectNeurons;
@@ -42,13 +43,18 @@ import org.simbrain.network.listeners.NeuronListener;
 import org.simbrain.network.listeners.SynapseListener;
 import org.simbrain.network.listeners.TextListener;
 import org.simbrain.network.neuron_update_rules.interfaces.BiasedUpdateRule;
+import org.simbrain.network.subnetworks.SOMGroup;
+import org.simbrain.network.update_actions.CompiledBufferedUpdate;
 import org.simbrain.network.update_actions.ConcurrentBufferedUpdate;
 import org.simbrain.network.update_actions.CustomUpdate;
+import org.simbrain.network.update_actions.EventDrivenSpikingUpdate;
+import org.simbrain.network.update_actions.ForkJoinBufferedUpdate;
 import org.simbrain.util.SimbrainConstants.Polarity;
 import org.simbrain.util.SimbrainPreferences;
 import org.simbrain.util.SimbrainPreferences.PropertyNotFoundException;
 import org.simbrain.util.SimpleId;
 import org.simbrain.util.math.SimbrainMath;
+import org.simbrain.util.metrics.MetricRegistry;
 
 import com.thoughtworks.xstream.XStream;
 import com.thoughtworks.xstream.io.xml.DomDriver;
@@ -83,6 +89,9 @@ public class Network {
     /** Constant value for Math.log(10); used to approximate log 10. */
     private static final double LOG_10 = Math.log(10);
 
+    /** Metrics for network updates (see {@link #update()}). */
+    private static final MetricRegistry METRICS = MetricRegistry.getInstance();
+
     /** In iterations or msec. */
     private double time = 0;
 
@@ -159,6 +168,21 @@ public class Network {
      */
     private volatile boolean fireUpdates = true;
 
+    /**
+     * Neurons whose input value has been set to a non-zero value since inputs
+     * were last cleared. See {@link #clearInputs()}.
+     */
+    private List<Neuron> inputNeurons = new ArrayList<Neuron>();
+
+    /**
+     * Incremented whenever a neuron, synapse or group is added to or removed
+     * from this network or one of its groups.
+     */
+    private AtomicInteger structureVersion = new AtomicInteger();
+
+    /** Cached flat lists and id maps; rebuilt when the structure changes. */
+    private volatile FlatIndex flatIndex;
+
     /** Static initializer */
     {
         try {
@@ -188,16 +212,24 @@ public class Network {
         // Perform update
     	for (int i = 0, n = updateManager.getActionList().size(); i < n;
     			i++) {
-    		updateManager.getActionList().get(i).invoke();
+    		NetworkUpdateAction action = updateManager.getActionList().get(i);
+    		long start = METRICS.start();
+    		action.invoke();
+    		if (start != 0) {
+    			METRICS.stop("network.action." + action.getDescription(),
+    					start);
+    		}
     	}
 
     	if (fireUpdates) {
+    	    long start = METRICS.start();
     	    // Fire update events for GUI update. Loose items, then groups.
     	    fireSynapsesUpdated(synapseList); // Loose synapses
     	    fireNeuronsUpdated(neuronList); // Loose neurons
     	    for (int i = 0, n = groupList.size(); i < n; i++) {
     	        fireGroupUpdated(groupList.get(i)); // Groups
     	    }
+    	    METRICS.stop("network.events", start);
     	}
 
         // Clear input nodes
@@ -270,12 +302,28 @@ public class Network {
      * cause problems.
      */
     public void clearInputs() {
+        // Only neurons which have been given a non-zero input since the last
+        // call are visited. See Neuron#setInputValue.
+        synchronized (inputNeurons) {
+            for (int i = 0, n = inputNeurons.size(); i < n; i++) {
+                inputNeurons.get(i).clearInputValue();
+            }
+            inputNeurons.clear();
+        }
+    }
 
-        // TODO: Is there a more efficient way to handle this?
-        // i.e. a way to get a list of neurons that (1) are coupled or better,
-        // (2) have input values which consume.
-        for (Neuron neuron : this.getFlatNeuronList()) {
-            neuron.setInputValue(0);
+    /**
+     * Add a neuron to the list of neurons whose input is cleared at the end of
+     * the current update. Called by a neuron when its input value is set.
+     *
+     * @param neuron the neuron which has received input
+     */
+    void registerInput(final Neuron neuron) {
+        synchronized (inputNeurons) {
+            if (!neuron.isInputRegistered()) {
+                neuron.setInputRegistered(true);
+                inputNeurons.add(neuron);
+            }
         }
     }
 
@@ -350,8 +398,16 @@ public class Network {
      * @return neuron with that id, null otherwise
      */
     public Neuron getNeuron(final String id) {
-        for (Neuron n : getFlatNeuronList()) {
+        FlatIndex index = getFlatIndex();
+        Neuron hit = index.getNeuron(id);
+        if (hit != null && hit.getId().equalsIgnoreCase(id)) {
+            return hit;
+        }
+        // Ids can be changed without the index hearing about it, so fall back
+        // to a search and rebuild the index if that finds something.
+        for (Neuron n : index.neurons) {
             if (n.getId().equalsIgnoreCase(id)) {
+                invalidateFlatIndex();
                 return n;
             }
         }
@@ -366,8 +422,14 @@ public class Network {
      * @return group with that id, null otherwise
      */
     public Group getGroup(final String id) {
-        for (Group group : getFlatGroupList()) {
+        FlatIndex index = getFlatIndex();
+        Group hit = index.getGroup(id);
+        if (hit != null && hit.getId().equalsIgnoreCase(id)) {
+            return hit;
+        }
+        for (Group group : index.groups) {
             if (group.getId().equalsIgnoreCase(id)) {
+                invalidateFlatIndex();
                 return group;
             }
         }
@@ -471,8 +533,15 @@ public class Network {
      * @return synapse with that id, null otherwise
      */
     public Synapse getSynapse(final String id) {
-        for (Synapse s : getFlatSynapseList()) {
+        FlatIndex index = getFlatIndex();
+        Synapse[] synapses = getFlatSynapses(index);
+        Synapse hit = index.getSynapse(id);
+        if (hit != null && hit.getId().equalsIgnoreCase(id)) {
+            return hit;
+        }
+        for (Synapse s : synapses) {
             if (s.getId().equalsIgnoreCase(id)) {
+                invalidateFlatIndex();
                 return s;
             }
         }
@@ -488,6 +557,10 @@ public class Network {
     public void addNeuron(final Neuron neuron) {
         neuronList.add(neuron);
         neuron.setId(getNeuronIdGenerator().getId());
+        invalidateFlatIndex();
+        if (neuron.getInputValue() != 0 && neuron.getNetwork() == this) {
+            registerInput(neuron);
+        }
         updatePriorityList();
         fireNeuronAdded(neuron);
     }
@@ -503,6 +576,7 @@ public class Network {
         synapse.initSpikeResponder();
         synapseList.add(synapse);
         synapse.setId(getSynapseIdGenerator().getId());
+        invalidateFlatIndex();
         fireSynapseAdded(synapse);
     }
 
@@ -542,6 +616,7 @@ public class Network {
         } else {
             neuronList.remove(toDelete);
         }
+        invalidateFlatIndex();
 
         // Notify listeners that this neuron has been deleted
         fireNeuronRemoved(toDelete);
@@ -576,6 +651,7 @@ public class Network {
             }
         } else {
             synapseList.remove(toDelete);
+            invalidateFlatIndex();
             // Notify listeners that this synapse has been deleted
             fireSynapseRemoved(toDelete);
         }
@@ -602,6 +678,7 @@ public class Network {
             neuronList.remove(neuron);
             group.addNeuron(neuron, false);
         }
+        invalidateFlatIndex();
     }
 
     /**
@@ -785,6 +862,7 @@ public class Network {
         if (group.isTopLevelGroup()) {
             groupList.add(group);
         }
+        invalidateFlatIndex();
 
         // Notify listeners (mainly network panel) that the group has been
         // added.
@@ -804,6 +882,7 @@ public class Network {
 
         // Call delete method on this group being deleted
         toDelete.delete();
+        invalidateFlatIndex();
 
         // Notify listeners that this group has been deleted.
         fireGroupRemoved(toDelete);
@@ -825,11 +904,108 @@ public class Network {
 
     /**
      * Create "flat" list of neurons, which includes the top-level neurons plus
-     * all group neurons.
+     * all group neurons. The list is a copy and may be modified by the caller.
      *
      * @return the flat list
      */
     public List<Neuron> getFlatNeuronList() {
+        Neuron[] neurons = getFlatIndex().neurons;
+        List<Neuron> ret = new ArrayList<Neuron>(neurons.length);
+        Collections.addAll(ret, neurons);
+        return ret;
+    }
+
+    /**
+     * Create "flat" list of synapses, which includes the top-level synapses
+     * plus all subnet synapses. The list is a copy and may be modified by the
+     * caller.
+     *
+     * @return the flat list
+     */
+    public List<Synapse> getFlatSynapseList() {
+        Synapse[] synapses = getFlatSynapses(getFlatIndex());
+        List<Synapse> ret = new ArrayList<Synapse>(synapses.length);
+        Collections.addAll(ret, synapses);
+        return ret;
+    }
+
+    /**
+     * Create a "flat" list of groups, which includes the top-level groups plus
+     * all subgroups. The list is a copy and may be modified by the caller.
+     *
+     * @return the flat list
+     */
+    public List<Group> getFlatGroupList() {
+        Group[] groups = getFlatIndex().groups;
+        List<Group> ret = new ArrayList<Group>(groups.length);
+        Collections.addAll(ret, groups);
+        return ret;
+    }
+
+    /**
+     * Note that the structure of the network has changed, so that the cached
+     * flat lists and id maps are rebuilt the next time they are used. Called
+     * whenever a neuron, synapse or group is added or removed, by the network
+     * or by the group concerned.
+     */
+    public void invalidateFlatIndex() {
+        structureVersion.incrementAndGet();
+    }
+
+    /**
+     * Returns a number that changes whenever a neuron, synapse or group is
+     * added or removed, so that structures derived from the network can tell
+     * when they must be rebuilt.
+     *
+     * @return the current structure version
+     */
+    public int getStructureVersion() {
+        return structureVersion.get();
+    }
+
+    /**
+     * Returns the flat index for the current structure version, building it
+     * if needed.
+     *
+     * @return the current flat index
+     */
+    private FlatIndex getFlatIndex() {
+        FlatIndex index = flatIndex;
+        int version = structureVersion.get();
+        if (index == null || index.version != version) {
+            List<Neuron> neurons = buildFlatNeuronList();
+            List<Group> groups = buildFlatGroupList();
+            index = new FlatIndex(version,
+                    neurons.toArray(new Neuron[neurons.size()]),
+                    groups.toArray(new Group[groups.size()]));
+            flatIndex = index;
+        }
+        return index;
+    }
+
+    /**
+     * Returns all synapses in the network, collecting them into the index the
+     * first time they are needed.
+     *
+     * @param index the current flat index
+     * @return the flat synapse array
+     */
+    private Synapse[] getFlatSynapses(final FlatIndex index) {
+        Synapse[] synapses = index.getSynapses();
+        if (synapses == null) {
+            List<Synapse> list = buildFlatSynapseList();
+            synapses = list.toArray(new Synapse[list.size()]);
+            index.setSynapses(synapses);
+        }
+        return synapses;
+    }
+
+    /**
+     * Walk the top-level neurons and groups to collect all neurons.
+     *
+     * @return the flat list
+     */
+    private List<Neuron> buildFlatNeuronList() {
 
         List<Neuron> ret = new ArrayList<Neuron>();
         ret.addAll(neuronList);
@@ -849,12 +1025,11 @@ public class Network {
     }
 
     /**
-     * Create "flat" list of synapses, which includes the top-level synapses
-     * plus all subnet synapses.
+     * Walk the top-level synapses and groups to collect all synapses.
      *
      * @return the flat list
      */
-    public List<Synapse> getFlatSynapseList() {
+    private List<Synapse> buildFlatSynapseList() {
         List<Synapse> ret = new ArrayList<Synapse>(10000);
         ret.addAll(synapseList);
         for (int i = 0; i < groupList.size(); i++) {
@@ -870,12 +1045,11 @@ public class Network {
     }
 
     /**
-     * Create a "flat" list of groups, which includes the top-level groups plus
-     * all subgroups.
+     * Walk the top-level groups to collect all groups and subgroups.
      *
      * @return the flat list
      */
-    public List<Group> getFlatGroupList() {
+    private List<Group> buildFlatGroupList() {
         List<Group> ret = new ArrayList<Group>();
         ret.addAll(groupList);
         for (Group group : groupList) {
@@ -960,6 +1134,9 @@ public class Network {
         xstream.omitField(Network.class, "updateCompleted");
         xstream.omitField(Network.class, "logger");
         xstream.omitField(Network.class, "synapseVisibilityThreshold");
+        xstream.omitField(Network.class, "inputNeurons");
+        xstream.omitField(Network.class, "structureVersion");
+        xstream.omitField(Network.class, "flatIndex");
 
         xstream.omitField(NetworkUpdateManager.class, "listeners");
         xstream.omitField(ConcurrentBufferedUpdate.class, "consumerThreads");
@@ -970,6 +1147,12 @@ public class Network {
         xstream.omitField(ConcurrentBufferedUpdate.class, "collectorThread");
         xstream.omitField(ConcurrentBufferedUpdate.class,
                 "synchronizingBarrier");
+        xstream.omitField(CompiledBufferedUpdate.class, "compiledNetwork");
+        xstream.omitField(ForkJoinBufferedUpdate.class, "partitions");
+        xstream.omitField(ForkJoinBufferedUpdate.class, "streamGeneration");
+        xstream.omitField(EventDrivenSpikingUpdate.class, "rings");
+        xstream.omitField(EventDrivenSpikingUpdate.class, "polled");
+        xstream.omitField(EventDrivenSpikingUpdate.class, "sources");
         xstream.omitField(CustomUpdate.class, "interpreter");
         xstream.omitField(CustomUpdate.class, "theAction");
 
@@ -982,9 +1165,14 @@ public class Network {
 
         xstream.omitField(Neuron.class, "fanOut");
         xstream.omitField(Neuron.class, "fanIn");
+        xstream.omitField(Neuron.class, "inputRegistered");
 
         // TODO: Backwards compatible
         xstream.omitField(Synapse.class, "sendWeightedInput");
+        xstream.omitField(NeuronGroup.class, "writeCounter");
+        xstream.omitField(NeuronGroup.class, "valueWriter");
+        xstream.omitField(SOMGroup.class, "distance");
+        xstream.omitField(SOMGroup.class, "val");
 
         return xstream;
     }
@@ -1007,12 +1195,20 @@ public class Network {
         textListeners = new ArrayList<TextListener>();
         groupListeners = new ArrayList<GroupListener>();
 
+        // Initialize structure cache and input registry
+        structureVersion = new AtomicInteger();
+        flatIndex = null;
+        inputNeurons = new ArrayList<Neuron>();
+
         // Initialize update manager
         updateManager.postUnmarshallingInit();
 
         // Initialize neurons
         for (Neuron neuron : this.getFlatNeuronList()) {
             neuron.postUnmarshallingInit();
+            if (neuron.getInputValue() != 0) {
+                registerInput(neuron);
+            }
         }
 
         // Uncompress compressed matrix rep if needed
@@ -1024,6 +1220,7 @@ public class Network {
         for (Synapse synapse : this.getSynapseList()) {
             synapse.postUnmarshallingInit();
         }
+        invalidateFlatIndex();
         updateCompleted = new AtomicBoolean(false);
         return this;
     }
@@ -28,8 +28,11 @@ import org.simbrain.network.groups.NeuronGroup;
 import org.simbrain.network.listeners.GroupAdapter;
 import org.simbrain.network.listeners.NetworkEvent;
 import org.simbrain.network.update_actions.BufferedUpdate;
+import org.simbrain.network.update_actions.CompiledBufferedUpdate;
 import org.simbrain.network.update_actions.ConcurrentBufferedUpdate;
 import org.simbrain.network.update_actions.CustomUpdate;
+import org.simbrain.network.update_actions.EventDrivenSpikingUpdate;
+import org.simbrain.network.update_actions.ForkJoinBufferedUpdate;
 import org.simbrain.network.update_actions.NeuronGroupRecorder;
 import org.simbrain.network.update_actions.PriorityUpdate;
 import org.simbrain.network.update_actions.UpdateGroup;
@@ -96,6 +99,12 @@ public class NetworkUpdateManager {
         for (NetworkUpdateAction action : getActionList()) {
             if (action instanceof CustomUpdate) {
                 ((CustomUpdate) action).init();
+            } else if (action instanceof CompiledBufferedUpdate) {
+                ((CompiledBufferedUpdate) action).init();
+            } else if (action instanceof ForkJoinBufferedUpdate) {
+                ((ForkJoinBufferedUpdate) action).init();
+            } else if (action instanceof EventDrivenSpikingUpdate) {
+                ((EventDrivenSpikingUpdate) action).init();
             }
         }
     }
@@ -135,6 +144,12 @@ public class NetworkUpdateManager {
         availableActionList.add(new PriorityUpdate(network));
         availableActionList.add(ConcurrentBufferedUpdate
                 .createConcurrentBufferedUpdate(network));
+        availableActionList.add(ForkJoinBufferedUpdate
+                .createForkJoinBufferedUpdate(network));
+        availableActionList.add(CompiledBufferedUpdate
+                .createCompiledBufferedUpdate(network));
+        availableActionList.add(EventDrivenSpikingUpdate
+                .createEventDrivenSpikingUpdate(network));
 
         // Add update actions for all groups available
         for (Group group : network.getGroupList()) {
@@ -33,6 +33,7 @@ import org.simbrain.network.neuron_update_rules.interfaces.ActivityGenerator;
 import org.simbrain.network.neuron_update_rules.interfaces.BiasedUpdateRule;
 import org.simbrain.network.neuron_update_rules.interfaces.BoundedUpdateRule;
 import org.simbrain.util.SimbrainConstants.Polarity;
+import org.simbrain.util.math.RandomStreams;
 
 /**
  * <b>Neuron</b> represents a node in the neural network. Most of the "logic" of
@@ -97,6 +98,22 @@ public class Neuron {
      */
     private double inputValue;
 
+    /**
+     * Whether this neuron is in its network's list of neurons with input to
+     * clear at the end of the current update. See
+     * {@link Network#clearInputs()}.
+     */
+    private volatile boolean inputRegistered;
+
+    /**
+     * The summed excitatory (index 0) and inhibitory (index 1) post-synaptic
+     * responses which have arrived at this neuron as spike events. Only set by
+     * {@link org.simbrain.network.update_actions.EventDrivenSpikingUpdate}
+     * while it updates this neuron; when null, synaptic inputs are found by
+     * polling the fan-in. See {@link #getSynapticInput()}.
+     */
+    private double[] spikeEventInput;
+
     /** Reference to network this neuron is part of. */
     private final Network parent;
 
@@ -486,6 +503,9 @@ public class Neuron {
      * neuron.
      */
     public double getSynapticInput() {
+        if (spikeEventInput != null) {
+            return inputValue + spikeEventInput[0] + spikeEventInput[1];
+        }
         double wtdSum = inputValue;
         for (int i = 0, n = fanIn.size(); i < n; i++) {
         	wtdSum += fanIn.get(i).calcPSR();
@@ -653,6 +673,34 @@ public class Neuron {
      */
     public void setInputValue(final double inputValue) {
         this.inputValue = inputValue;
+        if (inputValue != 0 && !inputRegistered && parent != null) {
+            parent.registerInput(this);
+        }
+    }
+
+    /**
+     * Zero the input value without registering the neuron with its network.
+     * Used by {@link Network#clearInputs()}.
+     */
+    void clearInputValue() {
+        inputValue = 0;
+        inputRegistered = false;
+    }
+
+    /**
+     * @return whether this neuron is in its network's list of neurons with
+     *         input to clear
+     */
+    boolean isInputRegistered() {
+        return inputRegistered;
+    }
+
+    /**
+     * @param inputRegistered whether this neuron is in its network's list of
+     *            neurons with input to clear
+     */
+    void setInputRegistered(final boolean inputRegistered) {
+        this.inputRegistered = inputRegistered;
     }
 
     /**
@@ -1010,7 +1058,7 @@ public class Neuron {
     public void randomizeBias(double lower, double upper) {
         if (this.getUpdateRule() instanceof BiasedUpdateRule) {
             ((BiasedUpdateRule) this.getUpdateRule()).setBias((upper - lower)
-                    * Math.random() + lower);
+                    * RandomStreams.nextDouble() + lower);
         }
     }
 
@@ -1207,4 +1255,25 @@ public class Neuron {
         this.spkBuffer = spkBuffer;
     }
 
+    /**
+     * @return the summed excitatory and inhibitory responses to spike events
+     *         currently arriving at this neuron, or null if synaptic input is
+     *         found by polling the fan-in
+     */
+    public double[] getSpikeEventInput() {
+        return spikeEventInput;
+    }
+
+    /**
+     * Set the summed excitatory and inhibitory responses to spike events
+     * arriving at this neuron, to be used in place of the responses of its
+     * afferent synapses. Set to null to go back to polling the fan-in.
+     *
+     * @param spikeEventInput a two element array (excitatory, inhibitory) or
+     *            null
+     */
+    public void setSpikeEventInput(double[] spikeEventInput) {
+        this.spikeEventInput = spikeEventInput;
+    }
+
 }
@@ -21,6 +21,7 @@ package org.simbrain.network.core;
 import org.simbrain.network.core.Network.TimeType;
 import org.simbrain.network.neuron_update_rules.interfaces.BoundedUpdateRule;
 import org.simbrain.util.Utils;
+import org.simbrain.util.math.RandomStreams;
 
 /**
  * A rule for updating a neuron.
@@ -106,6 +107,9 @@ public abstract class NeuronUpdateRule {
             
 			@Override
 			public double[] getSeparatedInput(Neuron n) {
+				if (n.getSpikeEventInput() != null) {
+					return n.getSpikeEventInput().clone();
+				}
 				double [] ei = new double[2];
 				for (Synapse s : n.getFanIn()) {
 					double psr = s.calcPSR();
@@ -124,6 +128,26 @@ public abstract class NeuronUpdateRule {
 				double [] ei = new double[2];
 				double e = 0;
 				double i = 0;
+				if (n.getSpikeEventInput() != null) {
+					// Responses arrive as events, so count afferents by the
+					// sign of their strength rather than of their response.
+					ei[0] = n.getSpikeEventInput()[0];
+					ei[1] = n.getSpikeEventInput()[1];
+					for (Synapse s : n.getFanIn()) {
+						if (s.getStrength() > 0) {
+							e++;
+						} else {
+							i++;
+						}
+					}
+					if (e > 1) {
+						ei[0] /= e;
+					}
+					if (i > 1) {
+						ei[1] /= i;
+					}
+					return ei;
+				}
 				for (Synapse s : n.getFanIn()) {
 					double psr = s.calcPSR();
 					if (psr > 0) {
@@ -253,10 +277,10 @@ public abstract class NeuronUpdateRule {
         if (this instanceof BoundedUpdateRule) {
             return (((BoundedUpdateRule) this).getUpperBound() - ((BoundedUpdateRule) this)
                     .getLowerBound())
-                    * Math.random()
+                    * RandomStreams.nextDouble()
                     + ((BoundedUpdateRule) this).getLowerBound();
         } else {
-            return 2 * Math.random() - 1;
+            return 2 * RandomStreams.nextDouble() - 1;
         }
 
     }
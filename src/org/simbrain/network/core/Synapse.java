@@ -29,6 +29,7 @@ import org.simbrain.network.synapse_update_rules.spikeresponders.JumpAndDecay;
 import org.simbrain.network.synapse_update_rules.spikeresponders.SpikeResponder;
 import org.simbrain.util.SimbrainConstants.Polarity;
 import org.simbrain.util.Utils;
+import org.simbrain.util.math.RandomStreams;
 
 /**
  * <b>Synapse</b> objects represent "connections" between neurons, which learn
@@ -109,7 +110,12 @@ public class Synapse {
      */
     private boolean frozen;
 
-    /** Manages synaptic delay */
+    /**
+     * Manages synaptic delay. A ring buffer of length {@link #delay}, allocated
+     * the first time a delayed value is actually read, so that synapses whose
+     * delay is handled elsewhere (e.g. by an event driven update) do not pay
+     * for it.
+     */
     private double[] delayManager;
 
     /**
@@ -563,8 +569,8 @@ public class Synapse {
      * Randomize this weight to a value between its upper and lower bounds.
      */
     public void randomize() {
-        strength = (getUpperBound() - getLowerBound()) * Math.random()
-                + getLowerBound();
+        strength = (getUpperBound() - getLowerBound())
+                * RandomStreams.nextDouble() + getLowerBound();
         getNetwork().fireSynapseChanged(this);
     }
 
@@ -647,17 +653,8 @@ public class Synapse {
         }
         delay = dly;
 
-        if (delay <= 0) {
-            delayManager = null;
-
-            return;
-        }
-
-        delayManager = new double[delay];
-
-        for (int i = 0; i < delay; i++) {
-            delayManager[i] = 0;
-        }
+        // The delay line itself is allocated lazily, in dequeu()
+        delayManager = null;
         dlyPtr = 0;
     }
 
@@ -697,6 +694,9 @@ public class Synapse {
      * @return the deque.
      */
     private double dequeu() {
+        if (delayManager == null) {
+            delayManager = new double[delay];
+        }
         if (dlyPtr == delay) {
             dlyPtr = 0;
         }
@@ -954,32 +954,47 @@ public class Synapse {
     }
 
     public byte[] getNumericValuesAsByteArray() {
-        // 4 for delay, 8 for strength, 8 for psr.
-        // One byte to store enabled and frozen
         // Eight bytes to store two integers, the indexes of the source and
         // target neurons (optionally set as it only pertains to neuron groups).
-        int numBytes = 4 + 8 + 8 + 1 + 8 + 4;
-        if (delay > 0) {
-            numBytes += 8 * delay;
-        }
-        // [numDoubleValues<byte>, fieldValues <double>, delayValues<double>,
-        // enabled&frozen]
-        ByteBuffer bBuf = ByteBuffer.allocate(numBytes);
+        ByteBuffer bBuf = ByteBuffer.allocate(getNumericByteCount() + 8);
+        writeNumericValues(bBuf);
+        return bBuf.array();
+    }
+
+    /**
+     * @return the number of bytes written by
+     *         {@link #writeNumericValues(ByteBuffer)} for this synapse
+     */
+    public int getNumericByteCount() {
+        // 4 for delay, 8 for strength, 8 for psr, 8 per delay slot, 4 for the
+        // delay pointer and one byte to store enabled and frozen.
+        return 4 + 8 + 8 + (delay > 0 ? 8 * delay : 0) + 4 + 1;
+    }
+
+    /**
+     * Write the numeric values of this synapse to a buffer, in the layout read
+     * by {@link #decodeNumericByteArray(ByteBuffer)}. Unlike
+     * {@link #getNumericValuesAsByteArray()} this allocates nothing, so that
+     * large groups can be streamed through a single buffer.
+     *
+     * @param bBuf the buffer to write to, which must have at least
+     *            {@link #getNumericByteCount()} bytes remaining
+     */
+    public void writeNumericValues(ByteBuffer bBuf) {
+        // [delay<int>, fieldValues <double>, delayValues<double>, delay
+        // pointer<int>, enabled&frozen]
         bBuf.putInt(delay);
         bBuf.putDouble(strength);
         bBuf.putDouble(psr);
         if (delay > 0) {
-            for (double d : delayManager) {
-                bBuf.putDouble(d);
+            for (int i = 0; i < delay; i++) {
+                bBuf.putDouble(delayManager == null ? 0 : delayManager[i]);
             }
         }
         bBuf.putInt(dlyPtr);
-        byte enFr = 0x0;
         byte en = (byte) (enabled ? 2 : 0);
         byte fr = (byte) (frozen ? 1 : 0);
-        enFr = (byte) (en | fr);
-        bBuf.put(enFr);
-        return bBuf.array();
+        bBuf.put((byte) (en | fr));
     }
 
     public void decodeNumericByteArray(ByteBuffer byteValues) {
@@ -987,6 +1002,7 @@ public class Synapse {
         setStrength(byteValues.getDouble());
         setPsr(byteValues.getDouble());
         if (delay > 0) {
+            delayManager = new double[delay];
             for (int i = 0; i < delay; i++) {
                 delayManager[i] = byteValues.getDouble();
             }
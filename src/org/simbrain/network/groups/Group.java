@@ -112,6 +112,17 @@ public abstract class Group {
         return parentNetwork;
     }
 
+    /**
+     * Tell the parent network that the neurons, synapses or subgroups of this
+     * group have changed, so that its flat index is rebuilt. See
+     * {@link Network#invalidateFlatIndex()}.
+     */
+    protected void invalidateNetworkIndex() {
+        if (parentNetwork != null) {
+            parentNetwork.invalidateFlatIndex();
+        }
+    }
+
     /**
      * @return the id
      */
@@ -19,9 +19,7 @@ package org.simbrain.network.groups;
 
 import java.awt.geom.Point2D;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
@@ -41,7 +39,12 @@ import org.simbrain.network.layouts.Layout;
 import org.simbrain.network.layouts.LineLayout;
 import org.simbrain.network.layouts.LineLayout.LineOrientation;
 import org.simbrain.network.neuron_update_rules.interfaces.BiasedUpdateRule;
+import org.simbrain.network.update_actions.CompiledBufferedUpdate;
 import org.simbrain.network.update_actions.ConcurrentBufferedUpdate;
+import org.simbrain.network.update_actions.EventDrivenSpikingUpdate;
+import org.simbrain.network.update_actions.ForkJoinBufferedUpdate;
+import org.simbrain.network.util.io_utilities.ActivationRecorder;
+import org.simbrain.network.util.io_utilities.ActivationRecording;
 import org.simbrain.util.Utils;
 
 /**
@@ -51,12 +54,6 @@ import org.simbrain.util.Utils;
  */
 public class NeuronGroup extends Group implements CopyableGroup<NeuronGroup> {
 
-    /**
-     * The default for how often {@link #writeActsToFile()} should flush
-     * the output stream when writing to a file.
-     */
-    public static final int FLUSH_FREQUENCY = 1000;
-
     /**
      * The number of neurons in the group by default.
      */
@@ -114,8 +111,8 @@ public class NeuronGroup extends Group implements CopyableGroup<NeuronGroup> {
      */
     private File outputFile;
 
-    /** The output stream which writes activation values to a file.*/
-    private PrintWriter valueWriter;
+    /** Writes activations or spikes to the output file while recording. */
+    private transient volatile ActivationRecorder recorder;
 
     /** Whether or not this group is in a state that allows recording. */
     private boolean recording;
@@ -140,12 +137,6 @@ public class NeuronGroup extends Group implements CopyableGroup<NeuronGroup> {
      */
     private int inputIndex = 0;
 
-    /**
-     * A counter to keep track of how many times {@link #writeActsToFile()} has
-     * been called so as to determine when to flush the output stream.
-     */
-    private int writeCounter = 0;
-
     /**
      * Construct a new neuron group from a list of neurons.
      *
@@ -267,6 +258,7 @@ public class NeuronGroup extends Group implements CopyableGroup<NeuronGroup> {
         }
         stopRecording();
         neuronList.clear();
+        invalidateNetworkIndex();
         Runtime.getRuntime().gc();
     }
 
@@ -322,26 +314,35 @@ public class NeuronGroup extends Group implements CopyableGroup<NeuronGroup> {
             }
         }
         recordAsSpikes = spikeRecord;
+        stopRecording();
         recording = true;
-        outputFile = new File(this.getLabel() + " " + fileNum++ + ".csv");
+        outputFile = new File(this.getLabel() + " " + fileNum++ + "."
+                + ActivationRecorder.FORMAT);
         try {
-            if (valueWriter != null) {
-                valueWriter.close();
+            if (recordAsSpikes) {
+                recorder = ActivationRecorder.recordSpikes(outputFile, size());
+            } else {
+                recorder = ActivationRecorder.recordActivations(outputFile,
+                        size());
             }
-            FileWriter fw = new FileWriter(outputFile);
-            valueWriter = new PrintWriter(fw);
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
     /**
-     * Halts recording of activations. Closes all involved output streams.
+     * Halts recording of activations. Writes out what has been recorded and
+     * closes the output file.
      */
     public void stopRecording() {
-        if (valueWriter != null) {
-            valueWriter.close();
-            valueWriter = null;
+        ActivationRecorder current = recorder;
+        recorder = null;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
         }
         recording = false;
     }
@@ -350,47 +351,47 @@ public class NeuronGroup extends Group implements CopyableGroup<NeuronGroup> {
      * Writes the activations of the network to a file. When
      * {@link #startRecording()} is called, the group checks whether or not the
      * group is entirely populated by spiking neurons. If it is then this
-     * methods writes the activations to a file as spike trains in [neuron
-     * id][spk time] couplets. Otherwise it writes the neurons' activation
-     * values as a state matrix to the file. Flushes the output stream every
-     * {@link #FLUSH_FREQUENCY} invocations.
+     * method records which neurons spiked (ticks without spikes are skipped).
+     * Otherwise it records the neurons' activation values. Recordings are
+     * binary and are written on a background thread; see
+     * {@link ActivationRecorder}. Use {@link ActivationRecording} to read
+     * them back or convert them to csv. Recording stops if the file cannot be
+     * written or the size of the group changes.
      */
     public void writeActsToFile() {
+        // Read once; recording may be stopped from the gui thread, which
+        // closes the recorder (the recorder synchronizes the two)
+        ActivationRecorder current = recorder;
+        if (current == null) {
+            return;
+        }
         try {
-            if (writeCounter >= FLUSH_FREQUENCY) {
-                valueWriter.flush();
-                writeCounter = 0;
-            }
-            boolean write = false;
-            if (recordAsSpikes) {
-                int start = 0;
-                for (int i = 0, n = size(); i < n; i++) {
-                    if (neuronList.get(i).isSpike()) {
-                        write = true;
-                        start = i;
-                        break;
-                    }
-                }
-                if (write) {
-                    valueWriter.print(this.getParentNetwork().getTime());
-                    valueWriter.print(" ");
-                    for (int i = start, n = size(); i < n; i++) {
-                        if (neuronList.get(i).isSpike()) {
-                            valueWriter.print(i);
-                            valueWriter.print(" ");
-                        }
-                    }
-                    valueWriter.println();
-                    writeCounter++;
-                }
+            if (current.isRecordingSpikes()) {
+                current.recordSpikes(getParentNetwork().getTime(),
+                        neuronList);
             } else {
-                for (int i = 0, n = size(); i < n; i++) {
-                    valueWriter.print(neuronList.get(i).getActivation());
-                }
-                writeCounter++;
+                current.recordActivations(getParentNetwork().getTime(),
+                        neuronList);
             }
-        } catch (NullPointerException e) {
+        } catch (IOException e) {
+            stopRecording(current, e);
+        } catch (IllegalArgumentException e) {
+            stopRecording(current, e);
+        }
+    }
+
+    /**
+     * Stop recording after a frame could not be written, unless recording
+     * was already stopped (in which case the recorder was closed on purpose).
+     *
+     * @param failed the recorder that failed
+     * @param e the cause of the failure
+     */
+    private void stopRecording(final ActivationRecorder failed,
+            final Exception e) {
+        if (recorder == failed) {
             e.printStackTrace();
+            stopRecording();
         }
     }
 
@@ -567,6 +568,7 @@ public class NeuronGroup extends Group implements CopyableGroup<NeuronGroup> {
      */
     public void addNeuron(Neuron neuron, boolean fireEvent) {
         neuronList.add(neuron);
+        invalidateNetworkIndex();
         neuron.setParentGroup(this);
         if (getParentNetwork() != null) {
             neuron.setId(getParentNetwork().getNeuronIdGenerator().getId());
@@ -594,6 +596,7 @@ public class NeuronGroup extends Group implements CopyableGroup<NeuronGroup> {
      */
     public void removeNeuron(Neuron toDelete) {
         neuronList.remove(toDelete);
+        invalidateNetworkIndex();
         if (isEmpty()) {
             delete();
         }
@@ -1381,6 +1384,7 @@ public class NeuronGroup extends Group implements CopyableGroup<NeuronGroup> {
      */
     public void clearNeuronList() {
         neuronList.clear();
+        invalidateNetworkIndex();
     }
 
     /**
@@ -1441,8 +1445,10 @@ public class NeuronGroup extends Group implements CopyableGroup<NeuronGroup> {
      * mode the neuron group will draw activations from its {@link #testData}
      *  field instead of from any impinging synapses or its own neuron update
      *  functions. This function removes the neurons from the neuron set in
-     *  ConcurrentBufferedUpdate, preventing it from updating the neurons in
-     *  this group, and re-adds those neurons when input mode is turned off.
+     *  ConcurrentBufferedUpdate (and from the compiled, fork/join and event
+     *  driven updates), preventing it from updating the neurons in this
+     *  group, and
+     *  re-adds those neurons when input mode is turned off.
      *  Thus the update action associated with this neuron group MUST be added
      *  to the network update sequence even if ParallelBufferedUpdate is
      *  selected in order for input values to update the group properly.
@@ -1466,6 +1472,12 @@ public class NeuronGroup extends Group implements CopyableGroup<NeuronGroup> {
                 if (nua instanceof ConcurrentBufferedUpdate) {
                     ((ConcurrentBufferedUpdate) nua).excludeNeurons(
                             getNeuronList());
+                } else if (nua instanceof CompiledBufferedUpdate) {
+                    ((CompiledBufferedUpdate) nua).invalidate();
+                } else if (nua instanceof ForkJoinBufferedUpdate) {
+                    ((ForkJoinBufferedUpdate) nua).invalidate();
+                } else if (nua instanceof EventDrivenSpikingUpdate) {
+                    ((EventDrivenSpikingUpdate) nua).invalidate();
                 }
             }
         } else {
@@ -1475,6 +1487,12 @@ public class NeuronGroup extends Group implements CopyableGroup<NeuronGroup> {
                 if (nua instanceof ConcurrentBufferedUpdate) {
                     ((ConcurrentBufferedUpdate) nua).includeNeurons(
                             getNeuronList());
+                } else if (nua instanceof CompiledBufferedUpdate) {
+                    ((CompiledBufferedUpdate) nua).invalidate();
+                } else if (nua instanceof ForkJoinBufferedUpdate) {
+                    ((ForkJoinBufferedUpdate) nua).invalidate();
+                } else if (nua instanceof EventDrivenSpikingUpdate) {
+                    ((EventDrivenSpikingUpdate) nua).invalidate();
                 }
             }
         }
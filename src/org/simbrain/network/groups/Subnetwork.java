@@ -104,6 +104,7 @@ public abstract class Subnetwork extends Group {
     public void addSynapseGroup(SynapseGroup group) {
         numMembers += group.size();
         synapseGroupList.add(group);
+        invalidateNetworkIndex();
         group.setParentGroup(this);
     }
 
@@ -116,6 +117,7 @@ public abstract class Subnetwork extends Group {
     public void addNeuronGroup(NeuronGroup group) {
         numMembers += group.size();
         neuronGroupList.add(group);
+        invalidateNetworkIndex();
         group.setParentGroup(this);
     }
 
@@ -233,6 +235,7 @@ public abstract class Subnetwork extends Group {
     public void removeNeuronGroup(NeuronGroup neuronGroup) {
         numMembers -= neuronGroup.size();
         neuronGroupList.remove(neuronGroup);
+        invalidateNetworkIndex();
         getParentNetwork().fireGroupRemoved(neuronGroup);
     }
 
@@ -245,6 +248,7 @@ public abstract class Subnetwork extends Group {
     public void removeSynapseGroup(SynapseGroup synapseGroup) {
         numMembers -= synapseGroup.size();
         synapseGroupList.remove(synapseGroup);
+        invalidateNetworkIndex();
         getParentNetwork().fireGroupRemoved(synapseGroup);
     }
 
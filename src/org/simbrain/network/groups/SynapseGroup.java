@@ -45,6 +45,7 @@ import org.simbrain.network.util.io_utilities.GroupSerializer;
 import org.simbrain.network.util.io_utilities.GroupSerializer.Precision;
 import org.simbrain.util.SimbrainConstants;
 import org.simbrain.util.SimbrainConstants.Polarity;
+import org.simbrain.util.math.RandomStreams;
 import org.simbrain.util.randomizer.PolarizedRandomizer;
 
 /**
@@ -413,6 +414,7 @@ public class SynapseGroup extends Group {
                 * excitatoryRatio / 0.8));
         inSynapseSet = new HashSet<Synapse>((int) (expectedNumSynapses
                 * (1 - excitatoryRatio) / 0.8));
+        invalidateNetworkIndex();
     }
 
     /**
@@ -602,6 +604,7 @@ public class SynapseGroup extends Group {
     public Synapse removeSynapse(Synapse toDelete) {
         exSynapseSet.remove(toDelete);
         inSynapseSet.remove(toDelete);
+        invalidateNetworkIndex();
         toDelete.getSource().removeEfferent(toDelete);
         toDelete.getTarget().removeAfferent(toDelete);
         this.excitatoryRatio = getExcitatoryRatioPrecise();
@@ -649,6 +652,7 @@ public class SynapseGroup extends Group {
         }
         exSynapseSet.clear();
         inSynapseSet.clear();
+        invalidateNetworkIndex();
     }
 
     /**
@@ -670,7 +674,7 @@ public class SynapseGroup extends Group {
                 addNewInhibitorySynapse(synapse);
             }
         } else {
-            double rand = Math.random();
+            double rand = RandomStreams.nextDouble();
             double correctionTerm = size() == 0 ? 0 : excitatoryRatio
                     - (exSynapseSet.size() / (double) size());
             if (rand < (excitatoryRatio + correctionTerm)) {
@@ -705,6 +709,7 @@ public class SynapseGroup extends Group {
         synapse.setLowerBound(excitatoryPrototype.getLowerBound());
         synapse.setSpikeResponder(excitatoryPrototype.getSpikeResponder());
         exSynapseSet.add(synapse);
+        invalidateNetworkIndex();
     }
 
     /**
@@ -731,6 +736,7 @@ public class SynapseGroup extends Group {
         synapse.setLowerBound(inhibitoryPrototype.getLowerBound());
         synapse.setSpikeResponder(inhibitoryPrototype.getSpikeResponder());
         inSynapseSet.add(synapse);
+        invalidateNetworkIndex();
     }
 
     /**
@@ -770,6 +776,7 @@ public class SynapseGroup extends Group {
      */
     public void addExcitatorySynapseUnsafe(final Synapse synapse) {
         exSynapseSet.add(synapse);
+        invalidateNetworkIndex();
         excitatoryRatio = exSynapseSet.size() / (double) size();
         if (getParentNetwork() != null) {
             synapse.setId(getParentNetwork().getSynapseIdGenerator().getId());
@@ -787,6 +794,7 @@ public class SynapseGroup extends Group {
      */
     public void addInhibitorySynapseUnsafe(final Synapse synapse) {
         inSynapseSet.add(synapse);
+        invalidateNetworkIndex();
         excitatoryRatio = exSynapseSet.size() / (double) size();
         if (getParentNetwork() != null) {
             synapse.setId(getParentNetwork().getSynapseIdGenerator().getId());
@@ -912,8 +920,8 @@ public class SynapseGroup extends Group {
      */
     public List<Synapse> getAllSynapses() {
         ArrayList<Synapse> flatList = new ArrayList<Synapse>(size());
-        flatList.addAll(getExcitatorySynapses());
-        flatList.addAll(getInhibitorySynapses());
+        flatList.addAll(exSynapseSet);
+        flatList.addAll(inSynapseSet);
         return flatList;
     }
 
@@ -1882,13 +1890,29 @@ public class SynapseGroup extends Group {
         exSynapseSet = null;
     }
 
+    /**
+     * The pre-save init to be used when the synapses are written separately
+     * from the xml, as in
+     * {@link org.simbrain.network.util.io_utilities.NetworkBinarySerializer}.
+     * Neither byte representation is built; the synapse sets are just
+     * withheld until {@link #postSaveReInit()}.
+     */
+    public void preSaveInitStreamed() {
+        compressedMatrixRep = null;
+        fullSynapseRep = null;
+        inTemp = inSynapseSet;
+        exTemp = exSynapseSet;
+        inSynapseSet = null;
+        exSynapseSet = null;
+    }
+
     /**
      * A post initialization which must be done if the user wants to save the
      * network, but continue using the network after saving (since the saving
      * process sets the synapse sets to null.
      */
     public void postSaveReInit() {
-        if (isUseGroupLevelSettings()) {
+        if (exTemp != null || inTemp != null) {
             inSynapseSet = inTemp;
             exSynapseSet = exTemp;
             inTemp = null;
@@ -1940,27 +1964,13 @@ public class SynapseGroup extends Group {
                 s.decodeNumericByteArray(ByteBuffer.wrap(codeBuff.array()));
                 addSynapseUnsafe(s);
             }
-            setIncrement(excitatoryPrototype.getIncrement(),
-                    Polarity.EXCITATORY);
-            setLearningRule(excitatoryPrototype.getLearningRule(),
-                    Polarity.EXCITATORY);
-            setSpikeResponder(excitatoryPrototype.getSpikeResponder(),
-                    Polarity.EXCITATORY);
-            setLowerBound(excitatoryPrototype.getLowerBound(),
-                    Polarity.EXCITATORY);
-            setUpperBound(excitatoryPrototype.getUpperBound(),
-                    Polarity.EXCITATORY);
-            setIncrement(inhibitoryPrototype.getIncrement(),
-                    Polarity.INHIBITORY);
-            setLearningRule(inhibitoryPrototype.getLearningRule(),
-                    Polarity.INHIBITORY);
-            setSpikeResponder(inhibitoryPrototype.getSpikeResponder(),
-                    Polarity.INHIBITORY);
-            setLowerBound(inhibitoryPrototype.getLowerBound(),
-                    Polarity.INHIBITORY);
-            setUpperBound(inhibitoryPrototype.getUpperBound(),
-                    Polarity.INHIBITORY);
+            conformToPrototypeRules();
             fullSynapseRep = null;
+        } else if (exSynapseSet == null && inSynapseSet == null) {
+            // The synapses were streamed separately from the xml and are
+            // added once the rest of the network has been read.
+            exSynapseSet = new HashSet<Synapse>();
+            inSynapseSet = new HashSet<Synapse>();
         } else {
             for (Synapse synapse : this.getAllSynapses()) {
                 synapse.postUnmarshallingInit();
@@ -1970,4 +1980,32 @@ public class SynapseGroup extends Group {
             ((Sparse) connectionManager).setPermitDensityEditing(false);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Give every synapse in the group the increment, learning rule, spike
+     * responder and bounds of the prototype of its polarity. Used after
+     * synapses have been rebuilt from their numeric values alone.
+     */
+    public void conformToPrototypeRules() {
+        setIncrement(excitatoryPrototype.getIncrement(),
+                Polarity.EXCITATORY);
+        setLearningRule(excitatoryPrototype.getLearningRule(),
+                Polarity.EXCITATORY);
+        setSpikeResponder(excitatoryPrototype.getSpikeResponder(),
+                Polarity.EXCITATORY);
+        setLowerBound(excitatoryPrototype.getLowerBound(),
+                Polarity.EXCITATORY);
+        setUpperBound(excitatoryPrototype.getUpperBound(),
+                Polarity.EXCITATORY);
+        setIncrement(inhibitoryPrototype.getIncrement(),
+                Polarity.INHIBITORY);
+        setLearningRule(inhibitoryPrototype.getLearningRule(),
+                Polarity.INHIBITORY);
+        setSpikeResponder(inhibitoryPrototype.getSpikeResponder(),
+                Polarity.INHIBITORY);
+        setLowerBound(inhibitoryPrototype.getLowerBound(),
+                Polarity.INHIBITORY);
+        setUpperBound(inhibitoryPrototype.getUpperBound(),
+                Polarity.INHIBITORY);
+    }
+}
@@ -316,6 +316,10 @@ public class NetworkPanel extends JPanel {
     /** Turn GUI on or off. */
     private boolean guiOn = true;
 
+    /** Coalesces update events from the network into rate-capped frames. */
+    private final NodeUpdateScheduler nodeUpdater = new NodeUpdateScheduler(
+            this);
+
     /**
      * Whether loose synapses are visible or not.
      */
@@ -501,11 +505,7 @@ public class NetworkPanel extends JPanel {
                 if(!guiOn) {
                     return;
                 }
-                EventQueue.invokeLater(new Runnable() {
-                    public void run() {
-                        NetworkPanel.this.updateNeuronNodes();
-                    }
-                });
+                nodeUpdater.allNeuronsUpdated();
             }
 
             @Override
@@ -513,11 +513,7 @@ public class NetworkPanel extends JPanel {
                 if(!guiOn) {
                     return;
                 }
-                EventQueue.invokeLater(new Runnable() {
-                    public void run() {
-                        NetworkPanel.this.updateNeuronNodes(neurons);
-                    }
-                });
+                nodeUpdater.neuronsUpdated(neurons);
             }
 
             @Override
@@ -525,11 +521,7 @@ public class NetworkPanel extends JPanel {
                 if(!guiOn) {
                     return;
                 }
-                EventQueue.invokeLater(new Runnable() {
-                    public void run() {
-                        NetworkPanel.this.updateSynapseNodes();
-                    }
-                });
+                nodeUpdater.allSynapsesUpdated();
             }
 
             @Override
@@ -537,11 +529,7 @@ public class NetworkPanel extends JPanel {
                 if(!guiOn) {
                     return;
                 }
-                EventQueue.invokeLater(new Runnable() {
-                    public void run() {
-                        NetworkPanel.this.updateSynapseNodes(synapses);
-                    }
-                });
+                nodeUpdater.synapsesUpdated(synapses);
             }
 
 			@Override
@@ -722,10 +710,7 @@ public class NetworkPanel extends JPanel {
                 if (!guiOn) {
                     return;
                 }
-                PNode groupNode = objectNodeMap.get(group);
-                if (groupNode != null) {
-                    ((GroupNode) groupNode).updateConstituentNodes();
-                }
+                nodeUpdater.groupUpdated(group);
             }
 
         });
@@ -751,24 +736,6 @@ public class NetworkPanel extends JPanel {
         timeLabel.update();
     }
     
-    /**
-     * Update visible state of nodes corresponding to specified neurons.
-     *
-     * @param neurons the neurons whose corresponding pnode should be updated.
-     */
-    private void updateNeuronNodes(Collection<Neuron> neurons) {
-        // System.out.println("In update neuron nodes.  Updating " +
-        // neurons.size() + " neurons");
-        for (Neuron neuron : neurons) {
-            NeuronNode neuronNode = ((NeuronNode) objectNodeMap.get(neuron));
-            if (neuronNode != null) {
-                neuronNode.update();
-            }
-        }
-        timeLabel.update();
-        updateComplete.decrementAndGet();
-    }
-
     /**
      * Update visible state of group nodes.
      *
@@ -803,26 +770,6 @@ public class NetworkPanel extends JPanel {
         updateComplete.decrementAndGet();
     }
 
-    /**
-     * Update visible state of nodes corresponding to specified synapses.
-     *
-     * @param synapses the synapses whose corresponding pnodes should be
-     *            updated.
-     */
-    private void updateSynapseNodes(Collection<Synapse> synapses) {
-        // System.out.println("In update synapse nodes.  Updating " +
-        // synapses.size() + " synapses");
-        for (Synapse synapse : synapses) {
-            SynapseNode node = ((SynapseNode) objectNodeMap.get(synapse));
-            if (node != null) {
-                node.updateColor();
-                node.updateDiameter();
-            }
-        }
-        timeLabel.update();
-        updateComplete.decrementAndGet();
-    }
-
     /**
      * Use the GUI to add a new neuron to the underlying network model.
      */
@@ -3288,6 +3235,14 @@ public class NetworkPanel extends JPanel {
         return quickConnector;
     }
 
+    /**
+     * @return the scheduler which draws network updates, whose frame rate and
+     *         change threshold can be adjusted
+     */
+    public NodeUpdateScheduler getNodeUpdater() {
+        return nodeUpdater;
+    }
+
 	public boolean getUpdateComplete() {
 		return updateComplete.get() == 0;
 	}
@@ -0,0 +1,297 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.network.gui;
+
+import java.awt.EventQueue;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.swing.Timer;
+
+import org.piccolo2d.PNode;
+import org.simbrain.network.core.Neuron;
+import org.simbrain.network.core.Synapse;
+import org.simbrain.network.groups.Group;
+import org.simbrain.network.gui.nodes.GroupNode;
+import org.simbrain.network.gui.nodes.NeuronGroupNode;
+import org.simbrain.network.gui.nodes.NeuronNode;
+import org.simbrain.network.gui.nodes.SubnetworkNode;
+import org.simbrain.network.gui.nodes.SynapseNode;
+
+/**
+ * Coalesces the update events a network fires on every iteration into frames
+ * which are drawn on the Swing event thread at a capped rate.
+ *
+ * The network's thread only records what was reported as updated (the
+ * collections of neurons and synapses passed with each event, and the groups),
+ * which takes constant time per event. At most one frame is queued on the
+ * event thread at a time, and frames are spaced at least
+ * 1 / {@link #getMaxFramesPerSecond()} seconds apart, so a fast simulation
+ * neither floods the event queue nor waits on painting. When a frame is drawn
+ * only the nodes whose activation or strength has moved by more than
+ * {@link #getChangeThreshold()} since they were last drawn (or whose spiking
+ * state changed) are redrawn.
+ */
+public class NodeUpdateScheduler {
+
+    /** The panel whose nodes are updated. */
+    private final NetworkPanel panel;
+
+    /** Guards the pending updates below. */
+    private final Object lock = new Object();
+
+    /** Collections of neurons reported since the last frame. */
+    private final Set<Collection<Neuron>> neuronBatches = Collections
+            .newSetFromMap(new IdentityHashMap<Collection<Neuron>, Boolean>());
+
+    /** Collections of synapses reported since the last frame. */
+    private final Set<Collection<Synapse>> synapseBatches = Collections
+            .newSetFromMap(new IdentityHashMap<Collection<Synapse>, Boolean>());
+
+    /** Groups reported since the last frame. */
+    private final Set<Group> groups = new LinkedHashSet<Group>();
+
+    /** Whether all neurons were reported since the last frame. */
+    private boolean allNeurons;
+
+    /** Whether all synapses were reported since the last frame. */
+    private boolean allSynapses;
+
+    /** Whether a frame is queued or waiting on the timer. */
+    private boolean frameQueued;
+
+    /** Time the last frame was drawn, in nanoseconds. */
+    private long lastFrame;
+
+    /** The most frames drawn in a second. */
+    private volatile int maxFramesPerSecond = 30;
+
+    /** The smallest change in activation or strength that is redrawn. */
+    private volatile double changeThreshold = .001;
+
+    /** Draws a frame, when it is due. */
+    private final Runnable frame = new Runnable() {
+        @Override
+        public void run() {
+            long wait = lastFrame + 1000000000L / maxFramesPerSecond
+                    - System.nanoTime();
+            if (wait > 0) {
+                timer.setInitialDelay((int) Math.max(1, wait / 1000000));
+                timer.restart();
+            } else {
+                drawFrame();
+            }
+        }
+    };
+
+    /** Delays a frame which would come too soon after the last one. */
+    private final Timer timer = new Timer(0, new ActionListener() {
+        @Override
+        public void actionPerformed(ActionEvent e) {
+            drawFrame();
+        }
+    });
+
+    /**
+     * @param panel the panel whose nodes are updated
+     */
+    public NodeUpdateScheduler(final NetworkPanel panel) {
+        this.panel = panel;
+        timer.setRepeats(false);
+    }
+
+    /**
+     * Record that the visible state of some neurons may have changed. The
+     * collection is kept by reference and read when the next frame is drawn.
+     *
+     * @param neurons the neurons
+     */
+    public void neuronsUpdated(final Collection<Neuron> neurons) {
+        synchronized (lock) {
+            if (!allNeurons) {
+                neuronBatches.add(neurons);
+            }
+            scheduleFrame();
+        }
+    }
+
+    /**
+     * Record that the visible state of any neuron may have changed.
+     */
+    public void allNeuronsUpdated() {
+        synchronized (lock) {
+            allNeurons = true;
+            neuronBatches.clear();
+            scheduleFrame();
+        }
+    }
+
+    /**
+     * Record that the visible state of some synapses may have changed. The
+     * collection is kept by reference and read when the next frame is drawn.
+     *
+     * @param synapses the synapses
+     */
+    public void synapsesUpdated(final Collection<Synapse> synapses) {
+        synchronized (lock) {
+            if (!allSynapses) {
+                synapseBatches.add(synapses);
+            }
+            scheduleFrame();
+        }
+    }
+
+    /**
+     * Record that the visible state of any synapse may have changed.
+     */
+    public void allSynapsesUpdated() {
+        synchronized (lock) {
+            allSynapses = true;
+            synapseBatches.clear();
+            scheduleFrame();
+        }
+    }
+
+    /**
+     * Record that the visible state of a group may have changed.
+     *
+     * @param group the group
+     */
+    public void groupUpdated(final Group group) {
+        synchronized (lock) {
+            groups.add(group);
+            scheduleFrame();
+        }
+    }
+
+    /**
+     * Queue a frame on the event thread unless one is already queued. Called
+     * while holding the lock.
+     */
+    private void scheduleFrame() {
+        if (!frameQueued) {
+            frameQueued = true;
+            EventQueue.invokeLater(frame);
+        }
+    }
+
+    /**
+     * Take the pending updates and redraw the nodes which changed. Runs on the
+     * event thread.
+     */
+    private void drawFrame() {
+        boolean neuronsAll;
+        boolean synapsesAll;
+        List<Collection<Neuron>> neuronList;
+        List<Collection<Synapse>> synapseList;
+        List<Group> groupList;
+        synchronized (lock) {
+            neuronsAll = allNeurons;
+            synapsesAll = allSynapses;
+            neuronList = new ArrayList<Collection<Neuron>>(neuronBatches);
+            synapseList = new ArrayList<Collection<Synapse>>(synapseBatches);
+            groupList = new ArrayList<Group>(groups);
+            allNeurons = false;
+            allSynapses = false;
+            neuronBatches.clear();
+            synapseBatches.clear();
+            groups.clear();
+            frameQueued = false;
+        }
+        lastFrame = System.nanoTime();
+        double threshold = changeThreshold;
+
+        if (neuronsAll) {
+            for (NeuronNode node : panel.getNeuronNodes()) {
+                node.updateIfChanged(threshold);
+            }
+        }
+        for (Collection<Neuron> neurons : neuronList) {
+            for (Neuron neuron : neurons) {
+                PNode node = panel.getObjectNodeMap().get(neuron);
+                if (node instanceof NeuronNode) {
+                    ((NeuronNode) node).updateIfChanged(threshold);
+                }
+            }
+        }
+        if (synapsesAll) {
+            for (SynapseNode node : panel.getSynapseNodes()) {
+                if (node.getVisible()) {
+                    node.updateIfChanged(threshold);
+                }
+            }
+        }
+        for (Collection<Synapse> synapses : synapseList) {
+            for (Synapse synapse : synapses) {
+                PNode node = panel.getObjectNodeMap().get(synapse);
+                if (node instanceof SynapseNode) {
+                    ((SynapseNode) node).updateIfChanged(threshold);
+                }
+            }
+        }
+        for (Group group : groupList) {
+            PNode node = panel.getObjectNodeMap().get(group);
+            if (node instanceof NeuronGroupNode) {
+                ((NeuronGroupNode) node).updateChangedNodes(threshold);
+            } else if (node instanceof SubnetworkNode) {
+                ((SubnetworkNode) node).updateChangedNodes(threshold);
+            } else if (node instanceof GroupNode) {
+                ((GroupNode) node).updateConstituentNodes();
+            }
+        }
+        panel.updateTime();
+        panel.setUpdateComplete(true);
+    }
+
+    /**
+     * @return the most frames drawn in a second
+     */
+    public int getMaxFramesPerSecond() {
+        return maxFramesPerSecond;
+    }
+
+    /**
+     * @param maxFramesPerSecond the most frames to draw in a second
+     */
+    public void setMaxFramesPerSecond(final int maxFramesPerSecond) {
+        this.maxFramesPerSecond = Math.max(1, maxFramesPerSecond);
+    }
+
+    /**
+     * @return the smallest change in activation or strength that is redrawn
+     */
+    public double getChangeThreshold() {
+        return changeThreshold;
+    }
+
+    /**
+     * @param changeThreshold the smallest change in activation or strength
+     *            that is redrawn
+     */
+    public void setChangeThreshold(final double changeThreshold) {
+        this.changeThreshold = changeThreshold;
+    }
+}
@@ -228,6 +228,23 @@ public class NeuronGroupNode extends PNode implements GroupNode, PropertyChangeL
 		updateText();
 	}
 
+	/**
+	 * Update only those neuron nodes whose neurons changed by more than a
+	 * threshold since they were last drawn. See
+	 * {@link NeuronNode#updateIfChanged(double)}.
+	 *
+	 * @param threshold the smallest change in activation that is redrawn
+	 */
+	public void updateChangedNodes(final double threshold) {
+		for (Object object : outlinedObjects.getChildrenReference()) {
+			((NeuronNode) object).updateIfChanged(threshold);
+		}
+		if (networkPanel.isRunning()) {
+			return;
+		}
+		updateText();
+	}
+
 	@Override
 	public void offset(double dx, double dy) {
 		if (networkPanel.isRunning()) {
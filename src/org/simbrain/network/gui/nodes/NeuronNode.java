@@ -115,6 +115,12 @@ public class NeuronNode extends ScreenElement implements PropertyChangeListener
      */
     private boolean currentTextVisibility;
 
+    /** Activation shown by this node; NaN if it must be redrawn. */
+    private double drawnActivation = java.lang.Double.NaN;
+
+    /** Spiking state shown by this node. */
+    private boolean drawnSpike;
+
     /**
      * Create a new neuron node.
      *
@@ -159,10 +165,30 @@ public class NeuronNode extends ScreenElement implements PropertyChangeListener
      * Update the neuron view based on the model neuron.
      */
     public void update() {
+        drawnActivation = neuron.getActivation();
+        drawnSpike = neuron.isSpike();
         updateColor();
         updateText();
     }
 
+    /**
+     * Update the neuron view only if the model neuron's activation has moved
+     * by more than a threshold, or its spiking state has changed, since the
+     * node was last drawn.
+     *
+     * @param threshold the smallest change in activation that is redrawn
+     * @return true if the node was redrawn
+     */
+    public boolean updateIfChanged(final double threshold) {
+        if (neuron.isSpike() == drawnSpike
+                && Math.abs(neuron.getActivation() - drawnActivation)
+                <= threshold) {
+            return false;
+        }
+        update();
+        return true;
+    }
+
     /**
      * Determine what font to use for this neuron based in its activation level.
      * TODO: Redo by scaling the text object.
@@ -559,6 +585,7 @@ public class NeuronNode extends ScreenElement implements PropertyChangeListener
         // TODO: Check if change only?
         labelBackground.setPaint(NetworkPanel.getBackgroundColor());
         updateColor();
+        drawnActivation = java.lang.Double.NaN;
     }
 
     // /**
@@ -313,6 +313,23 @@ public class SubnetworkNode extends PPath.Float implements GroupNode, PropertyCh
         }
     };
 
+    /**
+     * Update the nodes of this subnetwork's groups, redrawing neuron nodes only
+     * if their neurons changed by more than a threshold. See
+     * {@link NeuronGroupNode#updateChangedNodes(double)}.
+     *
+     * @param threshold the smallest change in activation that is redrawn
+     */
+    public void updateChangedNodes(final double threshold) {
+        for (Object object : outlinedObjects.getChildrenReference()) {
+            if (object instanceof NeuronGroupNode) {
+                ((NeuronGroupNode) object).updateChangedNodes(threshold);
+            } else if (object instanceof GroupNode) {
+                ((GroupNode) object).updateConstituentNodes();
+            }
+        }
+    }
+
     @Override
     public void updateConstituentNodes() {
         for (Object object : outlinedObjects.getChildrenReference()) {
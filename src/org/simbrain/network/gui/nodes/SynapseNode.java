@@ -90,6 +90,12 @@ public final class SynapseNode extends ScreenElement {
     /** Color of lines in synapse representation. */
     private static Color lineColor = Color.black;
 
+    /** Strength shown by this node; NaN if it must be redrawn. */
+    private double drawnStrength = java.lang.Double.NaN;
+
+    /** Spiking state of the source neuron shown by this node. */
+    private boolean drawnSpike;
+
     /**
      * Create a new synapse node connecting a source and target neuron.
      *
@@ -195,11 +201,34 @@ public final class SynapseNode extends ScreenElement {
         }
     }
 
+    /**
+     * Update color and diameter only if the model synapse's strength has
+     * moved by more than a threshold, or its source neuron's spiking state has
+     * changed, since the node was last drawn by this method.
+     *
+     * @param threshold the smallest change in strength that is redrawn
+     * @return true if the node was redrawn
+     */
+    public boolean updateIfChanged(final double threshold) {
+        double strength = synapse.getStrength();
+        boolean spike = source.getNeuron().isSpike();
+        if (spike == drawnSpike
+                && Math.abs(strength - drawnStrength) <= threshold) {
+            return false;
+        }
+        updateColor();
+        updateDiameter();
+        drawnStrength = strength;
+        drawnSpike = spike;
+        return true;
+    }
+
     /**
      * Calculates the color for a weight, based on its current strength.
      * Positive values are (for example) red, negative values blue.
      */
     public void updateColor() {
+        drawnStrength = java.lang.Double.NaN;
         if (synapse.getStrength() < 0) {
             circle.setPaint(inhibitoryColor);
         } else if (synapse.getStrength() == 0) {
@@ -219,6 +248,7 @@ public final class SynapseNode extends ScreenElement {
      * strength.
      */
     public void updateDiameter() {
+        drawnStrength = java.lang.Double.NaN;
         double diameter;
 
         double upperBound = synapse.getUpperBound();
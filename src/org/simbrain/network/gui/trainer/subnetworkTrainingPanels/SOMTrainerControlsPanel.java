@@ -19,12 +19,14 @@
 package org.simbrain.network.gui.trainer.subnetworkTrainingPanels;
 
 import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.util.concurrent.Executors;
 
 import javax.swing.AbstractAction;
 import javax.swing.Action;
 import javax.swing.Box;
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
@@ -113,6 +115,16 @@ public class SOMTrainerControlsPanel extends JPanel {
         nbBox.add(Box.createHorizontalStrut(10));
         nbBox.add(lNeighborhoodSize);
         propsBox.add(nbBox);
+        final JCheckBox batchBox = new JCheckBox("Batch update",
+                trainer.isBatchMode());
+        batchBox.setToolTipText("Train each epoch as one batch update, "
+                + "setting weights to neighborhood means");
+        batchBox.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                trainer.setBatchMode(batchBox.isSelected());
+            }
+        });
+        propsBox.add(batchBox);
 
         // Separator
         JSeparator separator2 = new JSeparator(SwingConstants.HORIZONTAL);
@@ -23,6 +23,7 @@ import java.util.Random;
 import org.simbrain.network.core.Network.TimeType;
 import org.simbrain.network.core.Neuron;
 import org.simbrain.network.core.NeuronUpdateRule;
+import org.simbrain.util.math.RandomStreams;
 
 /**
  * <b>BinaryNeuron</b> takes one of two values.
@@ -80,7 +81,7 @@ public class BinaryRule extends NeuronUpdateRule {
      */
     @Override
     public double getRandomValue() {
-        Random rand = new Random();
+        Random rand = RandomStreams.newRandom();
         return rand.nextBoolean() ? getUpperBound() : getLowerBound();
     }
 
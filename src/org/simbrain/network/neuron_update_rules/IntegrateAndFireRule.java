@@ -21,6 +21,7 @@ package org.simbrain.network.neuron_update_rules;
 import org.simbrain.network.core.Neuron;
 import org.simbrain.network.core.SpikingNeuronUpdateRule;
 import org.simbrain.network.neuron_update_rules.interfaces.NoisyUpdateRule;
+import org.simbrain.util.math.RandomStreams;
 import org.simbrain.util.randomizer.Randomizer;
 
 /**
@@ -137,7 +138,7 @@ public class IntegrateAndFireRule extends SpikingNeuronUpdateRule implements
     public double getRandomValue() {
         // Equal chance of spiking or not spiking, taking on any value between
         // the resting potential and the threshold if not.
-        return 2 * (threshold - restingPotential) * Math.random()
+        return 2 * (threshold - restingPotential) * RandomStreams.nextDouble()
             + restingPotential;
     }
 
@@ -29,6 +29,7 @@ import org.simbrain.network.core.SynapseUpdateRule;
 import org.simbrain.network.listeners.NetworkEvent;
 import org.simbrain.network.listeners.SynapseListener;
 import org.simbrain.network.neuron_update_rules.interfaces.BiasedUpdateRule;
+import org.simbrain.util.math.RandomStreams;
 import org.simbrain.util.math.SimbrainMath;
 
 /**
@@ -339,7 +340,7 @@ public class PointNeuronRule extends NeuronUpdateRule implements
      */
     @Override
     public double getRandomValue() {
-        Random rand = new Random();
+        Random rand = RandomStreams.newRandom();
         if (outputFunction == OutputFunction.DISCRETE_SPIKING) {
             return rand.nextBoolean() ? 1.0 : 0.0;
         } else if (outputFunction == OutputFunction.RATE_CODE) {
@@ -23,6 +23,7 @@ import java.util.Random;
 import org.simbrain.network.core.Neuron;
 import org.simbrain.network.core.SpikingNeuronUpdateRule;
 import org.simbrain.network.neuron_update_rules.interfaces.NoisyUpdateRule;
+import org.simbrain.util.math.RandomStreams;
 import org.simbrain.util.randomizer.Randomizer;
 
 /**
@@ -69,7 +70,7 @@ public class SpikingThresholdRule extends SpikingNeuronUpdateRule implements
      */
     @Override
     public double getRandomValue() {
-        Random rand = new Random();
+        Random rand = RandomStreams.newRandom();
         return rand.nextBoolean() ? 1 : 0;
     }
 
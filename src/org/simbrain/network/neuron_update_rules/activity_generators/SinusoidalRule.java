@@ -23,6 +23,7 @@ import org.simbrain.network.core.Neuron;
 import org.simbrain.network.core.NeuronUpdateRule;
 import org.simbrain.network.neuron_update_rules.interfaces.ActivityGenerator;
 import org.simbrain.network.neuron_update_rules.interfaces.BoundedUpdateRule;
+import org.simbrain.util.math.RandomStreams;
 import org.simbrain.util.randomizer.Randomizer;
 
 /**
@@ -169,7 +170,7 @@ public class SinusoidalRule extends NeuronUpdateRule implements
 
     @Override
     public double getRandomValue() {
-        double rand = (2 * Math.PI) * Math.random();
+        double rand = (2 * Math.PI) * RandomStreams.nextDouble();
         double range = getUpperBound() - getLowerBound();
         return ((range / 2) * Math.sin(frequency * rand + phase))
                 + ((getUpperBound() + getLowerBound()) / 2);
@@ -22,6 +22,7 @@ import org.simbrain.network.core.Network.TimeType;
 import org.simbrain.network.core.Neuron;
 import org.simbrain.network.core.SpikingNeuronUpdateRule;
 import org.simbrain.network.neuron_update_rules.interfaces.ActivityGenerator;
+import org.simbrain.util.math.RandomStreams;
 
 /**
  * <b>StochasticNeuron</b> is a simple type of random neuron which takes the
@@ -70,7 +71,7 @@ public class StochasticRule extends SpikingNeuronUpdateRule implements
      * {@inheritDoc}
      */
     public void update(Neuron neuron) {
-        double rand = Math.random();
+        double rand = RandomStreams.nextDouble();
         if (rand > firingProbability) {
             neuron.setBuffer(upperValue);
         } else {
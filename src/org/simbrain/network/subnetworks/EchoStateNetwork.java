@@ -331,6 +331,8 @@ public class EchoStateNetwork extends Subnetwork {
     /**
      * Return a trainer object that can be used to train this ESN. The trainer
      * has harvested state data as "inputs" and the desired outputs as outputs.
+     * States are harvested when the trainer is applied, and are streamed to it
+     * row by row rather than stored.
      *
      * @return the trainer.
      */
@@ -357,6 +359,10 @@ public class EchoStateNetwork extends Subnetwork {
                 full.add(node);
             }
         }
+        if (getHarvestWidth() != full.size()) {
+            throw new IllegalArgumentException("Input data length does not "
+                + "match training node set");
+        }
 
         // Handle non-linearities in the outputs.
         // If output layer neurons are sigmoidal, transform the desired
@@ -373,16 +379,9 @@ public class EchoStateNetwork extends Subnetwork {
             }
         }
 
-        // Make the training set by harvesting reservoir states
-        final double[][] harvestedData = harvestData();
-        if (harvestedData[0].length != full.size()) {
-            throw new IllegalArgumentException("Input data length does not "
-                + "match training node set");
-        }
-        // System.out.println("-------");
-        // System.out.println(Utils.doubleMatrixToString(mainInputData));
+        // The training set only holds the targets; reservoir states are
+        // harvested by the trainer's state source
         final TrainingSet trainingSet = new TrainingSet();
-        trainingSet.setInputData(harvestedData);
         trainingSet.setTargetData(targetData);
 
         // Make Trainable object
@@ -415,21 +414,20 @@ public class EchoStateNetwork extends Subnetwork {
         };
         // Create the offline trainer.
         LMSOffline trainer = new LMSOffline(trainable);
+        trainer.setStateSource(new LMSOffline.StateSource() {
+            @Override
+            public void harvest(LMSOffline.RowSink sink) {
+                harvestData(sink);
+            }
+        });
         return trainer;
 
     }
 
     /**
-     * A general method for harvesting state data for an arbitrary Echo-State
-     * Network. This method iterates through each row of input and teacher data
-     * (if the network possesses back weights and/or recurrent output weights),
-     * and updates the reservoir. Depending on the ESN's un-frozen connectivity
-     * the resulting return matrix will have rows consisting of concatenated
-     * input, reservoir, and (teacher-forced) output states in that order.
-     *
-     * @return a matrix of data to be used for training
+     * @return the number of columns in each harvested row of the state matrix
      */
-    private double[][] harvestData() {
+    private int getHarvestWidth() {
 
         // The minimum number of state matrix columns
         int columnNumber = numResNodes;
@@ -442,9 +440,25 @@ public class EchoStateNetwork extends Subnetwork {
             // Add columns for output layer states
             columnNumber += numOutputs;
         }
+        return columnNumber;
+    }
+
+    /**
+     * A general method for harvesting state data for an arbitrary Echo-State
+     * Network. This method iterates through each row of input and teacher data
+     * (if the network possesses back weights and/or recurrent output weights),
+     * and updates the reservoir. Depending on the ESN's un-frozen connectivity
+     * the resulting return matrix will have rows consisting of concatenated
+     * input, reservoir, and (teacher-forced) output states in that order.
+     * Each row is passed to the sink along with its target as soon as it is
+     * complete; the row array is reused.
+     *
+     * @param sink where to send the harvested rows
+     */
+    private void harvestData(LMSOffline.RowSink sink) {
 
-        // State matrix
-        double[][] returnMatrix = new double[inputData.length][columnNumber];
+        // The current row of the state matrix
+        double[] stateRow = new double[getHarvestWidth()];
 
         boolean harvest = false;
 
@@ -464,7 +478,7 @@ public class EchoStateNetwork extends Subnetwork {
                     if (directInOutWeights && harvest) {
                         // Add input states to state matrix if direct in to out
                         // connections are desired
-                        returnMatrix[row][col] = neuron.getActivation();
+                        stateRow[col] = neuron.getActivation();
                         col++;
                     }
 
@@ -497,7 +511,7 @@ public class EchoStateNetwork extends Subnetwork {
                     }
 
                     if (harvest) {
-                        returnMatrix[row][col] = n.getActivation();
+                        stateRow[col] = n.getActivation();
                     }
                     col++;
                 }
@@ -507,15 +521,17 @@ public class EchoStateNetwork extends Subnetwork {
                 if (recurrentOutWeights && harvest) {
                     for (int i = 0; i < targetData[0].length; i++) {
                         // Teacher-forcing
-                        returnMatrix[row][col] = targetData[row][i];
+                        stateRow[col] = targetData[row][i];
                         col++;
                     }
                 }
+
+                if (harvest) {
+                    sink.addRow(stateRow, targetData[row]);
+                }
             }
             harvest = true;
         }
-
-        return returnMatrix;
     }
 
     /**
@@ -0,0 +1,503 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.network.subnetworks;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+import org.simbrain.network.core.Neuron;
+import org.simbrain.network.core.Synapse;
+
+/**
+ * The weights of an {@link SOMGroup} as one contiguous matrix, with one row
+ * per SOM neuron (unit) and one column per distinct source neuron. Entry
+ * (u, j) mirrors the strength of the synapse from source j to unit u; where
+ * there is no such synapse the entry is unused.
+ *
+ * Winner searches run over the matrix, split across a fork/join pool when the
+ * map is large enough. The matrix also backs batch training (see
+ * {@link #trainBatch(double[][], double)}), which reads the synapses once per
+ * epoch rather than once per input. Lattice distances are taken from cached
+ * unit positions and compared squared, so no square roots are needed.
+ *
+ * The structure is built for one structure version of the parent network
+ * (see {@link org.simbrain.network.core.Network#getStructureVersion()}) and
+ * must be rebuilt when that changes.
+ */
+final class SOMCodebook {
+
+    /**
+     * The pool shared by all codebooks. Its worker threads are daemons, so it
+     * need not be shut down.
+     */
+    private static final ForkJoinPool POOL = new ForkJoinPool();
+
+    /** Smallest number of weights (units times inputs) worth splitting. */
+    private static final int MIN_SPLIT = 1 << 14;
+
+    /** The structure version this codebook was built for. */
+    private final int version;
+
+    /** The SOM neurons, one per row. */
+    private final Neuron[] units;
+
+    /** The source neurons, one per column. */
+    private final Neuron[] sources;
+
+    /** The synapses, row by row; null where a unit lacks a source. */
+    private final Synapse[] synapses;
+
+    /** The weights, row by row. */
+    private final double[] weights;
+
+    /** Whether every unit has a synapse from every source. */
+    private final boolean complete;
+
+    /** The number of columns. */
+    private final int dim;
+
+    /** Cached x coordinates of the units. */
+    private final double[] xs;
+
+    /** Cached y coordinates of the units. */
+    private final double[] ys;
+
+    /**
+     * Build a codebook for a list of SOM neurons.
+     *
+     * @param version the structure version of the parent network
+     * @param neurons the SOM neurons
+     */
+    SOMCodebook(final int version, final List<Neuron> neurons) {
+        this.version = version;
+        units = neurons.toArray(new Neuron[neurons.size()]);
+        Map<Neuron, Integer> columns = new LinkedHashMap<Neuron, Integer>();
+        for (Neuron unit : units) {
+            for (Synapse s : unit.getFanIn()) {
+                if (!columns.containsKey(s.getSource())) {
+                    columns.put(s.getSource(), columns.size());
+                }
+            }
+        }
+        dim = columns.size();
+        sources = columns.keySet().toArray(new Neuron[dim]);
+        synapses = new Synapse[units.length * dim];
+        int filled = 0;
+        for (int u = 0; u < units.length; u++) {
+            for (Synapse s : units[u].getFanIn()) {
+                int k = u * dim + columns.get(s.getSource());
+                if (synapses[k] == null) {
+                    filled++;
+                }
+                synapses[k] = s;
+            }
+        }
+        complete = filled == synapses.length;
+        weights = new double[synapses.length];
+        xs = new double[units.length];
+        ys = new double[units.length];
+    }
+
+    /**
+     * Whether this codebook still matches a group.
+     *
+     * @param structureVersion the parent network's current structure version
+     * @param neurons the group's neurons
+     * @return true if the codebook can be used
+     */
+    boolean isValid(final int structureVersion, final List<Neuron> neurons) {
+        return version == structureVersion && units.length == neurons.size();
+    }
+
+    /**
+     * @return the number of units
+     */
+    int getUnitCount() {
+        return units.length;
+    }
+
+    /**
+     * @return the number of inputs (distinct source neurons)
+     */
+    int getDimension() {
+        return dim;
+    }
+
+    /**
+     * @param u a unit index
+     * @return the unit
+     */
+    Neuron getUnit(final int u) {
+        return units[u];
+    }
+
+    /**
+     * Read the current activations of the source neurons.
+     *
+     * @param x array to fill, one entry per column
+     */
+    void readInputs(final double[] x) {
+        for (int j = 0; j < dim; j++) {
+            x[j] = sources[j].getActivation();
+        }
+    }
+
+    /**
+     * Copy the strengths of all synapses into the matrix.
+     */
+    void readWeights() {
+        for (int k = 0; k < synapses.length; k++) {
+            if (synapses[k] != null) {
+                weights[k] = synapses[k].getStrength();
+            }
+        }
+    }
+
+    /**
+     * Copy the unit positions into the cache used by
+     * {@link #latticeDistanceSq(int, int)}.
+     */
+    void readPositions() {
+        for (int u = 0; u < units.length; u++) {
+            xs[u] = units[u].getX();
+            ys[u] = units[u].getY();
+        }
+    }
+
+    /**
+     * Squared distance between two units' positions, as of the last
+     * {@link #readPositions()}.
+     *
+     * @param u first unit
+     * @param v second unit
+     * @return squared lattice distance
+     */
+    double latticeDistanceSq(final int u, final int v) {
+        double dx = xs[u] - xs[v];
+        double dy = ys[u] - ys[v];
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Squared distance between a unit's weights and an input vector. With
+     * reload set, the unit's weights are first read from its synapses.
+     *
+     * @param u the unit
+     * @param x the input vector
+     * @param reload whether to read the weights from the synapses first
+     * @return squared distance
+     */
+    double distanceSq(final int u, final double[] x, final boolean reload) {
+        int base = u * dim;
+        double d = 0;
+        if (complete && !reload) {
+            for (int j = 0; j < dim; j++) {
+                double diff = weights[base + j] - x[j];
+                d += diff * diff;
+            }
+            return d;
+        }
+        for (int j = 0; j < dim; j++) {
+            Synapse s = synapses[base + j];
+            if (s != null) {
+                if (reload) {
+                    weights[base + j] = s.getStrength();
+                }
+                double diff = weights[base + j] - x[j];
+                d += diff * diff;
+            }
+        }
+        return d;
+    }
+
+    /**
+     * Find the unit whose weights are closest to an input vector; ties go to
+     * the lower index. With reload set, every unit's weights are read from
+     * its synapses during the search.
+     *
+     * @param x the input vector
+     * @param reload whether to read the weights from the synapses
+     * @return the winning unit index, or -1 if there are no units
+     */
+    int findWinner(final double[] x, final boolean reload) {
+        if (units.length == 0) {
+            return -1;
+        }
+        if ((long) units.length * dim < MIN_SPLIT) {
+            return new WinnerTask(x, reload, 0, units.length).search();
+        }
+        return POOL.invoke(new WinnerTask(x, reload, 0, units.length));
+    }
+
+    /**
+     * Find the winners of many input vectors at once, splitting the rows
+     * across the pool. The weights are not reloaded.
+     *
+     * @param inputs the input vectors
+     * @return the winning unit index of each vector
+     */
+    int[] findWinners(final double[][] inputs) {
+        final int[] winners = new int[inputs.length];
+        POOL.invoke(new RangeAction(0, inputs.length, Math.max(1,
+                MIN_SPLIT / Math.max(1, units.length * dim))) {
+            @Override
+            void run(final int lo, final int hi) {
+                for (int i = lo; i < hi; i++) {
+                    winners[i] = new WinnerTask(inputs[i], false, 0,
+                            units.length).search();
+                }
+            }
+        });
+        return winners;
+    }
+
+    /**
+     * Move a unit's weights toward an input vector and write them to its
+     * synapses. The matrix keeps the strengths the synapses accepted, which
+     * may be clipped.
+     *
+     * @param u the unit
+     * @param x the input vector
+     * @param rate fraction of the distance to move
+     */
+    void moveToward(final int u, final double[] x, final double rate) {
+        int base = u * dim;
+        for (int j = 0; j < dim; j++) {
+            Synapse s = synapses[base + j];
+            if (s != null) {
+                double w = weights[base + j];
+                s.setStrength(w + rate * (x[j] - w));
+                weights[base + j] = s.getStrength();
+            }
+        }
+    }
+
+    /**
+     * Set a unit's weights and write them to its synapses.
+     *
+     * @param u the unit
+     * @param row the new weights, one per column
+     * @param offset index of the first weight in row
+     */
+    void setWeights(final int u, final double[] row, final int offset) {
+        int base = u * dim;
+        for (int j = 0; j < dim; j++) {
+            Synapse s = synapses[base + j];
+            if (s != null) {
+                s.setStrength(row[offset + j]);
+                weights[base + j] = s.getStrength();
+            }
+        }
+    }
+
+    /**
+     * One epoch of batch training. Every input is assigned to its winner
+     * using the weights at the start of the epoch; then each unit's weights
+     * are set to the mean of the inputs whose winner lies within the radius
+     * of it on the lattice. Units with no such inputs keep their weights.
+     * The weights and positions are read first, so the epoch starts from
+     * the current synapse strengths.
+     *
+     * @param inputs the input vectors, one column per source
+     * @param radius the neighborhood radius
+     * @return the winner of the last input, or -1 if there are none
+     */
+    int trainBatch(final double[][] inputs, final double radius) {
+        readWeights();
+        readPositions();
+        final int[] winners = findWinners(inputs);
+        final double radiusSq = radius * radius;
+        POOL.invoke(new RangeAction(0, units.length, Math.max(1, MIN_SPLIT
+                / Math.max(1, inputs.length * dim))) {
+            @Override
+            void run(final int lo, final int hi) {
+                double[] sum = new double[dim];
+                for (int u = lo; u < hi; u++) {
+                    Arrays.fill(sum, 0);
+                    int count = 0;
+                    for (int i = 0; i < inputs.length; i++) {
+                        if (latticeDistanceSq(u, winners[i]) <= radiusSq) {
+                            double[] x = inputs[i];
+                            for (int j = 0; j < dim; j++) {
+                                sum[j] += x[j];
+                            }
+                            count++;
+                        }
+                    }
+                    if (count > 0) {
+                        for (int j = 0; j < dim; j++) {
+                            sum[j] /= count;
+                        }
+                        setWeights(u, sum, 0);
+                    }
+                }
+            }
+        });
+        return winners.length == 0 ? -1 : winners[winners.length - 1];
+    }
+
+    /**
+     * A fork/join action over an index range, split in halves down to a
+     * minimum grain.
+     */
+    private abstract static class RangeAction extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        /** First index of the range. */
+        private final int lo;
+
+        /** One past the last index of the range. */
+        private final int hi;
+
+        /** The smallest range worth splitting further. */
+        private final int grain;
+
+        /**
+         * @param lo first index
+         * @param hi one past the last index
+         * @param grain the smallest range worth splitting further
+         */
+        RangeAction(final int lo, final int hi, final int grain) {
+            this.lo = lo;
+            this.hi = hi;
+            this.grain = grain;
+        }
+
+        /**
+         * Process part of the range.
+         *
+         * @param from first index
+         * @param to one past the last index
+         */
+        abstract void run(int from, int to);
+
+        @Override
+        protected final void compute() {
+            split(lo, hi);
+        }
+
+        /**
+         * Split a range in halves, running the halves as subtasks.
+         *
+         * @param from first index
+         * @param to one past the last index
+         */
+        private void split(final int from, final int to) {
+            if (to - from <= grain) {
+                run(from, to);
+                return;
+            }
+            final int mid = (from + to) >>> 1;
+            RecursiveAction left = new RecursiveAction() {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected void compute() {
+                    split(from, mid);
+                }
+            };
+            left.fork();
+            split(mid, to);
+            left.join();
+        }
+    }
+
+    /**
+     * A search for the closest unit in a range of units, split in halves
+     * while the range holds enough weights.
+     */
+    private final class WinnerTask extends RecursiveTask<Integer> {
+
+        private static final long serialVersionUID = 1L;
+
+        /** The input vector. */
+        private final double[] x;
+
+        /** Whether to read the weights from the synapses. */
+        private final boolean reload;
+
+        /** First unit of the range. */
+        private final int lo;
+
+        /** One past the last unit of the range. */
+        private final int hi;
+
+        /** The best distance found by the last search. */
+        private double best;
+
+        /**
+         * @param x the input vector
+         * @param reload whether to read the weights from the synapses
+         * @param lo first unit
+         * @param hi one past the last unit
+         */
+        WinnerTask(final double[] x, final boolean reload, final int lo,
+                final int hi) {
+            this.x = x;
+            this.reload = reload;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        /**
+         * Search the range sequentially.
+         *
+         * @return the index of the closest unit
+         */
+        int search() {
+            int winner = lo;
+            best = Double.POSITIVE_INFINITY;
+            for (int u = lo; u < hi; u++) {
+                double d = distanceSq(u, x, reload);
+                if (d < best) {
+                    best = d;
+                    winner = u;
+                }
+            }
+            return winner;
+        }
+
+        @Override
+        protected Integer compute() {
+            if ((long) (hi - lo) * dim < MIN_SPLIT || hi - lo < 2) {
+                return search();
+            }
+            int mid = (lo + hi) >>> 1;
+            WinnerTask left = new WinnerTask(x, reload, lo, mid);
+            WinnerTask right = new WinnerTask(x, reload, mid, hi);
+            left.fork();
+            int r = right.compute();
+            int l = left.join();
+            // Ties go to the lower index, as in a sequential search
+            if (right.best < left.best) {
+                best = right.best;
+                return r;
+            }
+            best = left.best;
+            return l;
+        }
+    }
+
+}
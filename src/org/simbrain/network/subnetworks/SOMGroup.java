@@ -28,6 +28,7 @@ import org.simbrain.network.groups.NeuronGroup;
 import org.simbrain.network.layouts.HexagonalGridLayout;
 import org.simbrain.network.layouts.Layout;
 import org.simbrain.network.neuron_update_rules.LinearRule;
+import org.simbrain.util.math.RandomStreams;
 
 /**
  * <b>SOM</b> implements a Self-Organizing Map network.
@@ -71,11 +72,8 @@ public class SOMGroup extends NeuronGroup {
      */
     private double initNeighborhoodSize = DEFAULT_INIT_NSIZE;
 
-    /**
-     * MinDistance, distance and val are changing variables used in the update
-     * method.
-     */
-    private double winDistance, distance, val;
+    /** Squared distance from the last winner to the input. */
+    private double winDistance;
 
     /** Number of neurons. */
     private int numNeurons = 16;
@@ -89,6 +87,9 @@ public class SOMGroup extends NeuronGroup {
     /** The amount that the neighborhood decrements. */
     private double neighborhoodDecayAmount = DEFAULT_NEIGHBORHOOD_DECAY_AMOUNT;
 
+    /** The weights as a matrix; rebuilt when the network structure changes. */
+    private transient SOMCodebook codebook;
+
     /**
      * Default layout for neuron groups. Used to set layout defaults in SOM
      * Creation dialog. Overrides superclass DEFAULT_LAYOUT.
@@ -121,8 +122,6 @@ public class SOMGroup extends NeuronGroup {
         this.alpha = oldNet.getAlpha();
         this.neighborhoodSize = oldNet.getNeighborhoodSize();
         this.winDistance = oldNet.winDistance;
-        this.distance = oldNet.distance;
-        this.val = oldNet.val;
         this.batchSize = oldNet.getBatchSize();
         this.alphaDecayRate = oldNet.getAlphaDecayRate();
         this.neighborhoodDecayAmount = oldNet.getNeighborhoodDecayAmount();
@@ -147,7 +146,7 @@ public class SOMGroup extends NeuronGroup {
         for (Neuron n : getNeuronList()) {
             for (Synapse s : n.getFanIn()) {
                 s.setLowerBound(0);
-                s.setStrength(s.getUpperBound() * Math.random());
+                s.setStrength(s.getUpperBound() * RandomStreams.nextDouble());
             }
         }
     }
@@ -182,111 +181,107 @@ public class SOMGroup extends NeuronGroup {
     }
 
     /**
-     * Update the network. This method has the following structure: If all
-     * weights are clamped, return. Determine the winner by finding which of the
-     * SOM neurons is closest to the input vector. Update the winning neuron and
-     * it's neighborhood. The update algorithm accounts for all possible
-     * arrangements of the SOM network. - When the neuron is outside of the
-     * neighborhood. - When the neuron is within the the neighborhood. Including
-     * the current vector, if the total number of vectors analyzed during the
-     * current iteration is equal to the total number of vectors to be analyzed,
-     * update the network parameters and count one full iteration. Else the
-     * network must be in recallMode. If all neurons are clamped, return. Find
-     * the SOM neuron with highest activation. Set the activations of input
-     * neurons according to the SOM weights.
+     * Update the network. This method has the following structure: Determine
+     * the winner by finding which of the SOM neurons is closest to the input
+     * vector. Set the winner's activation to 1 and the others' to 0. Move the
+     * weights of every neuron within the neighborhood of the winner (by
+     * position) toward the input vector. Then decay the learning rate and
+     * the neighborhood size.
+     *
+     * The winner search reads each neuron's weights from its synapses into a
+     * matrix (see {@link SOMCodebook}), so weights edited elsewhere are always
+     * seen, and is split across threads for large maps.
      */
     @Override
     public void update() {
-
-        winDistance = Double.POSITIVE_INFINITY;
-        // winner = 0;
-        double physicalDistance;
-
-        // Determine Winner and update neurons: The SOM Neuron with the lowest
-        // distance between  its weight vector and the input neurons's weight
-        // vector.
-        Neuron winner = calculateWinner();
-        for (int i = 0; i < getNeuronList().size(); i++) {
-            Neuron n = getNeuronList().get(i);
-            if (n == winner) {
-                n.setActivation(1);
-            } else {
-                n.setActivation(0);
-            }
+        SOMCodebook cb = getCodebook();
+        double[] x = new double[cb.getDimension()];
+        cb.readInputs(x);
+        int winner = cb.findWinner(x, true);
+        if (winner < 0) {
+            return;
         }
+        winDistance = cb.distanceSq(winner, x, false);
+        setWinner(cb, winner);
 
-        // Update Synapses of the neurons within the radius of the winning
+        // Update synapses of the neurons within the radius of the winning
         // neuron.
-        for (int i = 0; i < getNeuronList().size(); i++) {
-            Neuron neuron = getNeuronList().get(i);
-            physicalDistance = findPhysicalDistance(neuron, winner);
-            // The center of the neuron is within the update region.
-            if (physicalDistance <= neighborhoodSize) {
-                for (Synapse incoming : neuron.getFanIn()) {
-                    val = incoming.getStrength()
-                            + alpha
-                            * (incoming.getSource().getActivation() - incoming
-                                    .getStrength());
-                    incoming.setStrength(val);
-                }
+        cb.readPositions();
+        double radiusSq = neighborhoodSize * neighborhoodSize;
+        for (int u = 0, n = cb.getUnitCount(); u < n; u++) {
+            if (cb.latticeDistanceSq(u, winner) <= radiusSq) {
+                cb.moveToward(u, x, alpha);
             }
         }
 
-        // Update alpha and neighborhood size
-        alpha = (alpha - alphaDecayRate * alpha);
-        if (neighborhoodSize - neighborhoodDecayAmount > 0) {
-            neighborhoodSize -= neighborhoodDecayAmount;
-        } else {
-            neighborhoodSize = 0;
+        decay(1);
+    }
+
+    /**
+     * Train the map for one epoch in batch mode. Each row of the input data
+     * is set on the input layer and assigned to its winner, using the weights
+     * at the start of the epoch; each neuron's weights are then set to the
+     * mean of the rows whose winner lies within its neighborhood. The
+     * learning rate is not used, but it and the neighborhood size decay as
+     * though {@link #update()} had been called once per row. The winner of
+     * the last row is left active.
+     *
+     * @param inputLayer the neurons the map receives input from
+     * @param inputData the input vectors, one per row
+     */
+    public void trainBatch(final NeuronGroup inputLayer,
+            final double[][] inputData) {
+        SOMCodebook cb = getCodebook();
+        double[][] inputs = new double[inputData.length][cb.getDimension()];
+        for (int i = 0; i < inputData.length; i++) {
+            inputLayer.forceSetActivations(inputData[i]);
+            cb.readInputs(inputs[i]);
+        }
+        int winner = cb.trainBatch(inputs, neighborhoodSize);
+        if (winner >= 0) {
+            setWinner(cb, winner);
         }
+        decay(inputData.length);
     }
 
     /**
-     * Find the SOM neuron which is closest to the input vector.
+     * Returns the weight matrix, rebuilding it if neurons or synapses have
+     * been added or removed.
      *
-     * @return winner
+     * @return the current codebook
      */
-    private Neuron calculateWinner() {
-        Neuron winner = null;
-        for (int i = 0; i < getNeuronList().size(); i++) {
-            Neuron n = getNeuronList().get(i);
-            distance = findDistance(n);
-            if (distance < winDistance) {
-                winDistance = distance;
-                winner = n;
-            }
+    private SOMCodebook getCodebook() {
+        int version = getParentNetwork().getStructureVersion();
+        SOMCodebook cb = codebook;
+        if (cb == null || !cb.isValid(version, getNeuronList())) {
+            cb = new SOMCodebook(version, getNeuronList());
+            codebook = cb;
         }
-        return winner;
+        return cb;
     }
 
     /**
-     * Calculates the Euclidian distance between the SOM neuron's weight vector
-     * and the input vector.
+     * Set the winner's activation to 1 and all other activations to 0.
      *
-     * @param n The SOM neuron one wishes to find the for.
-     * @return distance.
+     * @param cb the codebook
+     * @param winner index of the winning neuron
      */
-    private double findDistance(final Neuron n) {
-        double ret = 0;
-        for (Synapse incoming : n.getFanIn()) {
-            ret += Math.pow(incoming.getStrength()
-                    - incoming.getSource().getActivation(), 2);
+    private void setWinner(final SOMCodebook cb, final int winner) {
+        for (int u = 0, n = cb.getUnitCount(); u < n; u++) {
+            cb.getUnit(u).setActivation(u == winner ? 1 : 0);
         }
-        return ret;
     }
 
     /**
-     * Finds the physical Euclidian Distance between two neurons.
+     * Decay the learning rate and the neighborhood size as though a number of
+     * inputs had been presented.
      *
-     * @param neuron1 First neuron.
-     * @param neuron2 Second neuron.
-     * @return physical distance between two neurons in Simbrain.
+     * @param presentations the number of inputs
      */
-    private double findPhysicalDistance(final Neuron neuron1,
-            final Neuron neuron2) {
-        double ret = Math.sqrt(Math.pow(neuron2.getX() - neuron1.getX(), 2)
-                + Math.pow(neuron2.getY() - neuron1.getY(), 2));
-        return ret;
+    private void decay(final int presentations) {
+        alpha = alpha * Math.pow(1 - alphaDecayRate, presentations);
+        neighborhoodSize = Math.max(0, neighborhoodSize
+                - neighborhoodDecayAmount * presentations);
     }
 
     /**
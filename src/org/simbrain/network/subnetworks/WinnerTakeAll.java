@@ -18,13 +18,13 @@
  */
 package org.simbrain.network.subnetworks;
 
-import java.util.Random;
 
 import org.simbrain.network.core.Network;
 import org.simbrain.network.core.Neuron;
 import org.simbrain.network.groups.CopyableGroup;
 import org.simbrain.network.groups.NeuronGroup;
 import org.simbrain.network.neuron_update_rules.LinearRule;
+import org.simbrain.util.math.RandomStreams;
 
 /**
  * <b>WinnerTakeAll</b>.The neuron with the highest weighted input in a
@@ -98,7 +98,7 @@ public class WinnerTakeAll extends NeuronGroup {
         // Determine the winning neuron
         int winnerIndex;
         if (useRandom) {
-            if (Math.random() < randomProb) {
+            if (RandomStreams.nextDouble() < randomProb) {
                 winnerIndex = getRandomWinnerIndex();
             } else {
                 winnerIndex = getWinningIndex();
@@ -124,7 +124,7 @@ public class WinnerTakeAll extends NeuronGroup {
      * @return index of random winner
      */
     private int getRandomWinnerIndex() {
-        return new Random().nextInt(getNeuronList().size());
+        return RandomStreams.newRandom().nextInt(getNeuronList().size());
     }
 
     /**
@@ -26,6 +26,7 @@ import org.simbrain.network.core.Neuron;
 import org.simbrain.network.core.Synapse;
 import org.simbrain.network.neuron_update_rules.interfaces.BiasedUpdateRule;
 import org.simbrain.network.neuron_update_rules.interfaces.DifferentiableUpdateRule;
+import org.simbrain.util.math.RandomStreams;
 
 /**
  * Backprop trainer. An implementation of the backpropagation learning
@@ -248,10 +249,10 @@ public class BackpropTrainer extends IterableTrainer {
             // Randomize uniformly in -.05,.05.
             // TODO: Make this settable and use randomizer framework.
             for (Synapse synapse : neuron.getFanIn()) {
-                synapse.setStrength(.1 * Math.random() - .05);
+                synapse.setStrength(.1 * RandomStreams.nextDouble() - .05);
             }
-            ((BiasedUpdateRule) neuron.getUpdateRule()).setBias(.1 * Math
-                    .random() - .05);
+            ((BiasedUpdateRule) neuron.getUpdateRule()).setBias(.1
+                    * RandomStreams.nextDouble() - .05);
         }
         revalidateSynapseGroups();
     }
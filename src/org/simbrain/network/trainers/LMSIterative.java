@@ -22,6 +22,7 @@ import org.simbrain.network.core.Network;
 import org.simbrain.network.core.Neuron;
 import org.simbrain.network.core.Synapse;
 import org.simbrain.network.neuron_update_rules.interfaces.BiasedUpdateRule;
+import org.simbrain.util.math.RandomStreams;
 
 /**
  * Train using least mean squares.
@@ -121,8 +122,8 @@ public class LMSIterative extends IterableTrainer {
             neuron.clear(); // Looks nicer in the GUI
             neuron.randomizeFanIn();
             if (neuron.getUpdateRule() instanceof BiasedUpdateRule) {
-                ((BiasedUpdateRule) neuron.getUpdateRule()).setBias(Math
-                        .random());
+                ((BiasedUpdateRule) neuron.getUpdateRule()).setBias(
+                        RandomStreams.nextDouble());
             }
         }
         revalidateSynapseGroups();
@@ -24,13 +24,12 @@ package org.simbrain.network.trainers;
 //import java.util.ArrayList;
 //import java.util.Collections;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import javax.swing.JFrame;
 import javax.swing.JOptionPane;
 
-import org.ojalgo.access.Access2D.Builder;
-import org.ojalgo.matrix.BasicMatrix;
-import org.ojalgo.matrix.BasicMatrix.Factory;
-import org.ojalgo.matrix.PrimitiveMatrix;
 import org.simbrain.network.core.Neuron;
 import org.simbrain.network.groups.Subnetwork;
 import org.simbrain.network.groups.SynapseGroup;
@@ -74,6 +73,44 @@ public class LMSOffline extends Trainer {
         noiseGen.setParam2(0.001); // Ceiling
     }
 
+    /**
+     * Where the rows of the state matrix come from, if they are generated on
+     * demand rather than stored in the training set; null otherwise.
+     */
+    private StateSource stateSource;
+
+    /**
+     * Receives the rows of the state and target matrices one at a time.
+     */
+    public interface RowSink {
+
+        /**
+         * Add one row. Implementations must copy the arrays if they keep
+         * them, since callers may reuse them for the next row.
+         *
+         * @param state the row of the state matrix
+         * @param target the corresponding row of the target matrix
+         */
+        void addRow(double[] state, double[] target);
+    }
+
+    /**
+     * Generates the rows of the state matrix (and their targets) on demand,
+     * e.g. by running a reservoir, so that the full matrix never has to be
+     * held in memory.
+     */
+    public interface StateSource {
+
+        /**
+         * Generate every row, in order, and pass it to the sink. Each row has
+         * one entry per input neuron of the trainable network, and each
+         * target one entry per output neuron.
+         *
+         * @param sink where to send the rows
+         */
+        void harvest(RowSink sink);
+    }
+
     /**
      * Construct the LMSOOffline object, with a trainable network the Synapse
      * group where the new synapses will be placed.
@@ -114,7 +151,8 @@ public class LMSOffline extends Trainer {
     @Override
     public void apply() throws DataNotInitializedException {
 
-        if (getTrainableNetwork().getTrainingSet().getInputData() == null) {
+        if (stateSource == null
+            && getTrainableNetwork().getTrainingSet().getInputData() == null) {
             throw new DataNotInitializedException(
                 "Input data not initalized");
         }
@@ -125,8 +163,13 @@ public class LMSOffline extends Trainer {
 
         fireTrainingBegin();
 
+        // Streamed rows are transformed one at a time as they are generated
+        // (see streamRows)
         int index = 0;
         for (Neuron n : network.getOutputNeurons()) {
+            if (stateSource != null) {
+                break;
+            }
 
             // If output nodes are sigmoidal, alter the effective target data
             // such that the desired value will result when it is put through
@@ -145,7 +188,7 @@ public class LMSOffline extends Trainer {
         }
 
         // Add noise to the input state matrix.
-        if (noiseAdded) {
+        if (noiseAdded && stateSource == null) {
             double[][] stateMat = network.getTrainingSet().getInputData();
             for (int i = 0, n = stateMat.length; i < n; i++) {
                 for (int j = 0, m = stateMat[i].length; j < m; j++) {
@@ -184,109 +227,138 @@ public class LMSOffline extends Trainer {
     }
 
     /**
-     * Implements the Wiener-Hopf solution to LMS linear regression.
-     * TODO: Fix progress updates to reflect actual training times & %s
+     * Implements the Wiener-Hopf solution to LMS linear regression. The
+     * correlation matrices R = S'S and P = S'D are accumulated one block of
+     * rows at a time, so the state matrix S is never built when the rows
+     * come from a {@link StateSource}, and the weights are found by a
+     * Cholesky solve of (R + alpha^2 I) W = P.
+     *
      * @param network the trainable network being trained
      */
     public void weinerHopfSolution(Trainable network) {
         long start = System.nanoTime();
-        double[][] inputMatrix = network.getTrainingSet().getInputData();
-        double[][] trainingMatrix = network.getTrainingSet()
-            .getTargetData();
+        StreamingLeastSquares lsq = new StreamingLeastSquares(network
+            .getInputNeurons().size(), network.getOutputNeurons().size());
+        double[][] wOut;
         try {
-
-            Factory<?> mf = PrimitiveMatrix.FACTORY;
-
-            Builder<?> tmpBuilder = mf.getBuilder(inputMatrix.length,
-                inputMatrix[0].length);
-            for (int i = 0; i < tmpBuilder.countRows(); i++) {
-                for (int j = 0; j < tmpBuilder.countColumns(); j++) {
-                    tmpBuilder.set(i, j, inputMatrix[i][j]);
-                }
-            }
-
-            BasicMatrix stateMat = (BasicMatrix) tmpBuilder.build();
-
-            tmpBuilder = mf.getBuilder(trainingMatrix.length,
-                trainingMatrix[0].length);
-            for (int i = 0; i < tmpBuilder.countRows(); i++) {
-                for (int j = 0; j < tmpBuilder.countColumns(); j++) {
-                    tmpBuilder.set(i, j, trainingMatrix[i][j]);
-                    if (Double.isInfinite(trainingMatrix[i][j])
-                        || Double.isNaN(trainingMatrix[i][j])) {
-                        throw new NumberFormatException("Invalid target"
-                            + " values.");
-                    }
-                }
-            }
-
-            BasicMatrix teachMat = (BasicMatrix) tmpBuilder.build();
-
-            fireProgressUpdate("Correlating State Matrix (R = S'S)...", 0);
-            teachMat = stateMat.transpose().multiplyRight(teachMat);
-
-            fireProgressUpdate(
-                "Cross-Correlating States with Teacher data (P = S'D)...",
-                15);
-            stateMat = stateMat.transpose().multiplyRight(stateMat);
-
-            fireProgressUpdate("Computing Inverse Correlation Matrix...", 30);
-
-            if (ridgeRegression) {
-                tmpBuilder = mf.getBuilder((int) stateMat.countRows(),
-                    (int) stateMat.countColumns());
-                for (int i = 0, n = (int) stateMat.countColumns(); i < n; i++) {
-                    tmpBuilder.set(i, i, alpha * alpha);
-                }
-                BasicMatrix scaleMat = (BasicMatrix) tmpBuilder.build();
-                stateMat = stateMat.add(scaleMat);
-            }
-
-            stateMat = stateMat.invert();
+            fireProgressUpdate("Correlating States with Teacher data "
+                + "(R = S'S, P = S'D)...", 0);
+            streamRows(network, lsq);
 
             fireProgressUpdate("Computing Weights...", 80);
-            tmpBuilder =
-                stateMat.multiplyRight(teachMat).copyToBuilder();
-            BasicMatrix finalMat = (BasicMatrix) tmpBuilder.build();
-            double[][] wOut = new double[(int) tmpBuilder.countRows()]
-                [(int) tmpBuilder.countColumns()];
-            for (int i = 0, n = (int) tmpBuilder.countRows(); i < n; i++) {
-                for (int j = 0, m = (int) tmpBuilder.countColumns(); j < m; j++)
-                {
-                    wOut[i][j] = finalMat.doubleValue(i, j);
-                }
-            }
-            fireProgressUpdate("Setting Weights...", 95);
-            SimnetUtils.setWeights(network.getInputNeurons(),
-                network.getOutputNeurons(), wOut);
-            fireProgressUpdate("Done!", 100);
-
-            // TODO: What error does JAMA actually throw for singular Matrices?
-        } catch (RuntimeException e) {
+            wOut = lsq.solve(ridgeRegression ? alpha * alpha : 0);
+        } catch (NumberFormatException e) {
+            JOptionPane.showMessageDialog(new JFrame(), ""
+                + "Invalid target values."
+                + "\nCheck that target values are in range of output units.",
+                "Training Failed", JOptionPane.ERROR_MESSAGE);
+            fireProgressUpdate("Training Failed", 0);
+            return;
+        } catch (ArithmeticException e) {
             JOptionPane.showMessageDialog(new JFrame(), ""
                 + "State Correlation Matrix is Singular."
                 + "\nCheck that target values are in range of output units."
                 + "\nOtherwise, input matrix is rank-deficient.",
                 "Training Failed", JOptionPane.ERROR_MESSAGE);
             fireProgressUpdate("Training Failed", 0);
+            return;
         }
 
-        trainingMatrix = null;
-        inputMatrix = null;
+        fireProgressUpdate("Setting Weights...", 95);
+        SimnetUtils.setWeights(network.getInputNeurons(),
+            network.getOutputNeurons(), wOut);
+        fireProgressUpdate("Done!", 100);
 
         long end = System.nanoTime();
         System.out.println("Time: " + (end - start) / Math.pow(10, 9));
     }
 
+    /**
+     * Pass every row of the state and target matrices to a sink, either from
+     * the training set or from the state source. Streamed rows are copied,
+     * given noise and have their targets transformed for sigmoidal outputs
+     * here, as the training set rows were in {@link #apply()}.
+     *
+     * @param network the trainable network being trained
+     * @param sink where to send the rows
+     */
+    private void streamRows(final Trainable network, final RowSink sink) {
+        if (stateSource == null) {
+            double[][] inputMatrix = network.getTrainingSet().getInputData();
+            double[][] trainingMatrix = network.getTrainingSet()
+                .getTargetData();
+            for (int i = 0; i < inputMatrix.length; i++) {
+                checkTargets(trainingMatrix[i]);
+                sink.addRow(inputMatrix[i], trainingMatrix[i]);
+            }
+            return;
+        }
+        final List<Neuron> outputs = network.getOutputNeurons();
+        final double[] state = new double[network.getInputNeurons().size()];
+        final double[] target = new double[outputs.size()];
+        stateSource.harvest(new RowSink() {
+            @Override
+            public void addRow(double[] s, double[] d) {
+                for (int j = 0; j < state.length; j++) {
+                    state[j] = noiseAdded ? s[j] + noiseGen.getRandom()
+                        : s[j];
+                }
+                for (int j = 0; j < target.length; j++) {
+                    Neuron n = outputs.get(j);
+                    if (n.getUpdateRule() instanceof SigmoidalRule) {
+                        target[j] = ((SigmoidalRule) n.getUpdateRule())
+                            .getInverse(d[j]);
+                    } else {
+                        target[j] = d[j];
+                    }
+                }
+                checkTargets(target);
+                sink.addRow(state, target);
+            }
+        });
+    }
+
+    /**
+     * Check that a row of targets holds only finite values.
+     *
+     * @param target the row to check
+     * @throws NumberFormatException if a target is infinite or NaN
+     */
+    private static void checkTargets(double[] target) {
+        for (int j = 0; j < target.length; j++) {
+            if (Double.isInfinite(target[j]) || Double.isNaN(target[j])) {
+                throw new NumberFormatException("Invalid target values.");
+            }
+        }
+    }
+
     /**
      * Moore penrose.
      * @param network the trainable network being trained
      */
     public void moorePenroseSolution(Trainable network) {
-        Matrix inputMatrix =
-            new Matrix(network.getTrainingSet().getInputData());
-        Matrix trainingMatrix =
-            new Matrix(network.getTrainingSet().getTargetData());
+        Matrix inputMatrix;
+        Matrix trainingMatrix;
+        if (stateSource == null) {
+            inputMatrix = new Matrix(network.getTrainingSet().getInputData());
+            trainingMatrix =
+                new Matrix(network.getTrainingSet().getTargetData());
+        } else {
+            // The pseudoinverse needs the whole state matrix
+            final List<double[]> states = new ArrayList<double[]>();
+            final List<double[]> targets = new ArrayList<double[]>();
+            streamRows(network, new RowSink() {
+                @Override
+                public void addRow(double[] state, double[] target) {
+                    states.add(state.clone());
+                    targets.add(target.clone());
+                }
+            });
+            inputMatrix = new Matrix(states.toArray(
+                new double[states.size()][]));
+            trainingMatrix = new Matrix(targets.toArray(
+                new double[targets.size()][]));
+        }
 
         fireProgressUpdate("Computing Moore-Penrose Pseudoinverse...", 0);
         // Computes Moore-Penrose Pseudoinverse
@@ -369,6 +441,26 @@ public class LMSOffline extends Trainer {
     public Randomizer getNoiseGen() {
         return noiseGen;
     }
+
+    /**
+     * @return the source of the state matrix rows, or null if they are taken
+     *         from the training set
+     */
+    public StateSource getStateSource() {
+        return stateSource;
+    }
+
+    /**
+     * Generate the rows of the state matrix on demand rather than taking them
+     * from the training set's input data. The training set's target data is
+     * not used either; targets come with each row.
+     *
+     * @param stateSource the source of the rows, or null to use the training
+     *            set
+     */
+    public void setStateSource(StateSource stateSource) {
+        this.stateSource = stateSource;
+    }
     //
     //    /**
     //     *
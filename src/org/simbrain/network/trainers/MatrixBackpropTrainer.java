@@ -0,0 +1,642 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.network.trainers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.simbrain.network.core.Neuron;
+import org.simbrain.network.core.NeuronUpdateRule;
+import org.simbrain.network.core.Synapse;
+import org.simbrain.network.neuron_update_rules.LinearRule;
+import org.simbrain.network.neuron_update_rules.SigmoidalRule;
+import org.simbrain.network.neuron_update_rules.interfaces.BiasedUpdateRule;
+import org.simbrain.network.neuron_update_rules.interfaces.DifferentiableUpdateRule;
+import org.simbrain.util.SimbrainConstants.Polarity;
+import org.simbrain.util.math.RandomStreams;
+import org.simbrain.util.math.SquashingFunction;
+
+/**
+ * Backprop trainer which works on weight matrices stored in primitive arrays
+ * rather than on the neuron and synapse objects themselves.
+ *
+ * At the start of each epoch the weights between consecutive layers are read
+ * from the synapses into dense matrices (one per layer), along with the
+ * biases and activation function parameters of each neuron. Forward and
+ * backward passes are then matrix operations, and weights are changed once
+ * per mini-batch by the summed gradient of its rows. The rows of a mini-batch
+ * can be split across processors. At the end of the epoch the weights and
+ * biases are written back to the synapses and neurons, and the neurons are set
+ * to their activations for the last row.
+ *
+ * With a batch size of one this is the same algorithm as
+ * {@link BackpropTrainer} (online learning with momentum on the weights). The
+ * non-input layers must use linear or sigmoidal update rules, and only
+ * synapses between consecutive layers are trained. Noise and external inputs
+ * to neurons are ignored while training.
+ */
+public class MatrixBackpropTrainer extends IterableTrainer {
+
+    /**
+     * The pool shared by all matrix backprop trainers. Its worker threads are
+     * daemons, so it need not be shut down.
+     */
+    private static final ForkJoinPool POOL = new ForkJoinPool();
+
+    /** The smallest number of rows worth handing to a separate thread. */
+    private static final int MIN_ROWS_PER_THREAD = 8;
+
+    /** Default learning rate. */
+    private static final double DEFAULT_LEARNING_RATE = .25;
+
+    /** Default momentum. */
+    private static final double DEFAULT_MOMENTUM = .9;
+
+    /** Current error. */
+    private double mse;
+
+    /** Learning rate. */
+    private double learningRate = DEFAULT_LEARNING_RATE;
+
+    /** Momentum. Must be between 0 and 1. */
+    private double momentum = DEFAULT_MOMENTUM;
+
+    /** Number of rows whose gradients are summed before weights change. */
+    private int batchSize = 1;
+
+    /** Whether to split the rows of each mini-batch across processors. */
+    private boolean parallel;
+
+    /** Internal representation of network. */
+    private List<List<Neuron>> layers;
+
+    /**
+     * Weight deltas from the last weight change, one array per layer (the
+     * first is unused). Kept between epochs, for momentum.
+     */
+    private double[][] lastWeightDeltas;
+
+    /**
+     * Construct the matrix backprop trainer.
+     *
+     * @param network the network
+     * @param layers the layers to train
+     */
+    public MatrixBackpropTrainer(Trainable network, List<List<Neuron>> layers) {
+        super(network);
+        this.layers = layers;
+        this.setIteration(0);
+        mse = 0;
+    }
+
+    // One pass through the training data
+    @Override
+    public void apply() {
+        mse = 0;
+
+        int numRows = getMinimumNumRows(network);
+        int numInputs = network.getInputNeurons().size();
+
+        if ((numRows == 0) || (numInputs == 0)) {
+            return;
+        }
+
+        network.initNetwork();
+        Layers m = new Layers();
+        double[][] inputs = network.getTrainingSet().getInputData();
+        double[][] targets = network.getTrainingSet().getTargetData();
+        int numWorkers = parallel ? Math.max(1, Math.min(
+                POOL.getParallelism(), batchSize / MIN_ROWS_PER_THREAD)) : 1;
+        final List<Worker> workers = new ArrayList<Worker>(numWorkers);
+        for (int i = 0; i < numWorkers; i++) {
+            workers.add(new Worker(m));
+        }
+        Worker total = workers.get(0);
+        Worker last = total;
+
+        for (int start = 0; start < numRows; start += batchSize) {
+            int end = Math.min(start + batchSize, numRows);
+            int chunk = (int) Math.ceil((end - start) / (double) numWorkers);
+            if (numWorkers == 1 || end - start < 2 * MIN_ROWS_PER_THREAD) {
+                total.run(inputs, targets, start, end);
+                last = total;
+            } else {
+                List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+                for (int i = 0; i < numWorkers; i++) {
+                    int lo = start + i * chunk;
+                    int hi = Math.min(lo + chunk, end);
+                    if (lo < hi) {
+                        tasks.add(workers.get(i).task(inputs, targets, lo, hi));
+                        if (hi == end) {
+                            last = workers.get(i);
+                        }
+                    } else {
+                        workers.get(i).clear();
+                    }
+                }
+                for (Future<Void> future : POOL.invokeAll(tasks)) {
+                    try {
+                        future.get();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    } catch (ExecutionException e) {
+                        throw new RuntimeException(e.getCause());
+                    }
+                }
+                for (int i = 1; i < numWorkers; i++) {
+                    total.add(workers.get(i));
+                }
+            }
+            mse += total.sse;
+            m.step(total);
+        }
+
+        m.writeBack(last);
+
+        // Update MSE
+        mse = mse / (numRows * network.getOutputNeurons().size());
+        incrementIteration();
+        fireErrorUpdated();
+    }
+
+    /**
+     * Dense weight matrices, biases and activation functions of the layers,
+     * read from the network at the start of an epoch.
+     */
+    private class Layers {
+
+        /** Number of neurons in each layer. */
+        private final int[] sizes;
+
+        /**
+         * Weights into each layer, row major: the weight from neuron i of
+         * layer l - 1 to neuron j of layer l is weights[l][j * sizes[l - 1] +
+         * i]. The first array is unused.
+         */
+        private final double[][] weights;
+
+        /** Lower bound on each weight (includes polarity and freezing). */
+        private final double[][] lowerBounds;
+
+        /** Upper bound on each weight (includes polarity and freezing). */
+        private final double[][] upperBounds;
+
+        /** The synapse for each weight, or null if there is none. */
+        private final Synapse[][] synapses;
+
+        /** Bias of each neuron. */
+        private final double[][] biases;
+
+        /** Update rule of each neuron, for derivatives. */
+        private final DifferentiableUpdateRule[][] rules;
+
+        /**
+         * Read the layers from the network.
+         *
+         * @throws IllegalArgumentException if a neuron's update rule is not
+         *             supported or a synapse does not connect consecutive
+         *             layers
+         */
+        Layers() {
+            int numLayers = layers.size();
+            sizes = new int[numLayers];
+            for (int l = 0; l < numLayers; l++) {
+                sizes[l] = layers.get(l).size();
+            }
+            weights = new double[numLayers][];
+            lowerBounds = new double[numLayers][];
+            upperBounds = new double[numLayers][];
+            synapses = new Synapse[numLayers][];
+            biases = new double[numLayers][];
+            rules = new DifferentiableUpdateRule[numLayers][];
+            if (lastWeightDeltas == null
+                    || lastWeightDeltas.length != numLayers) {
+                lastWeightDeltas = new double[numLayers][];
+            }
+            for (int l = 1; l < numLayers; l++) {
+                Map<Neuron, Integer> prev =
+                        new IdentityHashMap<Neuron, Integer>();
+                for (Neuron neuron : layers.get(l - 1)) {
+                    prev.put(neuron, prev.size());
+                }
+                List<Neuron> layer = layers.get(l);
+                int n = sizes[l - 1] * sizes[l];
+                weights[l] = new double[n];
+                lowerBounds[l] = new double[n];
+                upperBounds[l] = new double[n];
+                synapses[l] = new Synapse[n];
+                biases[l] = new double[sizes[l]];
+                rules[l] = new DifferentiableUpdateRule[sizes[l]];
+                if (lastWeightDeltas[l] == null
+                        || lastWeightDeltas[l].length != n) {
+                    lastWeightDeltas[l] = new double[n];
+                }
+                for (int j = 0; j < sizes[l]; j++) {
+                    Neuron neuron = layer.get(j);
+                    NeuronUpdateRule rule = neuron.getUpdateRule();
+                    if (!(rule instanceof LinearRule)
+                            && !(rule instanceof SigmoidalRule)) {
+                        throw new IllegalArgumentException("Neuron "
+                                + neuron.getId() + " has a "
+                                + rule.getDescription() + " rule; only linear"
+                                + " and sigmoidal rules can be trained");
+                    }
+                    rules[l][j] = (DifferentiableUpdateRule) rule;
+                    biases[l][j] = ((BiasedUpdateRule) rule).getBias();
+                    for (Synapse s : neuron.getFanIn()) {
+                        Integer i = prev.get(s.getSource());
+                        if (i == null) {
+                            throw new IllegalArgumentException("Synapse "
+                                    + s.getId() + " does not come from the"
+                                    + " previous layer");
+                        }
+                        int k = j * sizes[l - 1] + i;
+                        synapses[l][k] = s;
+                        weights[l][k] = s.getStrength();
+                        if (s.isFrozen()) {
+                            lowerBounds[l][k] = s.getStrength();
+                            upperBounds[l][k] = s.getStrength();
+                        } else {
+                            lowerBounds[l][k] = s.getLowerBound();
+                            upperBounds[l][k] = s.getUpperBound();
+                            Polarity p = s.getSource().getPolarity();
+                            if (p == Polarity.EXCITATORY) {
+                                lowerBounds[l][k] = Math.max(0,
+                                        lowerBounds[l][k]);
+                            } else if (p == Polarity.INHIBITORY) {
+                                upperBounds[l][k] = Math.min(0,
+                                        upperBounds[l][k]);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Compute the activation of a neuron from its weighted input.
+         *
+         * @param l layer of the neuron
+         * @param j index of the neuron in its layer
+         * @param wtdInput weighted input to the neuron
+         * @return the activation
+         */
+        double activation(final int l, final int j, final double wtdInput) {
+            DifferentiableUpdateRule rule = rules[l][j];
+            if (rule instanceof SigmoidalRule) {
+                SigmoidalRule sr = (SigmoidalRule) rule;
+                SquashingFunction sf = sr.getSquashFunctionType();
+                return sf.valueOf(wtdInput + biases[l][j],
+                        sr.getUpperBound(), sr.getLowerBound(), sr.getSlope());
+            } else {
+                LinearRule lr = (LinearRule) rule;
+                double val = lr.getSlope() * wtdInput + biases[l][j];
+                return lr.isClipped() ? lr.clip(val) : val;
+            }
+        }
+
+        /**
+         * Change the weights and biases by a summed gradient.
+         *
+         * @param gradient the gradient
+         */
+        void step(final Worker gradient) {
+            for (int l = 1; l < sizes.length; l++) {
+                double[] w = weights[l];
+                double[] g = gradient.weightGradients[l];
+                double[] last = lastWeightDeltas[l];
+                double[] lo = lowerBounds[l];
+                double[] hi = upperBounds[l];
+                for (int k = 0, n = w.length; k < n; k++) {
+                    double delta = learningRate * g[k] + momentum * last[k];
+                    last[k] = delta;
+                    double val = w[k] + delta;
+                    w[k] = val > hi[k] ? hi[k] : (val < lo[k] ? lo[k] : val);
+                }
+                double[] b = biases[l];
+                double[] gb = gradient.biasGradients[l];
+                for (int j = 0; j < b.length; j++) {
+                    b[j] += learningRate * gb[j];
+                }
+            }
+        }
+
+        /**
+         * Write weights and biases back to the network, and set activations to
+         * those computed for the last row.
+         *
+         * @param last the worker which processed the last row
+         */
+        void writeBack(final Worker last) {
+            for (int l = 1; l < sizes.length; l++) {
+                for (int k = 0; k < weights[l].length; k++) {
+                    if (synapses[l][k] != null) {
+                        synapses[l][k].setStrength(weights[l][k]);
+                    }
+                }
+                List<Neuron> layer = layers.get(l);
+                for (int j = 0; j < sizes[l]; j++) {
+                    ((BiasedUpdateRule) layer.get(j).getUpdateRule())
+                            .setBias(biases[l][j]);
+                }
+            }
+            for (int l = 0; l < sizes.length; l++) {
+                List<Neuron> layer = layers.get(l);
+                for (int j = 0; j < sizes[l]; j++) {
+                    layer.get(j).forceSetActivation(last.activations[l][j]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the summed error gradient over a range of rows, with its own
+     * buffers so that workers can run in parallel.
+     */
+    private class Worker {
+
+        /** The layers. */
+        private final Layers m;
+
+        /** Activation of each neuron for the current row. */
+        private final double[][] activations;
+
+        /** Weighted input of each neuron for the current row. */
+        private final double[][] wtdInputs;
+
+        /** Error signal of each neuron for the current row. */
+        private final double[][] errors;
+
+        /** Summed weight gradients (error signal times source activation). */
+        private final double[][] weightGradients;
+
+        /** Summed bias gradients. */
+        private final double[][] biasGradients;
+
+        /** Summed squared output error. */
+        private double sse;
+
+        /**
+         * @param m the layers
+         */
+        Worker(final Layers m) {
+            this.m = m;
+            int numLayers = m.sizes.length;
+            activations = new double[numLayers][];
+            wtdInputs = new double[numLayers][];
+            errors = new double[numLayers][];
+            weightGradients = new double[numLayers][];
+            biasGradients = new double[numLayers][];
+            for (int l = 0; l < numLayers; l++) {
+                activations[l] = new double[m.sizes[l]];
+                wtdInputs[l] = new double[m.sizes[l]];
+                errors[l] = new double[m.sizes[l]];
+                biasGradients[l] = new double[m.sizes[l]];
+                if (l > 0) {
+                    weightGradients[l] = new double[m.weights[l].length];
+                }
+            }
+        }
+
+        /**
+         * Zero the summed gradients and error.
+         */
+        void clear() {
+            for (int l = 1; l < weightGradients.length; l++) {
+                Arrays.fill(weightGradients[l], 0);
+                Arrays.fill(biasGradients[l], 0);
+            }
+            sse = 0;
+        }
+
+        /**
+         * Add another worker's summed gradients and error to this one's.
+         *
+         * @param other the other worker
+         */
+        void add(final Worker other) {
+            for (int l = 1; l < weightGradients.length; l++) {
+                double[] g = weightGradients[l];
+                double[] og = other.weightGradients[l];
+                for (int k = 0; k < g.length; k++) {
+                    g[k] += og[k];
+                }
+                double[] gb = biasGradients[l];
+                double[] ogb = other.biasGradients[l];
+                for (int j = 0; j < gb.length; j++) {
+                    gb[j] += ogb[j];
+                }
+            }
+            sse += other.sse;
+        }
+
+        /**
+         * @param inputs input data
+         * @param targets target data
+         * @param start first row
+         * @param end one past the last row
+         * @return a task which calls {@link #run}
+         */
+        Callable<Void> task(final double[][] inputs, final double[][] targets,
+                final int start, final int end) {
+            return new Callable<Void>() {
+                public Void call() {
+                    run(inputs, targets, start, end);
+                    return null;
+                }
+            };
+        }
+
+        /**
+         * Sum the gradients of a range of rows.
+         *
+         * @param inputs input data
+         * @param targets target data
+         * @param start first row
+         * @param end one past the last row
+         */
+        void run(final double[][] inputs, final double[][] targets,
+                final int start, final int end) {
+            clear();
+            int out = m.sizes.length - 1;
+            for (int row = start; row < end; row++) {
+                forward(inputs[row]);
+
+                // Output layer
+                for (int j = 0; j < m.sizes[out]; j++) {
+                    double error = targets[row][j] - activations[out][j];
+                    errors[out][j] = error
+                            * m.rules[out][j].getDerivative(wtdInputs[out][j]);
+                    sse += error * error;
+                }
+
+                // Hidden layers
+                for (int l = out; l > 1; l--) {
+                    double[] w = m.weights[l];
+                    int n = m.sizes[l - 1];
+                    double[] prevErrors = errors[l - 1];
+                    Arrays.fill(prevErrors, 0);
+                    for (int j = 0; j < m.sizes[l]; j++) {
+                        double e = errors[l][j];
+                        int offset = j * n;
+                        for (int i = 0; i < n; i++) {
+                            prevErrors[i] += w[offset + i] * e;
+                        }
+                    }
+                    for (int i = 0; i < n; i++) {
+                        prevErrors[i] *= m.rules[l - 1][i]
+                                .getDerivative(wtdInputs[l - 1][i]);
+                    }
+                }
+
+                // Gradients
+                for (int l = 1; l <= out; l++) {
+                    double[] g = weightGradients[l];
+                    double[] src = activations[l - 1];
+                    int n = m.sizes[l - 1];
+                    for (int j = 0; j < m.sizes[l]; j++) {
+                        double e = errors[l][j];
+                        int offset = j * n;
+                        for (int i = 0; i < n; i++) {
+                            g[offset + i] += e * src[i];
+                        }
+                        biasGradients[l][j] += e;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Compute weighted inputs and activations for one row.
+         *
+         * @param input the input row
+         */
+        private void forward(final double[] input) {
+            System.arraycopy(input, 0, activations[0], 0, m.sizes[0]);
+            for (int l = 1; l < m.sizes.length; l++) {
+                double[] w = m.weights[l];
+                double[] src = activations[l - 1];
+                int n = m.sizes[l - 1];
+                for (int j = 0; j < m.sizes[l]; j++) {
+                    double sum = 0;
+                    int offset = j * n;
+                    for (int i = 0; i < n; i++) {
+                        sum += w[offset + i] * src[i];
+                    }
+                    wtdInputs[l][j] = sum;
+                    activations[l][j] = m.activation(l, j, sum);
+                }
+            }
+        }
+    }
+
+    /**
+     * Randomize the network.
+     */
+    public void randomize() {
+        for (int l = 1; l < layers.size(); l++) {
+            for (Neuron neuron : layers.get(l)) {
+                neuron.clear(); // Looks nicer in the GUI
+                // Randomize uniformly in -.05,.05.
+                for (Synapse synapse : neuron.getFanIn()) {
+                    synapse.setStrength(.1 * RandomStreams.nextDouble() - .05);
+                }
+                ((BiasedUpdateRule) neuron.getUpdateRule()).setBias(.1
+                        * RandomStreams.nextDouble() - .05);
+            }
+        }
+        lastWeightDeltas = null;
+        revalidateSynapseGroups();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public double getError() {
+        return mse;
+    }
+
+    /**
+     * @return the learningRate
+     */
+    public double getLearningRate() {
+        return learningRate;
+    }
+
+    /**
+     * @param learningRate the learningRate to set
+     */
+    public void setLearningRate(double learningRate) {
+        this.learningRate = learningRate;
+    }
+
+    /**
+     * @return the momentum
+     */
+    public double getMomentum() {
+        return momentum;
+    }
+
+    /**
+     * @param momentum the momentum to set
+     */
+    public void setMomentum(double momentum) {
+        this.momentum = momentum;
+    }
+
+    /**
+     * @return the number of rows whose gradients are summed before the weights
+     *         are changed
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @param batchSize the number of rows whose gradients are summed before
+     *            the weights are changed; 1 for online learning
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * @return whether the rows of each mini-batch are split across processors
+     */
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * @param parallel whether to split the rows of each mini-batch across
+     *            processors; only worthwhile for large batches
+     */
+    public void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+}
@@ -22,7 +22,9 @@ import org.simbrain.network.subnetworks.SOMNetwork;
 
 /**
  * A trainer for SOM Networks. Just goes through input data sets input node and
- * updates the SOM Group, which has the training code built in.
+ * updates the SOM Group, which has the training code built in. In batch mode
+ * each epoch is instead a single batch update of the SOM Group (see
+ * {@link org.simbrain.network.subnetworks.SOMGroup#trainBatch}).
  *
  * TODO: Possibly refactor to an "unsupervised trainer" class for use by
  * competitive too, which is similar.
@@ -40,6 +42,9 @@ public class SOMTrainer extends Trainer {
     /** Iteration number. An epoch. */
     private int iteration = 0;
 
+    /** Whether epochs are trained as batch updates. */
+    private boolean batchMode = false;
+
     /**
      * Construct the UnsupervisedNeuronGroupTrainer trainer.
      *
@@ -59,11 +64,17 @@ public class SOMTrainer extends Trainer {
             throw new DataNotInitializedException("Input data not initalized");
         }
 
-        int numRows = network.getTrainingSet().getInputData().length;
-        for (int row = 0; row < numRows; row++) {
-            double[] inputs = network.getTrainingSet().getInputData()[row];
-            network.getInputLayer().forceSetActivations(inputs);
-            network.getSom().update(); // Call a function here to be overriden in subclasses?
+        if (batchMode) {
+            network.getSom().trainBatch(network.getInputLayer(),
+                    network.getTrainingSet().getInputData());
+        } else {
+            int numRows = network.getTrainingSet().getInputData().length;
+            for (int row = 0; row < numRows; row++) {
+                double[] inputs = network.getTrainingSet().getInputData()[row];
+                network.getInputLayer().forceSetActivations(inputs);
+                // Call a function here to be overriden in subclasses?
+                network.getSom().update();
+            }
         }
         incrementIteration();
 
@@ -88,6 +99,20 @@ public class SOMTrainer extends Trainer {
         this.updateCompleted = updateCompleted;
     }
 
+    /**
+     * @return whether epochs are trained as batch updates
+     */
+    public boolean isBatchMode() {
+        return batchMode;
+    }
+
+    /**
+     * @param batchMode whether epochs should be trained as batch updates
+     */
+    public void setBatchMode(final boolean batchMode) {
+        this.batchMode = batchMode;
+    }
+
     /**
      * Increment the iteration number by 1.
      */
@@ -0,0 +1,289 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.network.trainers;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Solves a least squares problem S W = D (optionally ridge regularized) from
+ * rows of S and D given one at a time, without storing S or D. Rows are
+ * collected into blocks, and each full block is added to the correlation
+ * matrices R = S'S and P = S'D on a fork/join pool while the next block is
+ * filled. The weights are then found by a Cholesky solve of
+ * (R + ridge I) W = P rather than by inverting R.
+ *
+ * Memory use is proportional to the square of the number of inputs and does
+ * not depend on the number of rows.
+ */
+public class StreamingLeastSquares implements LMSOffline.RowSink {
+
+    /**
+     * The pool shared by all accumulators. Its worker threads are daemons, so
+     * it need not be shut down.
+     */
+    private static final ForkJoinPool POOL = new ForkJoinPool();
+
+    /** Number of rows collected before they are added to R and P. */
+    private static final int BLOCK_ROWS = 256;
+
+    /** Rows of R handled by one task. */
+    private static final int GRAIN = 8;
+
+    /** Number of inputs (columns of S). */
+    private final int inputs;
+
+    /** Number of outputs (columns of D). */
+    private final int outputs;
+
+    /** Upper triangle of R = S'S, row by row. */
+    private final double[] gram;
+
+    /** P = S'D, row by row. */
+    private final double[] cross;
+
+    /** The block being filled: input rows. */
+    private double[][] states;
+
+    /** The block being filled: target rows. */
+    private double[][] targets;
+
+    /** The other block, possibly still being added. */
+    private double[][] spareStates;
+
+    /** Targets of the other block. */
+    private double[][] spareTargets;
+
+    /** Number of rows in the block being filled. */
+    private int blockSize;
+
+    /** The addition of the previous block, if not yet joined. */
+    private ForkJoinTask<?> pending;
+
+    /** Total number of rows added. */
+    private long rowCount;
+
+    /**
+     * Construct an accumulator.
+     *
+     * @param inputs number of inputs (columns of S)
+     * @param outputs number of outputs (columns of D)
+     */
+    public StreamingLeastSquares(final int inputs, final int outputs) {
+        this.inputs = inputs;
+        this.outputs = outputs;
+        gram = new double[inputs * inputs];
+        cross = new double[inputs * outputs];
+        states = new double[BLOCK_ROWS][inputs];
+        targets = new double[BLOCK_ROWS][outputs];
+        spareStates = new double[BLOCK_ROWS][inputs];
+        spareTargets = new double[BLOCK_ROWS][outputs];
+    }
+
+    /**
+     * Add one row. The arrays are copied, so callers may reuse them.
+     *
+     * @param state the row of S
+     * @param target the row of D
+     */
+    @Override
+    public void addRow(final double[] state, final double[] target) {
+        System.arraycopy(state, 0, states[blockSize], 0, inputs);
+        System.arraycopy(target, 0, targets[blockSize], 0, outputs);
+        blockSize++;
+        rowCount++;
+        if (blockSize == BLOCK_ROWS) {
+            submitBlock();
+        }
+    }
+
+    /**
+     * Start adding the current block to R and P, and switch to the other
+     * block once its own addition has finished.
+     */
+    private void submitBlock() {
+        if (pending != null) {
+            pending.join();
+        }
+        pending = POOL.submit(new BlockTask(states, targets, blockSize, 0,
+                inputs));
+        double[][] s = states;
+        double[][] t = targets;
+        states = spareStates;
+        targets = spareTargets;
+        spareStates = s;
+        spareTargets = t;
+        blockSize = 0;
+    }
+
+    /**
+     * Add any remaining rows and wait for all additions to finish.
+     */
+    private void flush() {
+        if (blockSize > 0) {
+            submitBlock();
+        }
+        if (pending != null) {
+            pending.join();
+            pending = null;
+        }
+    }
+
+    /**
+     * @return the number of rows added so far
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Solve for the weights using the rows added so far.
+     *
+     * @param ridge the value added to the diagonal of R; 0 for none
+     * @return the weights, one row per input and one column per output
+     * @throws ArithmeticException if R + ridge I is not positive definite,
+     *             i.e. the inputs are linearly dependent and no ridge is set
+     */
+    public double[][] solve(final double ridge) {
+        flush();
+        int n = inputs;
+        // Cholesky factorization: R + ridge I = L L', L kept row by row
+        double[][] l = new double[n][];
+        for (int i = 0; i < n; i++) {
+            double[] li = new double[i + 1];
+            l[i] = li;
+            for (int j = 0; j <= i; j++) {
+                double[] lj = l[j];
+                // R is symmetric; its upper triangle holds (j, i)
+                double sum = gram[j * n + i];
+                if (i == j) {
+                    sum += ridge;
+                }
+                for (int k = 0; k < j; k++) {
+                    sum -= li[k] * lj[k];
+                }
+                if (i == j) {
+                    if (!(sum > 0)) {
+                        throw new ArithmeticException(
+                                "Correlation matrix is not positive definite");
+                    }
+                    li[i] = Math.sqrt(sum);
+                } else {
+                    li[j] = sum / lj[j];
+                }
+            }
+        }
+
+        double[][] w = new double[n][outputs];
+        double[] y = new double[n];
+        for (int c = 0; c < outputs; c++) {
+            // Forward substitution: L y = P(:, c)
+            for (int i = 0; i < n; i++) {
+                double sum = cross[i * outputs + c];
+                double[] li = l[i];
+                for (int k = 0; k < i; k++) {
+                    sum -= li[k] * y[k];
+                }
+                y[i] = sum / li[i];
+            }
+            // Back substitution: L' w = y
+            for (int i = n - 1; i >= 0; i--) {
+                double sum = y[i];
+                for (int k = i + 1; k < n; k++) {
+                    sum -= l[k][i] * w[k][c];
+                }
+                w[i][c] = sum / l[i][i];
+            }
+        }
+        return w;
+    }
+
+    /**
+     * Adds a block of rows to a range of rows of R (upper triangle only) and
+     * P, splitting the range while it is larger than {@link #GRAIN}. Ranges
+     * are disjoint, so tasks never write the same entries.
+     */
+    private final class BlockTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        /** Input rows of the block. */
+        private final double[][] blockStates;
+
+        /** Target rows of the block. */
+        private final double[][] blockTargets;
+
+        /** Number of rows in the block. */
+        private final int rows;
+
+        /** First row of R in this task's range. */
+        private final int lo;
+
+        /** One past the last row of R in this task's range. */
+        private final int hi;
+
+        /**
+         * @param blockStates input rows of the block
+         * @param blockTargets target rows of the block
+         * @param rows number of rows in the block
+         * @param lo first row of R
+         * @param hi one past the last row of R
+         */
+        BlockTask(final double[][] blockStates, final double[][] blockTargets,
+                final int rows, final int lo, final int hi) {
+            this.blockStates = blockStates;
+            this.blockTargets = blockTargets;
+            this.rows = rows;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > GRAIN) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new BlockTask(blockStates, blockTargets, rows, lo,
+                        mid), new BlockTask(blockStates, blockTargets, rows,
+                        mid, hi));
+                return;
+            }
+            int n = inputs;
+            for (int t = 0; t < rows; t++) {
+                double[] x = blockStates[t];
+                double[] d = blockTargets[t];
+                for (int i = lo; i < hi; i++) {
+                    double xi = x[i];
+                    if (xi == 0) {
+                        continue;
+                    }
+                    int row = i * n;
+                    for (int j = i; j < n; j++) {
+                        gram[row + j] += xi * x[j];
+                    }
+                    row = i * outputs;
+                    for (int k = 0; k < outputs; k++) {
+                        cross[row + k] += xi * d[k];
+                    }
+                }
+            }
+        }
+    }
+
+}
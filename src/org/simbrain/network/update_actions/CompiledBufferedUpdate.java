@@ -0,0 +1,224 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.network.update_actions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.simbrain.network.core.Network;
+import org.simbrain.network.core.NetworkUpdateAction;
+import org.simbrain.network.core.Neuron;
+import org.simbrain.network.core.NeuronUpdateRule;
+import org.simbrain.network.core.Synapse;
+import org.simbrain.network.core.SynapseUpdateRule;
+import org.simbrain.network.groups.Group;
+import org.simbrain.network.groups.NeuronGroup;
+import org.simbrain.network.listeners.GroupListener;
+import org.simbrain.network.listeners.NetworkEvent;
+import org.simbrain.network.listeners.NeuronListener;
+import org.simbrain.network.listeners.SynapseListener;
+import org.simbrain.network.update_actions.compiled_tools.CompiledNetwork;
+
+/**
+ * Buffered update of all neurons in the network using a "compiled"
+ * structure-of-arrays representation of the network (see
+ * {@link CompiledNetwork}). Linear, sigmoidal and binary neurons connected by
+ * static synapses are updated with array loops over CSR encoded weights; all
+ * other neurons are updated through their own objects, as in
+ * {@link ConcurrentBufferedUpdate}.
+ *
+ * The compiled arrays are rebuilt lazily on the next invocation after any
+ * neuron, synapse or group event. Code which changes weights or neuron
+ * parameters without firing an event (e.g. scripts or trainers writing
+ * strengths directly) should call {@link #invalidate()} afterwards.
+ */
+public class CompiledBufferedUpdate implements NetworkUpdateAction,
+        NeuronListener, SynapseListener, GroupListener {
+
+    /** Reference to network to update. */
+    private final Network network;
+
+    /** The current compiled representation; null if it must be rebuilt. */
+    private volatile CompiledNetwork compiledNetwork;
+
+    /**
+     * A static factory method that creates a compiled buffered update for a
+     * network and registers it as a listener on that network.
+     *
+     * @param network the network to update
+     * @return the compiled update action
+     */
+    public static CompiledBufferedUpdate createCompiledBufferedUpdate(
+            final Network network) {
+        CompiledBufferedUpdate cbu = new CompiledBufferedUpdate(network);
+        cbu.init();
+        return cbu;
+    }
+
+    /**
+     * @param network the network to update
+     */
+    private CompiledBufferedUpdate(final Network network) {
+        this.network = network;
+    }
+
+    /**
+     * Register this action as a listener on its network. Also used after
+     * opening a network from xml.
+     */
+    public void init() {
+        network.addNeuronListener(this);
+        network.addSynapseListener(this);
+        network.addGroupListener(this);
+        compiledNetwork = null;
+    }
+
+    @Override
+    public void invoke() {
+        CompiledNetwork cn = compiledNetwork;
+        if (cn == null) {
+            cn = compile();
+            compiledNetwork = cn;
+        }
+        cn.update();
+    }
+
+    /**
+     * Build a compiled network from all neurons in the network, excluding
+     * neurons in groups which are in input mode (these are updated by their
+     * group's own update action).
+     *
+     * @return the compiled network
+     */
+    private CompiledNetwork compile() {
+        List<Neuron> neurons = network.getFlatNeuronList();
+        List<Neuron> toCompile = new ArrayList<Neuron>(neurons.size());
+        for (Neuron n : neurons) {
+            if (n.getParentGroup() instanceof NeuronGroup
+                    && ((NeuronGroup) n.getParentGroup()).isInputMode()) {
+                continue;
+            }
+            toCompile.add(n);
+        }
+        return new CompiledNetwork(toCompile);
+    }
+
+    /**
+     * Discard the compiled representation so that it is rebuilt from the
+     * neuron and synapse objects on the next update.
+     */
+    public void invalidate() {
+        compiledNetwork = null;
+    }
+
+    /**
+     * @return the current compiled network, compiling it if needed
+     */
+    public CompiledNetwork getCompiledNetwork() {
+        if (compiledNetwork == null) {
+            compiledNetwork = compile();
+        }
+        return compiledNetwork;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Compiled Buffered Update";
+    }
+
+    @Override
+    public String getLongDescription() {
+        return "Compiled Buffered Update (All Neurons)";
+    }
+
+    @Override
+    public void neuronChanged(NetworkEvent<Neuron> networkEvent) {
+        invalidate();
+    }
+
+    @Override
+    public void neuronTypeChanged(NetworkEvent<NeuronUpdateRule> networkEvent) {
+        invalidate();
+    }
+
+    @Override
+    public void labelChanged(NetworkEvent<Neuron> networkEvent) {
+    }
+
+    @Override
+    public void neuronAdded(NetworkEvent<Neuron> networkEvent) {
+        invalidate();
+    }
+
+    @Override
+    public void neuronMoved(NetworkEvent<Neuron> networkEvent) {
+    }
+
+    @Override
+    public void neuronRemoved(NetworkEvent<Neuron> networkEvent) {
+        invalidate();
+    }
+
+    @Override
+    public void synapseRemoved(NetworkEvent<Synapse> networkEvent) {
+        invalidate();
+    }
+
+    @Override
+    public void synapseAdded(NetworkEvent<Synapse> networkEvent) {
+        invalidate();
+    }
+
+    @Override
+    public void synapseChanged(NetworkEvent<Synapse> networkEvent) {
+        invalidate();
+    }
+
+    @Override
+    public void synapseTypeChanged(
+            NetworkEvent<SynapseUpdateRule> networkEvent) {
+        invalidate();
+    }
+
+    @Override
+    public void groupAdded(NetworkEvent<Group> e) {
+        invalidate();
+    }
+
+    @Override
+    public void groupRemoved(NetworkEvent<Group> e) {
+        invalidate();
+    }
+
+    @Override
+    public void groupChanged(NetworkEvent<Group> networkEvent,
+            String changeDescription) {
+        invalidate();
+    }
+
+    @Override
+    public void groupParameterChanged(NetworkEvent<Group> networkEvent) {
+        invalidate();
+    }
+
+    @Override
+    public void groupUpdated(Group group) {
+    }
+
+}
@@ -53,6 +53,7 @@ import org.simbrain.network.update_actions.concurrency_tools.Task;
 import org.simbrain.network.update_actions.concurrency_tools.WaitingTask;
 import org.simbrain.util.SimbrainConstants.Polarity;
 import org.simbrain.util.math.ProbDistribution;
+import org.simbrain.util.math.RandomStreams;
 import org.simbrain.util.math.SimbrainMath;
 import org.simbrain.util.randomizer.PolarizedRandomizer;
 import org.simbrain.util.randomizer.Randomizer;
@@ -546,7 +547,7 @@ public class ConcurrentBufferedUpdate implements NetworkUpdateAction,
         ng.setNeuronType(upRule);
         Randomizer rand = new Randomizer(ProbDistribution.NORMAL);
         for (Neuron n : ng.getNeuronList()) {
-            if (Math.random() < 0.2) {
+            if (RandomStreams.nextDouble() < 0.2) {
                 rand.setParam1(0);
                 rand.setParam2(2);
                 n.setPolarity(Polarity.INHIBITORY);
@@ -0,0 +1,489 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.network.update_actions;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.simbrain.network.core.Network;
+import org.simbrain.network.core.NetworkUpdateAction;
+import org.simbrain.network.core.Neuron;
+import org.simbrain.network.core.NeuronUpdateRule;
+import org.simbrain.network.core.NeuronUpdateRule.InputType;
+import org.simbrain.network.core.Synapse;
+import org.simbrain.network.core.SynapseUpdateRule;
+import org.simbrain.network.groups.Group;
+import org.simbrain.network.groups.NeuronGroup;
+import org.simbrain.network.listeners.GroupListener;
+import org.simbrain.network.listeners.NetworkEvent;
+import org.simbrain.network.listeners.NeuronListener;
+import org.simbrain.network.listeners.SynapseListener;
+import org.simbrain.network.synapse_update_rules.spikeresponders.JumpAndDecay;
+import org.simbrain.network.synapse_update_rules.spikeresponders.SpikeResponder;
+import org.simbrain.network.update_actions.event_tools.SpikeEventRing;
+
+/**
+ * Buffered update of all neurons in the network in which spikes are
+ * propagated as events rather than by polling every synapse on every step.
+ *
+ * A spiking neuron whose afferent synapses all use {@link JumpAndDecay} spike
+ * responders (with a zero baseline and a common time constant) is "event
+ * driven". When one of its source neurons spikes, the synapse strength times
+ * the jump height is posted to a {@link SpikeEventRing} shared by all event
+ * driven neurons of the target's group, in the slot for the current time plus
+ * the synapse delay. Targets then sum only the arriving events, which decay
+ * exactly as the synapses' own responses would. All other neurons are updated
+ * through their own objects, as in {@link BufferedUpdate}.
+ *
+ * A jump and decay responder resets its value when a new spike arrives
+ * rather than adding to it, so when a synapse transmits a spike while its
+ * response to an earlier one has not yet decayed, the remainder of the earlier
+ * response is subtracted from the new event. Since synapses are not polled,
+ * their post-synaptic response values ({@link Synapse#getPsr()}) are not
+ * updated for event driven targets, and delayed synapses never allocate their
+ * own delay lines.
+ *
+ * The rings are rebuilt on the next invocation after any neuron, synapse or
+ * group event, carrying pending events and responses over.
+ */
+public class EventDrivenSpikingUpdate implements NetworkUpdateAction,
+        NeuronListener, SynapseListener, GroupListener {
+
+    /** Reference to network to update. */
+    private final Network network;
+
+    /** The rings of event driven targets, one per group. */
+    private SpikeEventRing[] rings;
+
+    /** Number of updates since the rings were built. */
+    private long step;
+
+    /** True if the rings must be rebuilt before the next update. */
+    private volatile boolean dirty = true;
+
+    /** Neurons which are updated by polling their afferent synapses. */
+    private Neuron[] polled;
+
+    /** Neurons with at least one efferent synapse to an event driven target. */
+    private SpikeSource[] sources;
+
+    /**
+     * A static factory method that creates an event driven spiking update for
+     * a network and registers it as a listener on that network.
+     *
+     * @param network the network to update
+     * @return the update action
+     */
+    public static EventDrivenSpikingUpdate createEventDrivenSpikingUpdate(
+            final Network network) {
+        EventDrivenSpikingUpdate edsu = new EventDrivenSpikingUpdate(network);
+        edsu.init();
+        return edsu;
+    }
+
+    /**
+     * @param network the network to update
+     */
+    private EventDrivenSpikingUpdate(final Network network) {
+        this.network = network;
+    }
+
+    /**
+     * Register this action as a listener on its network. Also used after
+     * opening a network from xml.
+     */
+    public void init() {
+        network.addNeuronListener(this);
+        network.addSynapseListener(this);
+        network.addGroupListener(this);
+        dirty = true;
+    }
+
+    @Override
+    public void invoke() {
+        if (dirty) {
+            dirty = false;
+            build();
+        }
+        SpikeEventRing[] currentRings = rings;
+        // Post spikes as of the start of this step, which is when polled
+        // synapses would see them.
+        double timeStep = network.getTimeStep();
+        for (SpikeSource source : sources) {
+            if (source.neuron.isSpike()) {
+                source.post(timeStep);
+            }
+        }
+        step++;
+        for (SpikeEventRing ring : currentRings) {
+            ring.deliver(timeStep);
+            Neuron[] targets = ring.getTargets();
+            for (int i = 0, n = targets.length; i < n; i++) {
+                Neuron target = targets[i];
+                target.setSpikeEventInput(ring.getResponse(i));
+                target.update();
+                target.setSpikeEventInput(null);
+                if (!target.getUpdateRule().isSkipsSynapticUpdates()) {
+                    target.updateFanIn();
+                }
+            }
+        }
+        for (Neuron neuron : polled) {
+            neuron.update();
+            if (!neuron.getUpdateRule().isSkipsSynapticUpdates()) {
+                neuron.updateFanIn();
+            }
+        }
+        for (SpikeEventRing ring : currentRings) {
+            for (Neuron target : ring.getTargets()) {
+                target.setToBufferVals();
+            }
+        }
+        for (Neuron neuron : polled) {
+            neuron.setToBufferVals();
+        }
+    }
+
+    /**
+     * Sort the network's neurons (excluding neurons in groups which are in
+     * input mode) into event driven and polled neurons, build a ring for the
+     * event driven neurons of each group, and find their sources. Events and
+     * responses pending in the previous rings are carried over.
+     */
+    private void build() {
+        SpikeEventRing[] oldRings = rings == null ? new SpikeEventRing[0]
+                : rings;
+        Map<Group, List<Neuron>> targetsByGroup =
+                new LinkedHashMap<Group, List<Neuron>>();
+        List<Neuron> polledList = new ArrayList<Neuron>();
+        for (Neuron n : network.getFlatNeuronList()) {
+            if (n.getParentGroup() instanceof NeuronGroup
+                    && ((NeuronGroup) n.getParentGroup()).isInputMode()) {
+                continue;
+            }
+            if (!Double.isNaN(getTimeConstant(n))) {
+                List<Neuron> targets = targetsByGroup.get(n.getParentGroup());
+                if (targets == null) {
+                    targets = new ArrayList<Neuron>();
+                    targetsByGroup.put(n.getParentGroup(), targets);
+                }
+                targets.add(n);
+            } else {
+                polledList.add(n);
+            }
+        }
+
+        // Old responses, to carry over
+        Map<Neuron, double[]> oldResponses =
+                new IdentityHashMap<Neuron, double[]>();
+        for (SpikeEventRing ring : oldRings) {
+            Neuron[] targets = ring.getTargets();
+            for (int i = 0; i < targets.length; i++) {
+                oldResponses.put(targets[i], ring.getResponse(i));
+            }
+        }
+
+        // New rings
+        Map<Neuron, Integer> index = new IdentityHashMap<Neuron, Integer>();
+        Map<Neuron, SpikeEventRing> ringOf =
+                new IdentityHashMap<Neuron, SpikeEventRing>();
+        List<SpikeEventRing> ringList = new ArrayList<SpikeEventRing>();
+        for (List<Neuron> group : targetsByGroup.values()) {
+            Neuron[] targets = group.toArray(new Neuron[group.size()]);
+            double[] timeConstants = new double[targets.length];
+            int maxDelay = 0;
+            for (int i = 0; i < targets.length; i++) {
+                timeConstants[i] = getTimeConstant(targets[i]);
+                for (Synapse s : targets[i].getFanIn()) {
+                    maxDelay = Math.max(maxDelay, s.getDelay());
+                }
+            }
+            SpikeEventRing ring = new SpikeEventRing(targets, timeConstants,
+                    maxDelay);
+            for (int i = 0; i < targets.length; i++) {
+                index.put(targets[i], i);
+                ringOf.put(targets[i], ring);
+                double[] response = ring.getResponse(i);
+                double[] old = oldResponses.get(targets[i]);
+                if (old != null) {
+                    response[0] = old[0];
+                    response[1] = old[1];
+                } else {
+                    // Coming from polled updates: start from the synapses'
+                    // current (undelayed) responses
+                    for (Synapse s : targets[i].getFanIn()) {
+                        if (s.isEnabled() && s.getDelay() == 0) {
+                            if (s.getPsr() > 0) {
+                                response[0] += s.getPsr();
+                            } else {
+                                response[1] += s.getPsr();
+                            }
+                        }
+                    }
+                }
+            }
+            ringList.add(ring);
+        }
+
+        // Carry over pending events whose targets are still event driven
+        for (SpikeEventRing ring : oldRings) {
+            for (int d = 0, len = ring.getLength(); d < len; d++) {
+                for (int e = 0, n = ring.getPendingCount(d); e < n; e++) {
+                    Neuron target = ring.getPendingTarget(d, e);
+                    SpikeEventRing newRing = ringOf.get(target);
+                    if (newRing != null) {
+                        newRing.post(index.get(target), d,
+                                ring.getPendingValue(d, e));
+                    }
+                }
+            }
+        }
+
+        // Sources
+        Map<Neuron, List<Synapse>> efferents =
+                new LinkedHashMap<Neuron, List<Synapse>>();
+        for (Neuron target : ringOf.keySet()) {
+            for (Synapse s : target.getFanIn()) {
+                List<Synapse> out = efferents.get(s.getSource());
+                if (out == null) {
+                    out = new ArrayList<Synapse>();
+                    efferents.put(s.getSource(), out);
+                }
+                out.add(s);
+            }
+        }
+        SpikeSource[] newSources = new SpikeSource[efferents.size()];
+        int k = 0;
+        for (Map.Entry<Neuron, List<Synapse>> entry : efferents.entrySet()) {
+            List<Synapse> out = entry.getValue();
+            SpikeSource source = new SpikeSource(entry.getKey(), out.size());
+            for (int i = 0; i < out.size(); i++) {
+                Synapse s = out.get(i);
+                source.synapses[i] = s;
+                source.rings[i] = ringOf.get(s.getTarget());
+                source.targets[i] = index.get(s.getTarget());
+            }
+            newSources[k++] = source;
+        }
+
+        sources = newSources;
+        polled = polledList.toArray(new Neuron[polledList.size()]);
+        step = 0;
+        rings = ringList.toArray(new SpikeEventRing[ringList.size()]);
+    }
+
+    /**
+     * Returns the time constant with which the summed response of an event
+     * driven neuron decays, or NaN if the neuron cannot be event driven. A
+     * neuron can be event driven if it is a spiking neuron using synaptic
+     * inputs and all its afferent synapses use jump and decay responders with
+     * a zero baseline and the same time constant.
+     *
+     * @param neuron the neuron to check
+     * @return the time constant, or NaN
+     */
+    private static double getTimeConstant(final Neuron neuron) {
+        NeuronUpdateRule rule = neuron.getUpdateRule();
+        if (!rule.isSpikingNeuron()
+                || rule.getInputType() != InputType.SYNAPTIC) {
+            return Double.NaN;
+        }
+        double tau = 1;
+        boolean first = true;
+        for (Synapse s : neuron.getFanIn()) {
+            SpikeResponder sr = s.getSpikeResponder();
+            if (sr == null || sr.getClass() != JumpAndDecay.class) {
+                return Double.NaN;
+            }
+            JumpAndDecay jad = (JumpAndDecay) sr;
+            if (jad.getBaseLine() != 0
+                    || (!first && jad.getTimeConstant() != tau)) {
+                return Double.NaN;
+            }
+            tau = jad.getTimeConstant();
+            first = false;
+        }
+        return tau;
+    }
+
+    /**
+     * Discard the rings so that they are rebuilt on the next update.
+     */
+    public void invalidate() {
+        dirty = true;
+    }
+
+    /**
+     * A neuron with efferent synapses to event driven targets, and where to
+     * post its spikes.
+     */
+    private class SpikeSource {
+
+        /** The source neuron. */
+        private final Neuron neuron;
+
+        /** Efferent synapses to event driven targets. */
+        private final Synapse[] synapses;
+
+        /** Ring of each synapse's target. */
+        private final SpikeEventRing[] rings;
+
+        /** Index of each synapse's target in its ring. */
+        private final int[] targets;
+
+        /** Step at which each synapse's last event arrives. */
+        private final long[] lastArrivals;
+
+        /** Value of each synapse's last event. */
+        private final double[] lastValues;
+
+        /**
+         * @param neuron the source neuron
+         * @param size number of efferent synapses to event driven targets
+         */
+        SpikeSource(final Neuron neuron, final int size) {
+            this.neuron = neuron;
+            synapses = new Synapse[size];
+            rings = new SpikeEventRing[size];
+            targets = new int[size];
+            lastArrivals = new long[size];
+            lastValues = new double[size];
+        }
+
+        /**
+         * Post a spike from this source to all of its targets. Strengths,
+         * delays and jump heights are read when the spike is sent, so
+         * learning and edits which fire no events are picked up.
+         *
+         * @param timeStep the network time step
+         */
+        void post(final double timeStep) {
+            for (int i = 0, n = synapses.length; i < n; i++) {
+                Synapse s = synapses[i];
+                if (!s.isEnabled()) {
+                    continue;
+                }
+                SpikeResponder sr = s.getSpikeResponder();
+                if (!(sr instanceof JumpAndDecay)) {
+                    // Responder replaced without an event; poll from now on
+                    invalidate();
+                    continue;
+                }
+                double value = s.getStrength()
+                        * ((JumpAndDecay) sr).getJumpHeight();
+                long arrival = step + s.getDelay();
+                long gap = arrival - lastArrivals[i];
+                if (lastValues[i] != 0 && gap > 0) {
+                    // Cancel what remains of the previous response
+                    value -= lastValues[i] * Math.pow(1 - timeStep
+                            / rings[i].getTimeConstant(targets[i]), gap);
+                }
+                lastArrivals[i] = arrival;
+                lastValues[i] = s.getStrength()
+                        * ((JumpAndDecay) sr).getJumpHeight();
+                rings[i].post(targets[i], s.getDelay(), value);
+            }
+        }
+    }
+
+    @Override
+    public String getDescription() {
+        return "Event Driven Spiking Update";
+    }
+
+    @Override
+    public String getLongDescription() {
+        return "Event Driven Spiking Update (All Neurons)";
+    }
+
+    @Override
+    public void neuronChanged(NetworkEvent<Neuron> networkEvent) {
+    }
+
+    @Override
+    public void neuronTypeChanged(NetworkEvent<NeuronUpdateRule> networkEvent) {
+        invalidate();
+    }
+
+    @Override
+    public void labelChanged(NetworkEvent<Neuron> networkEvent) {
+    }
+
+    @Override
+    public void neuronAdded(NetworkEvent<Neuron> networkEvent) {
+        invalidate();
+    }
+
+    @Override
+    public void neuronMoved(NetworkEvent<Neuron> networkEvent) {
+    }
+
+    @Override
+    public void neuronRemoved(NetworkEvent<Neuron> networkEvent) {
+        invalidate();
+    }
+
+    @Override
+    public void synapseRemoved(NetworkEvent<Synapse> networkEvent) {
+        invalidate();
+    }
+
+    @Override
+    public void synapseAdded(NetworkEvent<Synapse> networkEvent) {
+        invalidate();
+    }
+
+    @Override
+    public void synapseChanged(NetworkEvent<Synapse> networkEvent) {
+        invalidate();
+    }
+
+    @Override
+    public void synapseTypeChanged(
+            NetworkEvent<SynapseUpdateRule> networkEvent) {
+        invalidate();
+    }
+
+    @Override
+    public void groupAdded(NetworkEvent<Group> e) {
+        invalidate();
+    }
+
+    @Override
+    public void groupRemoved(NetworkEvent<Group> e) {
+        invalidate();
+    }
+
+    @Override
+    public void groupChanged(NetworkEvent<Group> networkEvent,
+            String changeDescription) {
+    }
+
+    @Override
+    public void groupParameterChanged(NetworkEvent<Group> networkEvent) {
+    }
+
+    @Override
+    public void groupUpdated(Group group) {
+    }
+
+}
@@ -0,0 +1,283 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.network.update_actions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.simbrain.network.core.Network;
+import org.simbrain.network.core.NetworkUpdateAction;
+import org.simbrain.network.core.Neuron;
+import org.simbrain.network.core.NeuronUpdateRule;
+import org.simbrain.network.groups.Group;
+import org.simbrain.network.groups.NeuronGroup;
+import org.simbrain.network.listeners.GroupListener;
+import org.simbrain.network.listeners.NetworkEvent;
+import org.simbrain.network.listeners.NeuronListener;
+import org.simbrain.network.update_actions.concurrency_tools.BufferedUpdateTask;
+import org.simbrain.util.math.RandomStreams;
+
+/**
+ * A parallel buffered update of all the neurons in a network, built on a
+ * work-stealing fork/join pool.
+ *
+ * The flat neuron list is split into contiguous chunks (each chunk is a
+ * {@link BufferedUpdateTask}) once per topology version. Each invocation then
+ * runs two phases over the chunks: first every neuron (and its afferent
+ * synapses) is updated, then every neuron's activation is set to its buffer
+ * value. Each phase is a single fork/join invocation, which acts as the
+ * barrier between phases.
+ *
+ * The partitions are discarded as soon as a neuron or group is added or
+ * removed and are rebuilt at the start of the next invocation, so an update
+ * never runs on a stale set of neurons.
+ *
+ * Each chunk draws random numbers (e.g. neuron noise) from its own stream,
+ * split from the invoking thread's stream when the chunks are built or the
+ * master seed changes (see {@link RandomStreams}). Results therefore do not
+ * depend on which worker runs which chunk.
+ */
+public class ForkJoinBufferedUpdate implements NetworkUpdateAction,
+        NeuronListener, GroupListener {
+
+    /**
+     * The pool shared by all fork/join updates. Its worker threads are
+     * daemons, so it need not be shut down.
+     */
+    private static final ForkJoinPool POOL = new ForkJoinPool();
+
+    /** Chunks per worker thread; more chunks give better load balancing. */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /** The smallest number of neurons worth handing to a separate task. */
+    private static final int MIN_CHUNK_SIZE = 64;
+
+    /** Reference to network to update. */
+    private final Network network;
+
+    /** The current partitions; null if they must be rebuilt. */
+    private volatile BufferedUpdateTask[] partitions;
+
+    /** The seed generation the partitions' random streams were split in. */
+    private int streamGeneration;
+
+    /**
+     * A static factory method that creates a fork/join buffered update for a
+     * network and registers it as a listener on that network.
+     *
+     * @param network the network to update
+     * @return the update action
+     */
+    public static ForkJoinBufferedUpdate createForkJoinBufferedUpdate(
+            final Network network) {
+        ForkJoinBufferedUpdate fjbu = new ForkJoinBufferedUpdate(network);
+        fjbu.init();
+        return fjbu;
+    }
+
+    /**
+     * @param network the network to update
+     */
+    private ForkJoinBufferedUpdate(final Network network) {
+        this.network = network;
+    }
+
+    /**
+     * Register this action as a listener on its network. Also used after
+     * opening a network from xml.
+     */
+    public void init() {
+        network.addNeuronListener(this);
+        network.addGroupListener(this);
+        partitions = null;
+    }
+
+    @Override
+    public void invoke() {
+        BufferedUpdateTask[] chunks = partitions;
+        int generation = RandomStreams.getGeneration();
+        if (chunks == null || streamGeneration != generation) {
+            if (chunks == null) {
+                chunks = partition();
+            }
+            BufferedUpdateTask.splitRandomStreams(chunks);
+            streamGeneration = generation;
+            partitions = chunks;
+        }
+        POOL.invoke(new PhaseTask(chunks, 0, chunks.length, true));
+        POOL.invoke(new PhaseTask(chunks, 0, chunks.length, false));
+    }
+
+    /**
+     * Split the network's neurons (excluding neurons in groups which are in
+     * input mode) into contiguous chunks.
+     *
+     * @return the chunks
+     */
+    private BufferedUpdateTask[] partition() {
+        List<Neuron> flatList = network.getFlatNeuronList();
+        List<Neuron> neurons = new ArrayList<Neuron>(flatList.size());
+        for (Neuron n : flatList) {
+            if (n.getParentGroup() instanceof NeuronGroup
+                    && ((NeuronGroup) n.getParentGroup()).isInputMode()) {
+                continue;
+            }
+            neurons.add(n);
+        }
+        int numChunks = Math.max(1, Math.min(
+                POOL.getParallelism() * CHUNKS_PER_THREAD,
+                neurons.size() / MIN_CHUNK_SIZE));
+        int chunkSize = (int) Math.ceil(neurons.size() / (double) numChunks);
+        List<BufferedUpdateTask> chunks = new ArrayList<BufferedUpdateTask>(
+                numChunks);
+        for (int start = 0; start < neurons.size(); start += chunkSize) {
+            int end = Math.min(start + chunkSize, neurons.size());
+            Neuron[] hosts = neurons.subList(start, end).toArray(
+                    new Neuron[end - start]);
+            chunks.add(new BufferedUpdateTask(hosts));
+        }
+        return chunks.toArray(new BufferedUpdateTask[chunks.size()]);
+    }
+
+    /**
+     * Discard the current partitions so that they are rebuilt on the next
+     * update.
+     */
+    public void invalidate() {
+        partitions = null;
+    }
+
+    /**
+     * A fork/join task which performs one phase of the update over a range of
+     * chunks, splitting the range in half until a single chunk remains.
+     */
+    private static class PhaseTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        /** All chunks. */
+        private final BufferedUpdateTask[] chunks;
+
+        /** First chunk in this task's range. */
+        private final int lo;
+
+        /** One past the last chunk in this task's range. */
+        private final int hi;
+
+        /** True for the update phase, false for the set-to-buffer phase. */
+        private final boolean updatePhase;
+
+        /**
+         * @param chunks all chunks
+         * @param lo first chunk index
+         * @param hi one past the last chunk index
+         * @param updatePhase which phase to run
+         */
+        PhaseTask(final BufferedUpdateTask[] chunks, final int lo,
+                final int hi, final boolean updatePhase) {
+            this.chunks = chunks;
+            this.lo = lo;
+            this.hi = hi;
+            this.updatePhase = updatePhase;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new PhaseTask(chunks, lo, mid, updatePhase),
+                        new PhaseTask(chunks, mid, hi, updatePhase));
+                return;
+            }
+            if (lo == hi) {
+                return;
+            }
+            if (updatePhase) {
+                chunks[lo].perform();
+            } else {
+                Neuron[] hosts = chunks[lo].getHosts();
+                for (int i = 0, n = hosts.length; i < n; i++) {
+                    hosts[i].setToBufferVals();
+                }
+            }
+        }
+    }
+
+    @Override
+    public String getDescription() {
+        return "Fork/Join Buffered Update";
+    }
+
+    @Override
+    public String getLongDescription() {
+        return "Fork/Join Parallel Buffered Update (All Neurons)";
+    }
+
+    @Override
+    public void groupAdded(NetworkEvent<Group> e) {
+        invalidate();
+    }
+
+    @Override
+    public void groupRemoved(NetworkEvent<Group> e) {
+        invalidate();
+    }
+
+    @Override
+    public void groupChanged(NetworkEvent<Group> networkEvent,
+            String changeDescription) {
+    }
+
+    @Override
+    public void groupParameterChanged(NetworkEvent<Group> networkEvent) {
+    }
+
+    @Override
+    public void groupUpdated(Group group) {
+    }
+
+    @Override
+    public void neuronAdded(NetworkEvent<Neuron> networkEvent) {
+        invalidate();
+    }
+
+    @Override
+    public void neuronRemoved(NetworkEvent<Neuron> networkEvent) {
+        invalidate();
+    }
+
+    @Override
+    public void neuronChanged(NetworkEvent<Neuron> networkEvent) {
+    }
+
+    @Override
+    public void neuronTypeChanged(NetworkEvent<NeuronUpdateRule> networkEvent) {
+    }
+
+    @Override
+    public void labelChanged(NetworkEvent<Neuron> networkEvent) {
+    }
+
+    @Override
+    public void neuronMoved(NetworkEvent<Neuron> networkEvent) {
+    }
+
+}
@@ -0,0 +1,367 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.network.update_actions.compiled_tools;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.simbrain.network.core.Neuron;
+import org.simbrain.network.core.NeuronUpdateRule;
+import org.simbrain.network.core.NeuronUpdateRule.InputType;
+import org.simbrain.network.core.Synapse;
+import org.simbrain.network.neuron_update_rules.BinaryRule;
+import org.simbrain.network.neuron_update_rules.LinearRule;
+import org.simbrain.network.neuron_update_rules.SigmoidalRule;
+import org.simbrain.network.synapse_update_rules.StaticSynapseRule;
+import org.simbrain.util.math.SquashingFunction;
+
+/**
+ * A "compiled" structure-of-arrays snapshot of a set of neurons and the
+ * synapses impinging on them. Activations, buffers, inputs and biases are held
+ * in primitive arrays and the fan-in weights of every compiled neuron are
+ * stored in compressed sparse row (CSR) form, so that a buffered update becomes
+ * a pair of tight array loops instead of a walk over neuron and synapse
+ * objects.
+ *
+ * Only neurons whose update can be reproduced exactly by the kernel are
+ * compiled: {@link LinearRule}, {@link SigmoidalRule} and {@link BinaryRule}
+ * neurons using weighted inputs, without noise, whose afferent synapses are all
+ * static and undelayed. All other neurons are kept as "fallback" neurons and
+ * are updated through their own objects.
+ *
+ * The weight and parameter arrays are a snapshot. Whenever the topology,
+ * synapse strengths or neuron parameters change the snapshot must be rebuilt;
+ * see {@link org.simbrain.network.update_actions.CompiledBufferedUpdate}.
+ */
+public class CompiledNetwork {
+
+    /** Rule code for {@link LinearRule}. */
+    private static final byte LINEAR = 0;
+
+    /** Rule code for {@link SigmoidalRule}. */
+    private static final byte SIGMOIDAL = 1;
+
+    /** Rule code for {@link BinaryRule}. */
+    private static final byte BINARY = 2;
+
+    /** The compiled neurons, in the order of the arrays below. */
+    private final Neuron[] compiled;
+
+    /**
+     * Every neuron whose activation is read by the kernel. The first
+     * compiled.length entries are the compiled neurons themselves; the rest
+     * are source neurons outside the compiled set.
+     */
+    private final Neuron[] sources;
+
+    /** Neurons which must be updated through their own update rule. */
+    private final Neuron[] fallback;
+
+    /** Activations of all source neurons, indexed like {@link #sources}. */
+    private final double[] activations;
+
+    /** Buffer values computed on each update for the compiled neurons. */
+    private final double[] buffers;
+
+    /** External inputs of the compiled neurons. */
+    private final double[] inputs;
+
+    /** Biases of the compiled neurons. */
+    private final double[] biases;
+
+    /** Rule code of each compiled neuron. */
+    private final byte[] ruleTypes;
+
+    /** Slope of each compiled neuron (linear and sigmoidal rules). */
+    private final double[] slopes;
+
+    /** Upper bound of each compiled neuron. */
+    private final double[] upperBounds;
+
+    /** Lower bound of each compiled neuron. */
+    private final double[] lowerBounds;
+
+    /**
+     * Rule specific value of each compiled neuron: 1 if a linear rule clips,
+     * the threshold of a binary rule.
+     */
+    private final double[] auxParams;
+
+    /** Squashing function of each sigmoidal neuron, null otherwise. */
+    private final SquashingFunction[] squashFunctions;
+
+    /** CSR row pointers; row i spans [rowPointers[i], rowPointers[i+1]). */
+    private final int[] rowPointers;
+
+    /** CSR column indices, pointing into {@link #sources}. */
+    private final int[] columnIndices;
+
+    /** CSR weight values. */
+    private final double[] weights;
+
+    /**
+     * Compile the provided neurons.
+     *
+     * @param neurons the neurons to be updated by this compiled network
+     */
+    public CompiledNetwork(final Collection<Neuron> neurons) {
+        List<Neuron> compiledList = new ArrayList<Neuron>(neurons.size());
+        List<Neuron> fallbackList = new ArrayList<Neuron>();
+        int numWeights = 0;
+        for (Neuron n : neurons) {
+            if (isCompilable(n)) {
+                compiledList.add(n);
+                numWeights += n.getFanIn().size();
+            } else {
+                fallbackList.add(n);
+            }
+        }
+        compiled = compiledList.toArray(new Neuron[compiledList.size()]);
+        fallback = fallbackList.toArray(new Neuron[fallbackList.size()]);
+
+        int size = compiled.length;
+        buffers = new double[size];
+        inputs = new double[size];
+        biases = new double[size];
+        ruleTypes = new byte[size];
+        slopes = new double[size];
+        upperBounds = new double[size];
+        lowerBounds = new double[size];
+        auxParams = new double[size];
+        squashFunctions = new SquashingFunction[size];
+        rowPointers = new int[size + 1];
+        columnIndices = new int[numWeights];
+        weights = new double[numWeights];
+
+        // Compiled neurons come first in the source index so that the
+        // activations they produce are laid out contiguously.
+        Map<Neuron, Integer> sourceIndex =
+                new IdentityHashMap<Neuron, Integer>(size * 2);
+        List<Neuron> sourceList = new ArrayList<Neuron>(size);
+        for (int i = 0; i < size; i++) {
+            sourceIndex.put(compiled[i], i);
+            sourceList.add(compiled[i]);
+        }
+
+        int k = 0;
+        for (int i = 0; i < size; i++) {
+            Neuron n = compiled[i];
+            packRule(i, n.getUpdateRule());
+            rowPointers[i] = k;
+            List<Synapse> fanIn = n.getFanIn();
+            for (int j = 0, m = fanIn.size(); j < m; j++) {
+                Synapse s = fanIn.get(j);
+                if (!s.isEnabled()) {
+                    continue;
+                }
+                Integer index = sourceIndex.get(s.getSource());
+                if (index == null) {
+                    index = sourceList.size();
+                    sourceIndex.put(s.getSource(), index);
+                    sourceList.add(s.getSource());
+                }
+                columnIndices[k] = index;
+                weights[k] = s.getStrength();
+                k++;
+            }
+        }
+        rowPointers[size] = k;
+        sources = sourceList.toArray(new Neuron[sourceList.size()]);
+        activations = new double[sources.length];
+    }
+
+    /**
+     * Returns true if the update of this neuron can be carried out by the
+     * compiled kernel.
+     *
+     * @param n the neuron to check
+     * @return true if the neuron can be compiled
+     */
+    public static boolean isCompilable(final Neuron n) {
+        NeuronUpdateRule rule = n.getUpdateRule();
+        if (n.isGenerator() || rule.getInputType() != InputType.WEIGHTED) {
+            return false;
+        }
+        if (rule.getClass() == LinearRule.class) {
+            if (((LinearRule) rule).getAddNoise()) {
+                return false;
+            }
+        } else if (rule.getClass() == SigmoidalRule.class) {
+            if (((SigmoidalRule) rule).getAddNoise()) {
+                return false;
+            }
+        } else if (rule.getClass() != BinaryRule.class) {
+            return false;
+        }
+        for (Synapse s : n.getFanIn()) {
+            if (s.getDelay() != 0
+                    || s.getLearningRule().getClass()
+                    != StaticSynapseRule.class) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copy the parameters of a neuron's update rule into the parameter arrays.
+     *
+     * @param i index of the compiled neuron
+     * @param rule its update rule
+     */
+    private void packRule(final int i, final NeuronUpdateRule rule) {
+        if (rule instanceof LinearRule) {
+            LinearRule lr = (LinearRule) rule;
+            ruleTypes[i] = LINEAR;
+            slopes[i] = lr.getSlope();
+            upperBounds[i] = lr.getUpperBound();
+            lowerBounds[i] = lr.getLowerBound();
+            auxParams[i] = lr.isClipped() ? 1 : 0;
+        } else if (rule instanceof SigmoidalRule) {
+            SigmoidalRule sr = (SigmoidalRule) rule;
+            ruleTypes[i] = SIGMOIDAL;
+            slopes[i] = sr.getSlope();
+            upperBounds[i] = sr.getUpperBound();
+            lowerBounds[i] = sr.getLowerBound();
+            squashFunctions[i] = sr.getSquashFunctionType();
+        } else {
+            BinaryRule br = (BinaryRule) rule;
+            ruleTypes[i] = BINARY;
+            upperBounds[i] = br.getUpperBound();
+            lowerBounds[i] = br.getLowerBound();
+            auxParams[i] = br.getThreshold();
+        }
+    }
+
+    /**
+     * Perform one buffered update of all neurons in this compiled network. The
+     * per-neuron state (activations, inputs and biases, which scripts and
+     * trainers commonly set directly) is gathered from the neuron objects, the
+     * compiled neurons are updated with array loops, the fallback neurons are
+     * updated through their own rules, and finally all buffers are moved to
+     * activations.
+     */
+    public void update() {
+        gather();
+        int size = compiled.length;
+        for (int i = 0; i < size; i++) {
+            double wtdSum = inputs[i];
+            for (int k = rowPointers[i], end = rowPointers[i + 1]; k < end;
+                    k++) {
+                wtdSum += weights[k] * activations[columnIndices[k]];
+            }
+            buffers[i] = applyRule(i, wtdSum);
+        }
+        for (int i = 0; i < size; i++) {
+            if (!compiled[i].isClamped()) {
+                compiled[i].setBuffer(buffers[i]);
+            }
+        }
+        for (int i = 0, n = fallback.length; i < n; i++) {
+            fallback[i].update();
+            if (!fallback[i].getUpdateRule().isSkipsSynapticUpdates()) {
+                fallback[i].updateFanIn();
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            compiled[i].setToBufferVals();
+        }
+        for (int i = 0, n = fallback.length; i < n; i++) {
+            fallback[i].setToBufferVals();
+        }
+    }
+
+    /**
+     * Copy activations, external inputs and biases from the neuron objects
+     * into the arrays.
+     */
+    private void gather() {
+        for (int i = 0, n = sources.length; i < n; i++) {
+            activations[i] = sources[i].getActivation();
+        }
+        for (int i = 0, n = compiled.length; i < n; i++) {
+            inputs[i] = compiled[i].getInputValue();
+            NeuronUpdateRule rule = compiled[i].getUpdateRule();
+            switch (ruleTypes[i]) {
+            case LINEAR:
+                biases[i] = ((LinearRule) rule).getBias();
+                break;
+            case SIGMOIDAL:
+                biases[i] = ((SigmoidalRule) rule).getBias();
+                break;
+            default:
+                biases[i] = ((BinaryRule) rule).getBias();
+                break;
+            }
+        }
+    }
+
+    /**
+     * Apply the compiled update rule of a neuron to its weighted input.
+     *
+     * @param i index of the compiled neuron
+     * @param wtdInput the weighted input to that neuron
+     * @return the new buffer value
+     */
+    private double applyRule(final int i, final double wtdInput) {
+        switch (ruleTypes[i]) {
+        case LINEAR:
+            double val = slopes[i] * wtdInput + biases[i];
+            if (auxParams[i] != 0) {
+                if (val > upperBounds[i]) {
+                    val = upperBounds[i];
+                } else if (val < lowerBounds[i]) {
+                    val = lowerBounds[i];
+                }
+            }
+            return val;
+        case SIGMOIDAL:
+            return squashFunctions[i].valueOf(wtdInput + biases[i],
+                    upperBounds[i], lowerBounds[i], slopes[i]);
+        default:
+            return wtdInput + biases[i] > auxParams[i] ? upperBounds[i]
+                    : lowerBounds[i];
+        }
+    }
+
+    /**
+     * @return the number of neurons updated by the compiled kernel
+     */
+    public int getNumCompiledNeurons() {
+        return compiled.length;
+    }
+
+    /**
+     * @return the number of neurons updated through their own objects
+     */
+    public int getNumFallbackNeurons() {
+        return fallback.length;
+    }
+
+    /**
+     * @return the number of synapses stored in the CSR weight arrays
+     */
+    public int getNumCompiledSynapses() {
+        return rowPointers[compiled.length];
+    }
+
+}
@@ -22,6 +22,9 @@ import java.util.Random;
 
 import org.simbrain.network.core.Neuron;
 import org.simbrain.network.core.Synapse;
+import org.simbrain.util.math.RandomStreams;
+
+import umontreal.iro.lecuyer.rng.RandomStream;
 
 /**
  * 
@@ -38,6 +41,13 @@ public class BufferedUpdateTask implements Task {
 	private final Neuron[] hosts;
 
 	private final int hostSize;
+
+	/**
+	 * The random stream bound to whichever thread performs this task, so that
+	 * the task draws the same numbers whatever thread runs it. Null to use the
+	 * thread's own stream.
+	 */
+	private RandomStream randomStream;
 	
 	/**
 	 * @param hosts
@@ -55,17 +65,57 @@ public class BufferedUpdateTask implements Task {
 	 */
 	@Override
 	public void perform() {
-		for (int i = 0; i < hostSize; i++) {
-			if (hosts[i] == null) {
-				break;
+		RandomStream previous = null;
+		if (randomStream != null) {
+			previous = RandomStreams.bind(randomStream);
+		}
+		try {
+			for (int i = 0; i < hostSize; i++) {
+				if (hosts[i] == null) {
+					break;
+				}
+				hosts[i].update();
+				if (!hosts[i].getUpdateRule().isSkipsSynapticUpdates()) {
+					hosts[i].updateFanIn();
+				}
 			}
-			hosts[i].update();
-			if (!hosts[i].getUpdateRule().isSkipsSynapticUpdates()) {
-				hosts[i].updateFanIn();
+		} finally {
+			if (randomStream != null) {
+				RandomStreams.bind(previous);
 			}
 		}
 	}
 
+	/**
+	 * Give each task a new stream split from the calling thread's current
+	 * stream (see {@link RandomStreams#split()}).
+	 *
+	 * @param tasks the tasks
+	 */
+	public static void splitRandomStreams(final BufferedUpdateTask[] tasks) {
+		for (BufferedUpdateTask task : tasks) {
+			task.setRandomStream(RandomStreams.split());
+		}
+	}
+
+	/**
+	 * @return the stream this task's neurons draw random numbers from while
+	 *         it runs
+	 */
+	public RandomStream getRandomStream() {
+		return randomStream;
+	}
+
+	/**
+	 * Set the stream this task's neurons draw random numbers from while it
+	 * runs. It is bound to whichever thread performs the task.
+	 *
+	 * @param randomStream the stream
+	 */
+	public void setRandomStream(final RandomStream randomStream) {
+		this.randomStream = randomStream;
+	}
+
 	@Override
 	public boolean isPoison() {
 		return false;
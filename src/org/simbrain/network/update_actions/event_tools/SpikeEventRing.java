@@ -0,0 +1,220 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.network.update_actions.event_tools;
+
+import org.simbrain.network.core.Neuron;
+
+/**
+ * A circular buffer of pending spike events for one group of target neurons.
+ *
+ * Each slot of the ring holds the events which arrive at a given time step,
+ * so that an event sent with a delay of <code>d</code> is placed
+ * <code>d</code> slots ahead of the slot being delivered. Slots hold only the
+ * events actually posted to them (a target index and a value) and grow as
+ * needed, so memory scales with spike traffic rather than with the number of
+ * synapses times the maximum delay.
+ *
+ * Delivered events are summed into a decaying excitatory and inhibitory
+ * response for each target. The decay is the same as that of a
+ * {@link org.simbrain.network.synapse_update_rules.spikeresponders.JumpAndDecay}
+ * spike responder with a zero baseline, so the summed response of a target
+ * is the sum of the responses its afferent synapses would have computed
+ * themselves.
+ */
+public class SpikeEventRing {
+
+    /** Initial number of events a slot can hold before it is grown. */
+    private static final int INITIAL_SLOT_CAPACITY = 16;
+
+    /** The target neurons; events refer to targets by index in this array. */
+    private final Neuron[] targets;
+
+    /** The decay time constant of each target's response. */
+    private final double[] timeConstants;
+
+    /** The summed (excitatory, inhibitory) response of each target. */
+    private final double[][] responses;
+
+    /** Target indices of the events in each slot. */
+    private int[][] slotTargets;
+
+    /** Values of the events in each slot. */
+    private double[][] slotValues;
+
+    /** Number of events in each slot. */
+    private int[] slotCounts;
+
+    /** The slot which will be delivered next. */
+    private int cursor;
+
+    /**
+     * @param targets the target neurons
+     * @param timeConstants the decay time constant of each target's response
+     * @param maxDelay the largest delay expected; longer delays grow the ring
+     */
+    public SpikeEventRing(final Neuron[] targets,
+            final double[] timeConstants, final int maxDelay) {
+        this.targets = targets;
+        this.timeConstants = timeConstants;
+        responses = new double[targets.length][2];
+        int length = Math.max(0, maxDelay) + 1;
+        slotTargets = new int[length][];
+        slotValues = new double[length][];
+        slotCounts = new int[length];
+    }
+
+    /**
+     * Post an event to a target, to be delivered after the given number of
+     * deliveries.
+     *
+     * @param target index of the target neuron
+     * @param delay number of time steps to delay the event by
+     * @param value value of the event
+     */
+    public void post(final int target, final int delay, final double value) {
+        if (delay >= slotCounts.length) {
+            grow(delay + 1);
+        }
+        int slot = (cursor + delay) % slotCounts.length;
+        int count = slotCounts[slot];
+        if (slotTargets[slot] == null) {
+            slotTargets[slot] = new int[INITIAL_SLOT_CAPACITY];
+            slotValues[slot] = new double[INITIAL_SLOT_CAPACITY];
+        } else if (count == slotTargets[slot].length) {
+            int[] newTargets = new int[count * 2];
+            double[] newValues = new double[count * 2];
+            System.arraycopy(slotTargets[slot], 0, newTargets, 0, count);
+            System.arraycopy(slotValues[slot], 0, newValues, 0, count);
+            slotTargets[slot] = newTargets;
+            slotValues[slot] = newValues;
+        }
+        slotTargets[slot][count] = target;
+        slotValues[slot][count] = value;
+        slotCounts[slot] = count + 1;
+    }
+
+    /**
+     * Decay every target's response by one time step, then add the events in
+     * the current slot to it and advance to the next slot.
+     *
+     * @param timeStep the network time step
+     */
+    public void deliver(final double timeStep) {
+        for (int i = 0, n = targets.length; i < n; i++) {
+            double[] r = responses[i];
+            r[0] += timeStep * (-r[0]) / timeConstants[i];
+            r[1] += timeStep * (-r[1]) / timeConstants[i];
+        }
+        int count = slotCounts[cursor];
+        if (count > 0) {
+            int[] tgts = slotTargets[cursor];
+            double[] vals = slotValues[cursor];
+            for (int j = 0; j < count; j++) {
+                if (vals[j] > 0) {
+                    responses[tgts[j]][0] += vals[j];
+                } else {
+                    responses[tgts[j]][1] += vals[j];
+                }
+            }
+            slotCounts[cursor] = 0;
+        }
+        cursor = (cursor + 1) % slotCounts.length;
+    }
+
+    /**
+     * Lengthen the ring, keeping pending events at the same offsets from the
+     * current slot.
+     *
+     * @param length the new number of slots
+     */
+    private void grow(final int length) {
+        int oldLength = slotCounts.length;
+        int[][] newTargets = new int[length][];
+        double[][] newValues = new double[length][];
+        int[] newCounts = new int[length];
+        for (int k = 0; k < oldLength; k++) {
+            int old = (cursor + k) % oldLength;
+            newTargets[k] = slotTargets[old];
+            newValues[k] = slotValues[old];
+            newCounts[k] = slotCounts[old];
+        }
+        slotTargets = newTargets;
+        slotValues = newValues;
+        slotCounts = newCounts;
+        cursor = 0;
+    }
+
+    /**
+     * @return the number of slots in the ring, i.e. one more than the largest
+     *         delay it can hold without growing
+     */
+    public int getLength() {
+        return slotCounts.length;
+    }
+
+    /**
+     * @param delay offset from the slot which will be delivered next
+     * @return the number of events pending at that offset
+     */
+    public int getPendingCount(final int delay) {
+        return slotCounts[(cursor + delay) % slotCounts.length];
+    }
+
+    /**
+     * @param delay offset from the slot which will be delivered next
+     * @param event index of the event within its slot
+     * @return the target neuron of the event
+     */
+    public Neuron getPendingTarget(final int delay, final int event) {
+        return targets[slotTargets[(cursor + delay) % slotCounts.length][event]];
+    }
+
+    /**
+     * @param delay offset from the slot which will be delivered next
+     * @param event index of the event within its slot
+     * @return the value of the event
+     */
+    public double getPendingValue(final int delay, final int event) {
+        return slotValues[(cursor + delay) % slotCounts.length][event];
+    }
+
+    /**
+     * @return the target neurons
+     */
+    public Neuron[] getTargets() {
+        return targets;
+    }
+
+    /**
+     * @param target index of a target neuron
+     * @return the decay time constant of that target's response
+     */
+    public double getTimeConstant(final int target) {
+        return timeConstants[target];
+    }
+
+    /**
+     * @param target index of a target neuron
+     * @return the summed (excitatory, inhibitory) response of that target
+     */
+    public double[] getResponse(final int target) {
+        return responses[target];
+    }
+
+}
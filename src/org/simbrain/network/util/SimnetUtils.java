@@ -134,12 +134,11 @@ public class SimnetUtils {
      */
     public static void scaleWeights(List<Neuron> src, List<Neuron> tar,
             double scalar) {
+        Set<Neuron> targets = new HashSet<Neuron>(tar);
         for (Neuron source : src) {
-            for (Neuron target : tar) {
-                Synapse weight = Network.getSynapse(source, target);
-                if (weight != null) {
-                    Network.getSynapse(source, target).forceSetStrength(
-                            weight.getStrength() * scalar);
+            for (Synapse weight : source.getFanOut().values()) {
+                if (targets.contains(weight.getTarget())) {
+                    weight.forceSetStrength(weight.getStrength() * scalar);
                 }
             }
         }
@@ -150,7 +149,8 @@ public class SimnetUtils {
      *
      * @param weightMatrix a matrix representation of the weights for use in
      *            linear algebraic operations
-     * @return the largest eigenvalue of this matrix by absolute value
+     * @return the largest eigenvalue of this matrix by absolute value (the
+     *         modulus, for complex eigenvalues)
      */
     public static double findMaxEig(double[][] weightMatrix) {
 
@@ -170,8 +170,8 @@ public class SimnetUtils {
 
         double maxEig = 0.0;
         for (int i = 0, n = eigs.size(); i < n; i++) {
-            if (Math.abs(eigs.get(i).getReal()) > maxEig) {
-                maxEig = Math.abs(eigs.get(i).getReal());
+            if (eigs.get(i).getModulus() > maxEig) {
+                maxEig = eigs.get(i).getModulus();
             }
         }
 
@@ -179,6 +179,11 @@ public class SimnetUtils {
     }
 
     /**
+     * Scale the weights connecting two equally sized lists of neurons so that
+     * their weight matrix has a given spectral radius. The current spectral
+     * radius is estimated from the synapses directly; see
+     * {@link SpectralRadius}. Nothing is changed if all weights are zero.
+     *
      * @param src list of source neurons
      * @param tar list of target neurons
      * @param desiredEigen : the new max eig or spectral radius for the weight
@@ -186,8 +191,12 @@ public class SimnetUtils {
      */
     public static void scaleEigenvalue(List<Neuron> src, List<Neuron> tar,
             double desiredEigen) {
-        double maxEigen = findMaxEig(getWeights(src, tar));
-        scaleWeights(src, tar, desiredEigen / maxEigen);
+        double maxEigen = SpectralRadius.estimate(src, tar,
+                SpectralRadius.DEFAULT_TOLERANCE,
+                SpectralRadius.DEFAULT_MAX_ITERATIONS);
+        if (maxEigen > 0) {
+            scaleWeights(src, tar, desiredEigen / maxEigen);
+        }
     }
 
     /**
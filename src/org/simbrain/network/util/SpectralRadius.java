@@ -0,0 +1,309 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.network.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.simbrain.network.core.Neuron;
+import org.simbrain.network.core.Synapse;
+
+/**
+ * Estimates the spectral radius (the largest eigenvalue modulus) of the
+ * weights connecting a set of neurons, e.g. an echo state network reservoir,
+ * without building a dense matrix or computing the full spectrum.
+ *
+ * The weights are gathered into compressed sparse rows and the estimate is
+ * made by a restarted Arnoldi iteration. Each cycle builds a small Krylov
+ * basis, takes the largest Ritz value modulus as the estimate, and restarts
+ * from the last power of the matrix applied to the start vector. The power
+ * steps concentrate the start vector on the dominant eigenvalues, and the
+ * Ritz values resolve them even when they are a complex pair of equal
+ * modulus, where plain power iteration does not settle. Work per cycle is
+ * proportional to the number of synapses.
+ */
+public final class SpectralRadius {
+
+    /** Default relative change in the estimate at which to stop. */
+    public static final double DEFAULT_TOLERANCE = 1E-6;
+
+    /** Default limit on the number of matrix-vector products. */
+    public static final int DEFAULT_MAX_ITERATIONS = 1000;
+
+    /** Size of the Krylov basis built in each cycle. */
+    private static final int KRYLOV_SIZE = 20;
+
+    /** Relative size below which a new basis vector is taken to be zero. */
+    private static final double BREAKDOWN = 1E-12;
+
+    /**
+     * No instances.
+     */
+    private SpectralRadius() {
+    }
+
+    /**
+     * Estimate the spectral radius of the weights among a set of neurons,
+     * with the default tolerance and iteration limit.
+     *
+     * @param neurons the neurons
+     * @return the spectral radius
+     */
+    public static double estimate(final List<Neuron> neurons) {
+        return estimate(neurons, neurons, DEFAULT_TOLERANCE,
+                DEFAULT_MAX_ITERATIONS);
+    }
+
+    /**
+     * Estimate the spectral radius of the square weight matrix connecting
+     * two equally sized lists of neurons, where entry (i, j) is the strength
+     * of the synapse from source i to target j, or 0 if there is none. This
+     * is the matrix {@link SimnetUtils#getWeights(List, List)} returns.
+     *
+     * @param src the source neurons
+     * @param tar the target neurons
+     * @param tolerance stop when the estimate changes by less than this
+     *            fraction between cycles
+     * @param maxIterations limit on the number of matrix-vector products; if
+     *            it is reached the latest estimate is returned
+     * @return the spectral radius
+     */
+    public static double estimate(final List<Neuron> src,
+            final List<Neuron> tar, final double tolerance,
+            final int maxIterations) {
+        if (src.size() != tar.size()) {
+            throw new IllegalArgumentException("Weight matrix is not square: "
+                    + src.size() + " x " + tar.size());
+        }
+        int n = src.size();
+        Map<Neuron, Integer> columnOf = new HashMap<Neuron, Integer>(n * 2);
+        for (int j = 0; j < n; j++) {
+            columnOf.put(tar.get(j), j);
+        }
+        int[] rowStart = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            int count = 0;
+            for (Neuron target : src.get(i).getFanOut().keySet()) {
+                if (columnOf.containsKey(target)) {
+                    count++;
+                }
+            }
+            rowStart[i + 1] = rowStart[i] + count;
+        }
+        int[] columns = new int[rowStart[n]];
+        double[] values = new double[rowStart[n]];
+        for (int i = 0; i < n; i++) {
+            int k = rowStart[i];
+            for (Synapse s : src.get(i).getFanOut().values()) {
+                Integer j = columnOf.get(s.getTarget());
+                if (j != null) {
+                    columns[k] = j;
+                    values[k++] = s.getStrength();
+                }
+            }
+        }
+        return estimate(n, rowStart, columns, values, tolerance,
+                maxIterations);
+    }
+
+    /**
+     * Estimate the spectral radius of an n x n matrix in compressed sparse
+     * row form: the entries of row i are at indices rowStart[i] (inclusive)
+     * to rowStart[i + 1] (exclusive) of columns and values.
+     *
+     * @param n the size of the matrix
+     * @param rowStart start of each row, plus the total number of entries
+     * @param columns column of each entry
+     * @param values value of each entry
+     * @param tolerance stop when the estimate changes by less than this
+     *            fraction between cycles
+     * @param maxIterations limit on the number of matrix-vector products; if
+     *            it is reached the latest estimate is returned
+     * @return the spectral radius
+     */
+    public static double estimate(final int n, final int[] rowStart,
+            final int[] columns, final double[] values,
+            final double tolerance, final int maxIterations) {
+        if (n == 0) {
+            return 0;
+        }
+        int m = Math.min(KRYLOV_SIZE, n);
+        double[][] basis = new double[m + 1][n];
+        double[][] h = new double[m + 1][m];
+
+        // A fixed seed keeps the estimate reproducible
+        Random random = new Random(n);
+        for (int i = 0; i < n; i++) {
+            basis[0][i] = random.nextDouble() - 0.5;
+        }
+        normalize(basis[0]);
+
+        double previous = Double.NaN;
+        int products = 0;
+        while (true) {
+            for (double[] row : h) {
+                Arrays.fill(row, 0);
+            }
+            int size = m;
+            boolean invariant = false;
+            for (int k = 0; k < m; k++) {
+                double[] w = basis[k + 1];
+                multiply(rowStart, columns, values, basis[k], w);
+                products++;
+                double scale = norm(w);
+                // Modified Gram-Schmidt, twice for orthogonality
+                for (int pass = 0; pass < 2; pass++) {
+                    for (int j = 0; j <= k; j++) {
+                        double dot = dot(basis[j], w);
+                        h[j][k] += dot;
+                        axpy(-dot, basis[j], w);
+                    }
+                }
+                double norm = norm(w);
+                h[k + 1][k] = norm;
+                if (norm <= BREAKDOWN * scale || norm == 0) {
+                    // The basis spans an invariant subspace, so its Ritz
+                    // values are exact eigenvalues.
+                    size = k + 1;
+                    invariant = true;
+                    break;
+                }
+                scale(1 / norm, w);
+            }
+
+            double[][] hessenberg = new double[size][size];
+            for (int i = 0; i < size; i++) {
+                System.arraycopy(h[i], 0, hessenberg[i], 0, size);
+            }
+            double estimate = SimnetUtils.findMaxEig(hessenberg);
+            if (invariant || estimate == 0 || products >= maxIterations
+                    || Math.abs(estimate - previous) <= tolerance * estimate) {
+                return estimate;
+            }
+            previous = estimate;
+
+            // Restart from the matrix's m-th power applied to the start
+            // vector, expressed in the basis: A V(m) = V(m + 1) H.
+            double[] c = new double[m + 1];
+            c[0] = 1;
+            for (int s = 0; s < m; s++) {
+                double[] next = new double[m + 1];
+                for (int i = 0; i <= s + 1; i++) {
+                    for (int j = Math.max(0, i - 1); j <= s; j++) {
+                        next[i] += h[i][j] * c[j];
+                    }
+                }
+                normalize(next);
+                c = next;
+            }
+            double[] start = new double[n];
+            for (int i = 0; i <= m; i++) {
+                axpy(c[i], basis[i], start);
+            }
+            normalize(start);
+            basis[0] = start;
+        }
+    }
+
+    /**
+     * Multiply a vector by the transpose of a sparse matrix. The transpose
+     * has the same eigenvalues, and this order scatters along rows.
+     *
+     * @param rowStart start of each row
+     * @param columns column of each entry
+     * @param values value of each entry
+     * @param x the vector
+     * @param y the result
+     */
+    private static void multiply(final int[] rowStart, final int[] columns,
+            final double[] values, final double[] x, final double[] y) {
+        Arrays.fill(y, 0);
+        for (int i = 0, n = x.length; i < n; i++) {
+            double xi = x[i];
+            if (xi != 0) {
+                for (int k = rowStart[i], end = rowStart[i + 1]; k < end; k++) {
+                    y[columns[k]] += values[k] * xi;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param a a vector
+     * @param b a vector
+     * @return the dot product
+     */
+    private static double dot(final double[] a, final double[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    /**
+     * @param a a vector
+     * @return the euclidean norm
+     */
+    private static double norm(final double[] a) {
+        return Math.sqrt(dot(a, a));
+    }
+
+    /**
+     * Add a multiple of one vector to another.
+     *
+     * @param alpha the multiple
+     * @param x the vector to add
+     * @param y the vector added to
+     */
+    private static void axpy(final double alpha, final double[] x,
+            final double[] y) {
+        for (int i = 0; i < x.length; i++) {
+            y[i] += alpha * x[i];
+        }
+    }
+
+    /**
+     * Multiply a vector by a scalar.
+     *
+     * @param alpha the scalar
+     * @param x the vector
+     */
+    private static void scale(final double alpha, final double[] x) {
+        for (int i = 0; i < x.length; i++) {
+            x[i] *= alpha;
+        }
+    }
+
+    /**
+     * Scale a vector to unit length, if it is not zero.
+     *
+     * @param x the vector
+     */
+    private static void normalize(final double[] x) {
+        double norm = norm(x);
+        if (norm > 0) {
+            scale(1 / norm, x);
+        }
+    }
+
+}
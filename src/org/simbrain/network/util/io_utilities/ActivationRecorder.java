@@ -0,0 +1,338 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.network.util.io_utilities;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.simbrain.network.core.Neuron;
+
+/**
+ * Records the activity of a fixed list of neurons to a binary file, one frame
+ * per call. Read recordings back with {@link ActivationRecording}.
+ *
+ * A file holds a short header (magic number, version, kind, neuron count)
+ * followed by frames. An activation frame is the time as a double and then
+ * one float per neuron, so every frame has the same size and a neuron's
+ * column can be found by offset alone. A spike frame is the time, the number
+ * of neurons that spiked and their indices as variable-length deltas from the
+ * previous index; ticks without spikes are not written.
+ *
+ * Frames are encoded on the calling (update) thread into one of two direct
+ * buffers. Full buffers are written to the file's channel by a background
+ * thread while the other buffer is filled, so the update thread only waits
+ * when the disk falls a whole buffer behind. Recording and closing are
+ * synchronized, so the recorder may be closed from another thread (such as
+ * the gui) while the update thread is recording.
+ */
+public class ActivationRecorder implements Closeable {
+
+    /** The file extension of recordings. */
+    public static final String FORMAT = "sar";
+
+    /** Identifies a recording; the bytes "SAR1". */
+    static final int MAGIC = 0x53415231;
+
+    /** Version of the layout, written after the magic number. */
+    static final int VERSION = 1;
+
+    /** Kind byte of a recording of activations. */
+    static final byte ACTIVATIONS = 0;
+
+    /** Kind byte of a recording of spikes. */
+    static final byte SPIKES = 1;
+
+    /** Size of the header in bytes. */
+    static final int HEADER_SIZE = 13;
+
+    /** Size of each of the two buffers, unless one frame needs more. */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /** Handed to the writer thread to make it finish. */
+    private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+    /** The file being written. */
+    private final FileChannel channel;
+
+    /** Whether spikes rather than activations are recorded. */
+    private final boolean spikes;
+
+    /** The number of neurons in each frame. */
+    private final int neuronCount;
+
+    /** Buffers waiting to be written, in order. */
+    private final BlockingQueue<ByteBuffer> full =
+            new ArrayBlockingQueue<ByteBuffer>(3);
+
+    /** Written buffers, ready to be filled again. */
+    private final BlockingQueue<ByteBuffer> free =
+            new ArrayBlockingQueue<ByteBuffer>(2);
+
+    /** The thread that writes full buffers. */
+    private final Thread writer;
+
+    /** The buffer being filled. */
+    private ByteBuffer buf;
+
+    /** The first error of the writer thread, if any. */
+    private volatile IOException error;
+
+    /** Whether this recorder has been closed. */
+    private boolean closed;
+
+    /**
+     * Create a file and start recording activations to it.
+     *
+     * @param file the file to write
+     * @param neuronCount the number of neurons in each frame
+     * @return the recorder
+     * @throws IOException if the file cannot be created
+     */
+    public static ActivationRecorder recordActivations(final File file,
+            final int neuronCount) throws IOException {
+        return new ActivationRecorder(file, neuronCount, false);
+    }
+
+    /**
+     * Create a file and start recording spikes to it.
+     *
+     * @param file the file to write
+     * @param neuronCount the number of neurons in each frame
+     * @return the recorder
+     * @throws IOException if the file cannot be created
+     */
+    public static ActivationRecorder recordSpikes(final File file,
+            final int neuronCount) throws IOException {
+        return new ActivationRecorder(file, neuronCount, true);
+    }
+
+    /**
+     * @param file the file to write
+     * @param neuronCount the number of neurons in each frame
+     * @param spikes whether to record spikes rather than activations
+     * @throws IOException if the file cannot be created
+     */
+    private ActivationRecorder(final File file, final int neuronCount,
+            final boolean spikes) throws IOException {
+        this.neuronCount = neuronCount;
+        this.spikes = spikes;
+        // The largest possible frame must fit in a buffer
+        int frameSize = 12 + (spikes ? 5 : 4) * neuronCount;
+        int size = Math.max(BUFFER_SIZE, frameSize);
+        buf = ByteBuffer.allocateDirect(size);
+        free.add(ByteBuffer.allocateDirect(size));
+        channel = new FileOutputStream(file).getChannel();
+
+        buf.putInt(MAGIC);
+        buf.putInt(VERSION);
+        buf.put(spikes ? SPIKES : ACTIVATIONS);
+        buf.putInt(neuronCount);
+
+        writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeBuffers();
+            }
+        }, "Activation recorder: " + file.getName());
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Body of the writer thread: write full buffers until told to end. After
+     * an error, buffers are handed back unwritten so the update thread never
+     * blocks; the error is reported by the next call on that thread.
+     */
+    private void writeBuffers() {
+        try {
+            while (true) {
+                ByteBuffer next = full.take();
+                if (next == END) {
+                    return;
+                }
+                if (error == null) {
+                    try {
+                        while (next.hasRemaining()) {
+                            channel.write(next);
+                        }
+                    } catch (IOException e) {
+                        error = e;
+                    }
+                }
+                next.clear();
+                free.put(next);
+            }
+        } catch (InterruptedException e) {
+            error = new InterruptedIOException("Recorder interrupted");
+        }
+    }
+
+    /**
+     * Record the activations of the neurons as one frame. Only for recorders
+     * made with {@link #recordActivations(File, int)}.
+     *
+     * @param time the time of the frame
+     * @param neurons the neurons; the list must not change size
+     * @throws IOException if an earlier write failed
+     */
+    public synchronized void recordActivations(final double time,
+            final List<Neuron> neurons) throws IOException {
+        checkFrame(neurons, false);
+        ensure(8 + 4 * neuronCount);
+        buf.putDouble(time);
+        for (int i = 0; i < neuronCount; i++) {
+            buf.putFloat((float) neurons.get(i).getActivation());
+        }
+    }
+
+    /**
+     * Record which of the neurons spiked as one frame. Nothing is written if
+     * none did. Only for recorders made with {@link #recordSpikes(File, int)}.
+     *
+     * @param time the time of the frame
+     * @param neurons the neurons; the list must not change size
+     * @throws IOException if an earlier write failed
+     */
+    public synchronized void recordSpikes(final double time,
+            final List<Neuron> neurons) throws IOException {
+        checkFrame(neurons, true);
+        int count = 0;
+        for (int i = 0; i < neuronCount; i++) {
+            if (neurons.get(i).isSpike()) {
+                count++;
+            }
+        }
+        if (count == 0) {
+            return;
+        }
+        ensure(12 + 5 * count);
+        buf.putDouble(time);
+        buf.putInt(count);
+        int previous = -1;
+        for (int i = 0; i < neuronCount; i++) {
+            if (neurons.get(i).isSpike()) {
+                int delta = i - previous - 1;
+                while ((delta & ~0x7F) != 0) {
+                    buf.put((byte) ((delta & 0x7F) | 0x80));
+                    delta >>>= 7;
+                }
+                buf.put((byte) delta);
+                previous = i;
+            }
+        }
+    }
+
+    /**
+     * Check that a frame can be recorded.
+     *
+     * @param neurons the neurons of the frame
+     * @param spikeFrame whether the frame is a spike frame
+     * @throws IOException if the recorder is closed or an earlier write failed
+     */
+    private void checkFrame(final List<Neuron> neurons,
+            final boolean spikeFrame) throws IOException {
+        if (closed) {
+            throw new IOException("Recorder is closed");
+        }
+        if (error != null) {
+            throw error;
+        }
+        if (spikeFrame != spikes) {
+            throw new IllegalStateException(spikes ? "Recording spikes"
+                    : "Recording activations");
+        }
+        if (neurons.size() != neuronCount) {
+            throw new IllegalArgumentException("Recording " + neuronCount
+                    + " neurons, not " + neurons.size());
+        }
+    }
+
+    /**
+     * Make room for a frame, handing the current buffer to the writer thread
+     * if it is too full.
+     *
+     * @param n the size of the frame in bytes
+     * @throws IOException if interrupted while waiting for a free buffer
+     */
+    private void ensure(final int n) throws IOException {
+        if (buf.remaining() >= n) {
+            return;
+        }
+        try {
+            buf.flip();
+            full.put(buf);
+            buf = free.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while recording");
+        }
+    }
+
+    /**
+     * Write out the remaining frames and close the file. Waits for the writer
+     * thread to finish.
+     *
+     * @throws IOException if a write failed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            buf.flip();
+            full.put(buf);
+            full.put(END);
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while closing");
+        } finally {
+            buf = null;
+            channel.close();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * @return whether spikes rather than activations are recorded
+     */
+    public boolean isRecordingSpikes() {
+        return spikes;
+    }
+
+    /**
+     * @return the number of neurons in each frame
+     */
+    public int getNeuronCount() {
+        return neuronCount;
+    }
+
+}
@@ -0,0 +1,271 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.network.util.io_utilities;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A recording written by {@link ActivationRecorder}, read back into memory.
+ * Each frame is one row of {@link #getValues()}: the neurons' activations, or
+ * for a spike recording 1 for each neuron that spiked and 0 otherwise.
+ *
+ * Also a command line tool converting a recording to csv:
+ *
+ * <pre>
+ * java -cp Simbrain.jar
+ *     org.simbrain.network.util.io_utilities.ActivationRecording
+ *     recording.sar [recording.csv]
+ * </pre>
+ */
+public class ActivationRecording {
+
+    /** Whether this is a recording of spikes. */
+    private final boolean spikes;
+
+    /** The number of neurons in each frame. */
+    private final int neuronCount;
+
+    /** The time of each frame. */
+    private final double[] times;
+
+    /** The values of each frame, indexed by frame and then neuron. */
+    private final double[][] values;
+
+    /**
+     * @param spikes whether this is a recording of spikes
+     * @param neuronCount the number of neurons in each frame
+     * @param times the time of each frame
+     * @param values the values of each frame
+     */
+    private ActivationRecording(final boolean spikes, final int neuronCount,
+            final double[] times, final double[][] values) {
+        this.spikes = spikes;
+        this.neuronCount = neuronCount;
+        this.times = times;
+        this.values = values;
+    }
+
+    /**
+     * Read a recording. The file is memory-mapped rather than read onto the
+     * heap first.
+     *
+     * @param file the recording
+     * @return the recording
+     * @throws IOException if the file cannot be read or is not a recording
+     */
+    public static ActivationRecording read(final File file) throws IOException {
+        FileInputStream input = new FileInputStream(file);
+        try {
+            FileChannel channel = input.getChannel();
+            ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+            if (buf.remaining() < ActivationRecorder.HEADER_SIZE
+                    || buf.getInt() != ActivationRecorder.MAGIC) {
+                throw new IOException(file + " is not an activation recording");
+            }
+            int version = buf.getInt();
+            if (version != ActivationRecorder.VERSION) {
+                throw new IOException("Unsupported recording version "
+                        + version);
+            }
+            boolean spikes = buf.get() == ActivationRecorder.SPIKES;
+            int neuronCount = buf.getInt();
+            try {
+                if (spikes) {
+                    return readSpikes(buf, neuronCount);
+                } else {
+                    return readActivations(buf, neuronCount);
+                }
+            } catch (BufferUnderflowException e) {
+                throw new IOException(file + " is truncated");
+            }
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Decode activation frames. The frame count follows from the file size.
+     *
+     * @param buf the frames
+     * @param neuronCount the number of neurons in each frame
+     * @return the recording
+     */
+    private static ActivationRecording readActivations(final ByteBuffer buf,
+            final int neuronCount) {
+        int frames = buf.remaining() / (8 + 4 * neuronCount);
+        double[] times = new double[frames];
+        double[][] values = new double[frames][neuronCount];
+        for (int f = 0; f < frames; f++) {
+            times[f] = buf.getDouble();
+            double[] row = values[f];
+            for (int i = 0; i < neuronCount; i++) {
+                row[i] = buf.getFloat();
+            }
+        }
+        return new ActivationRecording(false, neuronCount, times, values);
+    }
+
+    /**
+     * Decode spike frames into rows of ones and zeros.
+     *
+     * @param buf the frames
+     * @param neuronCount the number of neurons in each frame
+     * @return the recording
+     * @throws IOException if a frame names a neuron outside the group
+     */
+    private static ActivationRecording readSpikes(final ByteBuffer buf,
+            final int neuronCount) throws IOException {
+        List<Double> times = new ArrayList<Double>();
+        List<double[]> values = new ArrayList<double[]>();
+        while (buf.hasRemaining()) {
+            times.add(buf.getDouble());
+            int count = buf.getInt();
+            double[] row = new double[neuronCount];
+            int index = -1;
+            for (int s = 0; s < count; s++) {
+                int delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = buf.get();
+                    delta |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                if (delta < 0 || delta >= neuronCount - 1 - index) {
+                    throw new IOException("Spike index out of range in frame "
+                            + values.size());
+                }
+                index += delta + 1;
+                row[index] = 1;
+            }
+            values.add(row);
+        }
+        double[] timeArray = new double[times.size()];
+        for (int f = 0; f < timeArray.length; f++) {
+            timeArray[f] = times.get(f);
+        }
+        return new ActivationRecording(true, neuronCount, timeArray,
+                values.toArray(new double[values.size()][]));
+    }
+
+    /**
+     * Write this recording as csv. Activation recordings have a header row
+     * and one row per frame: the time, then each neuron's activation. Spike
+     * recordings have one row per frame: the time, then the indices of the
+     * neurons that spiked.
+     *
+     * @param writer the destination; flushed but not closed
+     * @throws IOException if the destination cannot be written
+     */
+    public void writeCsv(final Writer writer) throws IOException {
+        StringBuilder line = new StringBuilder();
+        if (!spikes) {
+            line.append("time");
+            for (int i = 0; i < neuronCount; i++) {
+                line.append(',').append(i);
+            }
+            writer.write(line.append('\n').toString());
+        }
+        for (int f = 0; f < times.length; f++) {
+            line.setLength(0);
+            line.append(times[f]);
+            double[] row = values[f];
+            for (int i = 0; i < neuronCount; i++) {
+                if (!spikes) {
+                    line.append(',').append(row[i]);
+                } else if (row[i] != 0) {
+                    line.append(',').append(i);
+                }
+            }
+            writer.write(line.append('\n').toString());
+        }
+        writer.flush();
+    }
+
+    /**
+     * @return whether this is a recording of spikes
+     */
+    public boolean isSpikes() {
+        return spikes;
+    }
+
+    /**
+     * @return the number of neurons in each frame
+     */
+    public int getNeuronCount() {
+        return neuronCount;
+    }
+
+    /**
+     * @return the time of each frame
+     */
+    public double[] getTimes() {
+        return times;
+    }
+
+    /**
+     * @return the values of each frame, indexed by frame and then neuron
+     */
+    public double[][] getValues() {
+        return values;
+    }
+
+    /**
+     * Convert a recording to csv. The csv file defaults to the recording's
+     * name with a csv extension.
+     *
+     * @param args the recording, and optionally the csv file
+     * @throws IOException if either file cannot be accessed
+     */
+    public static void main(final String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: ActivationRecording recording."
+                    + ActivationRecorder.FORMAT + " [output.csv]");
+            System.exit(2);
+        }
+        File input = new File(args[0]);
+        File output;
+        if (args.length == 2) {
+            output = new File(args[1]);
+        } else {
+            output = new File(input.getPath().replaceFirst(
+                    "\\." + ActivationRecorder.FORMAT + "$", "") + ".csv");
+        }
+        Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(output), "UTF-8"));
+        try {
+            read(input).writeCsv(writer);
+        } finally {
+            writer.close();
+        }
+    }
+
+}
@@ -0,0 +1,494 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.network.util.io_utilities;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.simbrain.network.core.Network;
+import org.simbrain.network.core.Neuron;
+import org.simbrain.network.core.Synapse;
+import org.simbrain.network.groups.SynapseGroup;
+
+/**
+ * Reads and writes networks in a binary format suited to very large synapse
+ * groups.
+ *
+ * A file holds a short header, the network's xml with the synapses of every
+ * synapse group that uses group level settings left out, and then one block
+ * per such group with the group's synapses in compressed sparse row (CSR)
+ * order: the row pointers for
+ * the source neurons, followed by one record per synapse holding the index of
+ * its target neuron and the values written by
+ * {@link Synapse#writeNumericValues(ByteBuffer)}.
+ *
+ * Synapse blocks are streamed through one reused buffer and a channel (the
+ * file's own channel when writing to a file), so no per-synapse byte arrays
+ * or xml nodes are created. When reading from a file the synapse blocks are
+ * memory-mapped, so the operating system pages the weights in as they are
+ * decoded rather than the file being read onto the heap first.
+ *
+ * Only numeric values are written in the blocks; learning rules, spike
+ * responders, increments and bounds of streamed synapses are taken from the
+ * group's prototypes when the network is read. Groups without group level
+ * settings can give each synapse its own rules, so their synapses are saved
+ * in the xml just as {@link SynapseGroup#preSaveInit()} leaves them.
+ */
+public class NetworkBinarySerializer {
+
+    /** The file extension (and workspace component format) of this format. */
+    public static final String FORMAT = "snb";
+
+    /** Identifies a binary network file; the bytes "SNB1". */
+    private static final int MAGIC = 0x534E4231;
+
+    /** Version of the layout, written after the magic number. */
+    private static final int VERSION = 2;
+
+    /**
+     * The first version, in which every synapse group was streamed and all
+     * streamed synapses took their rules from the group's prototypes.
+     */
+    private static final int VERSION_ALL_GROUPS = 1;
+
+    /** Size of the buffer through which synapses are streamed. */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /** Charset of the xml and of group ids. */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Write a network in the binary format. The stream is flushed but not
+     * closed.
+     *
+     * @param network the network to write
+     * @param output the stream to write to
+     * @throws IOException if the stream cannot be written
+     */
+    public static void write(final Network network, final OutputStream output)
+            throws IOException {
+        List<SynapseGroup> groups = network.getSynapseGroups();
+        List<SynapseGroup> streamed = new ArrayList<SynapseGroup>();
+        ByteArrayOutputStream xml = new ByteArrayOutputStream();
+        for (SynapseGroup group : groups) {
+            if (group.isUseGroupLevelSettings()) {
+                group.preSaveInitStreamed();
+                streamed.add(group);
+            } else {
+                group.preSaveInit();
+            }
+        }
+        try {
+            Network.getXStream().toXML(network, xml);
+        } finally {
+            for (SynapseGroup group : groups) {
+                group.postSaveReInit();
+            }
+        }
+
+        WritableByteChannel channel;
+        if (output instanceof FileOutputStream) {
+            channel = ((FileOutputStream) output).getChannel();
+        } else {
+            channel = Channels.newChannel(output);
+        }
+        Sink sink = new Sink(channel);
+        sink.ensure(12);
+        sink.buf.putInt(MAGIC);
+        sink.buf.putInt(VERSION);
+        sink.buf.putInt(xml.size());
+        sink.flush();
+        writeFully(channel, ByteBuffer.wrap(xml.toByteArray()));
+        xml = null;
+
+        sink.ensure(4);
+        sink.buf.putInt(streamed.size());
+        for (SynapseGroup group : streamed) {
+            writeGroup(group, sink);
+        }
+        sink.flush();
+        output.flush();
+    }
+
+    /**
+     * Write the synapses of one group as a CSR block.
+     *
+     * @param group the group to write
+     * @param sink the destination
+     * @throws IOException if the channel cannot be written
+     */
+    private static void writeGroup(final SynapseGroup group, final Sink sink)
+            throws IOException {
+        List<Neuron> sources = group.getSourceNeuronGroup().getNeuronList();
+        List<Neuron> targets = group.getTargetNeuronGroup().getNeuronList();
+        Map<Neuron, Integer> srcMap = indexMap(sources);
+        Map<Neuron, Integer> tarMap = indexMap(targets);
+
+        // Counting sort of the synapses by source neuron.
+        List<Synapse> synapses = group.getAllSynapses();
+        int[] rowPtr = new int[sources.size() + 1];
+        for (Synapse s : synapses) {
+            rowPtr[srcMap.get(s.getSource()) + 1]++;
+        }
+        for (int i = 0; i < sources.size(); i++) {
+            rowPtr[i + 1] += rowPtr[i];
+        }
+        Synapse[] ordered = new Synapse[synapses.size()];
+        int[] fill = rowPtr.clone();
+        for (Synapse s : synapses) {
+            ordered[fill[srcMap.get(s.getSource())]++] = s;
+        }
+        synapses = null;
+
+        sink.putString(group.getId());
+        sink.ensure(4);
+        sink.buf.putInt(sources.size());
+        for (int ptr : rowPtr) {
+            sink.ensure(4);
+            sink.buf.putInt(ptr);
+        }
+        for (Synapse s : ordered) {
+            sink.ensure(4 + s.getNumericByteCount());
+            sink.buf.putInt(tarMap.get(s.getTarget()));
+            s.writeNumericValues(sink.buf);
+        }
+    }
+
+    /**
+     * Check whether a stream holds a network in the binary format, without
+     * consuming any of it. Streams other than file streams must support
+     * mark and reset.
+     *
+     * @param input the stream to check
+     * @return true if the stream starts with the binary format's magic number
+     * @throws IOException if the stream cannot be read
+     */
+    public static boolean isBinary(final InputStream input) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(4);
+        if (input instanceof FileInputStream) {
+            FileChannel fc = ((FileInputStream) input).getChannel();
+            long pos = fc.position();
+            while (head.hasRemaining()
+                    && fc.read(head, pos + head.position()) > 0) {
+                continue;
+            }
+        } else {
+            input.mark(4);
+            int b;
+            while (head.hasRemaining() && (b = input.read()) != -1) {
+                head.put((byte) b);
+            }
+            input.reset();
+        }
+        return !head.hasRemaining() && head.getInt(0) == MAGIC;
+    }
+
+    /**
+     * Read a network written by {@link #write(Network, OutputStream)}.
+     *
+     * @param input the stream to read, positioned at the magic number
+     * @return the network
+     * @throws IOException if the stream cannot be read or is not in the
+     *             binary format
+     */
+    public static Network read(final InputStream input) throws IOException {
+        Source source;
+        FileChannel fc = null;
+        long start = 0;
+        if (input instanceof FileInputStream) {
+            fc = ((FileInputStream) input).getChannel();
+            start = fc.position();
+        }
+        if (fc != null && fc.size() - start <= Integer.MAX_VALUE) {
+            source = new Source(fc.map(FileChannel.MapMode.READ_ONLY, start,
+                    fc.size() - start));
+        } else {
+            source = new Source(Channels.newChannel(input));
+        }
+
+        source.ensure(12);
+        if (source.buf.getInt() != MAGIC) {
+            throw new IOException("Not a binary network file");
+        }
+        int version = source.buf.getInt();
+        if (version != VERSION && version != VERSION_ALL_GROUPS) {
+            throw new IOException("Unsupported binary network version: "
+                    + version);
+        }
+        byte[] xml = new byte[source.buf.getInt()];
+        source.get(xml);
+        Network network = (Network) Network.getXStream().fromXML(
+                new ByteArrayInputStream(xml));
+        xml = null;
+
+        Map<String, SynapseGroup> groups = new HashMap<String, SynapseGroup>();
+        for (SynapseGroup group : network.getSynapseGroups()) {
+            groups.put(group.getId(), group);
+        }
+        source.ensure(4);
+        int numGroups = source.buf.getInt();
+        for (int i = 0; i < numGroups; i++) {
+            String id = source.getString();
+            SynapseGroup group = groups.get(id);
+            if (group == null) {
+                throw new IOException("No synapse group with id " + id);
+            }
+            readGroup(group, source, version == VERSION_ALL_GROUPS
+                    || group.isUseGroupLevelSettings());
+        }
+        if (fc != null) {
+            fc.position(start + source.buf.position());
+        }
+        return network;
+    }
+
+    /**
+     * Read the CSR block of one group and add its synapses.
+     *
+     * @param group the group to populate
+     * @param source the source of the block
+     * @param conform whether the synapses take their rules from the group's
+     *            prototypes
+     * @throws IOException if the block cannot be read
+     */
+    private static void readGroup(final SynapseGroup group,
+            final Source source, final boolean conform) throws IOException {
+        List<Neuron> sources = group.getSourceNeuronGroup().getNeuronList();
+        List<Neuron> targets = group.getTargetNeuronGroup().getNeuronList();
+        source.ensure(4);
+        int numRows = source.buf.getInt();
+        if (numRows != sources.size()) {
+            throw new IOException("Synapse group " + group.getId() + " has "
+                    + sources.size() + " source neurons, file has " + numRows);
+        }
+        int[] rowPtr = new int[numRows + 1];
+        for (int i = 0; i <= numRows; i++) {
+            source.ensure(4);
+            rowPtr[i] = source.buf.getInt();
+        }
+        for (int i = 0; i < numRows; i++) {
+            Neuron src = sources.get(i);
+            for (int k = rowPtr[i], end = rowPtr[i + 1]; k < end; k++) {
+                // Index and delay come first; the delay gives the record size.
+                source.ensure(8);
+                Neuron tar = targets.get(source.buf.getInt());
+                int delay = source.buf.getInt(source.buf.position());
+                source.ensure(25 + (delay > 0 ? 8 * delay : 0));
+                Synapse s = new Synapse(src, tar);
+                s.decodeNumericByteArray(source.buf);
+                group.addSynapseUnsafe(s);
+            }
+        }
+        if (conform) {
+            group.conformToPrototypeRules();
+        }
+    }
+
+    /**
+     * @param neurons a list of neurons
+     * @return a map from each neuron to its index in the list
+     */
+    private static Map<Neuron, Integer> indexMap(final List<Neuron> neurons) {
+        Map<Neuron, Integer> map = new HashMap<Neuron, Integer>(
+                (int) (neurons.size() / 0.75) + 1);
+        int i = 0;
+        for (Neuron n : neurons) {
+            map.put(n, i++);
+        }
+        return map;
+    }
+
+    /**
+     * Write all of a buffer to a channel.
+     *
+     * @param channel the channel
+     * @param buf the buffer, flipped for reading
+     * @throws IOException if the channel cannot be written
+     */
+    private static void writeFully(final WritableByteChannel channel,
+            final ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+    }
+
+    /**
+     * A channel with a reusable write buffer.
+     */
+    private static class Sink {
+
+        /** The destination. */
+        private final WritableByteChannel channel;
+
+        /** The buffer, in write mode. */
+        private ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        /**
+         * @param channel the destination
+         */
+        Sink(final WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Make room for the given number of bytes, flushing the buffer if
+         * needed.
+         *
+         * @param n the number of bytes about to be written
+         * @throws IOException if the channel cannot be written
+         */
+        void ensure(final int n) throws IOException {
+            if (buf.remaining() >= n) {
+                return;
+            }
+            flush();
+            if (buf.capacity() < n) {
+                // Only for synapses with very long delays.
+                buf = ByteBuffer.allocate(n);
+            }
+        }
+
+        /**
+         * Write out the buffered bytes.
+         *
+         * @throws IOException if the channel cannot be written
+         */
+        void flush() throws IOException {
+            buf.flip();
+            writeFully(channel, buf);
+            buf.clear();
+        }
+
+        /**
+         * Write a length-prefixed UTF-8 string.
+         *
+         * @param str the string
+         * @throws IOException if the channel cannot be written
+         */
+        void putString(final String str) throws IOException {
+            byte[] bytes = str.getBytes(UTF_8);
+            ensure(4 + bytes.length);
+            buf.putInt(bytes.length);
+            buf.put(bytes);
+        }
+    }
+
+    /**
+     * A buffer to read from, either covering a whole mapped file or refilled
+     * from a channel.
+     */
+    private static class Source {
+
+        /** The channel to refill from, or null for a mapped file. */
+        private final ReadableByteChannel channel;
+
+        /** The buffer, in read mode. */
+        private ByteBuffer buf;
+
+        /**
+         * @param mapped the mapped remainder of a file
+         */
+        Source(final ByteBuffer mapped) {
+            this.channel = null;
+            this.buf = mapped;
+        }
+
+        /**
+         * @param channel the channel to read from
+         */
+        Source(final ReadableByteChannel channel) {
+            this.channel = channel;
+            this.buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            buf.flip();
+        }
+
+        /**
+         * Make sure the given number of bytes can be read from the buffer.
+         *
+         * @param n the number of bytes about to be read
+         * @throws IOException if the data ends first
+         */
+        void ensure(final int n) throws IOException {
+            if (buf.remaining() >= n) {
+                return;
+            }
+            if (channel == null) {
+                throw new EOFException();
+            }
+            if (buf.capacity() < n) {
+                ByteBuffer larger = ByteBuffer.allocate(n);
+                larger.put(buf);
+                buf = larger;
+            } else {
+                buf.compact();
+            }
+            while (buf.position() < n) {
+                if (channel.read(buf) < 0) {
+                    throw new EOFException();
+                }
+            }
+            buf.flip();
+        }
+
+        /**
+         * Fill an array, in pieces no larger than the buffer.
+         *
+         * @param dst the array to fill
+         * @throws IOException if the data ends first
+         */
+        void get(final byte[] dst) throws IOException {
+            int off = 0;
+            while (off < dst.length) {
+                int len = Math.min(dst.length - off, buf.capacity());
+                ensure(len);
+                buf.get(dst, off, len);
+                off += len;
+            }
+        }
+
+        /**
+         * Read a length-prefixed UTF-8 string.
+         *
+         * @return the string
+         * @throws IOException if the data ends first
+         */
+        String getString() throws IOException {
+            ensure(4);
+            byte[] bytes = new byte[buf.getInt()];
+            get(bytes);
+            return new String(bytes, UTF_8);
+        }
+    }
+}
@@ -20,6 +20,7 @@ import javax.swing.JTextField;
 import org.simbrain.util.LabelledItemPanel;
 import org.simbrain.util.StandardDialog;
 import org.simbrain.util.projection.ProjectCoordinate;
+import org.simbrain.util.projection.ProjectPCA;
 import org.simbrain.util.projection.Projector;
 
 /**
@@ -40,6 +41,9 @@ public class ProjectionPreferencesDialog extends StandardDialog {
     /** Checkbox for auto-find mode. */
     private JCheckBox autoFind = new JCheckBox();
 
+    /** Checkbox for incremental PCA. */
+    private JCheckBox incremental = new JCheckBox();
+
     /** Reference to projector being represented. */
     private final Projector projector;
 
@@ -59,6 +63,11 @@ public class ProjectionPreferencesDialog extends StandardDialog {
         if (projector.getProjectionMethod() instanceof ProjectCoordinate) {
             mainPanel.addItem("Coordinate projection auto-find mode", autoFind);
         }
+        if (projector.getProjectionMethod() instanceof ProjectPCA) {
+            incremental.setToolTipText("Update the principal components as "
+                    + "points are added instead of recomputing them");
+            mainPanel.addItem("Incremental PCA", incremental);
+        }
         fillFieldValues();
         setContentPane(mainPanel);
     }
@@ -72,6 +81,10 @@ public class ProjectionPreferencesDialog extends StandardDialog {
             autoFind.setSelected(((ProjectCoordinate) projector
                     .getProjectionMethod()).isAutoFind());
         }
+        if (projector.getProjectionMethod() instanceof ProjectPCA) {
+            incremental.setSelected(((ProjectPCA) projector
+                    .getProjectionMethod()).isIncremental());
+        }
     }
 
     @Override
@@ -81,6 +94,10 @@ public class ProjectionPreferencesDialog extends StandardDialog {
             ((ProjectCoordinate) projector.getProjectionMethod())
                     .setAutoFind(autoFind.isSelected());
         }
+        if (projector.getProjectionMethod() instanceof ProjectPCA) {
+            ((ProjectPCA) projector.getProjectionMethod())
+                    .setIncremental(incremental.isSelected());
+        }
         super.closeDialogOk();
     }
 
@@ -18,8 +18,6 @@
  */
 package org.simbrain.util.math;
 
-import java.util.concurrent.ThreadLocalRandom;
-
 import umontreal.iro.lecuyer.probdist.Distribution;
 import umontreal.iro.lecuyer.probdist.ExponentialDist;
 import umontreal.iro.lecuyer.probdist.GammaDist;
@@ -41,8 +39,9 @@ public enum ProbDistribution {
     EXPONENTIAL {
 
         @Override
-        public double nextRand(double lambda, double nullVar) {
-            return ExponentialGen.nextDouble(DEFAULT_RANDOM_STREAM, lambda);
+        public double nextRand(RandomStream stream, double lambda,
+            double nullVar) {
+            return ExponentialGen.nextDouble(stream, lambda);
         }
 
         @Override
@@ -99,8 +98,9 @@ public enum ProbDistribution {
     GAMMA {
 
         @Override
-        public double nextRand(double shape, double scale) {
-            return GammaGen.nextDouble(DEFAULT_RANDOM_STREAM, shape, scale);
+        public double nextRand(RandomStream stream, double shape,
+            double scale) {
+            return GammaGen.nextDouble(stream, shape, scale);
         }
 
         @Override
@@ -157,7 +157,7 @@ public enum ProbDistribution {
     LOGNORMAL {
 
         @Override
-        public double nextRand(double mean, double std) {
+        public double nextRand(RandomStream stream, double mean, double std) {
             // Convert mean and std so that they are the mean and
             // standard deviation of the resulting lognormal distribution
             // rather than the mean and standard deviation of the normal
@@ -165,8 +165,8 @@ public enum ProbDistribution {
             double mos = std / mean;
             double correctedStd = Math.sqrt(Math.log((mos * mos) + 1));
             double correctedMean = Math.log(mean / correctedStd);
-            return LognormalGen.nextDouble(DEFAULT_RANDOM_STREAM,
-                correctedMean, correctedStd);
+            return LognormalGen.nextDouble(stream, correctedMean,
+                correctedStd);
         }
 
         @Override
@@ -223,14 +223,16 @@ public enum ProbDistribution {
     NORMAL {
 
         /**
+         * @param stream
+         *            the source of uniform random numbers
          * @param mean
          *            the mean for this normal distribution
          * @param std
          *            the standard deviation for this normal distribution
          */
         @Override
-        public double nextRand(double mean, double std) {
-            return (ThreadLocalRandom.current().nextGaussian() + mean) * std;
+        public double nextRand(RandomStream stream, double mean, double std) {
+            return (NormalGen.nextDouble(stream, 0, 1) + mean) * std;
         }
 
         /**
@@ -293,8 +295,9 @@ public enum ProbDistribution {
     PARETO {
 
         @Override
-        public double nextRand(double slope, double min) {
-            return ParetoGen.nextDouble(DEFAULT_RANDOM_STREAM, slope, min);
+        public double nextRand(RandomStream stream, double slope,
+            double min) {
+            return ParetoGen.nextDouble(stream, slope, min);
         }
 
         @Override
@@ -351,14 +354,17 @@ public enum ProbDistribution {
     UNIFORM {
 
         /**
+         * @param stream
+         *            the source of uniform random numbers
          * @param floor
          *            the lowest value of the interval
          * @param ceil
          *            the highest value of the interval
          */
         @Override
-        public double nextRand(double floor, double ceil) {
-            return ThreadLocalRandom.current().nextDouble(floor, ceil);
+        public double nextRand(RandomStream stream, double floor,
+            double ceil) {
+            return floor + (ceil - floor) * stream.nextDouble();
         }
 
         /**
@@ -457,9 +463,34 @@ public enum ProbDistribution {
     // }
     // };
 
+    /**
+     * @deprecated not thread safe; use {@link RandomStreams#current()}.
+     */
+    @Deprecated
     public static final RandomStream DEFAULT_RANDOM_STREAM = new LFSR113();
 
-    public abstract double nextRand(double var1, double var2);
+    /**
+     * Draw a number from this distribution using the calling thread's current
+     * stream (see {@link RandomStreams#current()}).
+     *
+     * @param var1 the first parameter of the distribution
+     * @param var2 the second parameter of the distribution
+     * @return the random number
+     */
+    public double nextRand(double var1, double var2) {
+        return nextRand(RandomStreams.current(), var1, var2);
+    }
+
+    /**
+     * Draw a number from this distribution using the given stream.
+     *
+     * @param stream the source of uniform random numbers
+     * @param var1 the first parameter of the distribution
+     * @param var2 the second parameter of the distribution
+     * @return the random number
+     */
+    public abstract double nextRand(RandomStream stream, double var1,
+        double var2);
 
     public abstract int nextRandInt(int var1, int var2);
 
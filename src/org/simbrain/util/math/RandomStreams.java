@@ -0,0 +1,240 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.util.math;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import umontreal.iro.lecuyer.rng.LFSR113;
+import umontreal.iro.lecuyer.rng.RandomStream;
+
+/**
+ * Provides the random streams used throughout Simbrain. Every stream is
+ * derived from a single master seed, so that setting the master seed (see
+ * {@link #setMasterSeed(long)}) makes a simulation reproducible.
+ *
+ * Each thread has its own stream, returned by {@link #current()}, so that
+ * threads never contend for (or corrupt) a shared generator. Thread streams
+ * are seeded in the order threads first ask for them. Work that runs on
+ * varying threads (e.g. chunks of a parallel update) should instead get a
+ * stream for itself with {@link #forKey(long)} and {@link #bind(RandomStream)}
+ * it to whatever thread runs the work, which makes the result independent of
+ * scheduling.
+ *
+ * Streams are L'Ecuyer's LFSR113 generators from SSJ.
+ */
+public final class RandomStreams {
+
+    /** The master seed. */
+    private static volatile long masterSeed = System.nanoTime();
+
+    /**
+     * Incremented each time the master seed is set; thread streams from an
+     * earlier generation are re-seeded before use.
+     */
+    private static final AtomicInteger GENERATION = new AtomicInteger();
+
+    /** Number of thread streams created in the current generation. */
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    /** Keys at or above this are used for thread streams. */
+    private static final long THREAD_KEY_BASE = 0x7FFF000000000000L;
+
+    /** The streams of each thread. */
+    private static final ThreadLocal<ThreadStreams> STREAMS =
+            new ThreadLocal<ThreadStreams>() {
+                @Override
+                protected ThreadStreams initialValue() {
+                    return new ThreadStreams();
+                }
+            };
+
+    /**
+     * Don't instantiate.
+     */
+    private RandomStreams() {
+    }
+
+    /**
+     * A thread's own stream and the stream (if any) bound to it.
+     */
+    private static class ThreadStreams {
+
+        /** The thread's own stream. */
+        private RandomStream own;
+
+        /** The generation the thread's own stream was seeded in. */
+        private int generation = -1;
+
+        /** A stream bound to the thread, used in place of its own. */
+        private RandomStream bound;
+    }
+
+    /**
+     * Set the master seed from which all streams are derived. Thread streams
+     * are re-seeded the next time they are used; streams previously returned
+     * by {@link #forKey(long)} are not affected and should be fetched again.
+     *
+     * @param seed the master seed
+     */
+    public static void setMasterSeed(final long seed) {
+        masterSeed = seed;
+        THREAD_COUNT.set(0);
+        GENERATION.incrementAndGet();
+    }
+
+    /**
+     * @return the master seed
+     */
+    public static long getMasterSeed() {
+        return masterSeed;
+    }
+
+    /**
+     * Returns a number which changes each time the master seed is set. Holders
+     * of keyed streams can compare it with a saved value to know when to fetch
+     * their streams again.
+     *
+     * @return the current seed generation
+     */
+    public static int getGeneration() {
+        return GENERATION.get();
+    }
+
+    /**
+     * Returns the stream to be used by the calling thread: the stream bound to
+     * it, if any, or else the thread's own stream.
+     *
+     * @return the current stream
+     */
+    public static RandomStream current() {
+        ThreadStreams streams = STREAMS.get();
+        if (streams.bound != null) {
+            return streams.bound;
+        }
+        int generation = GENERATION.get();
+        if (streams.generation != generation) {
+            streams.own = forKey(THREAD_KEY_BASE
+                    + THREAD_COUNT.getAndIncrement());
+            streams.generation = generation;
+        }
+        return streams.own;
+    }
+
+    /**
+     * Bind a stream to the calling thread, so that it is returned by
+     * {@link #current()} until another stream (or null) is bound.
+     *
+     * @param stream the stream to bind, or null to go back to the thread's own
+     *            stream
+     * @return the previously bound stream, or null; pass this back to bind()
+     *         when done
+     */
+    public static RandomStream bind(final RandomStream stream) {
+        ThreadStreams streams = STREAMS.get();
+        RandomStream previous = streams.bound;
+        streams.bound = stream;
+        return previous;
+    }
+
+    /**
+     * Returns a new stream determined by the master seed and a key. Different
+     * keys give independent streams, and the same key gives the same stream
+     * for the same master seed.
+     *
+     * @param key the key
+     * @return a new stream
+     */
+    public static RandomStream forKey(final long key) {
+        long state = masterSeed ^ (key * 0x9E3779B97F4A7C15L);
+        int[] seed = new int[4];
+        for (int i = 0; i < seed.length; i++) {
+            state += 0x9E3779B97F4A7C15L;
+            // LFSR113 needs seeds above 1, 7, 15 and 127 respectively
+            seed[i] = (int) (mix(state) >>> 33) | 0x100;
+        }
+        LFSR113 stream = new LFSR113();
+        stream.setSeed(seed);
+        return stream;
+    }
+
+    /**
+     * Returns a stream for a string key, e.g. a group id.
+     *
+     * @param key the key
+     * @return a new stream
+     * @see #forKey(long)
+     */
+    public static RandomStream forKey(final String key) {
+        long hash = 1125899906842597L;
+        for (int i = 0; i < key.length(); i++) {
+            hash = 31 * hash + key.charAt(i);
+        }
+        return forKey(hash);
+    }
+
+    /**
+     * @return a uniform random number in [0, 1) from the current stream
+     */
+    public static double nextDouble() {
+        return current().nextDouble();
+    }
+
+    /**
+     * Returns a new stream seeded from the current stream. Used to give each
+     * unit of parallel work its own stream, in a way that depends only on the
+     * state of the thread handing out the work.
+     *
+     * @return a new stream
+     */
+    public static RandomStream split() {
+        return forKey(nextLong(current()));
+    }
+
+    /**
+     * Returns a new {@link Random} seeded from the current stream, for code
+     * which needs a java.util.Random (e.g. for shuffling).
+     *
+     * @return a new Random
+     */
+    public static Random newRandom() {
+        return new Random(nextLong(current()));
+    }
+
+    /**
+     * @param stream a stream
+     * @return 62 random bits from the stream
+     */
+    private static long nextLong(final RandomStream stream) {
+        return ((long) stream.nextInt(0, Integer.MAX_VALUE) << 31)
+                ^ stream.nextInt(0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * The SplitMix64 finalizer, used to turn a key into well mixed seed bits.
+     *
+     * @param z the value to mix
+     * @return the mixed value
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
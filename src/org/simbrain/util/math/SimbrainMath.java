@@ -36,7 +36,10 @@ public class SimbrainMath {
     /**
      * A default random stream that can be used by any calls to SSJ
      * classes/functions.
+     *
+     * @deprecated not thread safe; use {@link RandomStreams#current()}.
      */
+    @Deprecated
     public static final RandomStream DEFAULT_RANDOM_STREAM = new LFSR258();
 
     public static final double log10of2 = Math.log10(2);
@@ -72,7 +75,7 @@ public class SimbrainMath {
      */
     public static int[] randPermute(int floor, int ceil) {
         int[] permute = new int[ceil - floor];
-        Random randi = new Random();
+        Random randi = RandomStreams.newRandom();
         for (int i = floor; i < ceil; i++) {
             int j = randi.nextInt(i - floor + 1);
             if (j != i - floor) {
@@ -98,7 +101,7 @@ public class SimbrainMath {
     public static int[] randPermuteWithExclusion(int floor, int ceil,
             int excluded) {
         int[] permute = new int[ceil - floor - 1];
-        Random randi = new Random();
+        Random randi = RandomStreams.newRandom();
         int k = floor - 1;
         for (int i = floor; i < ceil; i++) {
             if (i == excluded) {
@@ -526,7 +529,7 @@ public class SimbrainMath {
         double sqrt2 = Math.sqrt(2);
 
         for (int i = 0; i < vector.length; i++) {
-            randUniform = Math.random();
+            randUniform = RandomStreams.nextDouble();
             vector[i] += (sigma * sqrt2 * SimbrainMath.inverf(randUniform));
         }
     }
@@ -546,7 +549,7 @@ public class SimbrainMath {
         double[] returnVector = new double[vector.length];
 
         for (int i = 0; i < vector.length; i++) {
-            randUniform = Math.random();
+            randUniform = RandomStreams.nextDouble();
             returnVector[i] = vector[i]
                     + (sigma * sqrt2 * SimbrainMath.inverf(randUniform));
         }
@@ -562,7 +565,7 @@ public class SimbrainMath {
     public static double[] randomVector(int length) {
         double[] returnVector = new double[length];
         for (int i = 0; i < returnVector.length; i++) {
-            returnVector[i] = Math.random();
+            returnVector[i] = RandomStreams.nextDouble();
         }
         return returnVector;
     }
@@ -579,7 +582,8 @@ public class SimbrainMath {
             final double max) {
         double[] returnVector = new double[length];
         for (int i = 0; i < returnVector.length; i++) {
-            returnVector[i] = min + Math.random() * Math.abs(max - min);
+            returnVector[i] = min + RandomStreams.nextDouble()
+                    * Math.abs(max - min);
         }
         return returnVector;
     }
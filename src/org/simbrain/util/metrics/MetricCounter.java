@@ -0,0 +1,77 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.util.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts something, e.g. the number of events fired. Counters are obtained
+ * from the {@link MetricRegistry} and may be updated from several threads at
+ * once.
+ */
+public final class MetricCounter {
+
+    /** The name of the counter. */
+    private final String name;
+
+    /** The count. */
+    private final AtomicLong count = new AtomicLong();
+
+    /**
+     * @param name the name of the counter
+     */
+    MetricCounter(final String name) {
+        this.name = name;
+    }
+
+    /**
+     * Add to the count.
+     *
+     * @param n the amount to add
+     */
+    public void add(final long n) {
+        count.addAndGet(n);
+    }
+
+    /**
+     * Clear the counter.
+     */
+    public void reset() {
+        count.set(0);
+    }
+
+    /**
+     * @return the name of the counter
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the count
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    @Override
+    public String toString() {
+        return name + ": " + getCount();
+    }
+}
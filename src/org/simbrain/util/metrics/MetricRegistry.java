@@ -0,0 +1,272 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.util.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.apache.log4j.Logger;
+
+/**
+ * The registry of the timers and counters used to profile Simbrain updates
+ * (e.g. "workspace.tick", "component.Network 1", "network.Buffered update").
+ * There is a single registry, which is also registered as a JMX bean (see
+ * {@link MetricRegistryMXBean}).
+ *
+ * Recording is off by default. It is switched on with the system property
+ * simbrain.metrics=true, from the workspace's metrics panel, or over JMX.
+ * Instrumented code brackets what it measures like this:
+ *
+ * <pre>
+ * long start = METRICS.start();
+ * action.invoke();
+ * if (start != 0) {
+ *     METRICS.stop(&quot;workspace.action.&quot; + action.getDescription(), start);
+ * }
+ * </pre>
+ *
+ * so that when recording is off the only cost is reading one volatile field.
+ */
+public final class MetricRegistry implements MetricRegistryMXBean {
+
+    /** The static logger for this class. */
+    private static final Logger LOGGER = Logger.getLogger(MetricRegistry.class);
+
+    /** The registry. */
+    private static final MetricRegistry INSTANCE = new MetricRegistry();
+
+    /** The name the registry is registered under as a JMX bean. */
+    public static final String OBJECT_NAME = "org.simbrain:type=MetricRegistry";
+
+    /** Sorts metrics by name. */
+    private static final Comparator<Object> BY_NAME = new Comparator<Object>() {
+        public int compare(final Object o1, final Object o2) {
+            return nameOf(o1).compareTo(nameOf(o2));
+        }
+    };
+
+    static {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE,
+                    new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            LOGGER.warn("Could not register metrics bean", e);
+        } catch (SecurityException e) {
+            LOGGER.warn("Could not register metrics bean", e);
+        }
+    }
+
+    /** Whether metrics are being recorded. */
+    private volatile boolean enabled = Boolean.getBoolean("simbrain.metrics");
+
+    /** Timers by name. */
+    private final ConcurrentMap<String, MetricTimer> timers =
+            new ConcurrentHashMap<String, MetricTimer>();
+
+    /** Counters by name. */
+    private final ConcurrentMap<String, MetricCounter> counters =
+            new ConcurrentHashMap<String, MetricCounter>();
+
+    /**
+     * Use {@link #getInstance()}.
+     */
+    private MetricRegistry() {
+    }
+
+    /**
+     * @return the registry
+     */
+    public static MetricRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Start timing something.
+     *
+     * @return the current time in nanoseconds, or 0 if metrics are not being
+     *         recorded (in which case the matching call to
+     *         {@link #stop(String, long)} may be skipped)
+     */
+    public long start() {
+        if (!enabled) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        return now == 0 ? 1 : now;
+    }
+
+    /**
+     * Stop timing something, and record the elapsed time on the named timer.
+     *
+     * @param name the name of the timer
+     * @param start the value returned by {@link #start()}
+     */
+    public void stop(final String name, final long start) {
+        if (start != 0) {
+            getTimer(name).record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Add to a named counter, if metrics are being recorded.
+     *
+     * @param name the name of the counter
+     * @param n the amount to add
+     */
+    public void count(final String name, final long n) {
+        if (enabled) {
+            getCounter(name).add(n);
+        }
+    }
+
+    /**
+     * Returns the named timer, creating it if needed.
+     *
+     * @param name the name of the timer
+     * @return the timer
+     */
+    public MetricTimer getTimer(final String name) {
+        MetricTimer timer = timers.get(name);
+        if (timer == null) {
+            timer = new MetricTimer(name);
+            MetricTimer previous = timers.putIfAbsent(name, timer);
+            if (previous != null) {
+                timer = previous;
+            }
+        }
+        return timer;
+    }
+
+    /**
+     * Returns the named counter, creating it if needed.
+     *
+     * @param name the name of the counter
+     * @return the counter
+     */
+    public MetricCounter getCounter(final String name) {
+        MetricCounter counter = counters.get(name);
+        if (counter == null) {
+            counter = new MetricCounter(name);
+            MetricCounter previous = counters.putIfAbsent(name, counter);
+            if (previous != null) {
+                counter = previous;
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * @return all timers, sorted by name
+     */
+    public List<MetricTimer> getTimers() {
+        List<MetricTimer> list = new ArrayList<MetricTimer>(timers.values());
+        Collections.sort(list, BY_NAME);
+        return list;
+    }
+
+    /**
+     * @return all counters, sorted by name
+     */
+    public List<MetricCounter> getCounters() {
+        List<MetricCounter> list = new ArrayList<MetricCounter>(
+                counters.values());
+        Collections.sort(list, BY_NAME);
+        return list;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public Map<String, Long> getTimerCounts() {
+        Map<String, Long> map = new TreeMap<String, Long>();
+        for (MetricTimer timer : timers.values()) {
+            map.put(timer.getName(), timer.getCount());
+        }
+        return map;
+    }
+
+    @Override
+    public Map<String, Double> getTimerMeanMillis() {
+        Map<String, Double> map = new TreeMap<String, Double>();
+        for (MetricTimer timer : timers.values()) {
+            map.put(timer.getName(), timer.getMeanMillis());
+        }
+        return map;
+    }
+
+    @Override
+    public Map<String, Double> getTimerMaxMillis() {
+        Map<String, Double> map = new TreeMap<String, Double>();
+        for (MetricTimer timer : timers.values()) {
+            map.put(timer.getName(), timer.getMaxNanos() / 1e6);
+        }
+        return map;
+    }
+
+    @Override
+    public Map<String, Long> getCounterValues() {
+        Map<String, Long> map = new TreeMap<String, Long>();
+        for (MetricCounter counter : counters.values()) {
+            map.put(counter.getName(), counter.getCount());
+        }
+        return map;
+    }
+
+    @Override
+    public void reset() {
+        for (MetricTimer timer : timers.values()) {
+            timer.reset();
+        }
+        for (MetricCounter counter : counters.values()) {
+            counter.reset();
+        }
+    }
+
+    /**
+     * Returns the name of a timer or counter.
+     *
+     * @param metric the timer or counter
+     * @return its name
+     */
+    private static String nameOf(final Object metric) {
+        if (metric instanceof MetricTimer) {
+            return ((MetricTimer) metric).getName();
+        }
+        return ((MetricCounter) metric).getName();
+    }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.util.metrics;
+
+import java.util.Map;
+
+/**
+ * The management interface of the {@link MetricRegistry}, so that metrics can
+ * be watched and switched on or off from (e.g.) jconsole. The bean is
+ * registered as "org.simbrain:type=MetricRegistry".
+ */
+public interface MetricRegistryMXBean {
+
+    /**
+     * @return whether metrics are being recorded
+     */
+    boolean isEnabled();
+
+    /**
+     * @param enabled whether metrics should be recorded
+     */
+    void setEnabled(boolean enabled);
+
+    /**
+     * @return the number of events recorded by each timer
+     */
+    Map<String, Long> getTimerCounts();
+
+    /**
+     * @return the mean time of the events recorded by each timer, in
+     *         milliseconds
+     */
+    Map<String, Double> getTimerMeanMillis();
+
+    /**
+     * @return the longest event recorded by each timer, in milliseconds
+     */
+    Map<String, Double> getTimerMaxMillis();
+
+    /**
+     * @return the value of each counter
+     */
+    Map<String, Long> getCounterValues();
+
+    /**
+     * Clear all timers and counters.
+     */
+    void reset();
+
+}
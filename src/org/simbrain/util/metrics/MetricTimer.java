@@ -0,0 +1,114 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.util.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Accumulates the number of times something happened and the total time it
+ * took. Timers are obtained from, and normally only recorded through, the
+ * {@link MetricRegistry}. They may be recorded from several threads at once.
+ */
+public final class MetricTimer {
+
+    /** The name of the timer. */
+    private final String name;
+
+    /** Number of recorded events. */
+    private final AtomicLong count = new AtomicLong();
+
+    /** Total recorded time in nanoseconds. */
+    private final AtomicLong totalNanos = new AtomicLong();
+
+    /** Longest recorded time in nanoseconds. */
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * @param name the name of the timer
+     */
+    MetricTimer(final String name) {
+        this.name = name;
+    }
+
+    /**
+     * Record one event.
+     *
+     * @param nanos the time the event took, in nanoseconds
+     */
+    public void record(final long nanos) {
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        for (long max = maxNanos.get(); nanos > max; max = maxNanos.get()) {
+            if (maxNanos.compareAndSet(max, nanos)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Clear the timer.
+     */
+    public void reset() {
+        count.set(0);
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+
+    /**
+     * @return the name of the timer
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the number of recorded events
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @return the total recorded time in nanoseconds
+     */
+    public long getTotalNanos() {
+        return totalNanos.get();
+    }
+
+    /**
+     * @return the longest recorded time in nanoseconds
+     */
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * @return the mean recorded time in milliseconds, or 0 if nothing has
+     *         been recorded
+     */
+    public double getMeanMillis() {
+        long n = count.get();
+        return n == 0 ? 0 : totalNanos.get() / (n * 1e6);
+    }
+
+    @Override
+    public String toString() {
+        return name + ": " + getCount() + " x " + getMeanMillis() + " ms";
+    }
+}
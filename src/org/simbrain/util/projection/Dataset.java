@@ -122,10 +122,12 @@ public class Dataset {
     }
 
     /**
-     * Makes sure there is enough space in the distances array
+     * Makes sure there is enough space in the distances array. Called only
+     * when distances are cached, so datasets whose distances are computed as
+     * needed (see {@link ProjectSammonBarnesHut}) do not pay for the array.
      */
     private void ensureDistances() {
-        if (getDistanceEnd() > distances.length) {
+        while (getDistanceEnd() > distances.length) {
             int newLength = distances.length * 4;
             double[] newDistances = new double[newLength];
             System.arraycopy(distances, 0, newDistances, 0, distances.length);
@@ -145,7 +147,6 @@ public class Dataset {
         if (existingPoint != null) {
             return existingPoint;
         }
-        ensureDistances();
         lastAddedPoint = point;
         return null;
     }
@@ -192,7 +193,6 @@ public class Dataset {
      */
     private void _setPoint(int index, DataPoint point) {
         ntree.set(index, point);
-        ensureDistances();
     }
 
     /**
@@ -280,6 +280,7 @@ public class Dataset {
      * @param point the point to calculate distances for
      */
     private void calculateDistances(int point) {
+        ensureDistances();
         int start = getDistanceIndex(point);
 
         for (int i = 0; i < point; i++) {
@@ -571,6 +572,7 @@ public class Dataset {
             index1 = swap;
         }
 
+        ensureDistances();
         double d = distances[getDistanceIndex(index1) + index2];
 
         if (d < 0) {
@@ -751,6 +753,13 @@ public class Dataset {
         return ret.get(n);
     }
 
+    /**
+     * @return the tree holding the points
+     */
+    NTree getTree() {
+        return ntree;
+    }
+
     /**
      * @return a reference to the dataset
      */
@@ -22,6 +22,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -598,6 +599,66 @@ public class NTree implements Iterable<DataPoint> {
         list.set(index, point);
     }
 
+    /**
+     * Flattens the tree for algorithms which summarize whole subtrees, such as
+     * {@link ProjectSammonBarnesHut}. The index of every point is written to
+     * <code>order</code> leaf by leaf, so that the points under any node are
+     * contiguous. Nodes are numbered depth first, each branch being followed
+     * by its left and then its right subtree.
+     *
+     * @param order receives the point indices; must have length size()
+     * @return three arrays indexed by node: the position in order of the
+     *         node's first point, one past its last point, and the number of
+     *         the next node which is not a descendant (so a node is a leaf if
+     *         and only if this is its own number plus one)
+     */
+    int[][] flatten(final int[] order) {
+        Map<DataPoint, Integer> indices =
+                new IdentityHashMap<DataPoint, Integer>();
+        for (int i = 0; i < list.size(); i++) {
+            indices.put(list.get(i), i);
+        }
+        List<int[]> nodes = new ArrayList<int[]>();
+        flatten(root, order, 0, indices, nodes);
+        int[][] ret = new int[3][nodes.size()];
+        for (int i = 0; i < nodes.size(); i++) {
+            int[] node = nodes.get(i);
+            ret[0][i] = node[0];
+            ret[1][i] = node[1];
+            ret[2][i] = node[2];
+        }
+        return ret;
+    }
+
+    /**
+     * Flattens the subtree under a node.
+     *
+     * @param from the node to start from
+     * @param order receives the point indices
+     * @param position the next free position in order
+     * @param indices the index of every point
+     * @param nodes receives {first, end, next} for each node
+     * @return the next free position in order
+     */
+    private int flatten(Node from, int[] order, int position,
+            Map<DataPoint, Integer> indices, List<int[]> nodes) {
+        int[] node = new int[3];
+        node[0] = position;
+        nodes.add(node);
+        if (from.type == Type.branch) {
+            Branch branch = (Branch) from;
+            position = flatten(branch.left, order, position, indices, nodes);
+            position = flatten(branch.right, order, position, indices, nodes);
+        } else {
+            for (DataPoint p : ((Leaf) from).points) {
+                order[position++] = indices.get(p);
+            }
+        }
+        node[1] = position;
+        node[2] = nodes.size();
+        return position;
+    }
+
     /*----------------------------------------------*/
 
     /**
@@ -19,6 +19,7 @@
 package org.simbrain.util.projection;
 
 import java.util.Arrays;
+import java.util.Comparator;
 
 import Jama.EigenvalueDecomposition;
 import Jama.Matrix;
@@ -27,10 +28,52 @@ import Jama.Matrix;
  * <B>ProjectPCA</B> Projects the high-dimensional dataset along its two
  * principal components to the low-d dataset.
  *
+ * <p>
+ * In incremental mode (the default) the covariance matrix is kept up to date
+ * with a rank-one update for each new point, and the principal components
+ * are refined from their previous values by one step of subspace iteration.
+ * Only the new points are projected, until the principal components have
+ * turned by more than a threshold angle since the dataset was last projected
+ * as a whole; then every point is projected again. Otherwise the covariance
+ * matrix and its eigenvectors are recomputed from scratch on each call.
+ *
  * @author Scott Hotton
  */
 public class ProjectPCA extends ProjectionMethod {
 
+    /**
+     * Default angle (in radians) the components may turn before all points
+     * are projected again.
+     */
+    public static final double DEFAULT_REPROJECT_ANGLE = 0.01;
+
+    /** Whether to update the projection incrementally as points are added. */
+    private boolean incremental = true;
+
+    /**
+     * Largest angle (in radians) a principal component may turn, in
+     * incremental mode, before all points are projected again.
+     */
+    private double reprojectAngle = DEFAULT_REPROJECT_ANGLE;
+
+    /** The upstairs dataset the running statistics describe. */
+    private transient Dataset tracked;
+
+    /** Number of upstairs points included in the running statistics. */
+    private transient int numTracked;
+
+    /** Running mean of the upstairs points. */
+    private transient double[] mean;
+
+    /** Running sum of squared deviations from the mean (n times covariance). */
+    private transient double[][] scatter;
+
+    /** Current estimate of the principal components, one per row. */
+    private transient double[][] axes;
+
+    /** The principal components the downstairs points were projected on. */
+    private transient double[][] projection;
+
     /**
      * Default PCA project.
      */
@@ -47,11 +90,244 @@ public class ProjectPCA extends ProjectionMethod {
             return;
         }
 
-        int lowdim = projector.getDownstairs().getDimensions();
-        int updim = projector.getUpstairs().getDimensions();
+        if (incremental) {
+            projectIncrementally();
+            return;
+        }
 
         // Get e-vals and e-vectors of covariance matrix
         Matrix m = projector.getUpstairs().getCovarianceMatrix();
+        projectAll(getPrincipalComponents(m));
+    }
+
+    /**
+     * Add any new upstairs points to the running statistics, refine the
+     * principal components, and project either the new points or (if the
+     * components have turned too far) all points.
+     */
+    private void projectIncrementally() {
+        Dataset upstairs = projector.getUpstairs();
+        int numPoints = upstairs.getNumPoints();
+        int updim = upstairs.getDimensions();
+
+        if (tracked != upstairs || numPoints < numTracked
+                || mean.length != updim) {
+            // A new or changed dataset: start from an exact decomposition
+            tracked = upstairs;
+            numTracked = 0;
+            mean = new double[updim];
+            scatter = new double[updim][updim];
+            for (int i = 0; i < numPoints; i++) {
+                addToStatistics(upstairs.getPoint(i).getVector(), i + 1);
+            }
+            numTracked = numPoints;
+            axes = getPrincipalComponents(new Matrix(scatter));
+            projection = copy(axes);
+            projectAll(projection);
+            return;
+        }
+
+        if (numPoints == numTracked) {
+            if (projector.getDownstairs().getNumPoints() != numPoints) {
+                projectAll(projection);
+            }
+            return;
+        }
+
+        for (int i = numTracked; i < numPoints; i++) {
+            addToStatistics(upstairs.getPoint(i).getVector(), i + 1);
+        }
+        refine();
+
+        if (getLargestTurn() > reprojectAngle) {
+            projection = copy(axes);
+            projectAll(projection);
+        } else {
+            Dataset downstairs = projector.getDownstairs();
+            for (int i = numTracked; i < numPoints; i++) {
+                DataPoint low = new DataPoint(project(projection, upstairs
+                        .getPoint(i).getVector()));
+                if (i < downstairs.getNumPoints()) {
+                    downstairs.setPoint(i, low);
+                } else {
+                    downstairs.addPoint(low);
+                }
+            }
+        }
+        numTracked = numPoints;
+    }
+
+    /**
+     * Rank-one update of the running mean and scatter matrix (Welford's
+     * method).
+     *
+     * @param x the new point
+     * @param n the number of points including the new one
+     */
+    private void addToStatistics(final double[] x, final int n) {
+        int updim = mean.length;
+        double[] delta = new double[updim];
+        for (int a = 0; a < updim; a++) {
+            delta[a] = x[a] - mean[a];
+            mean[a] += delta[a] / n;
+        }
+        double scale = (n - 1) / (double) n;
+        for (int a = 0; a < updim; a++) {
+            double da = delta[a] * scale;
+            for (int b = a; b < updim; b++) {
+                scatter[a][b] += da * delta[b];
+                scatter[b][a] = scatter[a][b];
+            }
+        }
+    }
+
+    /**
+     * Refine the principal components by one step of subspace iteration
+     * starting from their current values, followed by a Rayleigh-Ritz step
+     * to order them by variance. Each new component is given the sign that
+     * best matches the component the points were projected on.
+     */
+    private void refine() {
+        int lowdim = axes.length;
+        double[][] z = multiply(axes);
+        for (int c = 0; c < lowdim; c++) {
+            for (int e = 0; e < c; e++) {
+                double dot = dot(z[c], z[e]);
+                for (int a = 0; a < z[c].length; a++) {
+                    z[c][a] -= dot * z[e][a];
+                }
+            }
+            double norm = Math.sqrt(dot(z[c], z[c]));
+            if (!(norm > 1E-12)) {
+                // Too few points to span the subspace; keep the components
+                return;
+            }
+            for (int a = 0; a < z[c].length; a++) {
+                z[c][a] /= norm;
+            }
+        }
+
+        // Rayleigh-Ritz: the eigenvectors of the projected scatter matrix
+        double[][] sz = multiply(z);
+        Matrix h = new Matrix(lowdim, lowdim);
+        for (int c = 0; c < lowdim; c++) {
+            for (int e = 0; e < lowdim; e++) {
+                h.set(c, e, dot(z[c], sz[e]));
+            }
+        }
+        EigenvalueDecomposition ed = h.eig();
+        Matrix v = ed.getV();
+        double[] vals = ed.getRealEigenvalues();
+        Integer[] byVariance = new Integer[lowdim];
+        for (int c = 0; c < lowdim; c++) {
+            byVariance[c] = c;
+        }
+        final double[] values = vals;
+        Arrays.sort(byVariance, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Double.compare(values[b], values[a]);
+            }
+        });
+        for (int c = 0; c < lowdim; c++) {
+            double[] axis = new double[z[0].length];
+            for (int e = 0; e < lowdim; e++) {
+                double weight = v.get(e, byVariance[c]);
+                for (int a = 0; a < axis.length; a++) {
+                    axis[a] += weight * z[e][a];
+                }
+            }
+            if (dot(axis, projection[c]) < 0) {
+                for (int a = 0; a < axis.length; a++) {
+                    axis[a] = -axis[a];
+                }
+            }
+            axes[c] = axis;
+        }
+    }
+
+    /**
+     * @return the largest angle between a current principal component and
+     *         the one the points were projected on
+     */
+    private double getLargestTurn() {
+        double largest = 0;
+        for (int c = 0; c < axes.length; c++) {
+            double cos = Math.min(1, Math.abs(dot(axes[c], projection[c])));
+            largest = Math.max(largest, Math.acos(cos));
+        }
+        return largest;
+    }
+
+    /**
+     * Multiply the scatter matrix by each of a set of vectors.
+     *
+     * @param vectors the vectors, one per row
+     * @return the products, one per row
+     */
+    private double[][] multiply(final double[][] vectors) {
+        double[][] ret = new double[vectors.length][];
+        for (int c = 0; c < vectors.length; c++) {
+            ret[c] = new double[vectors[c].length];
+            for (int a = 0; a < scatter.length; a++) {
+                ret[c][a] = dot(scatter[a], vectors[c]);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @param a a vector
+     * @param b another vector of the same length
+     * @return the dot product of a and b
+     */
+    private static double dot(final double[] a, final double[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    /**
+     * @param rows a matrix
+     * @return a deep copy of the matrix
+     */
+    private static double[][] copy(final double[][] rows) {
+        double[][] ret = new double[rows.length][];
+        for (int i = 0; i < rows.length; i++) {
+            ret[i] = rows[i].clone();
+        }
+        return ret;
+    }
+
+    /**
+     * Project a point along a set of principal components.
+     *
+     * @param components the components, one per row
+     * @param point the upstairs point
+     * @return the downstairs point
+     */
+    private static double[] project(final double[][] components,
+            final double[] point) {
+        double[] ret = new double[components.length];
+        for (int c = 0; c < components.length; c++) {
+            ret[c] = dot(components[c], point);
+        }
+        return ret;
+    }
+
+    /**
+     * Find the leading eigenvectors of a covariance (or scatter) matrix, as
+     * many as there are downstairs dimensions.
+     *
+     * @param m the matrix
+     * @return the eigenvectors in order of decreasing eigenvalue, one per row
+     */
+    private double[][] getPrincipalComponents(final Matrix m) {
+        int lowdim = projector.getDownstairs().getDimensions();
+        int updim = projector.getUpstairs().getDimensions();
+
         EigenvalueDecomposition ed = m.eig();
         Matrix eVecs = ed.getV().transpose();
         double[] evalsArray = ed.getRealEigenvalues();
@@ -86,28 +362,63 @@ public class ProjectPCA extends ProjectionMethod {
                 }
             }
         }
+        return matrixProjector.getArray();
+    }
 
+    /**
+     * Replace the downstairs dataset with the projections of all upstairs
+     * points.
+     *
+     * @param components the principal components, one per row
+     */
+    private void projectAll(final double[][] components) {
         projector.getDownstairs().clear();
 
-        // printMatrix(matrix_projector);
         // project the points along the principal components
         for (int i = 0; i < projector.getUpstairs().getNumPoints(); i++) {
-            Matrix uppoint = new Matrix(updim, 1);
-
-            for (int j = 0; j < updim; ++j) {
-                uppoint.set(j, 0, projector.getUpstairs().getComponent(i, j));
-            }
-
-            Matrix lowpoint = matrixProjector.times(uppoint);
-            double[] columnPackedCopy = lowpoint.getColumnPackedCopy();
-
-            projector.getDownstairs().addPoint(new DataPoint(columnPackedCopy));
+            projector.getDownstairs().addPoint(
+                    new DataPoint(project(components, projector.getUpstairs()
+                            .getPoint(i).getVector())));
         }
     }
 
     @Override
     public void init() {
-        // TODO Auto-generated method stub
+        // Start again from an exact decomposition on the next projection
+        tracked = null;
+    }
+
+    /**
+     * @return whether the projection is updated incrementally
+     */
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * @param incremental whether to update the projection incrementally as
+     *            points are added, rather than recomputing it from scratch
+     */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+        tracked = null;
+    }
+
+    /**
+     * @return the angle (in radians) the principal components may turn
+     *         before all points are projected again
+     */
+    public double getReprojectAngle() {
+        return reprojectAngle;
+    }
+
+    /**
+     * @param reprojectAngle the angle (in radians) the principal components
+     *            may turn, in incremental mode, before all points are
+     *            projected again
+     */
+    public void setReprojectAngle(double reprojectAngle) {
+        this.reprojectAngle = reprojectAngle;
     }
 
 }
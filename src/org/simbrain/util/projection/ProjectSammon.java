@@ -90,18 +90,26 @@ public class ProjectSammon extends IterableProjectionMethod {
 
     @Override
     public void init() {
-        try {
-            perturbationAmount = SimbrainPreferences.getDouble("projectorSammonPerturbationAmount");
-            perturbationAmount = SimbrainPreferences.getDouble("projectorSammonEpsilon");
-        } catch (PropertyNotFoundException e) {
-            e.printStackTrace();
-        }
+        loadPreferences();
         dstar = projector.getUpstairs().getDistances();
         dstarSum = projector.getUpstairs().getSumDistances();
         projector.getDownstairs().perturbOverlappingPoints(perturbationAmount);
         setNeedsReInit(false);
     }
 
+    /**
+     * Read the perturbation amount and step size from the preferences.
+     */
+    protected void loadPreferences() {
+        try {
+            perturbationAmount = SimbrainPreferences
+                    .getDouble("projectorSammonPerturbationAmount");
+            epsilon = SimbrainPreferences.getDouble("projectorSammonEpsilon");
+        } catch (PropertyNotFoundException e) {
+            e.printStackTrace();
+        }
+    }
+
     @Override
     public void project() {
     }
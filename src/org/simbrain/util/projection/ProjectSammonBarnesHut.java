@@ -0,0 +1,464 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.util.projection;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * <B>ProjectSammonBarnesHut</B> approximates the Sammon map for large
+ * datasets. Interpoint distances are computed as they are needed rather than
+ * stored, and distant groups of points are treated as single points, in the
+ * manner of the Barnes-Hut n-body algorithm.
+ *
+ * The groups are the nodes of the upstairs dataset's {@link NTree}. Seen from
+ * a given point, a node is replaced by its upstairs and downstairs centroids
+ * when both of its radii are small compared with the point's distances to
+ * those centroids (see {@link #setTheta(double)}). Otherwise its children are
+ * visited, and the points of a leaf are handled exactly. An iteration takes
+ * roughly N log N steps rather than N^2, and the gradient is computed in
+ * parallel.
+ */
+public class ProjectSammonBarnesHut extends ProjectSammon {
+
+    /**
+     * The pool shared by all Barnes-Hut projections. Its worker threads are
+     * daemons, so it need not be shut down.
+     */
+    private static final ForkJoinPool POOL = new ForkJoinPool();
+
+    /** The smallest number of points or nodes handed to a separate task. */
+    private static final int MIN_SPLIT = 256;
+
+    /** Default accuracy parameter. */
+    public static final double DEFAULT_THETA = 0.7;
+
+    /**
+     * Accuracy parameter: a node is summarized when its radii are less than
+     * theta times the distances to its centroids. 0 is exact; larger values
+     * are faster and less accurate.
+     */
+    private double theta = DEFAULT_THETA;
+
+    /** Number of points the tree was flattened for. */
+    private transient int numPoints;
+
+    /** Upstairs dimensionality. */
+    private transient int upDims;
+
+    /** Downstairs dimensionality. */
+    private transient int downDims;
+
+    /** Upstairs points, one row of upDims values per point. */
+    private transient double[] x;
+
+    /** Downstairs points at the start of an iteration. */
+    private transient double[] y;
+
+    /** Gradient sums for each downstairs point. */
+    private transient double[] gradient;
+
+    /** Point indices in tree order; each node's points are contiguous. */
+    private transient int[] order;
+
+    /** Position in order of each node's first point. */
+    private transient int[] nodeStart;
+
+    /** Position in order one past each node's last point. */
+    private transient int[] nodeEnd;
+
+    /** Number of the next node which is not a descendant of each node. */
+    private transient int[] nodeNext;
+
+    /** Upstairs centroid of each node. */
+    private transient double[] upCentroid;
+
+    /** Largest upstairs distance from each node's centroid to its points. */
+    private transient double[] upRadius;
+
+    /** Downstairs centroid of each node. */
+    private transient double[] downCentroid;
+
+    /** Largest downstairs distance from each node's centroid to its points. */
+    private transient double[] downRadius;
+
+    /**
+     * Construct the projection method.
+     *
+     * @param projector reference to parent projector
+     */
+    public ProjectSammonBarnesHut(Projector projector) {
+        super(projector);
+    }
+
+    @Override
+    public void init() {
+        loadPreferences();
+        Dataset upstairs = projector.getUpstairs();
+        numPoints = upstairs.getNumPoints();
+        upDims = upstairs.getDimensions();
+        x = new double[numPoints * upDims];
+        for (int i = 0; i < numPoints; i++) {
+            System.arraycopy(upstairs.getPoint(i).getVector(), 0, x, i
+                    * upDims, upDims);
+        }
+
+        order = new int[numPoints];
+        int[][] nodes = upstairs.getTree().flatten(order);
+        nodeStart = nodes[0];
+        nodeEnd = nodes[1];
+        nodeNext = nodes[2];
+        int numNodes = nodeStart.length;
+        upCentroid = new double[numNodes * upDims];
+        upRadius = new double[numNodes];
+        POOL.invoke(new SummaryTask(x, upDims, upCentroid, upRadius, 0,
+                numNodes));
+
+        downDims = projector.getDownstairs().getDimensions();
+        downCentroid = new double[numNodes * downDims];
+        downRadius = new double[numNodes];
+        y = new double[numPoints * downDims];
+        gradient = new double[numPoints * downDims];
+
+        perturbCoincidentPoints();
+        setNeedsReInit(false);
+    }
+
+    /**
+     * Perturb downstairs points which coincide exactly with an earlier point,
+     * since the gradient is undefined for them. Unlike
+     * {@link Dataset#perturbOverlappingPoints(double)} this does not compare
+     * every pair of points.
+     */
+    private void perturbCoincidentPoints() {
+        Dataset downstairs = projector.getDownstairs();
+        Set<List<Double>> seen = new HashSet<List<Double>>();
+        for (int i = 0; i < downstairs.getNumPoints(); i++) {
+            double[] point = downstairs.getPoint(i).getVector();
+            Double[] key = new Double[point.length];
+            for (int k = 0; k < point.length; k++) {
+                key[k] = point[k];
+            }
+            if (!seen.add(Arrays.asList(key))) {
+                double[] newPoint = new double[point.length];
+                for (int k = 0; k < point.length; k++) {
+                    newPoint[k] = point[k]
+                            + ((Math.random() - 0.5) * perturbationAmount);
+                }
+                downstairs.getPoint(i).setData(newPoint);
+            }
+        }
+    }
+
+    @Override
+    public void iterate() {
+
+        if (projector.getUpstairs().getNumPoints() < 2) {
+            return;
+        }
+
+        // If new points were added (or this was just opened) re-initialize
+        Dataset downstairs = projector.getDownstairs();
+        if (needsReInit() || order == null
+                || projector.getUpstairs().getNumPoints() != numPoints
+                || downstairs.getNumPoints() != numPoints) {
+            init();
+            if (downstairs.getNumPoints() != numPoints) {
+                return;
+            }
+        }
+
+        for (int i = 0; i < numPoints; i++) {
+            System.arraycopy(downstairs.getPoint(i).getVector(), 0, y, i
+                    * downDims, downDims);
+        }
+        POOL.invoke(new SummaryTask(y, downDims, downCentroid, downRadius, 0,
+                nodeStart.length));
+
+        // Each unordered pair is visited from both of its points
+        double[] sums = POOL.invoke(new GradientTask(0, numPoints));
+        double dstarSum = sums[0] / 2;
+        if (dstarSum == 0) {
+            return;
+        }
+
+        double step = getEpsilon() * 2 / dstarSum;
+        for (int m = 0; m < numPoints; m++) {
+            double[] yNew = new double[downDims];
+            for (int n = 0; n < downDims; n++) {
+                yNew[n] = y[m * downDims + n] - step
+                        * gradient[m * downDims + n];
+            }
+            downstairs.getPoint(m).setData(yNew);
+        }
+
+        setError(sums[1] / 2 / dstarSum);
+        projector.fireProjectorDataChanged();
+    }
+
+    /**
+     * Euclidean distance between row a of one array and row b of another.
+     *
+     * @param p the first array
+     * @param a row in the first array
+     * @param q the second array
+     * @param b row in the second array
+     * @param dims length of a row
+     * @return the distance
+     */
+    private static double distance(double[] p, int a, double[] q, int b,
+            int dims) {
+        int i = a * dims;
+        int j = b * dims;
+        double sum = 0;
+        for (int k = 0; k < dims; k++) {
+            double difference = p[i + k] - q[j + k];
+            sum += difference * difference;
+        }
+        return Math.sqrt(sum);
+    }
+
+    /**
+     * Computes the centroid and radius of a range of nodes, splitting the
+     * range while it is larger than {@link #MIN_SPLIT}.
+     */
+    private final class SummaryTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        /** The points, one row per point. */
+        private final double[] points;
+
+        /** Length of a row. */
+        private final int dims;
+
+        /** Receives the centroids. */
+        private final double[] centroid;
+
+        /** Receives the radii. */
+        private final double[] radius;
+
+        /** First node in this task's range. */
+        private final int lo;
+
+        /** One past the last node in this task's range. */
+        private final int hi;
+
+        /**
+         * @param points the points, one row per point
+         * @param dims length of a row
+         * @param centroid receives the centroids
+         * @param radius receives the radii
+         * @param lo first node
+         * @param hi one past the last node
+         */
+        SummaryTask(final double[] points, final int dims,
+                final double[] centroid, final double[] radius, final int lo,
+                final int hi) {
+            this.points = points;
+            this.dims = dims;
+            this.centroid = centroid;
+            this.radius = radius;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > MIN_SPLIT) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new SummaryTask(points, dims, centroid, radius, lo,
+                        mid), new SummaryTask(points, dims, centroid, radius,
+                        mid, hi));
+                return;
+            }
+            for (int node = lo; node < hi; node++) {
+                int start = nodeStart[node];
+                int end = nodeEnd[node];
+                int c = node * dims;
+                Arrays.fill(centroid, c, c + dims, 0);
+                radius[node] = 0;
+                if (start == end) {
+                    continue;
+                }
+                for (int p = start; p < end; p++) {
+                    int row = order[p] * dims;
+                    for (int k = 0; k < dims; k++) {
+                        centroid[c + k] += points[row + k];
+                    }
+                }
+                for (int k = 0; k < dims; k++) {
+                    centroid[c + k] /= end - start;
+                }
+                double max = 0;
+                for (int p = start; p < end; p++) {
+                    max = Math.max(max, distance(points, order[p], centroid,
+                            node, dims));
+                }
+                radius[node] = max;
+            }
+        }
+    }
+
+    /**
+     * Computes the gradient sums for a range of points, splitting the range
+     * while it is larger than {@link #MIN_SPLIT}. Returns the (doubled) sum of
+     * upstairs distances and of the error terms over the pairs it visited.
+     */
+    private final class GradientTask extends RecursiveTask<double[]> {
+
+        private static final long serialVersionUID = 1L;
+
+        /** First point in this task's range. */
+        private final int lo;
+
+        /** One past the last point in this task's range. */
+        private final int hi;
+
+        /**
+         * @param lo first point
+         * @param hi one past the last point
+         */
+        GradientTask(final int lo, final int hi) {
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected double[] compute() {
+            if (hi - lo > MIN_SPLIT) {
+                int mid = (lo + hi) >>> 1;
+                GradientTask left = new GradientTask(lo, mid);
+                left.fork();
+                double[] right = new GradientTask(mid, hi).compute();
+                double[] sums = left.join();
+                sums[0] += right[0];
+                sums[1] += right[1];
+                return sums;
+            }
+            double[] sums = new double[2];
+            for (int i = lo; i < hi; i++) {
+                gradient(i, sums);
+            }
+            return sums;
+        }
+
+        /**
+         * Walk the tree from one point, accumulating its gradient sums.
+         *
+         * @param i the point
+         * @param sums receives the sum of upstairs distances and of the error
+         *            terms
+         */
+        private void gradient(final int i, final double[] sums) {
+            int numNodes = nodeStart.length;
+            int gi = i * downDims;
+            Arrays.fill(gradient, gi, gi + downDims, 0);
+            int node = 0;
+            while (node < numNodes) {
+                int start = nodeStart[node];
+                int end = nodeEnd[node];
+                int next = nodeNext[node];
+                if (start == end) {
+                    node = next;
+                    continue;
+                }
+                double dstar = distance(x, i, upCentroid, node, upDims);
+                double d = distance(y, i, downCentroid, node, downDims);
+                if (upRadius[node] < theta * dstar
+                        && downRadius[node] < theta * d) {
+                    // Far enough away to be treated as a single point
+                    accumulate(i, end - start, dstar, d, downCentroid, node,
+                            sums);
+                    node = next;
+                } else if (next == node + 1) {
+                    // A leaf which is too close: visit its points
+                    for (int p = start; p < end; p++) {
+                        int j = order[p];
+                        if (j == i) {
+                            continue;
+                        }
+                        accumulate(i, 1, distance(x, i, x, j, upDims),
+                                distance(y, i, y, j, downDims), y, j, sums);
+                    }
+                    node = next;
+                } else {
+                    node++;
+                }
+            }
+        }
+
+        /**
+         * Add the terms for a number of points at the same distances.
+         *
+         * @param i the point whose gradient is being computed
+         * @param count the number of points
+         * @param dstar their upstairs distance
+         * @param d their downstairs distance
+         * @param other array holding their downstairs position
+         * @param row row of their position in that array
+         * @param sums receives the sum of upstairs distances and of the error
+         *            terms
+         */
+        private void accumulate(final int i, final int count,
+                final double dstar, final double d, final double[] other,
+                final int row, final double[] sums) {
+            if (dstar == 0 || d == 0) {
+                return;
+            }
+            double scale = count * (dstar - d) / dstar / d;
+            int gi = i * downDims;
+            int yi = i * downDims;
+            int yj = row * downDims;
+            for (int n = 0; n < downDims; n++) {
+                gradient[gi + n] += scale * (other[yj + n] - y[yi + n]);
+            }
+            sums[0] += count * dstar;
+            sums[1] += count * (dstar - d) * (dstar - d) / dstar;
+        }
+    }
+
+    /**
+     * @return the accuracy parameter
+     */
+    public double getTheta() {
+        return theta;
+    }
+
+    /**
+     * Set the accuracy parameter. A node of the tree is treated as a single
+     * point when its radii are less than theta times the distances to its
+     * centroids. 0 gives the exact Sammon map; values up to about 0.8 trade
+     * accuracy for speed.
+     *
+     * @param theta the accuracy parameter, at least 0 and less than 1
+     */
+    public void setTheta(double theta) {
+        if (theta < 0 || theta >= 1) {
+            throw new IllegalArgumentException("Theta must be in [0, 1)");
+        }
+        this.theta = theta;
+    }
+
+}
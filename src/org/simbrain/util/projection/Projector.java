@@ -95,6 +95,8 @@ public class Projector {
         projectionMethods.put(ProjectPCA.class, "PCA");
         projectionMethods.put(ProjectTriangulate.class, "Triangulation");
         projectionMethods.put(ProjectSammon.class, "Sammon Map");
+        projectionMethods.put(ProjectSammonBarnesHut.class,
+                "Sammon Map (Barnes-Hut)");
 
         try {
             tolerance = SimbrainPreferences.getDouble("projectorTolerance");
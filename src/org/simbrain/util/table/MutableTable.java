@@ -317,14 +317,29 @@ public abstract class MutableTable<T> extends SimbrainDataTable<T> {
     protected void checkData(boolean allowRowChanges,
             boolean allowColumnChanges, Object[][] values)
             throws TableDataException {
-        if (!allowRowChanges && values.length != getRowCount()) {
+        checkData(allowRowChanges, allowColumnChanges, values.length,
+                values[0].length);
+    }
+
+    /**
+     * Check the integrity of the data, given only its dimensions.
+     *
+     * @param allowRowChanges whether rows should be editable
+     * @param allowColumnChanges whether columns should be editable
+     * @param rows number of rows in the data
+     * @param cols number of columns in the data
+     * @throws TableDataException exception if data are invalid
+     */
+    protected void checkData(boolean allowRowChanges,
+            boolean allowColumnChanges, int rows, int cols)
+            throws TableDataException {
+        if (!allowRowChanges && rows != getRowCount()) {
             throw new TableDataException("Trying to import data with "
-                    + values.length + " rows into a table with "
+                    + rows + " rows into a table with "
                     + getRowCount() + " rows.");
-        } else if (!allowColumnChanges
-                && values[0].length != getLogicalColumnCount()) {
+        } else if (!allowColumnChanges && cols != getLogicalColumnCount()) {
             throw new TableDataException("Trying to import data with "
-                    + values[0].length + " columns into a table with "
+                    + cols + " columns into a table with "
                     + getLogicalColumnCount() + " columns.");
         }
     }
@@ -18,16 +18,26 @@
  */
 package org.simbrain.util.table;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 
-import org.simbrain.util.Utils;
 import org.simbrain.util.table.SimbrainJTable.CellIndex;
 
 /**
  * Default implementation of a table of numerical data. The table is mutable,
- * and the data is saved as a list of lists of Doubles.
+ * and the data is saved as an array of primitive double arrays, one per row.
+ *
+ * Rows are handed out without copying (see {@link #getRow(int)} and
+ * {@link #getVectorCurrentRow()}), so that (e.g.) a coupling which reads the
+ * current row every update does not allocate anything. Arrays obtained this
+ * way are the table's own storage and must be treated as read-only.
  *
  * @author jyoshimi
  */
@@ -40,6 +50,12 @@ public class NumericTable extends MutableTable<Double> implements
     /** Default initial number of columns. */
     private static final int DEFAULT_COLUMN_COUNT = 5;
 
+    /** The data, one array of "logical" column values per row. */
+    private double[][] data = new double[0][];
+
+    /** Number of "logical" columns, kept so that a table can have no rows. */
+    private int columnCount;
+
     /** Iteration mode. */
     private boolean iterationMode = false;
 
@@ -85,10 +101,8 @@ public class NumericTable extends MutableTable<Double> implements
      * @param cols num cols
      */
     protected void init(int rows, int cols) {
-        rowData.clear();
-        for (int i = 0; i < rows; i++) {
-            rowData.add(createNewRow(new Double(0), cols));
-        }
+        data = new double[rows][cols];
+        columnCount = cols;
         fireTableStructureChanged();
     }
 
@@ -99,22 +113,172 @@ public class NumericTable extends MutableTable<Double> implements
 
     @Override
     Double getDefaultValue() {
-        return new Double(0);
+        return 0.0;
+    }
+
+    @Override
+    public void setLogicalValue(final int row, final int column,
+            final Double value, final boolean fireEvent) {
+        data[row][column] = value;
+        if (fireEvent) {
+            this.fireTableCellUpdated(row, column);
+        }
+    }
+
+    @Override
+    public Double getLogicalValueAt(int row, int col) {
+        return data[row][col];
+    }
+
+    @Override
+    public int getLogicalColumnCount() {
+        return columnCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnCount + 1;
+    }
+
+    @Override
+    public int getRowCount() {
+        return data.length;
+    }
+
+    @Override
+    public void fill(final Double value) {
+        for (double[] row : data) {
+            Arrays.fill(row, value);
+        }
+        this.fireTableDataChanged();
+    }
+
+    @Override
+    public void shuffle() {
+        Collections.shuffle(Arrays.asList(data));
+        fireTableDataChanged();
+    }
+
+    @Override
+    public void addRow(Double value) {
+        insertRow(data.length, value);
+    }
+
+    @Override
+    public void insertRow(int at, Double value) {
+        double[][] newData = new double[data.length + 1][];
+        System.arraycopy(data, 0, newData, 0, at);
+        System.arraycopy(data, at, newData, at + 1, data.length - at);
+        newData[at] = createNewRow(value.doubleValue(), columnCount);
+        data = newData;
+        this.fireTableRowsInserted(at, at);
+    }
+
+    @Override
+    public void removeRow(final int rowToRemoveIndex, boolean fireEvent) {
+        // Don't allow getRowCount() to go to 0
+        if (getRowCount() <= 1) {
+            return;
+        }
+        double[][] newData = new double[data.length - 1][];
+        System.arraycopy(data, 0, newData, 0, rowToRemoveIndex);
+        System.arraycopy(data, rowToRemoveIndex + 1, newData,
+                rowToRemoveIndex, newData.length - rowToRemoveIndex);
+        data = newData;
+        if (fireEvent) {
+            this.fireTableRowsDeleted(rowToRemoveIndex, rowToRemoveIndex);
+        }
+    }
+
+    @Override
+    public void addColumn(Double value) {
+        insertColumn(columnCount, value);
+    }
+
+    @Override
+    public void insertColumn(int at, Double value) {
+        for (int i = 0; i < data.length; i++) {
+            double[] row = new double[columnCount + 1];
+            System.arraycopy(data[i], 0, row, 0, at);
+            System.arraycopy(data[i], at, row, at + 1, columnCount - at);
+            row[at] = value;
+            data[i] = row;
+        }
+        columnCount++;
+        this.fireTableStructureChanged();
+    }
+
+    @Override
+    public void removeColumn(final int columnToRemoveIndex, boolean fireEvent) {
+        // Don't allow no columns
+        if (getColumnCount() <= 1) {
+            return;
+        }
+        for (int i = 0; i < data.length; i++) {
+            double[] row = new double[columnCount - 1];
+            System.arraycopy(data[i], 0, row, 0, columnToRemoveIndex);
+            System.arraycopy(data[i], columnToRemoveIndex + 1, row,
+                    columnToRemoveIndex, row.length - columnToRemoveIndex);
+            data[i] = row;
+        }
+        columnCount--;
+        if (fireEvent) {
+            this.fireTableStructureChanged();
+        }
+    }
+
+    @Override
+    public void modifyRowsColumns(int newNumRows, int newNumCols,
+            Double value) {
+        double[][] newData = new double[newNumRows][];
+        for (int i = 0; i < newNumRows; i++) {
+            if (i < data.length) {
+                newData[i] = Arrays.copyOf(data[i], newNumCols);
+                if (newNumCols > columnCount) {
+                    Arrays.fill(newData[i], columnCount, newNumCols, value);
+                }
+            } else {
+                newData[i] = createNewRow(value.doubleValue(), newNumCols);
+            }
+        }
+        data = newData;
+        columnCount = newNumCols;
+        fireTableStructureChanged();
+    }
+
+    @Override
+    public void reset(int rows, int cols) {
+        init(rows, cols);
+    }
+
+    /**
+     * Create a new row with every column set to a specified value.
+     *
+     * @param value value for columns of new row
+     * @param cols number of "logical" columns in the row
+     * @return the new row
+     */
+    private static double[] createNewRow(final double value, final int cols) {
+        double[] row = new double[cols];
+        if (value != 0) {
+            Arrays.fill(row, value);
+        }
+        return row;
     }
 
     /**
-     * Reset data using a 2-d array of doubles.
+     * Reset data using a 2-d array of doubles. The array is copied.
      *
      * @param data the new data
      */
     public void setData(double[][] data) {
-        reset(data.length, data[0].length);
+        double[][] newData = new double[data.length][];
         for (int i = 0; i < data.length; i++) {
-            for (int j = 0; j < data[0].length; j++) {
-                this.setLogicalValue(i, j, data[i][j], false);
-            }
+            newData[i] = Arrays.copyOf(data[i], data[0].length);
         }
-        fireTableDataChanged();
+        this.data = newData;
+        columnCount = data[0].length;
+        fireTableStructureChanged();
     }
 
     /**
@@ -124,26 +288,31 @@ public class NumericTable extends MutableTable<Double> implements
      */
     public void setVectorCurrentRow(double[] data) {
         int i = getCurrentRow();
-        for (int j = 0; j < data.length; j++) {
-            if (j < this.getColumnCount()) {
-                this.setLogicalValue(i, j, data[j], false);
-            }
-        }
-        fireTableDataChanged();
+        System.arraycopy(data, 0, this.data[i], 0,
+                Math.min(data.length, columnCount));
+        fireTableRowsUpdated(i, i);
     }
 
     /**
-     * Return the current row of doubles as an array.
+     * Return the current row of doubles as an array. The array is not a copy
+     * (see {@link #getRow(int)}).
      *
      * @return the values of the current row
      */
     public double[] getVectorCurrentRow() {
-        double[] retVec = new double[this.getColumnCount()];
-        int currRow = getCurrentRow();
-        for (int i = 0; i < this.getColumnCount(); i++) {
-            retVec[i] = this.getLogicalValueAt(currRow, i);
-        }
-        return retVec;
+        return data[getCurrentRow()];
+    }
+
+    /**
+     * Return the values of a row. The array returned is the table's own
+     * storage for that row, not a copy: it must not be modified, and it
+     * reflects later edits to the row until the table's structure changes.
+     *
+     * @param row the row index
+     * @return the values of the row
+     */
+    public double[] getRow(final int row) {
+        return data[row];
     }
 
     /**
@@ -192,9 +361,24 @@ public class NumericTable extends MutableTable<Double> implements
      * http://java.sun.com/developer/JDCTechTips/2002/tt0205.html#tip2
      * http://xstream.codehaus.org/faq.html
      *
+     * Tables saved before the data were stored as primitive arrays have their
+     * list of lists converted here.
+     *
      * @return Initialized object.
      */
     private Object readResolve() {
+        if (data == null || !rowData.isEmpty()) {
+            data = new double[rowData.size()][];
+            columnCount = rowData.isEmpty() ? 0 : rowData.get(0).size();
+            for (int i = 0; i < data.length; i++) {
+                data[i] = new double[columnCount];
+                List<Double> row = rowData.get(i);
+                for (int j = 0; j < columnCount; j++) {
+                    data[i][j] = row.get(j);
+                }
+            }
+            rowData.clear();
+        }
         return this;
     }
 
@@ -249,56 +433,117 @@ public class NumericTable extends MutableTable<Double> implements
     }
 
     /**
-     * Load a .csv file.
+     * Load a .csv file. The file is read one line at a time, straight into
+     * rows of doubles, without first building a matrix of strings. As in
+     * {@link org.simbrain.util.Utils#getStringMatrix(File)}, blank lines and
+     * lines starting with # are skipped and values are trimmed and unquoted.
+     * The first line determines the number of columns; empty or non-numeric
+     * cells, and cells missing from short lines, are set to 0.
      *
      * @param file the CSV file
      * @param allowRowChanges whether to allow data with a different number of
      *            rows
      * @param allowColumnChanges whether to allow data with a different number
      *            of columns
-     * @throws Exception
+     * @throws TableDataException if the file cannot be read or its
+     *             dimensions are not allowed
      */
     public void readData(final File file, final boolean allowRowChanges,
             final boolean allowColumnChanges) throws TableDataException {
-        String[][] values = Utils.getStringMatrix(file);
+        List<double[]> rows = new ArrayList<double[]>();
+        int cols = 0;
+        BufferedReader reader = null;
         try {
-            checkData(allowRowChanges, allowColumnChanges, values);
-            reset(values.length, values[0].length);
-            for (int i = 0; i < values.length; i++) {
-                for (int j = 0; j < values[0].length; j++) {
-                    if ((values[i][j]).length() > 0) {
-                        Double num = new Double(0);
-                        try {
-                            num = Double.valueOf(values[i][j]);
-                        } catch (NumberFormatException exception) {
-                        } finally {
-                            setLogicalValue(i, j, num, false);
-                        }
-                    }
+            reader = new BufferedReader(new FileReader(file));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // # is a comment delimeter in net files
+                if (line.trim().length() == 0 || line.startsWith("#")) {
+                    continue;
+                }
+                if (rows.isEmpty()) {
+                    cols = countValues(line);
                 }
+                rows.add(parseRow(line, cols));
             }
-            fireTableStructureChanged();
-        } catch (TableDataException tde) {
-            throw tde;
+        } catch (IOException e) {
+            throw new TableDataException("Could not read " + file + ": "
+                    + e.getMessage());
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                }
+            }
+        }
+        if (rows.isEmpty()) {
+            throw new TableDataException("No data found in " + file);
         }
+        checkData(allowRowChanges, allowColumnChanges, rows.size(), cols);
+        data = rows.toArray(new double[rows.size()][]);
+        columnCount = cols;
+        fireTableStructureChanged();
     }
 
     /**
-     * Returns a double array representation of the table.
+     * Returns the number of comma-separated values in a line.
      *
-     * @return representation of table as double array
+     * @param line the line
+     * @return the number of values
      */
-    public double[][] asDoubleArray() {
+    private static int countValues(final String line) {
+        int count = 1;
+        for (int i = line.indexOf(','); i >= 0; i = line.indexOf(',', i + 1)) {
+            count++;
+        }
+        return count;
+    }
 
-        double returnList[][] = new double[getRowCount()][getLogicalColumnCount()];
-        for (int i = 0; i < getRowCount(); i++) {
-            for (int j = 0; j < getLogicalColumnCount(); j++) {
-                returnList[i][j] = this.getLogicalValueAt(i, j);
+    /**
+     * Parse the comma-separated values in one line of a .csv file.
+     *
+     * @param line the line
+     * @param cols the number of values to keep
+     * @return the values
+     */
+    private static double[] parseRow(final String line, final int cols) {
+        double[] row = new double[cols];
+        int start = 0;
+        for (int j = 0; j < cols && start <= line.length(); j++) {
+            int end = line.indexOf(',', start);
+            if (end < 0) {
+                end = line.length();
+            }
+            String value = line.substring(start, end).trim();
+            if (value.length() > 1 && value.charAt(0) == '"'
+                    && value.charAt(value.length() - 1) == '"') {
+                value = value.substring(1, value.length() - 1).trim();
+            }
+            if (value.length() > 0) {
+                try {
+                    row[j] = Double.parseDouble(value);
+                } catch (NumberFormatException exception) {
+                }
             }
+            start = end + 1;
         }
-        return returnList;
+        return row;
     }
 
+    /**
+     * Returns a double array representation of the table. The rows are
+     * copies.
+     *
+     * @return representation of table as double array
+     */
+    public double[][] asDoubleArray() {
+        double returnList[][] = new double[data.length][];
+        for (int i = 0; i < data.length; i++) {
+            returnList[i] = data[i].clone();
+        }
+        return returnList;
+    }
     /**
      * Fill the table at selected indices with the indicated value.
      *
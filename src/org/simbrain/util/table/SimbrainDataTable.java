@@ -33,10 +33,11 @@ import com.thoughtworks.xstream.io.xml.DomDriver;
  * Superclass for tables that can be viewed by a SimbrainJTable, and saved in a
  * reasonable, readable way with XStream.
  *
- * All data are backed to a list of lists. This data structure can then be
- * converted to other data structures (e.g. a 2d array of doubles) as needed.
- * This is not as fast as alternatives but it's pretty fast and so suitable for
- * most purposes.
+ * By default data are backed to a list of lists. This data structure can then
+ * be converted to other data structures (e.g. a 2d array of doubles) as
+ * needed. This is not as fast as alternatives but it's pretty fast and so
+ * suitable for most purposes. Subclasses that hold a lot of data can override
+ * the accessors to use their own storage (see NumericTable).
  *
  * This class can also be subclassed and relevant methods overridden for an
  * immutable, view type setup. For an example see WeightMatrixViewer.
@@ -56,7 +57,7 @@ public abstract class SimbrainDataTable<T> extends AbstractTableModel {
 
     /**
      * The data. For use with mutable tables. Subclasses can choose not to make
-     * use of this (e.g. WeightMatrixViewer)
+     * use of this (e.g. WeightMatrixViewer, NumericTable)
      */
     protected final List<List<T>> rowData;
 
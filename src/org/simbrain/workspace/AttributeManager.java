@@ -17,6 +17,10 @@
  */
 package org.simbrain.workspace;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.WrongMethodTypeException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 
@@ -78,6 +82,13 @@ public class AttributeManager {
 
             private Method theMethod;
 
+            /**
+             * The method bound to the parent object and argument values, or
+             * null if it could not be resolved as a method handle (in which
+             * case the method is invoked reflectively).
+             */
+            private MethodHandle theHandle;
+
             // Static initializer
             {
                 try {
@@ -88,6 +99,9 @@ public class AttributeManager {
                         theMethod = parentObject.getClass().getMethod(
                                 methodName, argumentDataTypes);
                     }
+                    theHandle = bindMethod(theMethod, parentObject,
+                            argumentValues, MethodType.methodType(
+                                    Object.class));
                 } catch (SecurityException e1) {
                     e1.printStackTrace();
                 } catch (NoSuchMethodException e1) {
@@ -103,6 +117,16 @@ public class AttributeManager {
              * {@inheritDoc}
              */
             public Object getValue() {
+                if (theHandle != null) {
+                    try {
+                        return (Object) theHandle.invokeExact();
+                    } catch (Error e) {
+                        throw e;
+                    } catch (Throwable e) {
+                        e.printStackTrace();
+                    }
+                    return null;
+                }
                 try {
                     return theMethod.invoke(parentObject, argumentValues);
                 } catch (IllegalArgumentException e) {
@@ -212,12 +236,24 @@ public class AttributeManager {
 
             private Method theMethod;
 
+            /**
+             * The method bound to the parent object and auxiliary argument
+             * values, taking the consumed value as its only argument, or null
+             * if it could not be resolved as a method handle (in which case
+             * the method is invoked reflectively).
+             */
+            private MethodHandle theHandle;
+
             // Static initializer
             {
                 // System.out.println(Arrays.asList(argumentDataTypes));
                 try {
                     theMethod = parentObject.getClass().getMethod(methodName,
                             argumentDataTypes);
+                    theHandle = bindMethod(theMethod, parentObject,
+                            argumentDataTypes.length == 1 ? null
+                                    : argumentValues, MethodType.methodType(
+                                    void.class, Object.class));
                 } catch (SecurityException e1) {
                     e1.printStackTrace();
                 } catch (NoSuchMethodException e1) {
@@ -238,6 +274,16 @@ public class AttributeManager {
              * {@inheritDoc}
              */
             public void setValue(Object value) {
+                if (theHandle != null) {
+                    try {
+                        theHandle.invokeExact(value);
+                    } catch (Error e) {
+                        throw e;
+                    } catch (Throwable e) {
+                        e.printStackTrace();
+                    }
+                    return;
+                }
                 try {
 
                     if (argumentDataTypes.length == 1) {
@@ -315,6 +361,40 @@ public class AttributeManager {
 
     }
 
+    /**
+     * Resolve a method as a method handle bound to its object and to any
+     * auxiliary argument values (which follow the consumed value, if any), and
+     * adapted to a generic type so that it can be invoked exactly without
+     * reflection on each coupling update.
+     *
+     * @param method the method to bind
+     * @param parentObject the object to invoke the method on
+     * @param argumentValues auxiliary argument values, or null if there are
+     *            none
+     * @param type the generic type to adapt the handle to
+     * @return the bound handle, or null if the method cannot be accessed as a
+     *         method handle
+     */
+    private static MethodHandle bindMethod(final Method method,
+            final Object parentObject, final Object[] argumentValues,
+            final MethodType type) {
+        try {
+            MethodHandle handle = MethodHandles.publicLookup()
+                    .unreflect(method).bindTo(parentObject);
+            if (argumentValues != null && argumentValues.length > 0) {
+                handle = MethodHandles.insertArguments(handle,
+                        type.parameterCount(), argumentValues);
+            }
+            return handle.asType(type);
+        } catch (IllegalAccessException e) {
+            // E.g. a public method of a non-public class; fall back on
+            // reflection
+            return null;
+        } catch (WrongMethodTypeException e) {
+            return null;
+        }
+    }
+
     /**
      * Create an actual consumer from a potential consumer.
      *
@@ -124,18 +124,28 @@ public final class Coupling<E> {
                 .getParentComponent();
 
         try {
-            buffer = Workspace.syncRest(
-                    producerComponent.getLocks().iterator(), new Callable<E>() {
+            Workspace.syncRest(producerComponent.getLocks().iterator(),
+                    new Callable<E>() {
                         public E call() throws Exception {
-                            return producer.getValue();
+                            bufferProducerValue();
+                            return null;
                         }
                     });
         } catch (Exception e) {
             // TODO exception service?
             e.printStackTrace();
         }
+    }
 
-        LOGGER.debug("buffer set: " + buffer);
+    /**
+     * Set value of buffer without synchronizing on the producer's component.
+     * The caller must hold the locks of the producer's component.
+     */
+    void bufferProducerValue() {
+        buffer = producer.getValue();
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("buffer set: " + buffer);
+        }
     }
 
     /**
@@ -149,15 +159,7 @@ public final class Coupling<E> {
                 Workspace.syncRest(consumerComponent.getLocks().iterator(),
                         new Callable<E>() {
                             public E call() throws Exception {
-                                consumer.setValue(buffer);
-                                LOGGER.debug(consumer.getParentComponent()
-                                        .getName()
-                                        + " just consumed "
-                                        + producer.getValue()
-                                        + " from "
-                                        + producer.getParentComponent()
-                                                .getName());
-
+                                consumeBufferValue();
                                 return null;
                             }
                         });
@@ -168,6 +170,20 @@ public final class Coupling<E> {
         }
     }
 
+    /**
+     * Pass the buffered value to the consumer without synchronizing on the
+     * consumer's component. The caller must hold the locks of the consumer's
+     * component.
+     */
+    void consumeBufferValue() {
+        consumer.setValue(buffer);
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug(consumer.getParentComponent().getName()
+                    + " just consumed " + buffer + " from "
+                    + producer.getParentComponent().getName());
+        }
+    }
+
     /**
      * @return the Producer
      */
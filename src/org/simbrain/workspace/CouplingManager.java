@@ -24,11 +24,18 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.log4j.Logger;
+import org.simbrain.util.metrics.MetricRegistry;
 
 /**
  * Manages all the couplings for a Workspace instance.
@@ -74,6 +81,32 @@ public class CouplingManager {
     /** Priority of this component; used in priority based workspace update. */
     private int priority = DEFAULT_PRIORITY;
 
+    /**
+     * The pool used to pass buffered values to the consumers of different
+     * components in parallel. Its worker threads are daemons, so it need not
+     * be shut down.
+     */
+    private static final ForkJoinPool CONSUMER_POOL = new ForkJoinPool();
+
+    /**
+     * If true, couplings are updated in batches, one per producing and one per
+     * consuming component, rather than one at a time. See
+     * {@link #updateAllCouplings()}.
+     */
+    private volatile boolean batchedUpdate = true;
+
+    /** The couplings grouped by component; null if they must be regrouped. */
+    private volatile CouplingBatches batches;
+
+    /** Metrics for the coupling phase (see {@link #recordUpdateTime(long)}). */
+    private static final MetricRegistry METRICS = MetricRegistry.getInstance();
+
+    /** Total time spent updating couplings, in nanoseconds. */
+    private final AtomicLong updateNanos = new AtomicLong();
+
+    /** Number of times couplings have been updated. */
+    private final AtomicLong updateCount = new AtomicLong();
+
     /** List of listeners to fire updates when couplings are changed. */
     private List<CouplingListener> couplingListeners = new ArrayList<CouplingListener>();
 
@@ -172,6 +205,7 @@ public class CouplingManager {
      */
     public void clearCouplings() {
         couplingList.clear();
+        batches = null;
     }
 
     /**
@@ -197,18 +231,37 @@ public class CouplingManager {
     }
 
     /**
-     * Updates all couplings in the workspace.
+     * Updates all couplings in the workspace. All producer values are read
+     * into the couplings' buffers before any are passed to consumers, so the
+     * order in which couplings are updated does not matter.
+     * <p>
+     * In batched mode (the default) the couplings are grouped by component.
+     * The producers of each component are read in one pass while holding that
+     * component's locks once, and the consumers of each component are then
+     * written in one pass while holding its locks, with different consuming
+     * components written in parallel. Otherwise each coupling synchronizes
+     * on its producer's and consumer's components separately.
      */
     public void updateAllCouplings() {
         LOGGER.debug("updating all couplings");
-        for (Coupling<?> coupling : getCouplings()) {
-            LOGGER.trace(coupling.getClass());
-            coupling.setBuffer();
-        }
+        long start = System.nanoTime();
+        if (batchedUpdate) {
+            CouplingBatches current = batches;
+            if (current == null) {
+                current = new CouplingBatches(couplingList);
+                batches = current;
+            }
+            current.update();
+        } else {
+            for (Coupling<?> coupling : getCouplings()) {
+                coupling.setBuffer();
+            }
 
-        for (Coupling<?> coupling : getCouplings()) {
-            coupling.update();
+            for (Coupling<?> coupling : getCouplings()) {
+                coupling.update();
+            }
         }
+        recordUpdateTime(start);
     }
 
     /**
@@ -323,6 +376,7 @@ public class CouplingManager {
             throw new UmatchedAttributesException(warning);
         }
         couplingList.add(coupling);
+        batches = null;
 
         // Populate source / target maps (used to return lists of couplings
         // connecting particular workspace components together)
@@ -470,6 +524,7 @@ public class CouplingManager {
         // consumingAttributes.remove(coupling.getConsumingAttribute());
 
         couplingList.remove(coupling);
+        batches = null;
 
         removeCouplingFromList(sourceTargetCouplings.get(sourceTarget),
                 coupling);
@@ -622,13 +677,258 @@ public class CouplingManager {
      * @param couplingList the list of couplings to be updated
      */
     public void updateCouplings(List<Coupling<?>> couplingList) {
-        for (Coupling<?> coupling : couplingList) {
-            coupling.setBuffer();
+        long start = System.nanoTime();
+        if (batchedUpdate) {
+            new CouplingBatches(couplingList).update();
+        } else {
+            for (Coupling<?> coupling : couplingList) {
+                coupling.setBuffer();
+            }
+
+            for (Coupling<?> coupling : couplingList) {
+                coupling.update();
+            }
         }
+        recordUpdateTime(start);
+    }
 
-        for (Coupling<?> coupling : couplingList) {
-            coupling.update();
+    /**
+     * @return true if couplings are updated in batches per component
+     */
+    public boolean isBatchedUpdate() {
+        return batchedUpdate;
+    }
+
+    /**
+     * Set whether couplings are updated in batches per component (see
+     * {@link #updateAllCouplings()}) or one at a time.
+     *
+     * @param batchedUpdate true to update couplings in batches
+     */
+    public void setBatchedUpdate(final boolean batchedUpdate) {
+        this.batchedUpdate = batchedUpdate;
+    }
+
+    /**
+     * Couplings grouped by producing component and by consuming component.
+     */
+    private static class CouplingBatches {
+
+        /** One batch per producing component. */
+        private final List<ComponentBatch> producerBatches;
+
+        /** One batch per consuming component. */
+        private final List<ComponentBatch> consumerBatches;
+
+        /**
+         * @param couplings the couplings to group
+         */
+        CouplingBatches(final List<Coupling<?>> couplings) {
+            Map<WorkspaceComponent, List<Coupling<?>>> byProducer =
+                    new LinkedHashMap<WorkspaceComponent, List<Coupling<?>>>();
+            Map<WorkspaceComponent, List<Coupling<?>>> byConsumer =
+                    new LinkedHashMap<WorkspaceComponent, List<Coupling<?>>>();
+            for (Coupling<?> coupling : couplings) {
+                if (coupling.getProducer() == null
+                        || coupling.getConsumer() == null) {
+                    continue;
+                }
+                addToGroup(byProducer, coupling.getProducer()
+                        .getParentComponent(), coupling);
+                addToGroup(byConsumer, coupling.getConsumer()
+                        .getParentComponent(), coupling);
+            }
+            producerBatches = new ArrayList<ComponentBatch>(byProducer.size());
+            for (Map.Entry<WorkspaceComponent, List<Coupling<?>>> entry
+                    : byProducer.entrySet()) {
+                producerBatches.add(new ComponentBatch(entry.getKey(), entry
+                        .getValue(), true));
+            }
+            consumerBatches = new ArrayList<ComponentBatch>(byConsumer.size());
+            for (Map.Entry<WorkspaceComponent, List<Coupling<?>>> entry
+                    : byConsumer.entrySet()) {
+                consumerBatches.add(new ComponentBatch(entry.getKey(), entry
+                        .getValue(), false));
+            }
+        }
+
+        /**
+         * Add a coupling to the group for a component.
+         *
+         * @param groups the groups
+         * @param component the component
+         * @param coupling the coupling
+         */
+        private static void addToGroup(
+                final Map<WorkspaceComponent, List<Coupling<?>>> groups,
+                final WorkspaceComponent component, final Coupling<?> coupling) {
+            List<Coupling<?>> group = groups.get(component);
+            if (group == null) {
+                group = new ArrayList<Coupling<?>>();
+                groups.put(component, group);
+            }
+            group.add(coupling);
+        }
+
+        /**
+         * @return true if the current thread holds any lock of a consuming
+         *         component
+         */
+        private boolean holdsConsumerLocks() {
+            for (ComponentBatch batch : consumerBatches) {
+                for (Object lock : batch.component.getLocks()) {
+                    if (Thread.holdsLock(lock)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
         }
+
+        /**
+         * Read all producers, then write all consumers.
+         */
+        void update() {
+            for (ComponentBatch batch : producerBatches) {
+                batch.run();
+            }
+            if (consumerBatches.size() == 1 || holdsConsumerLocks()) {
+                // Run on this thread, since pool threads could not acquire
+                // locks which this thread already holds
+                for (ComponentBatch batch : consumerBatches) {
+                    batch.run();
+                }
+            } else if (consumerBatches.size() > 1) {
+                for (Future<Void> future : CONSUMER_POOL
+                        .invokeAll(consumerBatches)) {
+                    try {
+                        future.get();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } catch (ExecutionException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The couplings produced by, or consumed by, one component.
+     */
+    private static class ComponentBatch implements Callable<Void> {
+
+        /** The component. */
+        private final WorkspaceComponent component;
+
+        /** The couplings. */
+        private final Coupling<?>[] couplings;
+
+        /** True to read producers, false to write consumers. */
+        private final boolean produce;
+
+        /**
+         * @param component the component
+         * @param couplings the couplings produced or consumed by it
+         * @param produce true to read producers, false to write consumers
+         */
+        ComponentBatch(final WorkspaceComponent component,
+                final List<Coupling<?>> couplings, final boolean produce) {
+            this.component = component;
+            this.couplings = couplings.toArray(new Coupling<?>[couplings
+                    .size()]);
+            this.produce = produce;
+        }
+
+        /**
+         * Read or write the couplings while holding the component's locks.
+         *
+         * @return null
+         * @throws Exception if synchronizing on the component fails
+         */
+        @Override
+        public Void call() throws Exception {
+            return Workspace.syncRest(component.getLocks().iterator(),
+                    new Callable<Void>() {
+                        public Void call() {
+                            for (Coupling<?> coupling : couplings) {
+                                try {
+                                    if (produce) {
+                                        coupling.bufferProducerValue();
+                                    } else {
+                                        coupling.consumeBufferValue();
+                                    }
+                                } catch (RuntimeException e) {
+                                    // TODO exception service?
+                                    e.printStackTrace();
+                                }
+                            }
+                            return null;
+                        }
+                    });
+        }
+
+        /**
+         * Read or write the couplings on the current thread.
+         */
+        void run() {
+            try {
+                call();
+            } catch (Exception e) {
+                // TODO exception service?
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Add the time elapsed since a coupling update started to the total.
+     *
+     * @param start value of {@link System#nanoTime()} when the update started
+     */
+    private void recordUpdateTime(final long start) {
+        long elapsed = System.nanoTime() - start;
+        updateNanos.addAndGet(elapsed);
+        updateCount.incrementAndGet();
+        if (METRICS.isEnabled()) {
+            METRICS.getTimer("workspace.couplings").record(elapsed);
+            METRICS.count("workspace.couplings.updated", couplingList.size());
+        }
+    }
+
+    /**
+     * Returns the total time spent updating couplings (producing and
+     * consuming values) since this manager was created or the timer was last
+     * reset.
+     *
+     * @return the total update time in milliseconds
+     */
+    public double getTotalUpdateTime() {
+        return updateNanos.get() / 1e6;
+    }
+
+    /**
+     * @return the number of coupling updates included in the total update
+     *         time
+     */
+    public long getNumUpdates() {
+        return updateCount.get();
+    }
+
+    /**
+     * @return the mean time per coupling update, in milliseconds
+     */
+    public double getMeanUpdateTime() {
+        long count = updateCount.get();
+        return count == 0 ? 0 : getTotalUpdateTime() / count;
+    }
+
+    /**
+     * Reset the total update time and number of updates to zero.
+     */
+    public void resetUpdateTime() {
+        updateNanos.set(0);
+        updateCount.set(0);
     }
 
     /**
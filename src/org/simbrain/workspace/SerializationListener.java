@@ -0,0 +1,37 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.workspace;
+
+/**
+ * Interface for listeners on the saving and opening of a workspace by a
+ * {@link WorkspaceSerializer}. Notifications are made on the thread which is
+ * saving or opening the workspace.
+ */
+public interface SerializationListener {
+
+    /**
+     * Called each time a component has been saved or opened. Used for (e.g.)
+     * progress bars.
+     *
+     * @param progressUpdate a message about the component which is done
+     * @param percentComplete percentage of the components which are done
+     */
+    void progressUpdated(String progressUpdate, int percentComplete);
+
+}
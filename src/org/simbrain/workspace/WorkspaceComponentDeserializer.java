@@ -20,8 +20,8 @@ package org.simbrain.workspace;
 
 import java.io.InputStream;
 import java.lang.reflect.Method;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.simbrain.workspace.gui.GuiComponent;
 
@@ -32,8 +32,11 @@ import org.simbrain.workspace.gui.GuiComponent;
  */
 public class WorkspaceComponentDeserializer {
 
-    /** A map of keys to their components. */
-    private final Map<String, WorkspaceComponent> componentKeys = new HashMap<String, WorkspaceComponent>();
+    /**
+     * A map of keys to their components. Components may be deserialized from
+     * several threads at once.
+     */
+    private final Map<String, WorkspaceComponent> componentKeys = new ConcurrentHashMap<String, WorkspaceComponent>();
 
     /**
      * Returns the workspace component associated with the given uri.
@@ -51,7 +51,21 @@ public class WorkspaceComponentSerializer {
      * @return The id for the component that was serialized.
      */
     int serializeComponent(final WorkspaceComponent component) {
-        component.save(stream, null);
+        return serializeComponent(component, stream);
+    }
+
+    /**
+     * Serializes a component to a given stream and returns the id for that
+     * component. Components which already have ids may be serialized from
+     * several threads at once.
+     *
+     * @param component The component to serialize.
+     * @param output The stream to write to.
+     * @return The id for the component that was serialized.
+     */
+    int serializeComponent(final WorkspaceComponent component,
+            final OutputStream output) {
+        component.save(output, null);
         return getId(component);
     }
 }
@@ -28,11 +28,19 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
@@ -51,12 +59,19 @@ import com.thoughtworks.xstream.io.xml.DomDriver;
  * has been made to allow reuse between individual component save / reopen and
  * workspace level save / reopen.
  *
+ * Components are saved and opened concurrently on a shared pool: each
+ * component is written to its own buffer, and the buffers are then added to
+ * the zip archive in order. When opening from a file, entries are read from
+ * the file as needed rather than from a copy of the whole archive. Components
+ * are added to the workspace in order, on the calling thread, and a
+ * {@link SerializationListener} is told as each one is saved or opened.
+ *
  * @author Matt Watson
  */
 public class WorkspaceSerializer {
 
     /** The number of bytes to attempt to read at a time from an InputStream. */
-    private static final int BUFFER_SIZE = 1024;
+    private static final int BUFFER_SIZE = 8192;
 
     /** The current workspace. */
     private final Workspace workspace;
@@ -64,6 +79,10 @@ public class WorkspaceSerializer {
     /** The desktop component for the workspace. */
     private final SimbrainDesktop desktop;
 
+    /** Listeners notified as each component is saved or opened. */
+    private final List<SerializationListener> listeners =
+            new ArrayList<SerializationListener>();
+
     /**
      * Creates a new serializer.
      *
@@ -110,7 +129,9 @@ public class WorkspaceSerializer {
     }
 
     /**
-     * Serializes all the components to the given archive and zipstream.
+     * Serializes all the components to the given archive and zipstream. Each
+     * component is saved to its own buffer on the pool, and the buffers are
+     * written to the zipstream in the order of the component list.
      *
      * @param serializer The serializer for the components.
      * @param archive The archive contents to update.
@@ -122,21 +143,42 @@ public class WorkspaceSerializer {
             final ArchiveContents archive, final ZipOutputStream zipStream)
             throws IOException {
 
-        for (WorkspaceComponent component : workspace.getComponentList()) {
+        List<? extends WorkspaceComponent> components = workspace
+                .getComponentList();
+        List<ArchiveContents.ArchivedComponent> archived =
+                new ArrayList<ArchiveContents.ArchivedComponent>();
+        List<Future<ByteArrayOutputStream>> buffers =
+                new ArrayList<Future<ByteArrayOutputStream>>();
+
+        // Ids are assigned here, in order, before any saving starts
+        for (final WorkspaceComponent component : components) {
+            archived.add(archive.addComponent(component));
+            buffers.add(submit(new Callable<ByteArrayOutputStream>() {
+                public ByteArrayOutputStream call() {
+                    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                    serializer.serializeComponent(component, buffer);
+                    return buffer;
+                }
+            }, components.size()));
+        }
 
-            ArchiveContents.ArchivedComponent archiveComp = archive
-                    .addComponent(component);
+        for (int i = 0; i < components.size(); i++) {
+            WorkspaceComponent component = components.get(i);
+            ArchiveContents.ArchivedComponent archiveComp = archived.get(i);
 
             ZipEntry entry = new ZipEntry(archiveComp.getUri());
             zipStream.putNextEntry(entry);
-            serializer.serializeComponent(component);
+            await(buffers.get(i)).writeTo(zipStream);
 
-            GuiComponent<?> desktopComponent = SimbrainDesktop.getDesktop(
-                    workspace).getDesktopComponent(component);
+            GuiComponent<?> desktopComponent = null;
+            if (desktop != null) {
+                desktopComponent = desktop.getDesktopComponent(component);
+            }
 
             /*
              * If there is a desktop component associated with the component
-             * it's serialized here.
+             * it's serialized here. There is none when running without a
+             * desktop.
              */
             if (desktopComponent != null) {
                 ArchiveContents.ArchivedComponent.ArchivedDesktopComponent dc = archiveComp
@@ -145,6 +187,8 @@ public class WorkspaceSerializer {
                 zipStream.putNextEntry(entry);
                 desktopComponent.save(zipStream);
             }
+            fireProgressUpdate("Saved " + component.getName(), i + 1,
+                    components.size());
         }
     }
 
@@ -160,75 +204,141 @@ public class WorkspaceSerializer {
     }
 
     /**
-     * Creates a workspace from a zip compressed input stream.
+     * Creates a workspace from a zip compressed input stream. The entries are
+     * read in a single pass, each into its own array, since the contents file
+     * which describes them comes last. Use {@link #deserialize(File)} to avoid
+     * holding the whole archive in memory.
      *
      * @param stream The stream to read from. This is expected to be zip
      *            compressed.
      * @param exclude The list of uris to ignore on import.
      * @throws IOException if an IO error occurs.
      */
-    @SuppressWarnings("unchecked")
     public void deserialize(final InputStream stream,
             final Collection<? extends String> exclude) throws IOException {
-        Map<String, byte[]> entries = new HashMap<String, byte[]>();
-        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
-
+        final Map<String, byte[]> entries = new HashMap<String, byte[]>();
+        ZipInputStream zip = new ZipInputStream(stream);
         byte[] buffer = new byte[BUFFER_SIZE];
-
-        for (int read; (read = stream.read(buffer)) >= 0;) {
-            bytes.write(buffer, 0, read);
+        for (ZipEntry entry; (entry = zip.getNextEntry()) != null;) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            for (int read; (read = zip.read(buffer)) >= 0;) {
+                bytes.write(buffer, 0, read);
+            }
+            entries.put(entry.getName(), bytes.toByteArray());
         }
+        deserialize(new ArchiveEntries() {
+            public InputStream open(final String uri) throws IOException {
+                byte[] data = entries.get(uri);
+                if (data == null) {
+                    throw new IOException("Missing archive entry " + uri);
+                }
+                return new ByteArrayInputStream(data);
+            }
+        }, exclude);
+    }
 
-        ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(
-                bytes.toByteArray()));
-        ArchiveContents contents = null;
-        WorkspaceComponentDeserializer componentDeserializer = new WorkspaceComponentDeserializer();
-
-        ZipEntry entry = zip.getNextEntry();
+    /**
+     * Deserializes a workspace from a zip file.
+     *
+     * @param file The zip file.
+     * @throws IOException If an IO error occurs.
+     */
+    public void deserialize(final File file) throws IOException {
+        Collection<? extends String> empty = Collections.emptySet();
+        deserialize(file, empty);
+    }
 
-        for (ZipEntry next; entry != null; entry = next) {
-            next = zip.getNextEntry();
-            entries.put(entry.getName(), new byte[(int) entry.getSize()]);
+    /**
+     * Creates a workspace from a zip file. Entries are read directly from the
+     * file, concurrently where components are opened concurrently.
+     *
+     * @param file The zip file.
+     * @param exclude The list of uris to ignore on import.
+     * @throws IOException if an IO error occurs.
+     */
+    public void deserialize(final File file,
+            final Collection<? extends String> exclude) throws IOException {
+        final ZipFile zip = new ZipFile(file);
+        try {
+            deserialize(new ArchiveEntries() {
+                public InputStream open(final String uri) throws IOException {
+                    ZipEntry entry = zip.getEntry(uri);
+                    if (entry == null) {
+                        throw new IOException("Missing archive entry " + uri);
+                    }
+                    return zip.getInputStream(entry);
+                }
+            }, exclude);
+        } finally {
+            zip.close();
         }
+    }
 
-        zip = new ZipInputStream(new ByteArrayInputStream(bytes.toByteArray()));
-
-        while ((entry = zip.getNextEntry()) != null) {
-            byte[] data = entries.get(entry.getName());
-            read(zip, data);
-        }
+    /**
+     * Creates a workspace from the entries of an archive.
+     *
+     * @param entries The entries of the archive.
+     * @param exclude The list of uris to ignore on import.
+     * @throws IOException if an IO error occurs.
+     */
+    @SuppressWarnings("unchecked")
+    private void deserialize(final ArchiveEntries entries,
+            final Collection<? extends String> exclude) throws IOException {
+        final WorkspaceComponentDeserializer componentDeserializer = new WorkspaceComponentDeserializer();
 
         // Get the archived contents file.
-        contents = (ArchiveContents) ArchiveContents.xstream().fromXML(
-                new ByteArrayInputStream(entries.get("contents.xml")));
+        ArchiveContents contents = (ArchiveContents) ArchiveContents.xstream()
+                .fromXML(read(entries, "contents.xml"));
 
         // Add Components
         if (contents.getArchivedComponents() != null) {
+            List<ArchiveContents.ArchivedComponent> archived =
+                    new ArrayList<ArchiveContents.ArchivedComponent>();
             for (ArchiveContents.ArchivedComponent archivedComponent : contents
                     .getArchivedComponents()) {
-                if (exclude.contains(archivedComponent.getUri())) {
-                    continue;
+                if (!exclude.contains(archivedComponent.getUri())) {
+                    archived.add(archivedComponent);
                 }
+            }
+
+            List<Future<WorkspaceComponent>> components =
+                    new ArrayList<Future<WorkspaceComponent>>();
+            for (final ArchiveContents.ArchivedComponent archivedComponent : archived) {
+                components.add(submit(new Callable<WorkspaceComponent>() {
+                    public WorkspaceComponent call() throws IOException {
+                        InputStream input = entries.open(archivedComponent
+                                .getUri());
+                        try {
+                            return componentDeserializer
+                                    .deserializeWorkspaceComponent(
+                                            archivedComponent, input);
+                        } finally {
+                            input.close();
+                        }
+                    }
+                }, archived.size()));
+            }
 
-                WorkspaceComponent wc = componentDeserializer
-                        .deserializeWorkspaceComponent(
-                                archivedComponent,
-                                new ByteArrayInputStream(entries
-                                        .get(archivedComponent.getUri())));
+            for (int i = 0; i < archived.size(); i++) {
+                ArchiveContents.ArchivedComponent archivedComponent = archived
+                        .get(i);
+                WorkspaceComponent wc = await(components.get(i));
 
                 // This will cause a desktop component (GuiComponent) to be
                 // created
                 workspace.addWorkspaceComponent(wc);
 
-                if (archivedComponent.getDesktopComponent() != null) {
+                if (desktop != null
+                        && archivedComponent.getDesktopComponent() != null) {
                     Rectangle bounds = (Rectangle) new XStream(new DomDriver())
-                            .fromXML(new ByteArrayInputStream(entries
-                                    .get(archivedComponent
-                                            .getDesktopComponent().getUri())));
+                            .fromXML(read(entries, archivedComponent
+                                    .getDesktopComponent().getUri()));
                     GuiComponent<?> desktopComponent = desktop
                             .getDesktopComponent(wc);
                     desktopComponent.getParentFrame().setBounds(bounds);
                 }
+                fireProgressUpdate("Opened " + wc.getName(), i + 1,
+                        archived.size());
             }
         }
 
@@ -312,22 +422,108 @@ public class WorkspaceSerializer {
     }
 
     /**
-     * Helper method that will read the InputStream repeatedly until the given
-     * array is filled.
+     * Helper method that reads an archive entry into memory, so that it can
+     * be parsed after the entry's stream is closed.
      *
-     * @param istream the InputStream to read from.
-     * @param bytes the array to write to
+     * @param entries the entries of the archive
+     * @param uri the uri of the entry to read
+     * @return a stream over the entry's contents
      * @throws IOException if there is an IO error
      */
-    private static void read(final InputStream istream, final byte[] bytes)
-            throws IOException {
-        int pos = 0;
-        while (pos < bytes.length) {
-            int read = istream.read(bytes, pos, bytes.length - pos);
-            if (read < 0) {
-                throw new RuntimeException("premature EOF");
+    private static InputStream read(final ArchiveEntries entries,
+            final String uri) throws IOException {
+        InputStream input = entries.open(uri);
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            for (int read; (read = input.read(buffer)) >= 0;) {
+                bytes.write(buffer, 0, read);
             }
-            pos += read;
+            return new ByteArrayInputStream(bytes.toByteArray());
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Runs a task on the pool, or on the calling thread if it is the only
+     * one of its kind.
+     *
+     * @param <T> the type of the task's result
+     * @param task the task
+     * @param count the number of such tasks
+     * @return the future result of the task
+     */
+    private static <T> Future<T> submit(final Callable<T> task,
+            final int count) {
+        if (count > 1) {
+            return Pool.POOL.submit(task);
+        }
+        FutureTask<T> future = new FutureTask<T>(task);
+        future.run();
+        return future;
+    }
+
+    /**
+     * Waits for the result of a task submitted to the pool, rethrowing any
+     * exception it threw.
+     *
+     * @param <T> the type of the task's result
+     * @param future the future result
+     * @return the result
+     * @throws IOException if the task threw an IO error
+     */
+    private static <T> T await(final Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * Add a listener to be notified as each component is saved or opened.
+     *
+     * @param listener the listener to add
+     */
+    public void addSerializationListener(
+            final SerializationListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Remove a serialization listener.
+     *
+     * @param listener the listener to remove
+     */
+    public void removeSerializationListener(
+            final SerializationListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Notify listeners that another component has been saved or opened.
+     *
+     * @param progressUpdate a message about the component
+     * @param done the number of components done so far
+     * @param total the total number of components
+     */
+    private void fireProgressUpdate(final String progressUpdate,
+            final int done, final int total) {
+        int percentComplete = (100 * done) / total;
+        for (SerializationListener listener : listeners) {
+            listener.progressUpdated(progressUpdate, percentComplete);
         }
     }
 
@@ -386,4 +582,30 @@ public class WorkspaceSerializer {
         }
     }
 
+    /**
+     * Access to the entries of a workspace archive by uri. Implementations
+     * must allow entries to be opened from several threads at once.
+     */
+    private interface ArchiveEntries {
+
+        /**
+         * Open an entry.
+         *
+         * @param uri the uri of the entry
+         * @return a stream over the entry's contents, to be closed by the
+         *         caller
+         * @throws IOException if the entry is missing or cannot be read
+         */
+        InputStream open(String uri) throws IOException;
+    }
+
+    /**
+     * Holds the pool, so that it is only created when first used.
+     */
+    private static final class Pool {
+
+        /** The pool shared by all serializers. */
+        private static final ForkJoinPool POOL = new ForkJoinPool();
+    }
+
 }
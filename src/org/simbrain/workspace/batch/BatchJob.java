@@ -0,0 +1,104 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.workspace.batch;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Describes one headless run: a saved workspace, the number of iterations to
+ * run it for, the producers to record and the file to record them to.
+ *
+ * Producers are named as "component name/producer description", for example
+ * "Network 1/Neuron_3:getActivation". The description is the one shown in the
+ * coupling manager. Only the first slash separates the two parts.
+ *
+ * @see BatchRunner
+ */
+public class BatchJob {
+
+    /** The workspace zip file to open. */
+    private final File workspaceFile;
+
+    /** Number of iterations to run. */
+    private final int iterations;
+
+    /** The csv file producer values are written to. */
+    private final File outputFile;
+
+    /** The producers to record, as "component/description". */
+    private final List<String> producers;
+
+    /**
+     * Construct a batch job.
+     *
+     * @param workspaceFile the workspace zip file to open
+     * @param iterations number of iterations to run
+     * @param outputFile the csv file to write to; null to record nothing
+     * @param producers the producers to record, as "component/description"
+     */
+    public BatchJob(final File workspaceFile, final int iterations,
+            final File outputFile, final List<String> producers) {
+        if (iterations < 0) {
+            throw new IllegalArgumentException("Negative iteration count: "
+                    + iterations);
+        }
+        this.workspaceFile = workspaceFile;
+        this.iterations = iterations;
+        this.outputFile = outputFile;
+        this.producers = Collections.unmodifiableList(new ArrayList<String>(
+                producers));
+    }
+
+    /**
+     * @return the workspace zip file to open
+     */
+    public File getWorkspaceFile() {
+        return workspaceFile;
+    }
+
+    /**
+     * @return the number of iterations to run
+     */
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * @return the csv file producer values are written to, or null
+     */
+    public File getOutputFile() {
+        return outputFile;
+    }
+
+    /**
+     * @return the producers to record, as "component/description"
+     */
+    public List<String> getProducers() {
+        return producers;
+    }
+
+    @Override
+    public String toString() {
+        return workspaceFile.getName();
+    }
+
+}
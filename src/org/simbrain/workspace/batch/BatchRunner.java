@@ -0,0 +1,366 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.workspace.batch;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+import org.simbrain.network.NetworkComponent;
+import org.simbrain.util.math.RandomStreams;
+import org.simbrain.workspace.PotentialProducer;
+import org.simbrain.workspace.Producer;
+import org.simbrain.workspace.Workspace;
+import org.simbrain.workspace.WorkspaceComponent;
+import org.simbrain.workspace.WorkspaceSerializer;
+
+/**
+ * Runs saved workspaces without a desktop. Each {@link BatchJob} opens its
+ * workspace zip into a new {@link Workspace}, runs it for a set number of
+ * iterations and writes the selected producers to a csv file with a
+ * {@link ProducerRecorder}. Several jobs can run in parallel in one JVM, e.g.
+ * for a parameter sweep over copies of a workspace; each job has its own
+ * workspace and updater, so jobs share nothing but the JVM.
+ *
+ * Gui update events are switched off in the networks of a batch workspace,
+ * and update notifications are only queued when someone listens for them.
+ *
+ * From the command line:
+ *
+ * <pre>
+ * java -cp Simbrain.jar org.simbrain.workspace.batch.BatchRunner
+ *     --iterations 1000 [--threads 4] [--output results] [--seed 42]
+ *     [--record "Network 1/Neuron_1:getActivation"]... workspace.zip...
+ * java -cp Simbrain.jar org.simbrain.workspace.batch.BatchRunner
+ *     --list workspace.zip
+ * </pre>
+ *
+ * Each workspace is recorded to a csv file in the output directory named
+ * after the workspace. --list prints the producers a workspace offers, in
+ * the form --record expects. --seed sets the master seed of
+ * {@link RandomStreams}, so that a run with one thread can be repeated
+ * exactly.
+ */
+public final class BatchRunner {
+
+    /** The static logger for this class. */
+    private static final Logger LOGGER = Logger.getLogger(BatchRunner.class);
+
+    /** Usage message for the command line. */
+    private static final String USAGE = "Usage: BatchRunner --iterations n"
+            + " [--threads n] [--output dir] [--seed n]"
+            + " [--record component/producer]..."
+            + " workspace.zip...\n       BatchRunner --list workspace.zip...";
+
+    /**
+     * No instances.
+     */
+    private BatchRunner() {
+    }
+
+    /**
+     * Open a workspace zip into a new workspace set up for headless running.
+     *
+     * @param file the workspace zip file
+     * @return the workspace
+     * @throws IOException if the file cannot be read
+     */
+    public static Workspace open(final File file) throws IOException {
+        Workspace workspace = new Workspace();
+        new WorkspaceSerializer(workspace).deserialize(file);
+        for (WorkspaceComponent component : workspace.getComponentList()) {
+            if (component instanceof NetworkComponent) {
+                ((NetworkComponent) component).getNetwork().setFireUpdates(
+                        false);
+            }
+        }
+        return workspace;
+    }
+
+    /**
+     * Run one job, blocking until it is finished.
+     *
+     * @param job the job to run
+     * @param threads number of threads used to update the job's components
+     * @throws IOException if the workspace cannot be read or the output
+     *             cannot be written
+     */
+    public static void run(final BatchJob job, final int threads)
+            throws IOException {
+        Workspace workspace = open(job.getWorkspaceFile());
+        try {
+            if (workspace.getUpdater().getNumThreads() != threads) {
+                workspace.getUpdater().setNumThreads(threads);
+            }
+            Writer writer = null;
+            ProducerRecorder recorder = null;
+            if (job.getOutputFile() != null) {
+                List<Producer<?>> producers = findProducers(workspace,
+                        job.getProducers());
+                writer = new BufferedWriter(new OutputStreamWriter(
+                        new FileOutputStream(job.getOutputFile()), "UTF-8"));
+                recorder = new ProducerRecorder(workspace, producers,
+                        job.getProducers(), writer);
+                workspace.addUpdateAction(recorder);
+            }
+            try {
+                CountDownLatch latch = new CountDownLatch(1);
+                workspace.iterate(latch, job.getIterations());
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted running " + job);
+            } finally {
+                if (writer != null) {
+                    writer.close();
+                }
+            }
+            if (recorder != null && recorder.getError() != null) {
+                throw recorder.getError();
+            }
+        } finally {
+            workspace.getUpdater().shutdown();
+        }
+    }
+
+    /**
+     * Run jobs in parallel, blocking until all of them are finished. A failed
+     * job does not stop the others; failures are logged and reported once all
+     * jobs are done.
+     *
+     * @param jobs the jobs to run
+     * @param parallelism the number of jobs to run at once
+     * @throws IOException if any job failed; the first failure is the cause
+     */
+    public static void runAll(final List<BatchJob> jobs, final int parallelism)
+            throws IOException {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: "
+                    + parallelism);
+        }
+        final int threads = Math.max(1, Runtime.getRuntime()
+                .availableProcessors() / parallelism);
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+        List<Future<Void>> results = new ArrayList<Future<Void>>();
+        for (final BatchJob job : jobs) {
+            results.add(pool.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException {
+                    long start = System.currentTimeMillis();
+                    run(job, threads);
+                    LOGGER.info("Finished " + job + " in "
+                            + (System.currentTimeMillis() - start) + " ms");
+                    return null;
+                }
+            }));
+        }
+        pool.shutdown();
+
+        Throwable firstFailure = null;
+        int failures = 0;
+        for (int i = 0; i < jobs.size(); i++) {
+            try {
+                results.get(i).get();
+            } catch (InterruptedException e) {
+                pool.shutdownNow();
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted batch run");
+            } catch (ExecutionException e) {
+                LOGGER.error("Batch job " + jobs.get(i) + " failed",
+                        e.getCause());
+                if (firstFailure == null) {
+                    firstFailure = e.getCause();
+                }
+                failures++;
+            }
+        }
+        if (firstFailure != null) {
+            throw new IOException(failures + " of " + jobs.size()
+                    + " batch jobs failed", firstFailure);
+        }
+    }
+
+    /**
+     * Find producers by name.
+     *
+     * @param workspace the workspace to search
+     * @param names the producers, as "component/description"
+     * @return the producers, in the same order
+     * @throws IllegalArgumentException if a producer cannot be found
+     */
+    public static List<Producer<?>> findProducers(final Workspace workspace,
+            final List<String> names) {
+        List<Producer<?>> producers = new ArrayList<Producer<?>>(names.size());
+        for (String name : names) {
+            int slash = name.indexOf('/');
+            if (slash < 0) {
+                throw new IllegalArgumentException("Producer " + name
+                        + " is not of the form component/description");
+            }
+            String componentName = name.substring(0, slash);
+            String description = name.substring(slash + 1);
+            WorkspaceComponent component = null;
+            for (WorkspaceComponent c : workspace.getComponentList()) {
+                if (c.getName().equals(componentName)) {
+                    component = c;
+                    break;
+                }
+            }
+            if (component == null) {
+                throw new IllegalArgumentException("No component named "
+                        + componentName);
+            }
+            Producer<?> producer = null;
+            for (PotentialProducer potential : component
+                    .getPotentialProducers()) {
+                if (potential.getDescription().equals(description)) {
+                    producer = potential.createProducer();
+                    break;
+                }
+            }
+            if (producer == null) {
+                throw new IllegalArgumentException("Component "
+                        + componentName + " has no producer " + description);
+            }
+            producers.add(producer);
+        }
+        return producers;
+    }
+
+    /**
+     * Print the producers of every component in a workspace, one per line, in
+     * the form {@link #findProducers(Workspace, List)} expects.
+     *
+     * @param workspace the workspace
+     * @param out the stream to print to
+     */
+    public static void listProducers(final Workspace workspace,
+            final PrintStream out) {
+        for (WorkspaceComponent component : workspace.getComponentList()) {
+            for (PotentialProducer potential : component
+                    .getPotentialProducers()) {
+                out.println(component.getName() + "/"
+                        + potential.getDescription());
+            }
+        }
+    }
+
+    /**
+     * Run workspaces from the command line. See the class comment for the
+     * arguments.
+     *
+     * @param args command line arguments
+     */
+    public static void main(final String[] args) {
+        if (System.getProperty("java.awt.headless") == null) {
+            System.setProperty("java.awt.headless", "true");
+        }
+
+        int iterations = -1;
+        int parallelism = 0;
+        boolean list = false;
+        File outputDir = new File(".");
+        List<String> producers = new ArrayList<String>();
+        List<File> files = new ArrayList<File>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("--iterations")) {
+                    iterations = Integer.parseInt(args[++i]);
+                } else if (arg.equals("--threads")) {
+                    parallelism = Integer.parseInt(args[++i]);
+                } else if (arg.equals("--output")) {
+                    outputDir = new File(args[++i]);
+                } else if (arg.equals("--seed")) {
+                    RandomStreams.setMasterSeed(Long.parseLong(args[++i]));
+                } else if (arg.equals("--record")) {
+                    producers.add(args[++i]);
+                } else if (arg.equals("--list")) {
+                    list = true;
+                } else if (arg.startsWith("--")) {
+                    throw new IllegalArgumentException("Unknown option "
+                            + arg);
+                } else {
+                    files.add(new File(arg));
+                }
+            }
+        } catch (RuntimeException e) {
+            // Missing option values, bad numbers and unknown options
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        if (files.isEmpty() || (!list && iterations < 0)) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        try {
+            if (list) {
+                for (File file : files) {
+                    Workspace workspace = open(file);
+                    listProducers(workspace, System.out);
+                    workspace.getUpdater().shutdown();
+                }
+            } else {
+                outputDir.mkdirs();
+                List<BatchJob> jobs = new ArrayList<BatchJob>();
+                Set<String> outputNames = new HashSet<String>();
+                for (File file : files) {
+                    String name = file.getName().replaceFirst(
+                            "\\.zip$", "");
+                    String outputName = name;
+                    for (int n = 2; !outputNames.add(outputName); n++) {
+                        outputName = name + "_" + n;
+                    }
+                    jobs.add(new BatchJob(file, iterations, new File(
+                            outputDir, outputName + ".csv"), producers));
+                }
+                if (parallelism <= 0) {
+                    parallelism = Math.min(jobs.size(), Runtime.getRuntime()
+                            .availableProcessors());
+                }
+                runAll(jobs, parallelism);
+            }
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+            if (e.getCause() != null) {
+                e.getCause().printStackTrace();
+            }
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+
+}
@@ -0,0 +1,170 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.workspace.batch;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+import org.simbrain.workspace.Producer;
+import org.simbrain.workspace.Workspace;
+import org.simbrain.workspace.updater.UpdateAction;
+
+/**
+ * An update action that writes the values of a set of producers to a csv
+ * stream, one line per workspace update. The first column is the workspace
+ * time. A producer of a number takes one column and a producer of a double
+ * array takes one column per element, sized by its first value; any other
+ * value is written as quoted text.
+ *
+ * Add it after the other update actions so it sees the values produced in
+ * the same iteration. The first write error is kept (see {@link #getError()})
+ * and nothing more is written after it.
+ */
+public class ProducerRecorder implements UpdateAction {
+
+    /** The workspace whose time is recorded. */
+    private final Workspace workspace;
+
+    /** The producers to record. */
+    private final List<Producer<?>> producers;
+
+    /** Column labels, one per producer. */
+    private final List<String> labels;
+
+    /** The stream to write to. */
+    private final Writer writer;
+
+    /** Reused line buffer. */
+    private final StringBuilder line = new StringBuilder();
+
+    /** Whether the header has been written. */
+    private boolean headerWritten;
+
+    /** The first write error, if any. */
+    private IOException error;
+
+    /**
+     * Construct a recorder.
+     *
+     * @param workspace the workspace whose time is recorded
+     * @param producers the producers to record
+     * @param labels column labels, one per producer
+     * @param writer the stream to write to; not closed by this action
+     */
+    public ProducerRecorder(final Workspace workspace,
+            final List<Producer<?>> producers, final List<String> labels,
+            final Writer writer) {
+        if (producers.size() != labels.size()) {
+            throw new IllegalArgumentException(
+                    "One label is needed per producer");
+        }
+        this.workspace = workspace;
+        this.producers = producers;
+        this.labels = labels;
+        this.writer = writer;
+    }
+
+    @Override
+    public void invoke() {
+        if (error != null) {
+            return;
+        }
+        Object[] values = new Object[producers.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = producers.get(i).getValue();
+        }
+        try {
+            if (!headerWritten) {
+                writeHeader(values);
+                headerWritten = true;
+            }
+            line.setLength(0);
+            line.append(workspace.getTime());
+            for (Object value : values) {
+                if (value instanceof double[]) {
+                    for (double x : (double[]) value) {
+                        line.append(',').append(x);
+                    }
+                } else if (value instanceof Number) {
+                    line.append(',').append(((Number) value).doubleValue());
+                } else {
+                    line.append(',');
+                    appendQuoted(String.valueOf(value));
+                }
+            }
+            line.append('\n');
+            writer.append(line);
+        } catch (IOException e) {
+            error = e;
+        }
+    }
+
+    /**
+     * Write the column labels, sizing array columns by their first value.
+     *
+     * @param values the first values of the producers
+     * @throws IOException if the write fails
+     */
+    private void writeHeader(final Object[] values) throws IOException {
+        line.setLength(0);
+        line.append("time");
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] instanceof double[]) {
+                int length = ((double[]) values[i]).length;
+                for (int j = 0; j < length; j++) {
+                    line.append(',');
+                    appendQuoted(labels.get(i) + "[" + j + "]");
+                }
+            } else {
+                line.append(',');
+                appendQuoted(labels.get(i));
+            }
+        }
+        line.append('\n');
+        writer.append(line);
+    }
+
+    /**
+     * Append a csv field in double quotes, doubling any quotes inside it.
+     *
+     * @param text the field
+     */
+    private void appendQuoted(final String text) {
+        line.append('"').append(text.replace("\"", "\"\"")).append('"');
+    }
+
+    /**
+     * @return the first error writing to the stream, or null if none
+     */
+    public IOException getError() {
+        return error;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Record producers";
+    }
+
+    @Override
+    public String getLongDescription() {
+        return "Write producer values to a file after each update";
+    }
+
+}
@@ -0,0 +1,207 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.workspace.gui;
+
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.JToolBar;
+import javax.swing.SwingConstants;
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+
+import org.simbrain.util.metrics.MetricCounter;
+import org.simbrain.util.metrics.MetricRegistry;
+import org.simbrain.util.metrics.MetricTimer;
+
+/**
+ * Displays the update metrics in the {@link MetricRegistry}: for each timer
+ * (e.g. each component, update action, the coupling phase and GUI event
+ * firing) how many times per second it ran and how many milliseconds it took
+ * each time, averaged over the last refresh interval; and for each counter
+ * its rate and total.
+ */
+public class MetricsPanel extends JPanel {
+
+    /** Milliseconds between refreshes of the table. */
+    private static final int REFRESH_INTERVAL = 1000;
+
+    /** The registry. */
+    private final MetricRegistry registry = MetricRegistry.getInstance();
+
+    /** Table model. */
+    private final MetricsTableModel model = new MetricsTableModel();
+
+    /** Whether metrics are recorded. */
+    private final JCheckBox enabledBox = new JCheckBox("Record metrics");
+
+    /**
+     * Count and total time of each timer, or count of each counter, when the
+     * table was last refreshed.
+     */
+    private Map<String, long[]> previous = new HashMap<String, long[]>();
+
+    /** When the table was last refreshed, in nanoseconds. */
+    private long previousTime = System.nanoTime();
+
+    /**
+     * Construct the panel.
+     */
+    public MetricsPanel() {
+        super(new BorderLayout());
+
+        JToolBar toolbar = new JToolBar();
+        enabledBox.setSelected(registry.isEnabled());
+        enabledBox.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                registry.setEnabled(enabledBox.isSelected());
+            }
+        });
+        toolbar.add(enabledBox);
+        JButton resetButton = new JButton("Reset");
+        resetButton.addActionListener(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                registry.reset();
+                previous.clear();
+                refresh();
+            }
+        });
+        toolbar.add(resetButton);
+
+        JTable table = new JTable(model);
+        ((DefaultTableCellRenderer) table.getTableHeader()
+                .getDefaultRenderer())
+                .setHorizontalAlignment(SwingConstants.CENTER);
+        table.setRowSelectionAllowed(false);
+        table.setGridColor(Color.LIGHT_GRAY);
+        table.setFocusable(false);
+        table.getColumnModel().getColumn(0).setPreferredWidth(250);
+
+        add("North", toolbar);
+        add("Center", new JScrollPane(table));
+
+        Timer timer = new Timer(REFRESH_INTERVAL, new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                if (isShowing()) {
+                    refresh();
+                }
+            }
+        });
+        timer.start();
+    }
+
+    /**
+     * Recompute the rows of the table from the registry.
+     */
+    private void refresh() {
+        enabledBox.setSelected(registry.isEnabled());
+        long now = System.nanoTime();
+        double seconds = (now - previousTime) / 1e9;
+        Map<String, long[]> current = new HashMap<String, long[]>();
+        List<Object[]> rows = new ArrayList<Object[]>();
+        for (MetricTimer timer : registry.getTimers()) {
+            long count = timer.getCount();
+            long nanos = timer.getTotalNanos();
+            long[] last = previous.get(timer.getName());
+            long dCount = last == null ? count : count - last[0];
+            long dNanos = last == null ? nanos : nanos - last[1];
+            rows.add(new Object[] {timer.getName(),
+                    format(dCount / seconds),
+                    dCount == 0 ? "" : format(dNanos / (dCount * 1e6)),
+                    count });
+            current.put(timer.getName(), new long[] {count, nanos });
+        }
+        for (MetricCounter counter : registry.getCounters()) {
+            long count = counter.getCount();
+            long[] last = previous.get(counter.getName());
+            long dCount = last == null ? count : count - last[0];
+            rows.add(new Object[] {counter.getName(),
+                    format(dCount / seconds), "", count });
+            current.put(counter.getName(), new long[] {count });
+        }
+        previous = current;
+        previousTime = now;
+        model.setRows(rows);
+    }
+
+    /**
+     * Format a rate or time for display.
+     *
+     * @param value the value
+     * @return the formatted value
+     */
+    private static String format(final double value) {
+        return String.format("%.3f", value);
+    }
+
+    /**
+     * Table model with one row per timer or counter.
+     */
+    private static class MetricsTableModel extends AbstractTableModel {
+
+        /** Column names. */
+        private final String[] columnNames = {"Metric", "Per second",
+                "ms each", "Total" };
+
+        /** The rows. */
+        private List<Object[]> rows = new ArrayList<Object[]>();
+
+        /**
+         * Replace the rows.
+         *
+         * @param rows the new rows
+         */
+        void setRows(final List<Object[]> rows) {
+            this.rows = rows;
+            fireTableDataChanged();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return columnNames.length;
+        }
+
+        @Override
+        public String getColumnName(int col) {
+            return columnNames[col];
+        }
+
+        @Override
+        public int getRowCount() {
+            return rows.size();
+        }
+
+        @Override
+        public Object getValueAt(int row, int col) {
+            return rows.get(row)[col];
+        }
+    }
+}
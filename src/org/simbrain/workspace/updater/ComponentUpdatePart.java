@@ -102,7 +102,12 @@ public class ComponentUpdatePart {
                     WorkspaceUpdater.LOGGER.trace("updating component part: "
                             + getDescription());
 
+                    long start = WorkspaceUpdater.METRICS.start();
                     runnable.run();
+                    if (start != 0) {
+                        WorkspaceUpdater.METRICS.stop("component."
+                                + parent.getName(), start);
+                    }
 
                     thread.clearCurrentTask(ComponentUpdatePart.this);
                     signal.done();
@@ -50,7 +50,12 @@ public class UpdateComponent implements UpdateAction {
 //        LatchCompletionSignal latch = new LatchCompletionSignal(1);
 //        updater.updateComponent(component, latch);
 //        latch.await();
-    	component.update();
+        long start = WorkspaceUpdater.METRICS.start();
+        component.update();
+        if (start != 0) {
+            WorkspaceUpdater.METRICS.stop("component." + component.getName(),
+                    start);
+        }
     }
 
     /**
@@ -28,6 +28,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 
 import org.apache.log4j.Logger;
+import org.simbrain.util.metrics.MetricRegistry;
 import org.simbrain.workspace.Workspace;
 import org.simbrain.workspace.WorkspaceComponent;
 
@@ -44,7 +45,8 @@ import org.simbrain.workspace.WorkspaceComponent;
  * are here, one for workspace updates (a single thread), one for event
  * notification updates (a single thread), and one for component updates (a
  * thread pool with multiple threads that can be configured), for cases when
- * component updating happens concurrently.
+ * component updating happens concurrently. Each phase of an update is timed
+ * through the {@link MetricRegistry} when metrics are enabled.
  *
  * @author Matt Watson
  * @author Jeff Yoshimi
@@ -54,6 +56,9 @@ public class WorkspaceUpdater {
     /** The static logger for the class. */
     static final Logger LOGGER = Logger.getLogger(WorkspaceUpdater.class);
 
+    /** Metrics for workspace updates. */
+    static final MetricRegistry METRICS = MetricRegistry.getInstance();
+
     /** The parent workspace. */
     private final Workspace workspace;
 
@@ -171,6 +176,18 @@ public class WorkspaceUpdater {
         run = false;
     }
 
+    /**
+     * Stops the updater and shuts down its threads. The updater cannot be used
+     * afterwards. Used when a workspace is discarded without quitting the
+     * application, e.g. after a batch run.
+     */
+    public void shutdown() {
+        run = false;
+        workspaceUpdates.shutdown();
+        componentUpdates.shutdown();
+        notificationEvents.shutdown();
+    }
+
     /**
      * Returns whether the updater is set to run.
      *
@@ -278,13 +295,22 @@ public class WorkspaceUpdater {
             e.printStackTrace();
         }
 
+        long tickStart = METRICS.start();
         for (UpdateAction action : updateActionManager.getActionList()) {
+            long start = METRICS.start();
             action.invoke();
+            if (start != 0) {
+                METRICS.stop("workspace.action." + action.getDescription(),
+                        start);
+            }
         }
 
+        long guiStart = METRICS.start();
         synchManager.runTasks();
+        METRICS.stop("workspace.gui", guiStart);
 
         notifyWorkspaceUpdated();
+        METRICS.stop("workspace.tick", tickStart);
 
         LOGGER.trace("done: " + time);
     }
@@ -351,6 +377,9 @@ public class WorkspaceUpdater {
      */
     void notifyComponentUpdateStarted(final WorkspaceComponent component,
             final int thread) {
+        if (componentListeners.isEmpty()) {
+            return;
+        }
         final int time = this.time;
 
         notificationEvents.submit(new Runnable() {
@@ -370,6 +399,9 @@ public class WorkspaceUpdater {
      */
     void notifyComponentUpdateFinished(final WorkspaceComponent component,
             final int thread) {
+        if (componentListeners.isEmpty()) {
+            return;
+        }
         final int time = this.time;
 
         notificationEvents.submit(new Runnable() {
@@ -385,6 +417,9 @@ public class WorkspaceUpdater {
      * Called when the couplings are updated.
      */
     protected void notifyCouplingsUpdated() {
+        if (updaterListeners.isEmpty()) {
+            return;
+        }
         final int time = this.time;
 
         notificationEvents.submit(new Runnable() {
@@ -400,6 +435,9 @@ public class WorkspaceUpdater {
      * Called when the workspace update begins.
      */
     private void notifyWorkspaceUpdateStarted() {
+        if (updaterListeners.isEmpty()) {
+            return;
+        }
         notificationEvents.submit(new Runnable() {
             public void run() {
                 for (WorkspaceUpdaterListener listener : updaterListeners) {
@@ -413,6 +451,9 @@ public class WorkspaceUpdater {
      * Called when workspace update finishes.
      */
     private void notifyWorkspaceUpdateCompleted() {
+        if (updaterListeners.isEmpty()) {
+            return;
+        }
         notificationEvents.submit(new Runnable() {
             public void run() {
                 for (WorkspaceUpdaterListener listener : updaterListeners) {
@@ -426,12 +467,17 @@ public class WorkspaceUpdater {
      * Called after every workspace update .
      */
     private void notifyWorkspaceUpdated() {
+        if (updaterListeners.isEmpty()) {
+            return;
+        }
 
         notificationEvents.submit(new Runnable() {
             public void run() {
+                long start = METRICS.start();
                 for (WorkspaceUpdaterListener listener : updaterListeners) {
                     listener.workspaceUpdated();
                 }
+                METRICS.stop("workspace.events", start);
             }
         });
     }
@@ -440,6 +486,9 @@ public class WorkspaceUpdater {
      * Called when update controller is changed.
      */
     private void notifyUpdateControllerChanged() {
+        if (updaterListeners.isEmpty()) {
+            return;
+        }
 
         notificationEvents.submit(new Runnable() {
             public void run() {
@@ -74,6 +74,22 @@ public class OdorWorld {
     /** Agent Name generator. */
     private SimpleId agentNameGenerator = new SimpleId("Agent", 1);
 
+    /** Spatial hash of the entities, for finding nearby entities. */
+    private SpatialHash spatialHash = new SpatialHash();
+
+    /** Scratch list of the entities found by a spatial hash query. */
+    private List<OdorWorldEntity> nearbyEntities =
+            new ArrayList<OdorWorldEntity>();
+
+    /** Largest stimulus dimension of any smell source. */
+    private int maxStimulusDimension;
+
+    /** The entity whose smell source has the largest dimension. */
+    private OdorWorldEntity maxStimulusDimensionEntity;
+
+    /** Largest stimulus dimension of any other smell source. */
+    private int secondMaxStimulusDimension;
+
     /**
      * Default constructor.
      */
@@ -86,6 +102,11 @@ public class OdorWorld {
      * @time an integer representation of time.
      */
     public void update(int time) {
+        // Pick up changes made since the last update, e.g. new smell sources
+        for (OdorWorldEntity object : entityList) {
+            spatialHash.update(object);
+        }
+        recomputeMaxStimulusDimension();
         for (OdorWorldEntity object : entityList) {
             object.updateSmellSource();
             object.updateSensors();
@@ -108,12 +129,14 @@ public class OdorWorld {
         // Add entity to the map
         // map.addSprite(entity);
         entityList.add(entity);
+        spatialHash.add(entity);
 
         // Fire entity added event
         fireEntityAdded(entity);
 
         // Recompute max stimulus length
         recomputeMaxStimulusLength();
+        recomputeMaxStimulusDimension();
 
     }
 
@@ -230,6 +253,7 @@ public class OdorWorld {
         // map.removeSprite(entity);
         if (entityList.contains(entity)) {
             entityList.remove(entity);
+            spatialHash.remove(entity);
             for (Sensor sensor : entity.getSensors()) {
                 fireSensorRemoved(sensor);
             }
@@ -237,6 +261,7 @@ public class OdorWorld {
                 fireEffectorRemoved(effector);
             }
             recomputeMaxStimulusLength();
+            recomputeMaxStimulusDimension();
             fireEntityRemoved(entity);
         }
     }
@@ -264,6 +289,70 @@ public class OdorWorld {
         }
     }
 
+    /**
+     * Finds the largest stimulus dimension of the smell sources, and the
+     * largest but for the entity which has it.
+     */
+    private void recomputeMaxStimulusDimension() {
+        maxStimulusDimension = 0;
+        maxStimulusDimensionEntity = null;
+        secondMaxStimulusDimension = 0;
+        for (OdorWorldEntity entity : entityList) {
+            if (entity.getSmellSource() != null) {
+                int dim = entity.getSmellSource().getStimulusDimension();
+                if (dim > maxStimulusDimension) {
+                    secondMaxStimulusDimension = maxStimulusDimension;
+                    maxStimulusDimension = dim;
+                    maxStimulusDimensionEntity = entity;
+                } else if (dim > secondMaxStimulusDimension) {
+                    secondMaxStimulusDimension = dim;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the largest stimulus dimension of the smell sources of all
+     * entities but one, as of the start of the current update. This is the
+     * length of the vector a sensor on that entity would get by adding up
+     * all the stimuli in the world.
+     *
+     * @param exclude the entity to leave out
+     * @return the largest stimulus dimension
+     */
+    public int getMaxStimulusDimension(final OdorWorldEntity exclude) {
+        if (exclude == maxStimulusDimensionEntity) {
+            return secondMaxStimulusDimension;
+        }
+        return maxStimulusDimension;
+    }
+
+    /**
+     * Finds the entities whose smell may reach a point, i.e. the entities
+     * with a smell source whose dispersion extends that far (and possibly a
+     * few more). Entities further away give no stimulus at the point.
+     *
+     * @param x x coordinate of the point
+     * @param y y coordinate of the point
+     * @param out the list to add the entities to, in the order of the entity
+     *            list
+     */
+    public void getSmellSources(final double x, final double y,
+            final List<OdorWorldEntity> out) {
+        spatialHash.getSmellSources(x, y, out);
+    }
+
+    /**
+     * Called by an entity when it moves, to keep the spatial hash up to date.
+     *
+     * @param entity the entity which moved
+     */
+    public void entityMoved(final OdorWorldEntity entity) {
+        if (spatialHash != null) {
+            spatialHash.update(entity);
+        }
+    }
+
     /**
      * Returns a properly initialized xstream object.
      *
@@ -272,6 +361,11 @@ public class OdorWorld {
     static XStream getXStream() {
         XStream xstream = new XStream(new DomDriver());
         xstream.omitField(OdorWorld.class, "listenerList");
+        xstream.omitField(OdorWorld.class, "spatialHash");
+        xstream.omitField(OdorWorld.class, "nearbyEntities");
+        xstream.omitField(OdorWorld.class, "maxStimulusDimension");
+        xstream.omitField(OdorWorld.class, "maxStimulusDimensionEntity");
+        xstream.omitField(OdorWorld.class, "secondMaxStimulusDimension");
         xstream.omitField(Animation.class, "frames");
         xstream.omitField(Animation.class, "currFrameIndex");
         xstream.omitField(BasicEntity.class, "images");
@@ -297,7 +391,13 @@ public class OdorWorld {
         for (OdorWorldEntity entity : entityList) {
             entity.postSerializationInit();
         }
+        spatialHash = new SpatialHash();
+        nearbyEntities = new ArrayList<OdorWorldEntity>();
+        for (OdorWorldEntity entity : entityList) {
+            spatialHash.add(entity);
+        }
         recomputeMaxStimulusLength();
+        recomputeMaxStimulusDimension();
         return this;
     }
 
@@ -327,7 +427,10 @@ public class OdorWorld {
 
         // Handle sprite collisions
         entity.setHasCollided(false);
-        for (OdorWorldEntity otherEntity : entityList) {
+        nearbyEntities.clear();
+        spatialHash.getCollisionCandidates(entity.getReducedBounds(),
+                nearbyEntities);
+        for (OdorWorldEntity otherEntity : nearbyEntities) {
             if (entity == otherEntity) {
                 continue;
             }
@@ -336,6 +439,7 @@ public class OdorWorld {
                 otherEntity.setHasCollided(true);
             }
         }
+        nearbyEntities.clear();
         //
         // // Handle sprite collisions
         // if (xCollission(entity, newX)) {
@@ -351,6 +455,7 @@ public class OdorWorld {
 
         // Update creature
         entity.update();
+        spatialHash.update(entity);
 
         // System.out.println(sprite.getId() + " new - x: " + sprite.getX() +
         // " y:" + sprite.getY());
@@ -0,0 +1,412 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.world.odorworld;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.simbrain.util.environment.SmellSource;
+import org.simbrain.world.odorworld.entities.OdorWorldEntity;
+
+/**
+ * A uniform spatial hash of the entities in an odor world, used so that
+ * collision checks and smell sensors only look at nearby entities rather than
+ * at every entity in the world.
+ *
+ * Each entity is stored in every cell overlapped by its reduced bounds (for
+ * collisions) and, if it has a smell source, in every cell within the
+ * source's dispersion of its center (for smell). An entity whose footprint
+ * covers too many cells (e.g. a smell source with a huge dispersion) is kept
+ * in a separate list which every query includes.
+ *
+ * The hash is updated incrementally: {@link #update(OdorWorldEntity)} only
+ * touches the cells of an entity whose footprint has moved to different
+ * cells. Queries return entities in the order they were added, which is the
+ * order of the world's entity list, so results (e.g. summed smell vectors)
+ * are the same as when iterating over the whole list.
+ */
+final class SpatialHash {
+
+    /** Default width and height of a cell in pixels. */
+    static final int DEFAULT_CELL_SIZE = 64;
+
+    /** Footprints covering more cells than this are not hashed. */
+    private static final int MAX_CELLS = 1024;
+
+    /** The cell range of a footprint covering more than MAX_CELLS. */
+    private static final int[] LARGE = new int[0];
+
+    /** Orders entries by when their entity was added. */
+    private static final Comparator<Entry> ORDER = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry a, Entry b) {
+            return a.order < b.order ? -1 : (a.order == b.order ? 0 : 1);
+        }
+    };
+
+    /** Width and height of a cell. */
+    private final double cellSize;
+
+    /** Cells holding entities' reduced bounds. */
+    private final Layer bounds = new Layer();
+
+    /** Cells holding smell sources' dispersion areas. */
+    private final Layer smells = new Layer();
+
+    /** Entries by entity. */
+    private final Map<OdorWorldEntity, Entry> entries =
+            new IdentityHashMap<OdorWorldEntity, Entry>();
+
+    /** The order given to the next entity added. */
+    private long nextOrder;
+
+    /** Incremented for every query, to avoid returning an entry twice. */
+    private int queryStamp;
+
+    /** Scratch list of the entries found by a query. */
+    private final List<Entry> found = new ArrayList<Entry>();
+
+    /**
+     * Construct a spatial hash with the default cell size.
+     */
+    SpatialHash() {
+        this(DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     * Construct a spatial hash.
+     *
+     * @param cellSize width and height of a cell in pixels
+     */
+    SpatialHash(final double cellSize) {
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * Add an entity to the hash. Entities should be added in the order they
+     * appear in the world's entity list.
+     *
+     * @param entity the entity to add
+     */
+    void add(final OdorWorldEntity entity) {
+        if (entries.containsKey(entity)) {
+            return;
+        }
+        Entry entry = new Entry(entity, nextOrder++);
+        entries.put(entity, entry);
+        update(entity);
+    }
+
+    /**
+     * Remove an entity from the hash.
+     *
+     * @param entity the entity to remove
+     */
+    void remove(final OdorWorldEntity entity) {
+        Entry entry = entries.remove(entity);
+        if (entry != null) {
+            bounds.remove(entry, entry.boundsCells);
+            smells.remove(entry, entry.smellCells);
+        }
+    }
+
+    /**
+     * Remove all entities.
+     */
+    void clear() {
+        entries.clear();
+        bounds.clear();
+        smells.clear();
+    }
+
+    /**
+     * Re-hash an entity after it has moved, changed size or had its smell
+     * source changed. Does nothing if the entity is not in the hash or still
+     * covers the same cells.
+     *
+     * @param entity the entity to update
+     */
+    void update(final OdorWorldEntity entity) {
+        Entry entry = entries.get(entity);
+        if (entry == null) {
+            return;
+        }
+        Rectangle r = entity.getReducedBounds();
+        int[] boundsCells = cellRange(r.getMinX(), r.getMinY(), r.getMaxX(),
+                r.getMaxY(), entry.boundsCells);
+        if (boundsCells != entry.boundsCells) {
+            bounds.remove(entry, entry.boundsCells);
+            bounds.add(entry, boundsCells);
+            entry.boundsCells = boundsCells;
+        }
+
+        int[] smellCells = null;
+        SmellSource smell = entity.getSmellSource();
+        if (smell != null) {
+            double d = Math.abs(smell.getDispersion());
+            double x = entity.getCenterX();
+            double y = entity.getCenterY();
+            smellCells = cellRange(x - d, y - d, x + d, y + d,
+                    entry.smellCells);
+        }
+        if (smellCells != entry.smellCells) {
+            smells.remove(entry, entry.smellCells);
+            smells.add(entry, smellCells);
+            entry.smellCells = smellCells;
+        }
+    }
+
+    /**
+     * Find the entities whose reduced bounds may intersect a rectangle.
+     *
+     * @param r the rectangle
+     * @param out the list to add the entities to, in world order
+     */
+    void getCollisionCandidates(final Rectangle r,
+            final List<OdorWorldEntity> out) {
+        int[] range = cellRange(r.getMinX(), r.getMinY(), r.getMaxX(),
+                r.getMaxY(), null);
+        query(bounds, range, out);
+    }
+
+    /**
+     * Find the entities with a smell source that may be smelled at a point,
+     * i.e. whose dispersion may reach it.
+     *
+     * @param x x coordinate of the point
+     * @param y y coordinate of the point
+     * @param out the list to add the entities to, in world order
+     */
+    void getSmellSources(final double x, final double y,
+            final List<OdorWorldEntity> out) {
+        int[] range = cellRange(x, y, x, y, null);
+        query(smells, range, out);
+    }
+
+    /**
+     * Collect the entries of a layer in a range of cells, without duplicates,
+     * sorted into world order.
+     *
+     * @param layer the layer to search
+     * @param range the cells to search, or LARGE for all
+     * @param out the list to add the entities to
+     */
+    private void query(final Layer layer, final int[] range,
+            final List<OdorWorldEntity> out) {
+        int stamp = ++queryStamp;
+        found.clear();
+        for (Entry entry : layer.large) {
+            entry.stamp = stamp;
+            found.add(entry);
+        }
+        if (range == LARGE) {
+            for (List<Entry> cell : layer.cells.values()) {
+                collect(cell, stamp);
+            }
+        } else {
+            for (int i = range[0]; i <= range[2]; i++) {
+                for (int j = range[1]; j <= range[3]; j++) {
+                    collect(layer.cells.get(key(i, j)), stamp);
+                }
+            }
+        }
+        Collections.sort(found, ORDER);
+        for (Entry entry : found) {
+            out.add(entry.entity);
+        }
+        found.clear();
+    }
+
+    /**
+     * Add the entries of a cell which have not yet been found by the current
+     * query.
+     *
+     * @param cell the cell, or null
+     * @param stamp the current query stamp
+     */
+    private void collect(final List<Entry> cell, final int stamp) {
+        if (cell == null) {
+            return;
+        }
+        for (int k = 0, n = cell.size(); k < n; k++) {
+            Entry entry = cell.get(k);
+            if (entry.stamp != stamp) {
+                entry.stamp = stamp;
+                found.add(entry);
+            }
+        }
+    }
+
+    /**
+     * Returns the range of cells covering a rectangle as {minI, minJ, maxI,
+     * maxJ}, or LARGE if it covers too many cells to hash. Returns the given
+     * current range if it is the same, so that callers can tell nothing
+     * changed by comparing references.
+     *
+     * @param minX left edge
+     * @param minY top edge
+     * @param maxX right edge
+     * @param maxY bottom edge
+     * @param current the current range, or null
+     * @return the range
+     */
+    private int[] cellRange(final double minX, final double minY,
+            final double maxX, final double maxY, final int[] current) {
+        double cells = (Math.floor(maxX / cellSize)
+                - Math.floor(minX / cellSize) + 1)
+                * (Math.floor(maxY / cellSize)
+                - Math.floor(minY / cellSize) + 1);
+        // Also false for NaN
+        if (!(cells <= MAX_CELLS)) {
+            return LARGE;
+        }
+        int minI = (int) Math.floor(minX / cellSize);
+        int minJ = (int) Math.floor(minY / cellSize);
+        int maxI = (int) Math.floor(maxX / cellSize);
+        int maxJ = (int) Math.floor(maxY / cellSize);
+        if (current != null && current[0] == minI && current[1] == minJ
+                && current[2] == maxI && current[3] == maxJ) {
+            return current;
+        }
+        return new int[] { minI, minJ, maxI, maxJ };
+    }
+
+    /**
+     * @param i column of a cell
+     * @param j row of a cell
+     * @return the key of the cell
+     */
+    private static Long key(final int i, final int j) {
+        return ((long) i << 32) | (j & 0xFFFFFFFFL);
+    }
+
+    /**
+     * An entity and the cells it occupies.
+     */
+    private static class Entry {
+
+        /** The entity. */
+        private final OdorWorldEntity entity;
+
+        /** When the entity was added, relative to other entities. */
+        private final long order;
+
+        /** Cells covered by the entity's reduced bounds. */
+        private int[] boundsCells;
+
+        /** Cells covered by the entity's smell; null if it has no smell. */
+        private int[] smellCells;
+
+        /** The last query which found this entry. */
+        private int stamp;
+
+        /**
+         * @param entity the entity
+         * @param order when the entity was added
+         */
+        Entry(final OdorWorldEntity entity, final long order) {
+            this.entity = entity;
+            this.order = order;
+        }
+    }
+
+    /**
+     * One set of cells, and the entries too large to hash.
+     */
+    private static class Layer {
+
+        /** Entries in each cell, by cell key. */
+        private final Map<Long, List<Entry>> cells =
+                new HashMap<Long, List<Entry>>();
+
+        /** Entries covering too many cells to hash. */
+        private final List<Entry> large = new ArrayList<Entry>();
+
+        /**
+         * Add an entry to a range of cells.
+         *
+         * @param entry the entry
+         * @param range the cells, LARGE to add it to the large list, or null
+         *            to do nothing
+         */
+        void add(final Entry entry, final int[] range) {
+            if (range == null) {
+                return;
+            }
+            if (range == LARGE) {
+                large.add(entry);
+                return;
+            }
+            for (int i = range[0]; i <= range[2]; i++) {
+                for (int j = range[1]; j <= range[3]; j++) {
+                    Long key = key(i, j);
+                    List<Entry> cell = cells.get(key);
+                    if (cell == null) {
+                        cell = new ArrayList<Entry>(4);
+                        cells.put(key, cell);
+                    }
+                    cell.add(entry);
+                }
+            }
+        }
+
+        /**
+         * Remove an entry from a range of cells.
+         *
+         * @param entry the entry
+         * @param range the cells, LARGE to remove it from the large list, or
+         *            null to do nothing
+         */
+        void remove(final Entry entry, final int[] range) {
+            if (range == null) {
+                return;
+            }
+            if (range == LARGE) {
+                large.remove(entry);
+                return;
+            }
+            for (int i = range[0]; i <= range[2]; i++) {
+                for (int j = range[1]; j <= range[3]; j++) {
+                    Long key = key(i, j);
+                    List<Entry> cell = cells.get(key);
+                    if (cell != null) {
+                        cell.remove(entry);
+                        if (cell.isEmpty()) {
+                            cells.remove(key);
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Remove all entries.
+         */
+        void clear() {
+            cells.clear();
+            large.clear();
+        }
+    }
+}
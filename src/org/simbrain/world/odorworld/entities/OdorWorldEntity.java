@@ -205,6 +205,7 @@ public abstract class OdorWorldEntity {
                 this.x = newx;
             }
         }
+        parentWorld.entityMoved(this);
     }
 
     /**
@@ -226,6 +227,7 @@ public abstract class OdorWorldEntity {
                 this.y = newy;
             }
         }
+        parentWorld.entityMoved(this);
     }
 
     /**
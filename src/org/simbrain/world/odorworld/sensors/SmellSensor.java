@@ -18,8 +18,13 @@
  */
 package org.simbrain.world.odorworld.sensors;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import org.simbrain.util.environment.SmellSource;
 import org.simbrain.util.math.SimbrainMath;
+import org.simbrain.world.odorworld.OdorWorld;
 import org.simbrain.world.odorworld.entities.OdorWorldEntity;
 import org.simbrain.world.odorworld.entities.RotatingEntity;
 
@@ -84,18 +89,28 @@ public class SmellSensor extends Sensor {
      */
     public void update() {
         double[] temp = new double[currentValue.length];
-        for (OdorWorldEntity entity : parent.getParentWorld().getObjectList()) {
+        double[] location = getLocation();
+        OdorWorld world = parent.getParentWorld();
+        // Only sources whose dispersion reaches this sensor give a stimulus
+        List<OdorWorldEntity> sources = new ArrayList<OdorWorldEntity>();
+        world.getSmellSources(location[0], location[1], sources);
+        for (OdorWorldEntity entity : sources) {
 
             // Don't smell yourself
             if (entity != parent) {
                 SmellSource smell = entity.getSmellSource();
                 if (smell != null) {
                     temp = SimbrainMath.addVector(temp, smell
-                            .getStimulus(SimbrainMath.distance(getLocation(),
+                            .getStimulus(SimbrainMath.distance(location,
                                     entity.getCenterLocation())));
                 }
             }
         }
+        // Sources out of range would have added zeros up to their dimension
+        int dimension = world.getMaxStimulusDimension(parent);
+        if (temp.length < dimension) {
+            temp = Arrays.copyOf(temp, dimension);
+        }
         currentValue = temp;
     }
 
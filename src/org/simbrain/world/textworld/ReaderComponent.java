@@ -127,7 +127,7 @@ public class ReaderComponent extends WorkspaceComponent {
 
     @Override
     public void closing() {
-        // TODO Auto-generated method stub
+        world.closeCorpus();
     }
 
     @Override
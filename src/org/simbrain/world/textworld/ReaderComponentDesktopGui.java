@@ -122,6 +122,8 @@ public class ReaderComponentDesktopGui extends GuiComponent<ReaderComponent> {
         file.add(new SaveAsAction(this));
         file.addSeparator();
         file.add(TextWorldActions.getTextAction(world));
+        file.add(TextWorldActions.getStreamCorpusAction(world));
+        file.add(TextWorldActions.getCloseCorpusAction(world));
         file.addSeparator();
         file.add(new CloseAction(this.getWorkspaceComponent()));
 
@@ -18,6 +18,9 @@
  */
 package org.simbrain.world.textworld;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -26,7 +29,6 @@ import java.util.regex.Pattern;
 
 import org.simbrain.util.Utils;
 import org.simbrain.util.propertyeditor.ComboBoxWrapper;
-import org.simbrain.world.textworld.TextListener.TextAdapter;
 
 import com.thoughtworks.xstream.XStream;
 
@@ -47,6 +49,10 @@ import com.thoughtworks.xstream.XStream;
  * associated consumers. These vectors are specified in the "vector dictionary".
  * </li>
  * </ul>
+ *
+ * Corpora too large for the text area can be streamed from a file instead (see
+ * {@link #openCorpus(File)}). Tokens are then read one at a time from the
+ * memory-mapped file, and memory use does not grow with the size of the file.
  */
 public final class ReaderWorld extends TextWorld {
 
@@ -85,6 +91,24 @@ public final class ReaderWorld extends TextWorld {
     /** Pattern matcher. */
     private Matcher matcher;
 
+    /**
+     * Whether the text or position has changed since the matcher was last
+     * reset.
+     */
+    private boolean matcherStale;
+
+    /** Zero vector returned for tokens with no vector; must not be changed. */
+    private double[] zeroVector = new double[vectorLength];
+
+    /** The vector for the current item, looked up when the item is read. */
+    private double[] currentVector;
+
+    /** Corpus file being streamed, or null if the text is read. */
+    private File corpusFile;
+
+    /** Stream of tokens from the corpus file. */
+    private TokenStream corpus;
+
     // Initialize tokenToVectorDictionary
     {
         tokenToVectorDictionary.put("hello", new double[] { .2, 0, 0 });
@@ -99,18 +123,7 @@ public final class ReaderWorld extends TextWorld {
      * @return the constructed world.
      */
     public static ReaderWorld createReaderWorld() {
-        final ReaderWorld r = new ReaderWorld();
-        r.addListener(new TextAdapter() {
-
-            public void textChanged() {
-                r.updateMatcher();
-            }
-
-            public void positionChanged() {
-                r.updateMatcher();
-            }
-        });
-        return r;
+        return new ReaderWorld();
     }
 
     /**
@@ -152,12 +165,25 @@ public final class ReaderWorld extends TextWorld {
         if (vector == null) {
             // Return zero vector if no matching string is found in the token
             // map.
-            return new double[vectorLength];
+            return getZeroVector();
         } else {
             return vector;
         }
     }
 
+    /**
+     * Returns a shared zero vector of the current vector length. Consumers must
+     * not change it (as with vectors in the dictionary).
+     *
+     * @return the zero vector
+     */
+    private double[] getZeroVector() {
+        if (zeroVector == null || zeroVector.length != vectorLength) {
+            zeroVector = new double[vectorLength];
+        }
+        return zeroVector;
+    }
+
     /**
      * Returns the double array associated with the currently selected token
      * (character or word). The reader world can produce a vector at any moment
@@ -167,10 +193,19 @@ public final class ReaderWorld extends TextWorld {
      */
     public double[] getCurrentVector() {
         if (getCurrentItem() == null) {
-            return new double[vectorLength];
-        } else {
-            return this.getMatchingVector(this.getCurrentItem().getText());
+            return getZeroVector();
+        }
+        if (currentVector == null) {
+            currentVector = getMatchingVector(getCurrentItem().getText());
         }
+        return currentVector;
+    }
+
+    @Override
+    public void setCurrentItem(TextItem currentItem) {
+        // Look the vector up again when first asked for
+        currentVector = null;
+        super.setCurrentItem(currentItem);
     }
 
     /**
@@ -184,6 +219,7 @@ public final class ReaderWorld extends TextWorld {
             double[] vector = Utils.parseVectorString(tableData[i][1]);
             addTokenVectorPair(tableData[i][0], vector);
         }
+        currentVector = null;
         fireDictionaryChangedEvent();
     }
 
@@ -196,6 +232,7 @@ public final class ReaderWorld extends TextWorld {
     public void addTokenVectorPair(String token, double[] vector) {
         tokenToVectorDictionary.put(token, vector);
         vectorLength = vector.length;
+        currentVector = null;
     }
 
     /**
@@ -209,6 +246,11 @@ public final class ReaderWorld extends TextWorld {
      * Advance the position in the text, and update the current item.
      */
     public void update() {
+        TokenStream stream = corpus;
+        if (stream != null) {
+            readFromCorpus(stream);
+            return;
+        }
         if (parseStyle == ParseStyle.CHARACTER) {
             wrapText();
             int begin = getPosition();
@@ -221,6 +263,9 @@ public final class ReaderWorld extends TextWorld {
                 return;
             }
             wrapText();
+            if (matcherStale) {
+                updateMatcher();
+            }
             boolean matchFound = findNextToken();
             if (matchFound) {
                 selectCurrentToken();
@@ -249,6 +294,95 @@ public final class ReaderWorld extends TextWorld {
         // System.out.println(begin + "," + end);
         matcher.reset(getText());
         matcher.region(begin, end);
+        matcherStale = false;
+    }
+
+    /**
+     * Note that the matcher must be reset before it is next used. Text and
+     * position changes (e.g. every keystroke in the text area) only do this,
+     * rather than resetting the matcher each time.
+     */
+    @Override
+    public void setText(final String text, final boolean fireEvent) {
+        super.setText(text, fireEvent);
+        matcherStale = true;
+    }
+
+    @Override
+    public void setPosition(final int newPosition, final boolean fireEvent) {
+        super.setPosition(newPosition, fireEvent);
+        matcherStale = true;
+    }
+
+    /**
+     * Stream tokens from a corpus file rather than reading the text. The text
+     * is left as it is, but is not read until the corpus is closed.
+     *
+     * @param file the corpus file, in the platform's default character set
+     * @throws IOException if the file cannot be opened
+     */
+    public void openCorpus(final File file) throws IOException {
+        TokenStream newCorpus = new TokenStream(file, Charset.defaultCharset(),
+                getCorpusPattern());
+        closeCorpus();
+        corpus = newCorpus;
+        corpusFile = file;
+    }
+
+    /**
+     * Stop streaming from the corpus file, if any, and go back to reading the
+     * text.
+     */
+    public void closeCorpus() {
+        if (corpus != null) {
+            try {
+                corpus.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        corpus = null;
+        corpusFile = null;
+    }
+
+    /**
+     * @return the corpus file being streamed, or null if the text is read
+     */
+    public File getCorpusFile() {
+        return corpusFile;
+    }
+
+    /**
+     * @return true if tokens are streamed from a corpus file
+     */
+    public boolean isStreaming() {
+        return corpus != null;
+    }
+
+    /**
+     * @return the pattern to split the corpus with for the current parse
+     *         style, or null to read characters
+     */
+    private Pattern getCorpusPattern() {
+        return parseStyle == ParseStyle.WORD ? pattern : null;
+    }
+
+    /**
+     * Read the next token from the corpus file. Items read from a corpus have
+     * no position in the text, so their begin and end positions are 0.
+     *
+     * @param stream the corpus to read from
+     */
+    private void readFromCorpus(final TokenStream stream) {
+        try {
+            String token = stream.next();
+            if (token != null) {
+                setCurrentItem(new TextItem(0, 0, token));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            closeCorpus();
+        }
     }
 
     /**
@@ -304,6 +438,9 @@ public final class ReaderWorld extends TextWorld {
      * @return the next token in the text area.
      */
     public String previewNextToken() {
+        if (matcherStale) {
+            updateMatcher();
+        }
         matcher.find();
         String nextOne = matcher.group();
         updateMatcher(); // Return matcher to its previous state
@@ -344,7 +481,7 @@ public final class ReaderWorld extends TextWorld {
      * @param parseStyle the current parse style
      */
     private void setTheParseStyle(ParseStyle parseStyle) {
-        this.parseStyle = parseStyle;
+        setParseStyle(parseStyle);
     }
 
     /**
@@ -361,6 +498,9 @@ public final class ReaderWorld extends TextWorld {
      */
     public void setParseStyle(ParseStyle parseStyle) {
         this.parseStyle = parseStyle;
+        if (corpus != null) {
+            corpus.setPattern(getCorpusPattern());
+        }
         // TODO: Fire an event that the radio button listens to
     }
 
@@ -371,9 +511,30 @@ public final class ReaderWorld extends TextWorld {
      */
     static XStream getXStream() {
         XStream xstream = TextWorld.getXStream();
+        xstream.omitField(ReaderWorld.class, "matcherStale");
+        xstream.omitField(ReaderWorld.class, "zeroVector");
+        xstream.omitField(ReaderWorld.class, "currentVector");
+        xstream.omitField(ReaderWorld.class, "corpus");
         return xstream;
     }
 
+    @Override
+    protected Object readResolve() {
+        super.readResolve();
+        matcherStale = true;
+        if (corpusFile != null) {
+            // Start streaming the corpus again, from its beginning
+            File file = corpusFile;
+            corpusFile = null;
+            try {
+                openCorpus(file);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return this;
+    }
+
     /**
      * @return the regularExpression
      */
@@ -389,6 +550,9 @@ public final class ReaderWorld extends TextWorld {
         pattern = Pattern.compile(regularExpression);
         matcher = pattern.matcher(getText());
         updateMatcher();
+        if (corpus != null) {
+            corpus.setPattern(getCorpusPattern());
+        }
     }
 
 }
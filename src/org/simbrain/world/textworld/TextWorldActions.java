@@ -22,6 +22,7 @@ import java.awt.event.ActionEvent;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
@@ -29,6 +30,7 @@ import java.util.Scanner;
 import javax.swing.AbstractAction;
 import javax.swing.Action;
 import javax.swing.JDialog;
+import javax.swing.JOptionPane;
 
 import org.simbrain.resource.ResourceManager;
 import org.simbrain.util.SFileChooser;
@@ -199,6 +201,69 @@ public class TextWorldActions {
         };
     }
 
+    /**
+     * Action for streaming a large corpus file in to a reader world, rather
+     * than loading it in to the text area.
+     *
+     * @param world the world which should stream the corpus
+     * @return the action
+     */
+    public static Action getStreamCorpusAction(final ReaderWorld world) {
+        return new AbstractAction() {
+
+            // Initialize
+            {
+                putValue(NAME, "Stream corpus...");
+                putValue(SHORT_DESCRIPTION, "Read tokens from a large text "
+                        + "file without loading it.");
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            public void actionPerformed(ActionEvent arg0) {
+                SFileChooser chooser = new SFileChooser(".", "Text corpus");
+                File theFile = chooser.showOpenDialog();
+                if (theFile != null) {
+                    try {
+                        world.openCorpus(theFile);
+                    } catch (IOException e) {
+                        JOptionPane.showMessageDialog(null,
+                                "Could not open " + theFile + ": "
+                                        + e.getMessage(), "Error",
+                                JOptionPane.ERROR_MESSAGE);
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Action for going back to reading the text area of a reader world after
+     * streaming a corpus.
+     *
+     * @param world the world which is streaming a corpus
+     * @return the action
+     */
+    public static Action getCloseCorpusAction(final ReaderWorld world) {
+        return new AbstractAction() {
+
+            // Initialize
+            {
+                putValue(NAME, "Close corpus");
+                putValue(SHORT_DESCRIPTION,
+                        "Stop streaming the corpus and read the text area.");
+            }
+
+            /**
+             * {@inheritDoc}
+             */
+            public void actionPerformed(ActionEvent arg0) {
+                world.closeCorpus();
+            }
+        };
+    }
+
     /**
      * Action for displaying a default preference dialog. (Not currently used).
      *
@@ -0,0 +1,274 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2005,2007 The Authors.  See http://www.simbrain.net/credits
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.world.textworld;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads tokens one at a time from a text file, for corpora too large to hold
+ * in a String. The file is memory-mapped a region at a time and decoded into
+ * a small window of characters, so memory use does not depend on the size of
+ * the file. When the end of the file is reached the stream starts again from
+ * the beginning, as reader world does with its text.
+ *
+ * Tokens are the matches of a regular expression, or single characters if no
+ * expression is given. Tokens longer than {@link #MAX_TOKEN_LENGTH} characters
+ * may be cut short.
+ */
+public final class TokenStream implements Closeable {
+
+    /** Bytes of the file mapped at a time. */
+    private static final long MAP_SIZE = 64L * 1024 * 1024;
+
+    /** Initial size of the character window. */
+    private static final int WINDOW_SIZE = 64 * 1024;
+
+    /** Longest token guaranteed to be found whole. */
+    public static final int MAX_TOKEN_LENGTH = 4096;
+
+    /** The file. */
+    private final File file;
+
+    /** The file's channel. */
+    private final FileChannel channel;
+
+    /** Size of the file in bytes. */
+    private final long size;
+
+    /** Decodes the file's bytes. */
+    private final CharsetDecoder decoder;
+
+    /** The currently mapped region of the file. */
+    private MappedByteBuffer bytes;
+
+    /** Offset in the file of the mapped region. */
+    private long bytesStart;
+
+    /** Decoded characters; those from 0 to the limit are valid. */
+    private CharBuffer chars;
+
+    /** Offset in the text of the first character in the window. */
+    private long charsStart;
+
+    /** Index in the window of the next character to read. */
+    private int pos;
+
+    /** Whether the whole file has been decoded into the window. */
+    private boolean eof;
+
+    /** Token pattern, or null to read single characters. */
+    private Pattern pattern;
+
+    /** Matcher for the pattern, reset on the window as it moves. */
+    private Matcher matcher;
+
+    /** Offset in the text of the first character of the last token. */
+    private long tokenStart;
+
+    /** Offset in the text just past the last token. */
+    private long tokenEnd;
+
+    /**
+     * Open a token stream on a file.
+     *
+     * @param file the file to read
+     * @param charset the file's character set
+     * @param pattern token pattern, or null to read single characters
+     * @throws IOException if the file cannot be opened
+     */
+    public TokenStream(final File file, final Charset charset,
+            final Pattern pattern) throws IOException {
+        this.file = file;
+        channel = new FileInputStream(file).getChannel();
+        size = channel.size();
+        decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        chars = CharBuffer.allocate(WINDOW_SIZE);
+        setPattern(pattern);
+        rewind();
+    }
+
+    /**
+     * Return the next token, starting again from the beginning of the file
+     * after the last one.
+     *
+     * @return the next token, or null if the file has no tokens
+     * @throws IOException if the file cannot be read
+     */
+    public String next() throws IOException {
+        boolean rewound = false;
+        while (true) {
+            if (pattern == null) {
+                if (pos < chars.limit()) {
+                    tokenStart = charsStart + pos;
+                    tokenEnd = tokenStart + 1;
+                    return String.valueOf(chars.get(pos++));
+                }
+            } else {
+                matcher.reset(chars);
+                matcher.region(pos, chars.limit());
+                boolean found = matcher.find();
+                // A match touching the end of the window may go on past it
+                if (found && (eof || !matcher.hitEnd())) {
+                    tokenStart = charsStart + matcher.start();
+                    tokenEnd = charsStart + matcher.end();
+                    pos = Math.max(matcher.end(), matcher.start() + 1);
+                    return matcher.group();
+                }
+                if (!found) {
+                    // Keep only what could be the start of a token
+                    pos = Math.max(pos, chars.limit() - MAX_TOKEN_LENGTH);
+                }
+            }
+            if (!eof) {
+                fill();
+            } else if (rewound) {
+                return null;
+            } else {
+                rewind();
+                rewound = true;
+            }
+        }
+    }
+
+    /**
+     * Set the token pattern. Reading continues from the current position.
+     *
+     * @param pattern token pattern, or null to read single characters
+     */
+    public void setPattern(final Pattern pattern) {
+        this.pattern = pattern;
+        matcher = pattern == null ? null : pattern.matcher("");
+    }
+
+    /**
+     * @return the token pattern, or null if single characters are read
+     */
+    public Pattern getPattern() {
+        return pattern;
+    }
+
+    /**
+     * @return offset in the text of the first character of the last token
+     */
+    public long getTokenStart() {
+        return tokenStart;
+    }
+
+    /**
+     * @return offset in the text just past the last token
+     */
+    public long getTokenEnd() {
+        return tokenEnd;
+    }
+
+    /**
+     * @return the file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Go back to the beginning of the file.
+     *
+     * @throws IOException if the file cannot be mapped
+     */
+    public void rewind() throws IOException {
+        map(0);
+        decoder.reset();
+        chars.clear();
+        chars.limit(0);
+        charsStart = 0;
+        pos = 0;
+        eof = false;
+    }
+
+    /**
+     * Map a region of the file starting at the specified offset.
+     *
+     * @param offset offset in the file
+     * @throws IOException if the region cannot be mapped
+     */
+    private void map(final long offset) throws IOException {
+        bytes = channel.map(FileChannel.MapMode.READ_ONLY, offset,
+                Math.min(MAP_SIZE, size - offset));
+        bytesStart = offset;
+    }
+
+    /**
+     * Drop the characters before the current position from the window and
+     * decode more characters after the last one, growing the window if it is
+     * full.
+     *
+     * @throws IOException if the file cannot be mapped
+     */
+    private void fill() throws IOException {
+        chars.position(pos);
+        chars.compact();
+        charsStart += pos;
+        pos = 0;
+        if (!chars.hasRemaining()) {
+            CharBuffer bigger = CharBuffer.allocate(chars.capacity() * 2);
+            chars.flip();
+            bigger.put(chars);
+            chars = bigger;
+        }
+        while (chars.hasRemaining() && !eof) {
+            boolean lastRegion = bytesStart + bytes.limit() >= size;
+            CoderResult result = decoder.decode(bytes, chars, lastRegion);
+            if (result.isOverflow()) {
+                break;
+            }
+            if (lastRegion) {
+                if (decoder.flush(chars).isOverflow()) {
+                    break;
+                }
+                eof = true;
+            } else {
+                // Map the next region, starting with any bytes of a character
+                // split across the end of this one
+                map(bytesStart + bytes.position());
+            }
+        }
+        chars.flip();
+    }
+
+    /**
+     * Close the file.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2006 Jeff Yoshimi <www.jeffyoshimi.net>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.world.visionworld;
+
+/**
+ * A filter which counts the pixels in its receptive field that match some
+ * test, and scales the count to a value.
+ *
+ * <p>
+ * Sensors with a pixel count filter can be sampled without creating an image
+ * for each sensor: the matching pixels of the whole pixel matrix are counted
+ * once into a summed-area table, from which the count for any receptive field
+ * is read in constant time (see {@link SensorMatrixSampler}). Filters which
+ * match the same pixels should be equal, so that they share a table.
+ * </p>
+ */
+public interface PixelCountFilter extends Filter {
+
+    /**
+     * Return true if the specified pixel should be counted.
+     *
+     * @param argb pixel in the default ARGB color model, as returned by
+     *            <code>BufferedImage.getRGB(x, y)</code>
+     * @return true if the specified pixel should be counted
+     */
+    boolean matches(int argb);
+
+    /**
+     * Reduce a count of matching pixels to a single value.
+     *
+     * @param count number of matching pixels
+     * @param total total number of pixels in the receptive field
+     * @return value for the specified count
+     */
+    double scale(int count, int total);
+}
@@ -0,0 +1,199 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2006 Jeff Yoshimi <www.jeffyoshimi.net>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.world.visionworld;
+
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * The pixels of an image as an <code>int</code> array in the default ARGB
+ * color model, i.e. the values <code>BufferedImage.getRGB(x, y)</code> would
+ * return.
+ *
+ * <p>
+ * For images of type <code>TYPE_INT_ARGB</code> and <code>TYPE_INT_RGB</code>
+ * (the types used by the pixel matrices) the raster's own array is used, so
+ * no pixels are copied. Other images are copied once.
+ * </p>
+ */
+final class PixelRaster {
+
+    /** Pixels. */
+    private final int[] pixels;
+
+    /** Index of pixel (0, 0). */
+    private final int offset;
+
+    /** Distance between rows in the array. */
+    private final int scanlineStride;
+
+    /** Bits or'd into each pixel, to give opaque images an alpha. */
+    private final int alpha;
+
+    /** Width. */
+    private final int width;
+
+    /** Height. */
+    private final int height;
+
+    /**
+     * Create a new pixel raster.
+     *
+     * @param pixels pixels
+     * @param offset index of pixel (0, 0)
+     * @param scanlineStride distance between rows in the array
+     * @param alpha bits or'd into each pixel
+     * @param width width
+     * @param height height
+     */
+    private PixelRaster(final int[] pixels, final int offset,
+            final int scanlineStride, final int alpha, final int width,
+            final int height) {
+        this.pixels = pixels;
+        this.offset = offset;
+        this.scanlineStride = scanlineStride;
+        this.alpha = alpha;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Return the pixels of the specified image without copying them, or null
+     * if the image does not store its pixels as ARGB or RGB ints.
+     *
+     * @param image image
+     * @return the pixels of the specified image, or null
+     */
+    static PixelRaster wrap(final Image image) {
+        if (!(image instanceof BufferedImage)) {
+            return null;
+        }
+        BufferedImage bufferedImage = (BufferedImage) image;
+        int alpha;
+        if (bufferedImage.getType() == BufferedImage.TYPE_INT_ARGB) {
+            alpha = 0;
+        } else if (bufferedImage.getType() == BufferedImage.TYPE_INT_RGB) {
+            alpha = 0xFF000000;
+        } else {
+            return null;
+        }
+        WritableRaster raster = bufferedImage.getRaster();
+        DataBuffer dataBuffer = raster.getDataBuffer();
+        if (!(dataBuffer instanceof DataBufferInt)
+                || !(raster.getSampleModel()
+                        instanceof SinglePixelPackedSampleModel)) {
+            return null;
+        }
+        // Reading the bank directly stops Java2D from caching the image in
+        // video memory, which sensors sampling every tick would defeat anyway
+        int stride = ((SinglePixelPackedSampleModel) raster.getSampleModel())
+                .getScanlineStride();
+        int offset = dataBuffer.getOffset()
+                - raster.getSampleModelTranslateX()
+                - raster.getSampleModelTranslateY() * stride;
+        return new PixelRaster(((DataBufferInt) dataBuffer).getData(),
+                offset, stride, alpha, bufferedImage.getWidth(),
+                bufferedImage.getHeight());
+    }
+
+    /**
+     * Return the pixels of the specified image, copying them if they cannot
+     * be wrapped. Returns null if the image is not a BufferedImage.
+     *
+     * @param image image
+     * @return the pixels of the specified image, or null
+     */
+    static PixelRaster of(final Image image) {
+        PixelRaster raster = wrap(image);
+        if (raster != null || !(image instanceof BufferedImage)) {
+            return raster;
+        }
+        BufferedImage bufferedImage = (BufferedImage) image;
+        int w = bufferedImage.getWidth();
+        int h = bufferedImage.getHeight();
+        int[] pixels = bufferedImage.getRGB(0, 0, w, h, null, 0, w);
+        return new PixelRaster(pixels, 0, w, 0, w, h);
+    }
+
+    /**
+     * Return the pixel at the specified coordinates.
+     *
+     * @param x x coordinate
+     * @param y y coordinate
+     * @return the pixel at the specified coordinates
+     */
+    int getRGB(final int x, final int y) {
+        return pixels[offset + y * scanlineStride + x] | alpha;
+    }
+
+    /**
+     * Return true if the specified receptive field lies within this raster.
+     *
+     * @param field receptive field
+     * @return true if the specified receptive field lies within this raster
+     */
+    boolean contains(final ReceptiveField field) {
+        return field.getX() >= 0 && field.getY() >= 0
+                && field.getWidth() > 0 && field.getHeight() > 0
+                && field.getX() + field.getWidth() <= width
+                && field.getY() + field.getHeight() <= height;
+    }
+
+    /**
+     * Count the pixels in the specified receptive field which match the
+     * specified filter.
+     *
+     * @param filter filter
+     * @param field receptive field, must lie within this raster
+     * @return the number of matching pixels
+     */
+    int count(final PixelCountFilter filter, final ReceptiveField field) {
+        int count = 0;
+        int xStart = field.getX();
+        int xEnd = xStart + field.getWidth();
+        int yEnd = field.getY() + field.getHeight();
+        for (int y = field.getY(); y < yEnd; y++) {
+            int row = offset + y * scanlineStride;
+            for (int x = xStart; x < xEnd; x++) {
+                if (filter.matches(pixels[row + x] | alpha)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the width
+     */
+    int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return the height
+     */
+    int getHeight() {
+        return height;
+    }
+}
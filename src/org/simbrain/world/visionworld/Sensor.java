@@ -119,12 +119,34 @@ public final class Sensor {
         if (pixelMatrix == null) {
             throw new IllegalArgumentException("pixelMatrix must not be null");
         }
+        if (filter instanceof PixelCountFilter) {
+            // Count straight from the raster if it can be read without a copy
+            PixelRaster raster = PixelRaster.wrap(pixelMatrix.getImage());
+            if (raster != null && raster.contains(receptiveField)) {
+                PixelCountFilter countFilter = (PixelCountFilter) filter;
+                sample = countFilter.scale(
+                        raster.count(countFilter, receptiveField),
+                        receptiveField.getWidth()
+                                * receptiveField.getHeight());
+                return sample;
+            }
+        }
         Image image = pixelMatrix.view(receptiveField);
         BufferedImage bufferedImage = toBufferedImage(image);
         sample = filter.filter(bufferedImage);
         return sample;
     }
 
+    /**
+     * Set the sample value for this sensor, for samplers which compute it
+     * without calling {@link #sample(PixelMatrix)}.
+     *
+     * @param sample sample value
+     */
+    void setSample(final double sample) {
+        this.sample = sample;
+    }
+
     /**
      * Return the last sample value for this sensor.
      *
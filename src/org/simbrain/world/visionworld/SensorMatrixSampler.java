@@ -0,0 +1,164 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2006 Jeff Yoshimi <www.jeffyoshimi.net>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.world.visionworld;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Samples every sensor in a sensor matrix in one pass over a pixel matrix.
+ *
+ * <p>
+ * Sensors whose filter is a {@link PixelCountFilter} are sampled straight from
+ * the pixel matrix's raster, without creating an image per sensor. When the
+ * receptive fields of the sensors sharing a filter cover more pixels than the
+ * pixel matrix has, the matching pixels are counted once into a
+ * {@link SummedAreaTable} and each sensor's count is read from the table in
+ * constant time; otherwise each sensor counts its own receptive field. Other
+ * sensors are sampled with {@link Sensor#sample(PixelMatrix)}.
+ * </p>
+ *
+ * <p>
+ * Summed-area tables for large pixel matrices are built in parallel unless
+ * parallel sampling is turned off.
+ * </p>
+ */
+public final class SensorMatrixSampler {
+
+    /** Pixel matrices at least this large are counted in parallel. */
+    private static final int PARALLEL_THRESHOLD = 256 * 256;
+
+    /** Whether to build summed-area tables in parallel. */
+    private boolean parallel = true;
+
+    /** Tables from the last sample, kept so that their arrays are reused. */
+    private Map<PixelCountFilter, SummedAreaTable> tables =
+            new HashMap<PixelCountFilter, SummedAreaTable>();
+
+    /**
+     * Sample every sensor in the specified sensor matrix.
+     *
+     * @param pixelMatrix pixel matrix, must not be null
+     * @param sensorMatrix sensor matrix, must not be null
+     */
+    public void sample(final PixelMatrix pixelMatrix,
+            final SensorMatrix sensorMatrix) {
+        if (pixelMatrix == null) {
+            throw new IllegalArgumentException("pixelMatrix must not be null");
+        }
+        if (sensorMatrix == null) {
+            throw new IllegalArgumentException(
+                    "sensorMatrix must not be null");
+        }
+        PixelRaster raster = PixelRaster.of(pixelMatrix.getImage());
+
+        // Group the sensors which can be counted by filter
+        Map<PixelCountFilter, List<Sensor>> groups =
+                new HashMap<PixelCountFilter, List<Sensor>>();
+        Map<PixelCountFilter, Long> areas =
+                new HashMap<PixelCountFilter, Long>();
+        for (int column = 0, columns = sensorMatrix.columns(); column < columns; column++) {
+            for (int row = 0, rows = sensorMatrix.rows(); row < rows; row++) {
+                Sensor sensor = sensorMatrix.getSensor(row, column);
+                Filter filter = sensor.getFilter();
+                ReceptiveField field = sensor.getReceptiveField();
+                if (raster == null || !(filter instanceof PixelCountFilter)
+                        || !raster.contains(field)) {
+                    sensor.sample(pixelMatrix);
+                    continue;
+                }
+                PixelCountFilter countFilter = (PixelCountFilter) filter;
+                List<Sensor> group = groups.get(countFilter);
+                if (group == null) {
+                    group = new ArrayList<Sensor>();
+                    groups.put(countFilter, group);
+                    areas.put(countFilter, 0L);
+                }
+                group.add(sensor);
+                areas.put(countFilter, areas.get(countFilter)
+                        + (long) field.getWidth() * field.getHeight());
+            }
+        }
+
+        Map<PixelCountFilter, SummedAreaTable> usedTables =
+                new HashMap<PixelCountFilter, SummedAreaTable>();
+        if (groups.isEmpty()) {
+            tables = usedTables;
+            return;
+        }
+        long pixels = (long) raster.getWidth() * raster.getHeight();
+        for (Map.Entry<PixelCountFilter, List<Sensor>> entry : groups
+                .entrySet()) {
+            PixelCountFilter filter = entry.getKey();
+            if (areas.get(filter) > pixels) {
+                SummedAreaTable table = tables.get(filter);
+                if (table == null) {
+                    table = new SummedAreaTable();
+                }
+                table.build(raster, filter,
+                        parallel && pixels >= PARALLEL_THRESHOLD ? Pool.POOL
+                                : null);
+                usedTables.put(filter, table);
+                for (Sensor sensor : entry.getValue()) {
+                    ReceptiveField field = sensor.getReceptiveField();
+                    sensor.setSample(filter.scale(table.count(field),
+                            field.getWidth() * field.getHeight()));
+                }
+            } else {
+                for (Sensor sensor : entry.getValue()) {
+                    ReceptiveField field = sensor.getReceptiveField();
+                    sensor.setSample(filter.scale(raster.count(filter, field),
+                            field.getWidth() * field.getHeight()));
+                }
+            }
+        }
+        tables = usedTables;
+    }
+
+    /**
+     * Return true if summed-area tables are built in parallel.
+     *
+     * @return true if summed-area tables are built in parallel
+     */
+    public boolean isParallel() {
+        return parallel;
+    }
+
+    /**
+     * Set whether summed-area tables for large pixel matrices are built in
+     * parallel.
+     *
+     * @param parallel true to build summed-area tables in parallel
+     */
+    public void setParallel(final boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * Holds the pool, so that it is only created when first used.
+     */
+    private static final class Pool {
+
+        /** The pool shared by all samplers. */
+        private static final ForkJoinPool POOL = new ForkJoinPool();
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Part of Simbrain--a java-based neural network kit
+ * Copyright (C) 2006 Jeff Yoshimi <www.jeffyoshimi.net>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+package org.simbrain.world.visionworld;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Summed-area table (integral image) of the pixels matching a pixel count
+ * filter. Once built, the number of matching pixels in any rectangle is found
+ * from four entries of the table.
+ */
+final class SummedAreaTable {
+
+    /** Rows or columns per task when building in parallel. */
+    private static final int GRAIN = 64;
+
+    /**
+     * Number of matching pixels above and to the left of each point, stored
+     * row by row with an extra row and column of zeros at the top and left.
+     */
+    private int[] sums = new int[0];
+
+    /** Width of the table, one more than the width of the raster. */
+    private int stride;
+
+    /**
+     * Fill this table from the specified raster, reusing the table's array if
+     * it is large enough.
+     *
+     * @param raster pixels
+     * @param filter filter selecting the pixels to count
+     * @param pool pool to build the table in parallel with, or null to build
+     *            it on the calling thread
+     */
+    void build(final PixelRaster raster, final PixelCountFilter filter,
+            final ForkJoinPool pool) {
+        int width = raster.getWidth();
+        int height = raster.getHeight();
+        stride = width + 1;
+        int size = stride * (height + 1);
+        if (sums.length < size) {
+            sums = new int[size];
+        } else {
+            // Only the top row and left column must be cleared
+            for (int x = 0; x < stride; x++) {
+                sums[x] = 0;
+            }
+            for (int y = 1; y <= height; y++) {
+                sums[y * stride] = 0;
+            }
+        }
+        if (pool == null) {
+            for (int y = 0; y < height; y++) {
+                int above = y * stride + 1;
+                int here = above + stride;
+                int rowCount = 0;
+                for (int x = 0; x < width; x++) {
+                    if (filter.matches(raster.getRGB(x, y))) {
+                        rowCount++;
+                    }
+                    sums[here + x] = sums[above + x] + rowCount;
+                }
+            }
+        } else {
+            // Count along rows, then accumulate down columns
+            pool.invoke(new RowTask(raster, filter, 0, height));
+            pool.invoke(new ColumnTask(height, 1, stride));
+        }
+    }
+
+    /**
+     * Return the number of matching pixels in the specified receptive field,
+     * which must lie within the raster this table was built from.
+     *
+     * @param field receptive field
+     * @return the number of matching pixels
+     */
+    int count(final ReceptiveField field) {
+        int top = field.getY() * stride;
+        int bottom = (field.getY() + field.getHeight()) * stride;
+        int left = field.getX();
+        int right = left + field.getWidth();
+        return sums[bottom + right] - sums[bottom + left] - sums[top + right]
+                + sums[top + left];
+    }
+
+    /**
+     * Counts matching pixels along a range of rows.
+     */
+    private final class RowTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        /** Pixels. */
+        private final PixelRaster raster;
+
+        /** Filter. */
+        private final PixelCountFilter filter;
+
+        /** First row. */
+        private final int lo;
+
+        /** One past the last row. */
+        private final int hi;
+
+        /**
+         * @param raster pixels
+         * @param filter filter
+         * @param lo first row
+         * @param hi one past the last row
+         */
+        RowTask(final PixelRaster raster, final PixelCountFilter filter,
+                final int lo, final int hi) {
+            this.raster = raster;
+            this.filter = filter;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > GRAIN) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new RowTask(raster, filter, lo, mid), new RowTask(
+                        raster, filter, mid, hi));
+                return;
+            }
+            int width = raster.getWidth();
+            for (int y = lo; y < hi; y++) {
+                int here = (y + 1) * stride + 1;
+                int rowCount = 0;
+                for (int x = 0; x < width; x++) {
+                    if (filter.matches(raster.getRGB(x, y))) {
+                        rowCount++;
+                    }
+                    sums[here + x] = rowCount;
+                }
+            }
+        }
+    }
+
+    /**
+     * Accumulates row counts down a range of columns.
+     */
+    private final class ColumnTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        /** Height of the raster. */
+        private final int height;
+
+        /** First column of the table. */
+        private final int lo;
+
+        /** One past the last column of the table. */
+        private final int hi;
+
+        /**
+         * @param height height of the raster
+         * @param lo first column of the table
+         * @param hi one past the last column of the table
+         */
+        ColumnTask(final int height, final int lo, final int hi) {
+            this.height = height;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > GRAIN) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new ColumnTask(height, lo, mid), new ColumnTask(
+                        height, mid, hi));
+                return;
+            }
+            for (int y = 2; y <= height; y++) {
+                int here = y * stride;
+                int above = here - stride;
+                for (int x = lo; x < hi; x++) {
+                    sums[here + x] += sums[above + x];
+                }
+            }
+        }
+    }
+}
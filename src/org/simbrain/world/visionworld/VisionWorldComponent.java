@@ -35,6 +35,9 @@ public final class VisionWorldComponent extends WorkspaceComponent {
     /** Vision world. */
     private final VisionWorld visionWorld;
 
+    /** Samples the sensors on each update. */
+    private final SensorMatrixSampler sampler = new SensorMatrixSampler();
+
     /**
      * Create a new vision world frame with the specified name.
      *
@@ -145,14 +148,7 @@ public final class VisionWorldComponent extends WorkspaceComponent {
         // Possibly change this later so only sensors with couplings are
         // updated.
         VisionWorldModel model = visionWorld.getModel();
-        PixelMatrix pixelMatrix = model.getPixelMatrix();
-        SensorMatrix sensorMatrix = model.getSensorMatrix();
-        for (int column = 0, columns = sensorMatrix.columns(); column < columns; column++) {
-            for (int row = 0, rows = sensorMatrix.rows(); row < rows; row++) {
-                Sensor sensor = sensorMatrix.getSensor(row, column);
-                sensor.sample(pixelMatrix);
-            }
-        }
+        sampler.sample(model.getPixelMatrix(), model.getSensorMatrix());
     }
 
     /**
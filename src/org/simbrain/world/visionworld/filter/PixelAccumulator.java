@@ -20,12 +20,12 @@ package org.simbrain.world.visionworld.filter;
 
 import java.awt.image.BufferedImage;
 
-import org.simbrain.world.visionworld.Filter;
+import org.simbrain.world.visionworld.PixelCountFilter;
 
 /**
  * Pixel accumulator.
  */
-public final class PixelAccumulator implements Filter {
+public final class PixelAccumulator implements PixelCountFilter {
 
     /** Display name. */
     private static final String DISPLAY_NAME = "Pixel accumulator";
@@ -35,9 +35,7 @@ public final class PixelAccumulator implements Filter {
         int pixels = 0;
         for (int x = 0; x < image.getWidth(); x++) {
             for (int y = 0; y < image.getHeight(); y++) {
-                int rgb = image.getRGB(x, y);
-                // hack!
-                if (rgb == -16777216) {
+                if (matches(image.getRGB(x, y))) {
                     pixels++;
                 }
                 // ...because this isn't giving the right value
@@ -51,6 +49,27 @@ public final class PixelAccumulator implements Filter {
         return pixels;
     }
 
+    /** {@inheritDoc} */
+    public boolean matches(final int argb) {
+        // hack!
+        return argb == -16777216;
+    }
+
+    /** {@inheritDoc} */
+    public double scale(final int count, final int total) {
+        return count;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return obj instanceof PixelAccumulator;
+    }
+
+    @Override
+    public int hashCode() {
+        return PixelAccumulator.class.hashCode();
+    }
+
     public String getDescription() {
         return DISPLAY_NAME;
     }
@@ -3,7 +3,7 @@ package org.simbrain.world.visionworld.filter;
 import java.awt.image.BufferedImage;
 
 import org.apache.log4j.Logger;
-import org.simbrain.world.visionworld.Filter;
+import org.simbrain.world.visionworld.PixelCountFilter;
 
 /**
  * Filters pixels against the provided thresholds and provides the fraction of
@@ -17,7 +17,7 @@ import org.simbrain.world.visionworld.Filter;
  *
  * @author Matt Watson
  */
-public class RgbFilter implements Filter {
+public class RgbFilter implements PixelCountFilter {
     /** static logger for this class. */
     private static final Logger LOGGER = Logger.getLogger(RgbFilter.class);
 
@@ -77,16 +77,15 @@ public class RgbFilter implements Filter {
         for (int x = 0; x < width; x++) {
             for (int y = 0; y < height; y++) {
                 int rgb = image.getRGB(x, y);
-                int b = rgb & BYTE_MASK;
-                rgb = rgb >>> BITS_IN_A_BYTE;
-                int g = rgb & BYTE_MASK;
-                rgb = rgb >>> BITS_IN_A_BYTE;
-                int r = rgb & BYTE_MASK;
 
-                LOGGER.debug("rgb(" + x + "," + y + "): " + r + ", " + g + ", "
-                        + b);
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("rgb(" + x + "," + y + "): "
+                            + ((rgb >>> 16) & BYTE_MASK) + ", "
+                            + ((rgb >>> 8) & BYTE_MASK) + ", "
+                            + (rgb & BYTE_MASK));
+                }
 
-                if (eval(r, red) && eval(g, green) && eval(b, blue)) {
+                if (matches(rgb)) {
                     pixels++;
                 }
             }
@@ -107,6 +106,19 @@ public class RgbFilter implements Filter {
     // return buffer.toString();
     // }
 
+    /**
+     * {@inheritDoc}
+     */
+    public boolean matches(final int argb) {
+        int rgb = argb;
+        int b = rgb & BYTE_MASK;
+        rgb = rgb >>> BITS_IN_A_BYTE;
+        int g = rgb & BYTE_MASK;
+        rgb = rgb >>> BITS_IN_A_BYTE;
+        int r = rgb & BYTE_MASK;
+        return eval(r, red) && eval(g, green) && eval(b, blue);
+    }
+
     /**
      * Evaluates the given value against the provided threshold.
      *
@@ -115,13 +127,10 @@ public class RgbFilter implements Filter {
      * @return Whether the given value meets the threshold.
      */
     private boolean eval(final int value, final int threshold) {
-        LOGGER.debug("eval: " + value + ", " + threshold);
-
+        // Called for every pixel, so no logging here
         if (threshold < 0) {
-            LOGGER.debug(value < Math.abs(threshold));
             return value < Math.abs(threshold);
         } else {
-            LOGGER.debug(value >= Math.abs(threshold));
             return value >= threshold;
         }
     }
@@ -134,17 +143,39 @@ public class RgbFilter implements Filter {
      * @param total The total number of pixels.
      * @return The scaled value.
      */
-    double scale(final int pixels, final int total) {
+    public double scale(final int pixels, final int total) {
         double distance = Math.max(upper - lower, 0);
 
         double fraction = ((double) pixels) / total;
 
-        LOGGER.debug("pixels: " + pixels + " total: " + total + " scaled: "
-                + fraction * distance);
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("pixels: " + pixels + " total: " + total
+                    + " scaled: " + fraction * distance);
+        }
 
         return fraction * distance;
     }
 
+    @Override
+    public boolean equals(final Object obj) {
+        if (!(obj instanceof RgbFilter)) {
+            return false;
+        }
+        RgbFilter other = (RgbFilter) obj;
+        return getClass() == other.getClass() && red == other.red
+                && green == other.green && blue == other.blue
+                && lower == other.lower && upper == other.upper;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = red;
+        hash = 31 * hash + green;
+        hash = 31 * hash + blue;
+        hash = 31 * hash + lower;
+        return 31 * hash + upper;
+    }
+
     /**
      * {@inheritDoc}
      */